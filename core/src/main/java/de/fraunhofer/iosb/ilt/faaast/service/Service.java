@@ -36,6 +36,8 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceExceptio
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.serialization.DataFormat;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.Persistence;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.cache.CachingPersistence;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.writebehind.WriteBehindPersistence;
 import de.fraunhofer.iosb.ilt.faaast.service.registry.RegistrySynchronization;
 import de.fraunhofer.iosb.ilt.faaast.service.request.RequestHandlerManager;
 import de.fraunhofer.iosb.ilt.faaast.service.request.handler.DynamicRequestExecutionContext;
@@ -222,6 +224,9 @@ public class Service implements ServiceContext {
         LOGGER.debug("Get command for starting FA³ST Service");
         persistence.start();
         messageBus.start();
+        if (persistence instanceof CachingPersistence<?> cachingPersistence) {
+            cachingPersistence.subscribe(messageBus);
+        }
         if (!endpoints.isEmpty()) {
             LOGGER.info("Starting endpoints...");
         }
@@ -257,6 +262,13 @@ public class Service implements ServiceContext {
         ZipSecureFile.setMinInflateRatio(config.getCore().getMinInflateRatio());
         ensureInitialModelFilesAreLoaded();
         persistence = (Persistence) config.getPersistence().newInstance(config.getCore(), this);
+        if (Objects.nonNull(config.getPersistenceWriteBehind())) {
+            persistence = new WriteBehindPersistence<>(persistence, config.getPersistenceWriteBehind());
+        }
+        // the cache is placed in front of the write-behind buffer so that cached elements are invalidated immediately
+        if (Objects.nonNull(config.getPersistenceCache())) {
+            persistence = new CachingPersistence<>(persistence, config.getPersistenceCache());
+        }
         fileStorage = (FileStorage) config.getFileStorage().newInstance(config.getCore(), this);
         messageBus = (MessageBus) config.getMessageBus().newInstance(config.getCore(), this);
         this.requestHandler = new RequestHandlerManager(config.getCore());
@@ -25,6 +25,7 @@ import de.fraunhofer.iosb.ilt.faaast.service.exception.ConfigurationException;
 import de.fraunhofer.iosb.ilt.faaast.service.exception.InvalidConfigurationException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.Message;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.Response;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.paging.Page;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.request.PatchSubmodelElementValueByPathRequest;
 import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ValueChangeEventMessage;
 import de.fraunhofer.iosb.ilt.faaast.service.model.value.DataElementValue;
@@ -63,6 +64,7 @@ import org.eclipse.digitaltwin.aas4j.v3.model.DataElement;
 import org.eclipse.digitaltwin.aas4j.v3.model.KeyTypes;
 import org.eclipse.digitaltwin.aas4j.v3.model.MessageTypeEnum;
 import org.eclipse.digitaltwin.aas4j.v3.model.OperationVariable;
+import org.eclipse.digitaltwin.aas4j.v3.model.Referable;
 import org.eclipse.digitaltwin.aas4j.v3.model.Reference;
 import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElement;
 import org.slf4j.Logger;
@@ -320,27 +322,39 @@ public class AssetConnectionManager {
      * Checks {@code element} recursively for any value providers present and for each reads the latest value from the
      * asset.
      * If the value is different from the current value, the value is updated (i.e. content of {@code root} modified) and an
-     * ElementChangeEvent is fired if {@code publishOnMessageBus} is true.
+     * ElementChangeEvent is fired if {@code publishOnMessageBus} is true. If {@code element} is shared with the
+     * persistence (see {@link de.fraunhofer.iosb.ilt.faaast.service.persistence.Persistence#isSharingResults()}), a copy
+     * is modified instead so that the stored element is never modified by concurrent reads.
      *
+     * @param <T> the type of the element
      * @param reference the reference to {@code element}
-     * @param element the root element
+     * @param element the root element, either a {@link Referable} or a {@link Page} of referables
      * @param publishOnMessageBus if ElementChangeEvents should be fired or not
+     * @return the element containing the latest values, i.e. either {@code element} itself or its modified copy
      */
-    public void syncValueProvidersOnRead(Reference reference, Object element, boolean publishOnMessageBus) {
+    public <T> T syncValueProvidersOnRead(Reference reference, T element, boolean publishOnMessageBus) {
         if (Objects.isNull(element)) {
-            return;
-        }
-        if (element instanceof DataElement dataElement && hasValueProvider(reference)) {
-            syncElementOnRead(reference, dataElement, false);
-        }
-        else {
-            Map<Reference, DataElement> children = findSynchronizableElements(reference, element);
-            Map<Reference, Future<?>> tasks = children.entrySet().stream()
-                    .collect(Collectors.toMap(
-                            Entry::getKey,
-                            x -> executorRead.submit(() -> syncElementOnRead(x.getKey(), x.getValue(), publishOnMessageBus))));
-            waitForTasks(tasks, coreConfig.getAssetConnectionReadTimeout(), "read from asset connection");
+            return element;
+        }
+        if (element instanceof DataElement && hasValueProvider(reference)) {
+            T result = copyIfShared(element);
+            syncElementOnRead(reference, (DataElement) result, false);
+            return result;
+        }
+        T result = element;
+        Map<Reference, DataElement> children = findSynchronizableElements(reference, element);
+        if (children.keySet().stream().anyMatch(this::hasValueProvider)) {
+            result = copyIfShared(element);
+            if (result != element) {
+                children = findSynchronizableElements(reference, result);
+            }
         }
+        Map<Reference, Future<?>> tasks = children.entrySet().stream()
+                .collect(Collectors.toMap(
+                        Entry::getKey,
+                        x -> executorRead.submit(() -> syncElementOnRead(x.getKey(), x.getValue(), publishOnMessageBus))));
+        waitForTasks(tasks, coreConfig.getAssetConnectionReadTimeout(), "read from asset connection");
+        return result;
     }
 
 
@@ -1187,6 +1201,20 @@ public class AssetConnectionManager {
     }
 
 
+    private <T> T copyIfShared(T element) {
+        if (!service.getPersistence().isSharingResults()) {
+            return element;
+        }
+        if (element instanceof Referable referable) {
+            return (T) DeepCopyHelper.deepCopy(referable);
+        }
+        if (element instanceof Page<?> page) {
+            return (T) DeepCopyHelper.deepCopy((Page<Referable>) page, Referable.class);
+        }
+        throw new IllegalArgumentException(String.format("unsupported element type for synchronizing value providers (type: %s)", element.getClass()));
+    }
+
+
     private void syncElementOnRead(Reference reference, SubmodelElement element, boolean publishOnMessageBus) {
         try {
             Optional<DataElementValue> newValue = readValue(reference);
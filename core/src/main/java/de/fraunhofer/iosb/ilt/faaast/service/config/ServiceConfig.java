@@ -23,6 +23,8 @@ import de.fraunhofer.iosb.ilt.faaast.service.endpoint.EndpointConfig;
 import de.fraunhofer.iosb.ilt.faaast.service.filestorage.FileStorageConfig;
 import de.fraunhofer.iosb.ilt.faaast.service.messagebus.MessageBusConfig;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.PersistenceConfig;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.cache.PersistenceCacheConfig;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.writebehind.PersistenceWriteBehindConfig;
 import de.fraunhofer.iosb.ilt.faaast.service.submodeltemplate.SubmodelTemplateProcessorConfig;
 import de.fraunhofer.iosb.ilt.faaast.service.util.ImplementationManager;
 import java.io.File;
@@ -46,6 +48,8 @@ public class ServiceConfig {
     private List<SubmodelTemplateProcessorConfig> submodelTemplateProcessors;
 
     private PersistenceConfig persistence;
+    private PersistenceCacheConfig persistenceCache;
+    private PersistenceWriteBehindConfig persistenceWriteBehind;
 
     public ServiceConfig() {
         this.assetConnections = new ArrayList<>();
@@ -124,6 +128,37 @@ public class ServiceConfig {
     }
 
 
+    /**
+     * Configuration of the cache placed in front of the persistence. If null, no cache is used.
+     *
+     * @return the configuration of the persistence cache, may be null
+     */
+    public PersistenceCacheConfig getPersistenceCache() {
+        return persistenceCache;
+    }
+
+
+    public void setPersistenceCache(PersistenceCacheConfig persistenceCache) {
+        this.persistenceCache = persistenceCache;
+    }
+
+
+    /**
+     * Configuration of buffering updates of submodel elements before writing them to the persistence. If null, updates
+     * are written directly.
+     *
+     * @return the configuration of the write-behind buffer, may be null
+     */
+    public PersistenceWriteBehindConfig getPersistenceWriteBehind() {
+        return persistenceWriteBehind;
+    }
+
+
+    public void setPersistenceWriteBehind(PersistenceWriteBehindConfig persistenceWriteBehind) {
+        this.persistenceWriteBehind = persistenceWriteBehind;
+    }
+
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
@@ -140,6 +175,8 @@ public class ServiceConfig {
                 && Objects.equals(this.assetConnections, other.assetConnections)
                 && Objects.equals(this.endpoints, other.endpoints)
                 && Objects.equals(this.persistence, other.persistence)
+                && Objects.equals(this.persistenceCache, other.persistenceCache)
+                && Objects.equals(this.persistenceWriteBehind, other.persistenceWriteBehind)
                 && Objects.equals(this.fileStorage, other.fileStorage)
                 && Objects.equals(this.submodelTemplateProcessors, other.submodelTemplateProcessors);
     }
@@ -147,7 +184,7 @@ public class ServiceConfig {
 
     @Override
     public int hashCode() {
-        return Objects.hash(core, assetConnections, endpoints, persistence, fileStorage, submodelTemplateProcessors);
+        return Objects.hash(core, assetConnections, endpoints, persistence, persistenceCache, persistenceWriteBehind, fileStorage, submodelTemplateProcessors);
     }
 
 
@@ -198,6 +235,8 @@ public class ServiceConfig {
         private List<AssetConnectionConfig> assetConnections;
         private List<EndpointConfig> endpoints;
         private PersistenceConfig persistence;
+        private PersistenceCacheConfig persistenceCache;
+        private PersistenceWriteBehindConfig persistenceWriteBehind;
         private FileStorageConfig fileStorage;
         private MessageBusConfig messageBus;
         private List<SubmodelTemplateProcessorConfig> submodelTemplateProcessors;
@@ -234,6 +273,30 @@ public class ServiceConfig {
         }
 
 
+        /**
+         * Sets the persistence cache config.
+         *
+         * @param value the persistence cache config
+         * @return the builder
+         */
+        public Builder persistenceCache(PersistenceCacheConfig value) {
+            this.persistenceCache = value;
+            return this;
+        }
+
+
+        /**
+         * Sets the persistence write-behind config.
+         *
+         * @param value the persistence write-behind config
+         * @return the builder
+         */
+        public Builder persistenceWriteBehind(PersistenceWriteBehindConfig value) {
+            this.persistenceWriteBehind = value;
+            return this;
+        }
+
+
         /**
          * Sets the file storage config.
          *
@@ -341,6 +404,8 @@ public class ServiceConfig {
             result.setCore(core);
             result.setEndpoints(endpoints);
             result.setPersistence(persistence);
+            result.setPersistenceCache(persistenceCache);
+            result.setPersistenceWriteBehind(persistenceWriteBehind);
             result.setFileStorage(fileStorage);
             result.setMessageBus(messageBus);
             result.setSubmodelTemplateProcessors(submodelTemplateProcessors);
@@ -24,9 +24,16 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceExceptio
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceAlreadyExistsException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotAContainerElementException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ValueMappingException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.ElementValue;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.mapper.ElementValueMapper;
+import de.fraunhofer.iosb.ilt.faaast.service.util.DeepCopyHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
+import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceBuilder;
 import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceHelper;
+import java.util.ArrayList;
 import java.util.Objects;
+import java.util.stream.Collectors;
 import org.eclipse.digitaltwin.aas4j.v3.model.AssetAdministrationShell;
 import org.eclipse.digitaltwin.aas4j.v3.model.ConceptDescription;
 import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
@@ -65,6 +72,21 @@ public interface Persistence<C extends PersistenceConfig> extends Configurable<C
     public void stop();
 
 
+    /**
+     * Indicates whether elements returned by this persistence are shared with the persistence itself instead of being
+     * a new copy for every call. Shared elements are read-only, i.e. implementations should make all lists within them
+     * unmodifiable, and must not be modified by callers. Use
+     * {@link de.fraunhofer.iosb.ilt.faaast.service.persistence.util.PersistenceHelper#copyIfShared}
+     * to get an element that can safely be modified. Implementations must not keep references to elements passed to
+     * them when sharing results, i.e. they must store copies.
+     *
+     * @return true if returned elements are shared with the persistence, false if every call returns a new copy
+     */
+    public default boolean isSharingResults() {
+        return false;
+    }
+
+
     /**
      * Gets an {@code org.eclipse.digitaltwin.aas4j.v3.model.AssetAdministrationShell} by id.
      *
@@ -324,6 +346,35 @@ public interface Persistence<C extends PersistenceConfig> extends Configurable<C
     public void save(Submodel submodel) throws PersistenceException;
 
 
+    /**
+     * Saves all {@code org.eclipse.digitaltwin.aas4j.v3.model.Identifiable}s contained in an environment at once, i.e.
+     * asset administration shells, submodels and concept descriptions. Identifiables with an id that is already present
+     * are replaced. The result is equivalent to saving each identifiable individually but implementations may write
+     * all of them in a single batch.
+     *
+     * @param environment the environment containing the identifiables to save
+     * @throws PersistenceException if there was an error with the storage.
+     */
+    public default void saveAll(Environment environment) throws PersistenceException {
+        Ensure.requireNonNull(environment, "environment must be non-null");
+        if (Objects.nonNull(environment.getAssetAdministrationShells())) {
+            for (AssetAdministrationShell assetAdministrationShell: environment.getAssetAdministrationShells()) {
+                save(assetAdministrationShell);
+            }
+        }
+        if (Objects.nonNull(environment.getSubmodels())) {
+            for (Submodel submodel: environment.getSubmodels()) {
+                save(submodel);
+            }
+        }
+        if (Objects.nonNull(environment.getConceptDescriptions())) {
+            for (ConceptDescription conceptDescription: environment.getConceptDescriptions()) {
+                save(conceptDescription);
+            }
+        }
+    }
+
+
     /**
      * Inserts a {@code org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElement} relative to a parent.
      *
@@ -350,6 +401,43 @@ public interface Persistence<C extends PersistenceConfig> extends Configurable<C
     public void update(SubmodelElementIdentifier identifier, SubmodelElement submodelElement) throws ResourceNotFoundException, PersistenceException;
 
 
+    /**
+     * Gets the value of a {@code org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElement}, including the value of blobs.
+     *
+     * <p>The default implementation reads the whole element. Implementations should override this method if they can
+     * access the value more efficiently.
+     *
+     * @param identifier the identifier of the SubmodelElement
+     * @return the value of the {@code org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElement}
+     * @throws ResourceNotFoundException if the element cannot be found
+     * @throws ValueMappingException if the element does not have a value, e.g. is an operation
+     * @throws PersistenceException if there was an error with the storage.
+     */
+    public default ElementValue getValue(SubmodelElementIdentifier identifier) throws ResourceNotFoundException, ValueMappingException, PersistenceException {
+        return ElementValueMapper.toValue(getSubmodelElement(identifier, QueryModifier.MAXIMAL));
+    }
+
+
+    /**
+     * Sets the value of a {@code org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElement}. All other properties of the
+     * element remain unchanged.
+     *
+     * <p>The default implementation reads the whole element and updates it using
+     * {@link #update(SubmodelElementIdentifier, SubmodelElement)}. Implementations should override this method if they
+     * can modify the value in place.
+     *
+     * @param identifier the identifier of the SubmodelElement
+     * @param value the new value
+     * @throws ResourceNotFoundException if the element cannot be found
+     * @throws ValueMappingException if the value does not match the type of the element
+     * @throws PersistenceException if there was an error with the storage.
+     */
+    public default void setValue(SubmodelElementIdentifier identifier, ElementValue value) throws ResourceNotFoundException, ValueMappingException, PersistenceException {
+        Ensure.requireNonNull(value, "value must be non-null");
+        update(identifier, ElementValueMapper.setValue(DeepCopyHelper.deepCopy(getSubmodelElement(identifier, QueryModifier.MAXIMAL)), value));
+    }
+
+
     /**
      * Save a {@code de.fraunhofer.iosb.ilt.faaast.service.model.api.operation.OperationResult}.
      *
@@ -691,12 +779,10 @@ public interface Persistence<C extends PersistenceConfig> extends Configurable<C
      * @return true if exists, false otherwise
      */
     public default boolean submodelElementExists(Reference reference) {
-        try {
-            return Objects.nonNull(getSubmodelElement(reference, QueryModifier.DEFAULT));
-        }
-        catch (ResourceNotFoundException | PersistenceException e) {
+        if (Objects.isNull(ReferenceHelper.findFirstKeyType(reference, KeyTypes.SUBMODEL))) {
             return false;
         }
+        return submodelElementExists(SubmodelElementIdentifier.fromReference(reference));
     }
 
 
@@ -714,4 +800,54 @@ public interface Persistence<C extends PersistenceConfig> extends Configurable<C
             return false;
         }
     }
+
+
+    /**
+     * Checks if a given {@code org.eclipse.digitaltwin.aas4j.v3.model.AssetAdministrationShell} references a given
+     * {@code org.eclipse.digitaltwin.aas4j.v3.model.Submodel}. The submodel itself does not need to exist.
+     *
+     * @param aasId the id of the AAS
+     * @param submodelId the id of the submodel
+     * @return true if the AAS exists and references the submodel, false otherwise
+     */
+    public default boolean submodelRefExists(String aasId, String submodelId) {
+        Reference submodelRef = ReferenceBuilder.forSubmodel(submodelId);
+        try {
+            return getAssetAdministrationShell(aasId, QueryModifier.MINIMAL).getSubmodels().stream()
+                    .anyMatch(x -> ReferenceHelper.equals(x, submodelRef));
+        }
+        catch (ResourceNotFoundException | PersistenceException e) {
+            return false;
+        }
+    }
+
+
+    /**
+     * Checks which of the identifiables contained in an environment already exist, i.e. asset administration shells,
+     * submodels and concept descriptions. The result is equivalent to checking each identifiable individually but
+     * implementations may check all of them at once.
+     *
+     * @param environment the environment containing the identifiables to check
+     * @return an environment containing only those identifiables of the given environment that exist
+     */
+    public default Environment filterExisting(Environment environment) {
+        Ensure.requireNonNull(environment, "environment must be non-null");
+        return new DefaultEnvironment.Builder()
+                .assetAdministrationShells(Objects.isNull(environment.getAssetAdministrationShells())
+                        ? new ArrayList<>()
+                        : environment.getAssetAdministrationShells().stream()
+                                .filter(x -> assetAdministrationShellExists(x.getId()))
+                                .collect(Collectors.toList()))
+                .submodels(Objects.isNull(environment.getSubmodels())
+                        ? new ArrayList<>()
+                        : environment.getSubmodels().stream()
+                                .filter(x -> submodelExists(x.getId()))
+                                .collect(Collectors.toList()))
+                .conceptDescriptions(Objects.isNull(environment.getConceptDescriptions())
+                        ? new ArrayList<>()
+                        : environment.getConceptDescriptions().stream()
+                                .filter(x -> conceptDescriptionExists(x.getId()))
+                                .collect(Collectors.toList()))
+                .build();
+    }
 }
@@ -0,0 +1,686 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import de.fraunhofer.iosb.ilt.faaast.service.ServiceContext;
+import de.fraunhofer.iosb.ilt.faaast.service.config.CoreConfig;
+import de.fraunhofer.iosb.ilt.faaast.service.exception.ConfigurationInitializationException;
+import de.fraunhofer.iosb.ilt.faaast.service.exception.MessageBusException;
+import de.fraunhofer.iosb.ilt.faaast.service.messagebus.MessageBus;
+import de.fraunhofer.iosb.ilt.faaast.service.model.IdShortPath;
+import de.fraunhofer.iosb.ilt.faaast.service.model.SubmodelElementIdentifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.operation.OperationHandle;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.paging.Page;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.paging.PagingInfo;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceAlreadyExistsException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotAContainerElementException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ValueMappingException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.SubscriptionId;
+import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.SubscriptionInfo;
+import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ChangeEventMessage;
+import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ElementCreateEventMessage;
+import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ElementDeleteEventMessage;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.ElementValue;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.AssetAdministrationShellSearchCriteria;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.ConceptDescriptionSearchCriteria;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.Persistence;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.PersistenceConfig;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.SubmodelElementSearchCriteria;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.SubmodelSearchCriteria;
+import de.fraunhofer.iosb.ilt.faaast.service.util.DeepCopyHelper;
+import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import org.eclipse.digitaltwin.aas4j.v3.model.AssetAdministrationShell;
+import org.eclipse.digitaltwin.aas4j.v3.model.ConceptDescription;
+import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
+import org.eclipse.digitaltwin.aas4j.v3.model.Key;
+import org.eclipse.digitaltwin.aas4j.v3.model.KeyTypes;
+import org.eclipse.digitaltwin.aas4j.v3.model.OperationResult;
+import org.eclipse.digitaltwin.aas4j.v3.model.Referable;
+import org.eclipse.digitaltwin.aas4j.v3.model.Reference;
+import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
+import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Decorator for a {@link Persistence} that caches the results of reading single asset administration shells,
+ * submodels, concept descriptions and submodel elements. Results are cached per query modifier. Searches and paged
+ * results are not cached and always passed to the underlying persistence.
+ *
+ * <p>Cached elements are invalidated on every modification made via this decorator as well as on every
+ * {@link ChangeEventMessage} received via the message bus, e.g. when the underlying persistence is shared with other
+ * instances. Modifying a submodel element invalidates the element itself, all its ancestors, and all its descendants.
+ * Inserting or deleting a submodel element also invalidates all siblings as their index may change in case of a
+ * SubmodelElementList. Cached elements are indexed by the identifiable they belong to so that invalidation only
+ * considers the elements of the affected identifiable instead of the whole cache.
+ *
+ * <p>Cached elements are never handed out directly, each read returns a deep copy.
+ *
+ * <p>Statistics of the cache, e.g. number of hits and misses, are available via {@link #getStats()} and via JMX, see
+ * {@link PersistenceCacheMXBean}.
+ */
+public class CachingPersistence<C extends PersistenceConfig> implements Persistence<C> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingPersistence.class);
+    private static final String MBEAN_NAME = "de.fraunhofer.iosb.ilt.faaast.service:type=PersistenceCache,id=%d";
+    private static final AtomicInteger MBEAN_ID = new AtomicInteger();
+    private final Persistence<C> persistence;
+    private final Cache<CacheKey, Referable> cache;
+    // cached keys per identifiable, submodel elements are indexed by their submodel
+    private final Map<CacheKey, Set<CacheKey>> index;
+    private final AtomicLong generation;
+    private ObjectName mbeanName;
+    private SubscriptionId subscriptionId;
+    private MessageBus messageBus;
+
+    public CachingPersistence(Persistence<C> persistence, PersistenceCacheConfig config) {
+        Ensure.requireNonNull(persistence, "persistence must be non-null");
+        Ensure.requireNonNull(config, "config must be non-null");
+        this.persistence = persistence;
+        this.generation = new AtomicLong();
+        this.index = new ConcurrentHashMap<>();
+        CacheBuilder<CacheKey, Referable> builder = CacheBuilder.newBuilder()
+                .recordStats()
+                .removalListener(this::handleRemoval);
+        if (config.getMaxSize() > 0) {
+            builder.maximumSize(config.getMaxSize());
+        }
+        if (config.getExpireAfterAccess() > 0) {
+            builder.expireAfterAccess(config.getExpireAfterAccess(), TimeUnit.MILLISECONDS);
+        }
+        this.cache = builder.build();
+    }
+
+
+    /**
+     * Gets the underlying persistence.
+     *
+     * @return the underlying persistence
+     */
+    public Persistence<C> getPersistence() {
+        return persistence;
+    }
+
+
+    /**
+     * Gets the statistics of the cache, e.g. number of hits, misses, and evictions.
+     *
+     * @return the statistics of the cache
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+
+    /**
+     * Subscribes to change events on the message bus to invalidate cached elements that have been modified without
+     * using this decorator.
+     *
+     * @param messageBus the message bus
+     * @throws MessageBusException if subscribing fails
+     */
+    public void subscribe(MessageBus messageBus) throws MessageBusException {
+        Ensure.requireNonNull(messageBus, "messageBus must be non-null");
+        this.messageBus = messageBus;
+        this.subscriptionId = messageBus.subscribe(SubscriptionInfo.create(ChangeEventMessage.class, this::handleChangeEvent));
+    }
+
+
+    @Override
+    public void init(CoreConfig coreConfig, C config, ServiceContext serviceContext) throws ConfigurationInitializationException {
+        persistence.init(coreConfig, config, serviceContext);
+    }
+
+
+    @Override
+    public C asConfig() {
+        return persistence.asConfig();
+    }
+
+
+    @Override
+    public void start() throws PersistenceException {
+        persistence.start();
+        registerMBean();
+    }
+
+
+    @Override
+    public void stop() {
+        if (Objects.nonNull(subscriptionId)) {
+            try {
+                messageBus.unsubscribe(subscriptionId);
+            }
+            catch (MessageBusException e) {
+                LOGGER.debug("error unsubscribing persistence cache from message bus", e);
+            }
+            subscriptionId = null;
+        }
+        unregisterMBean();
+        LOGGER.info("persistence cache statistics: {}", cache.stats());
+        invalidateAll();
+        persistence.stop();
+    }
+
+
+    @Override
+    public boolean isSharingResults() {
+        // cached elements are always copied, but elements loaded on a cache miss are returned as is
+        return persistence.isSharingResults();
+    }
+
+
+    @Override
+    public AssetAdministrationShell getAssetAdministrationShell(String id, QueryModifier modifier) throws ResourceNotFoundException, PersistenceException {
+        return get(new CacheKey(KeyTypes.ASSET_ADMINISTRATION_SHELL, id, null, modifier), () -> persistence.getAssetAdministrationShell(id, modifier));
+    }
+
+
+    @Override
+    public Page<Reference> getSubmodelRefs(String aasId, PagingInfo paging) throws ResourceNotFoundException, PersistenceException {
+        return persistence.getSubmodelRefs(aasId, paging);
+    }
+
+
+    @Override
+    public Submodel getSubmodel(String id, QueryModifier modifier) throws ResourceNotFoundException, PersistenceException {
+        return get(new CacheKey(KeyTypes.SUBMODEL, id, null, modifier), () -> persistence.getSubmodel(id, modifier));
+    }
+
+
+    @Override
+    public ConceptDescription getConceptDescription(String id, QueryModifier modifier) throws ResourceNotFoundException, PersistenceException {
+        return get(new CacheKey(KeyTypes.CONCEPT_DESCRIPTION, id, null, modifier), () -> persistence.getConceptDescription(id, modifier));
+    }
+
+
+    @Override
+    public SubmodelElement getSubmodelElement(SubmodelElementIdentifier identifier, QueryModifier modifier) throws ResourceNotFoundException, PersistenceException {
+        Ensure.requireNonNull(identifier, "identifier must be non-null");
+        return get(
+                new CacheKey(KeyTypes.SUBMODEL_ELEMENT, identifier.getSubmodelId(), identifier.getIdShortPath(), modifier),
+                () -> persistence.getSubmodelElement(identifier, modifier));
+    }
+
+
+    @Override
+    public Environment getEnvironment() throws PersistenceException {
+        return persistence.getEnvironment();
+    }
+
+
+    @Override
+    public OperationResult getOperationResult(OperationHandle handle) throws ResourceNotFoundException, PersistenceException {
+        return persistence.getOperationResult(handle);
+    }
+
+
+    @Override
+    public Page<AssetAdministrationShell> findAssetAdministrationShells(AssetAdministrationShellSearchCriteria criteria, QueryModifier modifier, PagingInfo paging)
+            throws PersistenceException {
+        return persistence.findAssetAdministrationShells(criteria, modifier, paging);
+    }
+
+
+    @Override
+    public Page<Submodel> findSubmodels(SubmodelSearchCriteria criteria, QueryModifier modifier, PagingInfo paging) throws PersistenceException {
+        return persistence.findSubmodels(criteria, modifier, paging);
+    }
+
+
+    @Override
+    public Page<SubmodelElement> findSubmodelElements(SubmodelElementSearchCriteria criteria, QueryModifier modifier, PagingInfo paging)
+            throws ResourceNotFoundException, PersistenceException {
+        return persistence.findSubmodelElements(criteria, modifier, paging);
+    }
+
+
+    @Override
+    public Page<ConceptDescription> findConceptDescriptions(ConceptDescriptionSearchCriteria criteria, QueryModifier modifier, PagingInfo paging) throws PersistenceException {
+        return persistence.findConceptDescriptions(criteria, modifier, paging);
+    }
+
+
+    @Override
+    public boolean assetAdministrationShellExists(String id) {
+        return persistence.assetAdministrationShellExists(id);
+    }
+
+
+    @Override
+    public boolean submodelExists(String id) {
+        return persistence.submodelExists(id);
+    }
+
+
+    @Override
+    public boolean conceptDescriptionExists(String id) {
+        return persistence.conceptDescriptionExists(id);
+    }
+
+
+    @Override
+    public boolean submodelElementExists(SubmodelElementIdentifier identifier) {
+        return persistence.submodelElementExists(identifier);
+    }
+
+
+    @Override
+    public boolean submodelRefExists(String aasId, String submodelId) {
+        return persistence.submodelRefExists(aasId, submodelId);
+    }
+
+
+    @Override
+    public Environment filterExisting(Environment environment) {
+        return persistence.filterExisting(environment);
+    }
+
+
+    @Override
+    public void save(AssetAdministrationShell assetAdministrationShell) throws PersistenceException {
+        persistence.save(assetAdministrationShell);
+        invalidateIdentifiable(KeyTypes.ASSET_ADMINISTRATION_SHELL, assetAdministrationShell.getId());
+    }
+
+
+    @Override
+    public void save(ConceptDescription conceptDescription) throws PersistenceException {
+        persistence.save(conceptDescription);
+        invalidateIdentifiable(KeyTypes.CONCEPT_DESCRIPTION, conceptDescription.getId());
+    }
+
+
+    @Override
+    public void save(Submodel submodel) throws PersistenceException {
+        persistence.save(submodel);
+        invalidateSubmodel(submodel.getId());
+    }
+
+
+    @Override
+    public void saveAll(Environment environment) throws PersistenceException {
+        try {
+            persistence.saveAll(environment);
+        }
+        finally {
+            // a batch may fail after partially being applied
+            invalidateAll();
+        }
+    }
+
+
+    @Override
+    public void insert(SubmodelElementIdentifier parentIdentifier, SubmodelElement submodelElement)
+            throws ResourceNotFoundException, ResourceNotAContainerElementException, ResourceAlreadyExistsException, PersistenceException {
+        persistence.insert(parentIdentifier, submodelElement);
+        invalidateSubmodelElement(parentIdentifier.getSubmodelId(), parentIdentifier.getIdShortPath());
+    }
+
+
+    @Override
+    public void update(SubmodelElementIdentifier identifier, SubmodelElement submodelElement) throws ResourceNotFoundException, PersistenceException {
+        persistence.update(identifier, submodelElement);
+        invalidateSubmodelElement(identifier.getSubmodelId(), identifier.getIdShortPath());
+    }
+
+
+    @Override
+    public ElementValue getValue(SubmodelElementIdentifier identifier) throws ResourceNotFoundException, ValueMappingException, PersistenceException {
+        // values are read directly as they are typically the most frequently changing part of the model
+        return persistence.getValue(identifier);
+    }
+
+
+    @Override
+    public void setValue(SubmodelElementIdentifier identifier, ElementValue value) throws ResourceNotFoundException, ValueMappingException, PersistenceException {
+        Ensure.requireNonNull(identifier, "identifier must be non-null");
+        persistence.setValue(identifier, value);
+        invalidateSubmodelElement(identifier.getSubmodelId(), identifier.getIdShortPath());
+    }
+
+
+    @Override
+    public void save(OperationHandle handle, OperationResult result) throws PersistenceException {
+        persistence.save(handle, result);
+    }
+
+
+    @Override
+    public void deleteAssetAdministrationShell(String id) throws ResourceNotFoundException, PersistenceException {
+        persistence.deleteAssetAdministrationShell(id);
+        invalidateIdentifiable(KeyTypes.ASSET_ADMINISTRATION_SHELL, id);
+    }
+
+
+    @Override
+    public void deleteSubmodel(String id) throws ResourceNotFoundException, PersistenceException {
+        persistence.deleteSubmodel(id);
+        invalidateDeletedSubmodel(id);
+    }
+
+
+    @Override
+    public void deleteConceptDescription(String id) throws ResourceNotFoundException, PersistenceException {
+        persistence.deleteConceptDescription(id);
+        invalidateIdentifiable(KeyTypes.CONCEPT_DESCRIPTION, id);
+    }
+
+
+    @Override
+    public void deleteSubmodelElement(SubmodelElementIdentifier identifier) throws ResourceNotFoundException, PersistenceException {
+        persistence.deleteSubmodelElement(identifier);
+        invalidateSubmodelElement(identifier.getSubmodelId(), identifier.getIdShortPath().getParent());
+    }
+
+
+    @Override
+    public void deleteAll() throws PersistenceException {
+        try {
+            persistence.deleteAll();
+        }
+        finally {
+            invalidateAll();
+        }
+    }
+
+
+    /**
+     * Invalidates all cached elements affected by a change event.
+     *
+     * @param event the event
+     */
+    protected void handleChangeEvent(ChangeEventMessage event) {
+        Reference reference = event.getElement();
+        if (Objects.isNull(reference) || Objects.isNull(reference.getKeys()) || reference.getKeys().isEmpty()) {
+            invalidateAll();
+            return;
+        }
+        Key root = reference.getKeys().get(0);
+        if (root.getType() == KeyTypes.ASSET_ADMINISTRATION_SHELL || root.getType() == KeyTypes.CONCEPT_DESCRIPTION) {
+            invalidateIdentifiable(root.getType(), root.getValue());
+        }
+        else if (root.getType() == KeyTypes.SUBMODEL && reference.getKeys().size() == 1) {
+            if (event instanceof ElementDeleteEventMessage) {
+                invalidateDeletedSubmodel(root.getValue());
+            }
+            else {
+                invalidateSubmodel(root.getValue());
+            }
+        }
+        else if (root.getType() == KeyTypes.SUBMODEL) {
+            // creating or deleting an element may change the index of its siblings
+            IdShortPath path = IdShortPath.fromReference(reference);
+            invalidateSubmodelElement(root.getValue(), isStructuralChange(event)
+                    ? path.getParent()
+                    : path);
+        }
+        else {
+            invalidateAll();
+        }
+    }
+
+
+    private static boolean isStructuralChange(ChangeEventMessage event) {
+        return event instanceof ElementDeleteEventMessage
+                || event instanceof ElementCreateEventMessage;
+    }
+
+
+    private void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+
+    /**
+     * Invalidates the cached elements of an identifiable matching a predicate.
+     *
+     * @param type the type of the identifiable
+     * @param id the id of the identifiable
+     * @param predicate the cached elements to invalidate
+     */
+    private void invalidate(KeyTypes type, String id, Predicate<CacheKey> predicate) {
+        generation.incrementAndGet();
+        Set<CacheKey> keys = index.get(new CacheKey(type, id, null, null));
+        if (Objects.nonNull(keys)) {
+            cache.invalidateAll(keys.stream()
+                    .filter(predicate)
+                    .toList());
+        }
+    }
+
+
+    private void invalidateIdentifiable(KeyTypes type, String id) {
+        invalidate(type, id, x -> true);
+    }
+
+
+    private void invalidateSubmodel(String id) {
+        invalidate(KeyTypes.SUBMODEL, id, x -> true);
+    }
+
+
+    private void invalidateDeletedSubmodel(String id) {
+        invalidateSubmodel(id);
+        // deleting a submodel also removes references to it from all asset administration shells
+        Set<CacheKey> keys = new HashSet<>();
+        index.forEach((identifiable, cached) -> {
+            if (identifiable.type == KeyTypes.ASSET_ADMINISTRATION_SHELL) {
+                keys.addAll(cached);
+            }
+        });
+        cache.invalidateAll(keys);
+    }
+
+
+    /**
+     * Invalidates the submodel, the submodel element identified by the path as well as all its ancestors and
+     * descendants.
+     *
+     * @param submodelId the id of the submodel
+     * @param path the idShort path of the submodel element
+     */
+    private void invalidateSubmodelElement(String submodelId, IdShortPath path) {
+        List<String> elements = path.getElements();
+        invalidate(KeyTypes.SUBMODEL, submodelId, x -> x.type == KeyTypes.SUBMODEL
+                || isPrefix(x.path.getElements(), elements)
+                || isPrefix(elements, x.path.getElements()));
+    }
+
+
+    private static boolean isPrefix(List<String> prefix, List<String> list) {
+        return prefix.size() <= list.size() && Objects.equals(prefix, list.subList(0, prefix.size()));
+    }
+
+
+    /**
+     * Gets an element from the cache or loads it from the underlying persistence. A loaded element is only kept in the
+     * cache if no invalidation happened while loading, otherwise the loaded element might already be outdated.
+     *
+     * @param <T> the type of the element
+     * @param key the cache key
+     * @param loader loads the element from the underlying persistence
+     * @return a deep copy of the element
+     * @throws ResourceNotFoundException if the element does not exist
+     * @throws PersistenceException if loading fails
+     */
+    private <T extends Referable> T get(CacheKey key, Loader<T> loader) throws ResourceNotFoundException, PersistenceException {
+        Referable cached = cache.getIfPresent(key);
+        if (Objects.nonNull(cached)) {
+            return (T) DeepCopyHelper.deepCopy(cached);
+        }
+        long expectedGeneration = generation.get();
+        T result = loader.load();
+        if (Objects.isNull(result)) {
+            return null;
+        }
+        cache.put(key, DeepCopyHelper.deepCopy(result));
+        // invalidations between put and indexing are covered by the generation check below
+        index.compute(key.getIdentifiable(), (k, v) -> {
+            Set<CacheKey> keys = Objects.nonNull(v) ? v : ConcurrentHashMap.newKeySet();
+            keys.add(key);
+            return keys;
+        });
+        if (generation.get() != expectedGeneration) {
+            cache.invalidate(key);
+        }
+        return result;
+    }
+
+    private void handleRemoval(RemovalNotification<CacheKey, Referable> notification) {
+        // notifications may arrive after the same key has been cached again
+        if (notification.getCause() == RemovalCause.REPLACED || cache.asMap().containsKey(notification.getKey())) {
+            return;
+        }
+        index.computeIfPresent(notification.getKey().getIdentifiable(), (k, v) -> {
+            v.remove(notification.getKey());
+            return v.isEmpty() ? null : v;
+        });
+    }
+
+
+    private void registerMBean() {
+        try {
+            mbeanName = new ObjectName(String.format(MBEAN_NAME, MBEAN_ID.incrementAndGet()));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new StandardMBean(new PersistenceCacheMXBean() {
+                        @Override
+                        public long getHitCount() {
+                            return cache.stats().hitCount();
+                        }
+
+
+                        @Override
+                        public long getMissCount() {
+                            return cache.stats().missCount();
+                        }
+
+
+                        @Override
+                        public double getHitRate() {
+                            return cache.stats().hitRate();
+                        }
+
+
+                        @Override
+                        public long getEvictionCount() {
+                            return cache.stats().evictionCount();
+                        }
+
+
+                        @Override
+                        public long getSize() {
+                            return cache.size();
+                        }
+                    }, PersistenceCacheMXBean.class, true),
+                    mbeanName);
+        }
+        catch (JMException e) {
+            LOGGER.warn("registering persistence cache statistics via JMX failed", e);
+            mbeanName = null;
+        }
+    }
+
+
+    private void unregisterMBean() {
+        if (Objects.isNull(mbeanName)) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+        }
+        catch (JMException e) {
+            LOGGER.debug("unregistering persistence cache statistics via JMX failed", e);
+        }
+        mbeanName = null;
+    }
+
+    @FunctionalInterface
+    private interface Loader<T> {
+
+        public T load() throws ResourceNotFoundException, PersistenceException;
+    }
+
+    private static class CacheKey {
+
+        private final KeyTypes type;
+        private final String id;
+        private final IdShortPath path;
+        private final QueryModifier modifier;
+
+        CacheKey(KeyTypes type, String id, IdShortPath path, QueryModifier modifier) {
+            this.type = type;
+            this.id = id;
+            this.path = path;
+            this.modifier = modifier;
+        }
+
+
+        /**
+         * Gets the key of the identifiable the cached element belongs to.
+         *
+         * @return the key of the identifiable
+         */
+        CacheKey getIdentifiable() {
+            return new CacheKey(type == KeyTypes.SUBMODEL_ELEMENT ? KeyTypes.SUBMODEL : type, id, null, null);
+        }
+
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) obj;
+            return Objects.equals(type, other.type)
+                    && Objects.equals(id, other.id)
+                    && Objects.equals(path, other.path)
+                    && Objects.equals(modifier, other.modifier);
+        }
+
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, id, path, modifier);
+        }
+    }
+}
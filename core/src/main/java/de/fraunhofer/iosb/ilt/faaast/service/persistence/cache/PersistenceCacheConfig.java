@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.cache;
+
+import java.util.Objects;
+import org.eclipse.digitaltwin.aas4j.v3.model.builder.ExtendableBuilder;
+
+
+/**
+ * Configuration for {@link CachingPersistence}, i.e. the cache placed in front of the persistence.
+ */
+public class PersistenceCacheConfig {
+
+    public static final long DEFAULT_MAX_SIZE = 10000;
+    public static final long DEFAULT_EXPIRE_AFTER_ACCESS = 0;
+
+    private long maxSize;
+    private long expireAfterAccess;
+
+    public PersistenceCacheConfig() {
+        this.maxSize = DEFAULT_MAX_SIZE;
+        this.expireAfterAccess = DEFAULT_EXPIRE_AFTER_ACCESS;
+    }
+
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+
+    /**
+     * The maximum number of cached elements. Each combination of element and query modifier counts as a separate
+     * element. If exceeded, the least recently used elements are evicted.
+     *
+     * @return the maximum number of cached elements
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+
+    /**
+     * The time in milliseconds after which a cached element is evicted, measured from its last access. A value of 0 or
+     * less means elements never expire.
+     *
+     * @return the time after which cached elements expire in milliseconds
+     */
+    public long getExpireAfterAccess() {
+        return expireAfterAccess;
+    }
+
+
+    public void setExpireAfterAccess(long expireAfterAccess) {
+        this.expireAfterAccess = expireAfterAccess;
+    }
+
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxSize, expireAfterAccess);
+    }
+
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final PersistenceCacheConfig other = (PersistenceCacheConfig) obj;
+        return Objects.equals(this.maxSize, other.maxSize)
+                && Objects.equals(this.expireAfterAccess, other.expireAfterAccess);
+    }
+
+    public static class Builder extends ExtendableBuilder<PersistenceCacheConfig, Builder> {
+
+        public Builder maxSize(long value) {
+            getBuildingInstance().setMaxSize(value);
+            return getSelf();
+        }
+
+
+        public Builder expireAfterAccess(long value) {
+            getBuildingInstance().setExpireAfterAccess(value);
+            return getSelf();
+        }
+
+
+        @Override
+        protected Builder getSelf() {
+            return this;
+        }
+
+
+        @Override
+        protected PersistenceCacheConfig newBuildingInstance() {
+            return new PersistenceCacheConfig();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.cache;
+
+/**
+ * Management interface exposing the statistics of a {@link CachingPersistence} via JMX. Each instance is registered
+ * as {@code de.fraunhofer.iosb.ilt.faaast.service:type=PersistenceCache,id=<n>} while it is started.
+ */
+public interface PersistenceCacheMXBean {
+
+    /**
+     * Gets the number of reads served from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount();
+
+
+    /**
+     * Gets the number of reads passed to the underlying persistence.
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount();
+
+
+    /**
+     * Gets the ratio of reads served from the cache, 1.0 if there have not been any reads yet.
+     *
+     * @return the hit rate
+     */
+    public double getHitRate();
+
+
+    /**
+     * Gets the number of elements removed from the cache due to its size or expiration, not counting invalidations.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount();
+
+
+    /**
+     * Gets the approximate number of cached elements.
+     *
+     * @return the number of cached elements
+     */
+    public long getSize();
+}
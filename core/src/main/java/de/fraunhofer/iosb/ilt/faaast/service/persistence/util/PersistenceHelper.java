@@ -17,6 +17,8 @@ package de.fraunhofer.iosb.ilt.faaast.service.persistence.util;
 import de.fraunhofer.iosb.ilt.faaast.service.model.asset.AssetIdentification;
 import de.fraunhofer.iosb.ilt.faaast.service.model.asset.GlobalAssetIdentification;
 import de.fraunhofer.iosb.ilt.faaast.service.model.asset.SpecificAssetIdentification;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.Persistence;
+import de.fraunhofer.iosb.ilt.faaast.service.util.DeepCopyHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
 import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceHelper;
 import java.util.Collection;
@@ -43,6 +45,24 @@ public class PersistenceHelper {
     private PersistenceHelper() {}
 
 
+    /**
+     * Gets an element returned by a persistence in a form that can safely be modified, i.e. a deep copy if the
+     * persistence shares returned elements with its internal state, otherwise the element itself.
+     *
+     * @param <T> type of the element
+     * @param persistence the persistence that returned the element
+     * @param element the element
+     * @return the element or a deep copy of it
+     * @see Persistence#isSharingResults()
+     */
+    public static <T extends Referable> T copyIfShared(Persistence<?> persistence, T element) {
+        Ensure.requireNonNull(persistence, "persistence must be non-null");
+        return persistence.isSharingResults()
+                ? DeepCopyHelper.deepCopy(element)
+                : element;
+    }
+
+
     /**
      * Filters the stream for a specific semanticId.
      *
@@ -24,6 +24,9 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.visitor.DefaultAssetAdministr
 import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 import org.eclipse.digitaltwin.aas4j.v3.model.AnnotatedRelationshipElement;
 import org.eclipse.digitaltwin.aas4j.v3.model.Blob;
 import org.eclipse.digitaltwin.aas4j.v3.model.DataElement;
@@ -81,6 +84,85 @@ public class QueryModifierHelper {
     }
 
 
+    /**
+     * Checks if copying a referable using
+     * {@link de.fraunhofer.iosb.ilt.faaast.service.util.DeepCopyHelper#deepCopyWithModifier(Referable, QueryModifier)}
+     * would remove anything from it. This is the case if the extent is "WithoutBlobValue" and the referable contains any
+     * {@link Blob} with a value, or if the level is "Core" and any direct child {@link SubmodelElementCollection} has a
+     * value.
+     *
+     * @param referable the referable
+     * @param modifier the modifier
+     * @return true if applying the modifier would change the referable, otherwise false
+     */
+    public static boolean isModifying(Referable referable, QueryModifier modifier) {
+        return isModifying(referable, modifier, QueryModifierHelper::containsBlobValue);
+    }
+
+
+    /**
+     * Checks if copying a referable using
+     * {@link de.fraunhofer.iosb.ilt.faaast.service.util.DeepCopyHelper#deepCopyWithModifier(Referable, QueryModifier)}
+     * would remove anything from it, using the given predicate to check if the referable contains any {@link Blob} with
+     * a value. This allows callers to provide pre-computed information instead of walking the whole referable.
+     *
+     * @param referable the referable
+     * @param modifier the modifier
+     * @param containsBlobValue predicate to check if the referable contains any blob with a value
+     * @return true if applying the modifier would change the referable, otherwise false
+     */
+    public static boolean isModifying(Referable referable, QueryModifier modifier, Predicate<Referable> containsBlobValue) {
+        Ensure.requireNonNull(modifier, "modifier must be non-null");
+        Ensure.requireNonNull(containsBlobValue, "containsBlobValue must be non-null");
+        if (Objects.isNull(referable)) {
+            return false;
+        }
+        return (modifier.getLevel() == Level.CORE && hasChildCollectionValues(referable))
+                || (modifier.getExtent() == Extent.WITHOUT_BLOB_VALUE && containsBlobValue.test(referable));
+    }
+
+
+    /**
+     * Checks if a referable contains any {@link Blob} with a value by walking the whole referable.
+     *
+     * @param referable the referable
+     * @return true if the referable contains any blob with a value, otherwise false
+     */
+    public static boolean containsBlobValue(Referable referable) {
+        AtomicBoolean result = new AtomicBoolean(false);
+        AssetAdministrationShellElementWalker.builder()
+                .visitor(new DefaultAssetAdministrationShellElementVisitor() {
+                    @Override
+                    public void visit(Blob blob) {
+                        if (Objects.nonNull(blob.getValue())) {
+                            result.set(true);
+                        }
+                    }
+                })
+                .build()
+                .walk(referable);
+        return result.get();
+    }
+
+
+    private static boolean hasChildCollectionValues(Referable referable) {
+        Collection<? extends SubmodelElement> children = null;
+        if (referable instanceof Submodel submodel) {
+            children = submodel.getSubmodelElements();
+        }
+        else if (referable instanceof SubmodelElementCollection submodelElementCollection) {
+            children = submodelElementCollection.getValue();
+        }
+        else if (referable instanceof Entity entity) {
+            children = entity.getStatements();
+        }
+        return Objects.nonNull(children)
+                && children.stream().anyMatch(x -> x instanceof SubmodelElementCollection collection
+                        && Objects.nonNull(collection.getValue())
+                        && !collection.getValue().isEmpty());
+    }
+
+
     private static void applyQueryModifierExtend(Referable referable, QueryModifier modifier) {
         if (modifier.getExtent() == Extent.WITHOUT_BLOB_VALUE) {
             AssetAdministrationShellElementWalker.builder()
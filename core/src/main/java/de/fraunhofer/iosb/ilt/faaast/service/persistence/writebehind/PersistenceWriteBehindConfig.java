@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.writebehind;
+
+import java.util.Objects;
+import org.eclipse.digitaltwin.aas4j.v3.model.builder.ExtendableBuilder;
+
+
+/**
+ * Configuration for {@link WriteBehindPersistence}, i.e. buffering updates of submodel elements before writing them to
+ * the persistence.
+ */
+public class PersistenceWriteBehindConfig {
+
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+    public static final long DEFAULT_FLUSH_MAX_PENDING_CHANGES = 1000;
+    public static final long DEFAULT_MAX_PENDING_CHANGES = 10000;
+
+    private long flushInterval;
+    private long flushMaxPendingChanges;
+    private long maxPendingChanges;
+
+    public PersistenceWriteBehindConfig() {
+        this.flushInterval = DEFAULT_FLUSH_INTERVAL;
+        this.flushMaxPendingChanges = DEFAULT_FLUSH_MAX_PENDING_CHANGES;
+        this.maxPendingChanges = DEFAULT_MAX_PENDING_CHANGES;
+    }
+
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+
+    /**
+     * The interval in milliseconds in which buffered updates are written to the persistence. A value of 0 or less
+     * means updates are only written when {@link #getFlushMaxPendingChanges()} is exceeded or on stop.
+     *
+     * @return the flush interval in milliseconds
+     */
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+
+    /**
+     * The number of buffered updates after which they are written to the persistence in the background without
+     * waiting for the next flush interval. Multiple updates of the same submodel element count as one.
+     *
+     * @return the number of buffered updates that triggers a flush
+     */
+    public long getFlushMaxPendingChanges() {
+        return flushMaxPendingChanges;
+    }
+
+
+    public void setFlushMaxPendingChanges(long flushMaxPendingChanges) {
+        this.flushMaxPendingChanges = flushMaxPendingChanges;
+    }
+
+
+    /**
+     * The maximum number of buffered updates. If reached, e.g. because the persistence cannot keep up, the caller of
+     * an update writes all buffered updates before its own update is buffered. If writing fails, the update is
+     * rejected. A value of 0 or less means the number of buffered updates is not limited.
+     *
+     * @return the maximum number of buffered updates
+     */
+    public long getMaxPendingChanges() {
+        return maxPendingChanges;
+    }
+
+
+    public void setMaxPendingChanges(long maxPendingChanges) {
+        this.maxPendingChanges = maxPendingChanges;
+    }
+
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(flushInterval, flushMaxPendingChanges, maxPendingChanges);
+    }
+
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final PersistenceWriteBehindConfig other = (PersistenceWriteBehindConfig) obj;
+        return Objects.equals(this.flushInterval, other.flushInterval)
+                && Objects.equals(this.flushMaxPendingChanges, other.flushMaxPendingChanges)
+                && Objects.equals(this.maxPendingChanges, other.maxPendingChanges);
+    }
+
+    public static class Builder extends ExtendableBuilder<PersistenceWriteBehindConfig, Builder> {
+
+        public Builder flushInterval(long value) {
+            getBuildingInstance().setFlushInterval(value);
+            return getSelf();
+        }
+
+
+        public Builder flushMaxPendingChanges(long value) {
+            getBuildingInstance().setFlushMaxPendingChanges(value);
+            return getSelf();
+        }
+
+
+        public Builder maxPendingChanges(long value) {
+            getBuildingInstance().setMaxPendingChanges(value);
+            return getSelf();
+        }
+
+
+        @Override
+        protected Builder getSelf() {
+            return this;
+        }
+
+
+        @Override
+        protected PersistenceWriteBehindConfig newBuildingInstance() {
+            return new PersistenceWriteBehindConfig();
+        }
+    }
+}
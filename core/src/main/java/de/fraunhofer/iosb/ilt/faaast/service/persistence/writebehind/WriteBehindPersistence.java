@@ -0,0 +1,664 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.writebehind;
+
+import de.fraunhofer.iosb.ilt.faaast.service.ServiceContext;
+import de.fraunhofer.iosb.ilt.faaast.service.config.CoreConfig;
+import de.fraunhofer.iosb.ilt.faaast.service.exception.ConfigurationInitializationException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.SubmodelElementIdentifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.operation.OperationHandle;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.paging.Page;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.paging.PagingInfo;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceAlreadyExistsException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotAContainerElementException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ValueMappingException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.ElementValue;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.mapper.ElementValueMapper;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.AssetAdministrationShellSearchCriteria;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.ConceptDescriptionSearchCriteria;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.Persistence;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.PersistenceConfig;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.SubmodelElementSearchCriteria;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.SubmodelSearchCriteria;
+import de.fraunhofer.iosb.ilt.faaast.service.util.DeepCopyHelper;
+import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.eclipse.digitaltwin.aas4j.v3.model.AssetAdministrationShell;
+import org.eclipse.digitaltwin.aas4j.v3.model.ConceptDescription;
+import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
+import org.eclipse.digitaltwin.aas4j.v3.model.OperationResult;
+import org.eclipse.digitaltwin.aas4j.v3.model.Reference;
+import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
+import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Decorator for a {@link Persistence} that buffers updates of submodel elements, e.g. caused by high-frequency value
+ * updates from asset connections, and writes them to the underlying persistence in the background. Multiple updates of
+ * the same submodel element are coalesced, i.e. only the last update is written. Buffered updates are written every
+ * {@link PersistenceWriteBehindConfig#getFlushInterval()}, as soon as
+ * {@link PersistenceWriteBehindConfig#getFlushMaxPendingChanges()} is exceeded, and on {@link #stop()}.
+ *
+ * <p>Value updates via {@link #setValue(SubmodelElementIdentifier, ElementValue)} are buffered the same way and
+ * written via {@link Persistence#setValue(SubmodelElementIdentifier, ElementValue)} unless there is also a buffered
+ * update of the whole element. Reading
+ * a submodel element or its value with a buffered update returns the buffered state. All other operations that depend
+ * on a buffered update, e.g. reading the containing submodel or deleting the parent of an updated element, first
+ * write the affected buffered updates so that the result is the same as without buffering.
+ *
+ * <p>As updates are only validated against the underlying persistence when buffered, writing a buffered update may
+ * still fail. If the updated element no longer exists, e.g. because the underlying persistence has been modified by
+ * other means, the update is discarded and logged. If writing fails for any other reason, e.g. a temporary error of
+ * the underlying persistence, the update is kept and retried with the next flush.
+ *
+ * <p>The buffer holds at most {@link PersistenceWriteBehindConfig#getMaxPendingChanges()} updates. If it is full, the
+ * caller writes all buffered updates before its own update is buffered. If writing fails, the update is rejected.
+ */
+public class WriteBehindPersistence<C extends PersistenceConfig> implements Persistence<C> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindPersistence.class);
+    private final Persistence<C> persistence;
+    private final PersistenceWriteBehindConfig config;
+    // ordered by last update so that updates of nested elements are written in the order they happened
+    private final LinkedHashMap<SubmodelElementIdentifier, PendingChange> pending = new LinkedHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+    private ScheduledExecutorService backgroundExecutor;
+
+    public WriteBehindPersistence(Persistence<C> persistence, PersistenceWriteBehindConfig config) {
+        Ensure.requireNonNull(persistence, "persistence must be non-null");
+        Ensure.requireNonNull(config, "config must be non-null");
+        this.persistence = persistence;
+        this.config = config;
+    }
+
+
+    /**
+     * Gets the underlying persistence.
+     *
+     * @return the underlying persistence
+     */
+    public Persistence<C> getPersistence() {
+        return persistence;
+    }
+
+
+    @Override
+    public void init(CoreConfig coreConfig, C config, ServiceContext serviceContext) throws ConfigurationInitializationException {
+        persistence.init(coreConfig, config, serviceContext);
+    }
+
+
+    @Override
+    public C asConfig() {
+        return persistence.asConfig();
+    }
+
+
+    @Override
+    public void start() throws PersistenceException {
+        persistence.start();
+        backgroundExecutor = Executors.newSingleThreadScheduledExecutor(
+                new BasicThreadFactory.Builder()
+                        .namingPattern("WriteBehindPersistence-%d")
+                        .daemon(true)
+                        .build());
+        if (config.getFlushInterval() > 0) {
+            backgroundExecutor.scheduleWithFixedDelay(
+                    this::flushInBackground,
+                    config.getFlushInterval(),
+                    config.getFlushInterval(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    @Override
+    public void stop() {
+        if (Objects.nonNull(backgroundExecutor)) {
+            backgroundExecutor.shutdown();
+            try {
+                if (!backgroundExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    LOGGER.warn("background writes of write-behind persistence did not terminate in time");
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            flush();
+        }
+        catch (PersistenceException e) {
+            LOGGER.error("writing buffered updates on stop failed, {} update(s) are lost", getPendingChanges(), e);
+        }
+        persistence.stop();
+    }
+
+
+    @Override
+    public boolean isSharingResults() {
+        return persistence.isSharingResults();
+    }
+
+
+    /**
+     * Writes all buffered updates to the underlying persistence and returns once they have been written.
+     *
+     * @throws PersistenceException if writing an update fails, the failed and all following updates are kept
+     */
+    public void flush() throws PersistenceException {
+        flushPending.set(false);
+        flush(x -> true);
+    }
+
+
+    /**
+     * Gets the number of buffered updates.
+     *
+     * @return the number of buffered updates
+     */
+    public int getPendingChanges() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+
+    @Override
+    public AssetAdministrationShell getAssetAdministrationShell(String id, QueryModifier modifier) throws ResourceNotFoundException, PersistenceException {
+        return persistence.getAssetAdministrationShell(id, modifier);
+    }
+
+
+    @Override
+    public Page<Reference> getSubmodelRefs(String aasId, PagingInfo paging) throws ResourceNotFoundException, PersistenceException {
+        return persistence.getSubmodelRefs(aasId, paging);
+    }
+
+
+    @Override
+    public Submodel getSubmodel(String id, QueryModifier modifier) throws ResourceNotFoundException, PersistenceException {
+        flushSubmodel(id);
+        return persistence.getSubmodel(id, modifier);
+    }
+
+
+    @Override
+    public ConceptDescription getConceptDescription(String id, QueryModifier modifier) throws ResourceNotFoundException, PersistenceException {
+        return persistence.getConceptDescription(id, modifier);
+    }
+
+
+    @Override
+    public SubmodelElement getSubmodelElement(SubmodelElementIdentifier identifier, QueryModifier modifier) throws ResourceNotFoundException, PersistenceException {
+        Ensure.requireNonNull(identifier, "identifier must be non-null");
+        Ensure.requireNonNull(modifier, "modifier must be non-null");
+        PendingChange buffered = getBuffered(identifier);
+        if (Objects.nonNull(buffered)) {
+            return DeepCopyHelper.deepCopyWithModifier(buffered.element, modifier);
+        }
+        flushRelated(identifier);
+        return persistence.getSubmodelElement(identifier, modifier);
+    }
+
+
+    @Override
+    public Environment getEnvironment() throws PersistenceException {
+        flush();
+        return persistence.getEnvironment();
+    }
+
+
+    @Override
+    public OperationResult getOperationResult(OperationHandle handle) throws ResourceNotFoundException, PersistenceException {
+        return persistence.getOperationResult(handle);
+    }
+
+
+    @Override
+    public Page<AssetAdministrationShell> findAssetAdministrationShells(AssetAdministrationShellSearchCriteria criteria, QueryModifier modifier, PagingInfo paging)
+            throws PersistenceException {
+        return persistence.findAssetAdministrationShells(criteria, modifier, paging);
+    }
+
+
+    @Override
+    public Page<Submodel> findSubmodels(SubmodelSearchCriteria criteria, QueryModifier modifier, PagingInfo paging) throws PersistenceException {
+        flush();
+        return persistence.findSubmodels(criteria, modifier, paging);
+    }
+
+
+    @Override
+    public Page<SubmodelElement> findSubmodelElements(SubmodelElementSearchCriteria criteria, QueryModifier modifier, PagingInfo paging)
+            throws ResourceNotFoundException, PersistenceException {
+        if (Objects.nonNull(criteria) && criteria.isParentSet()) {
+            flushRelated(criteria.getParent());
+        }
+        else {
+            flush();
+        }
+        return persistence.findSubmodelElements(criteria, modifier, paging);
+    }
+
+
+    @Override
+    public Page<ConceptDescription> findConceptDescriptions(ConceptDescriptionSearchCriteria criteria, QueryModifier modifier, PagingInfo paging) throws PersistenceException {
+        return persistence.findConceptDescriptions(criteria, modifier, paging);
+    }
+
+
+    @Override
+    public boolean assetAdministrationShellExists(String id) {
+        return persistence.assetAdministrationShellExists(id);
+    }
+
+
+    @Override
+    public boolean submodelExists(String id) {
+        return persistence.submodelExists(id);
+    }
+
+
+    @Override
+    public boolean conceptDescriptionExists(String id) {
+        return persistence.conceptDescriptionExists(id);
+    }
+
+
+    @Override
+    public boolean submodelElementExists(SubmodelElementIdentifier identifier) {
+        // buffered updates may rename elements
+        try {
+            flushRelated(identifier);
+        }
+        catch (PersistenceException e) {
+            LOGGER.warn("writing buffered updates failed, checking existence against underlying persistence only (submodelId: {}, idShortPath: {})",
+                    identifier.getSubmodelId(),
+                    identifier.getIdShortPath(),
+                    e);
+        }
+        return persistence.submodelElementExists(identifier);
+    }
+
+
+    @Override
+    public boolean submodelRefExists(String aasId, String submodelId) {
+        return persistence.submodelRefExists(aasId, submodelId);
+    }
+
+
+    @Override
+    public Environment filterExisting(Environment environment) {
+        return persistence.filterExisting(environment);
+    }
+
+
+    @Override
+    public void save(AssetAdministrationShell assetAdministrationShell) throws PersistenceException {
+        persistence.save(assetAdministrationShell);
+    }
+
+
+    @Override
+    public void save(ConceptDescription conceptDescription) throws PersistenceException {
+        persistence.save(conceptDescription);
+    }
+
+
+    @Override
+    public void save(Submodel submodel) throws PersistenceException {
+        Ensure.requireNonNull(submodel, "submodel must be non-null");
+        flushSubmodel(submodel.getId());
+        persistence.save(submodel);
+    }
+
+
+    @Override
+    public void saveAll(Environment environment) throws PersistenceException {
+        flush();
+        persistence.saveAll(environment);
+    }
+
+
+    @Override
+    public void insert(SubmodelElementIdentifier parentIdentifier, SubmodelElement submodelElement)
+            throws ResourceNotFoundException, ResourceNotAContainerElementException, ResourceAlreadyExistsException, PersistenceException {
+        Ensure.requireNonNull(parentIdentifier, "parent must be non-null");
+        flushRelated(parentIdentifier);
+        persistence.insert(parentIdentifier, submodelElement);
+    }
+
+
+    @Override
+    public void update(SubmodelElementIdentifier identifier, SubmodelElement submodelElement) throws ResourceNotFoundException, PersistenceException {
+        Ensure.requireNonNull(identifier, "identifier must be non-null");
+        Ensure.requireNonNull(submodelElement, "submodelElement must be non-null");
+        boolean buffered;
+        synchronized (pending) {
+            buffered = pending.containsKey(identifier);
+        }
+        if (!buffered) {
+            // only buffered updates of ancestors may rename the element
+            flush(x -> isAncestor(x, identifier));
+            if (!persistence.submodelElementExists(identifier)) {
+                throw new ResourceNotFoundException(identifier.toReference());
+            }
+        }
+        buffer(identifier, new PendingChange(DeepCopyHelper.deepCopy(submodelElement), null));
+    }
+
+
+    @Override
+    public ElementValue getValue(SubmodelElementIdentifier identifier) throws ResourceNotFoundException, ValueMappingException, PersistenceException {
+        Ensure.requireNonNull(identifier, "identifier must be non-null");
+        PendingChange buffered = getBuffered(identifier);
+        if (Objects.nonNull(buffered)) {
+            return ElementValueMapper.toValue(DeepCopyHelper.deepCopy(buffered.element));
+        }
+        flushRelated(identifier);
+        return persistence.getValue(identifier);
+    }
+
+
+    @Override
+    public void setValue(SubmodelElementIdentifier identifier, ElementValue value) throws ResourceNotFoundException, ValueMappingException, PersistenceException {
+        Ensure.requireNonNull(identifier, "identifier must be non-null");
+        Ensure.requireNonNull(value, "value must be non-null");
+        PendingChange buffered = getBuffered(identifier);
+        SubmodelElement current;
+        if (Objects.nonNull(buffered)) {
+            current = buffered.element;
+        }
+        else {
+            flushRelated(identifier);
+            current = persistence.getSubmodelElement(identifier, QueryModifier.MAXIMAL);
+        }
+        // a buffered update of the whole element must still be written as such
+        buffer(identifier, new PendingChange(
+                ElementValueMapper.setValue(DeepCopyHelper.deepCopy(current), value),
+                Objects.isNull(buffered) || buffered.isValueOnly() ? value : null));
+    }
+
+
+    @Override
+    public void save(OperationHandle handle, OperationResult result) throws PersistenceException {
+        persistence.save(handle, result);
+    }
+
+
+    @Override
+    public void deleteAssetAdministrationShell(String id) throws ResourceNotFoundException, PersistenceException {
+        persistence.deleteAssetAdministrationShell(id);
+    }
+
+
+    @Override
+    public void deleteSubmodel(String id) throws ResourceNotFoundException, PersistenceException {
+        discard(x -> Objects.equals(x.getSubmodelId(), id));
+        persistence.deleteSubmodel(id);
+    }
+
+
+    @Override
+    public void deleteConceptDescription(String id) throws ResourceNotFoundException, PersistenceException {
+        persistence.deleteConceptDescription(id);
+    }
+
+
+    @Override
+    public void deleteSubmodelElement(SubmodelElementIdentifier identifier) throws ResourceNotFoundException, PersistenceException {
+        Ensure.requireNonNull(identifier, "identifier must be non-null");
+        // deleting an element from a list changes the index of its siblings
+        flushRelated(SubmodelElementIdentifier.builder()
+                .submodelId(identifier.getSubmodelId())
+                .idShortPath(identifier.getIdShortPath().getParent())
+                .build());
+        persistence.deleteSubmodelElement(identifier);
+    }
+
+
+    @Override
+    public void deleteAll() throws PersistenceException {
+        discard(x -> true);
+        persistence.deleteAll();
+    }
+
+
+    /**
+     * Gets the buffered state of a submodel element if it can be served from the buffer, i.e. if there is a buffered
+     * update of the element itself and no other buffered update of any of its descendants.
+     *
+     * @param identifier the submodel element
+     * @return the buffered update or null if the element can not be served from the buffer
+     */
+    private PendingChange getBuffered(SubmodelElementIdentifier identifier) {
+        PendingChange buffered;
+        synchronized (pending) {
+            buffered = pending.get(identifier);
+        }
+        if (Objects.nonNull(buffered) && !hasPending(x -> !x.equals(identifier) && isRelated(x, identifier))) {
+            return buffered;
+        }
+        return null;
+    }
+
+
+    /**
+     * Buffers an update. If the buffer is full, all buffered updates are written first.
+     *
+     * @param identifier the submodel element
+     * @param change the update
+     * @throws PersistenceException if the buffer is full and writing the buffered updates fails, the update is not
+     *             buffered in this case
+     */
+    private void buffer(SubmodelElementIdentifier identifier, PendingChange change) throws PersistenceException {
+        int size;
+        while (true) {
+            synchronized (pending) {
+                if (config.getMaxPendingChanges() <= 0
+                        || pending.containsKey(identifier)
+                        || pending.size() < config.getMaxPendingChanges()) {
+                    // re-insert so that the update is written after all earlier updates of ancestors and descendants
+                    pending.remove(identifier);
+                    pending.put(identifier, change);
+                    size = pending.size();
+                    break;
+                }
+            }
+            flush();
+        }
+        if (config.getFlushMaxPendingChanges() > 0
+                && size >= config.getFlushMaxPendingChanges()
+                && Objects.nonNull(backgroundExecutor)
+                && flushPending.compareAndSet(false, true)) {
+            backgroundExecutor.execute(this::flushInBackground);
+        }
+    }
+
+
+    private void flushInBackground() {
+        try {
+            flush();
+        }
+        catch (PersistenceException e) {
+            LOGGER.warn("writing buffered updates failed, {} update(s) will be retried with next flush", getPendingChanges(), e);
+        }
+    }
+
+
+    private void flushSubmodel(String submodelId) throws PersistenceException {
+        flush(x -> Objects.equals(x.getSubmodelId(), submodelId));
+    }
+
+
+    private void flushRelated(SubmodelElementIdentifier identifier) throws PersistenceException {
+        flush(x -> isRelated(x, identifier));
+    }
+
+
+    /**
+     * Writes all buffered updates matching the filter to the underlying persistence in the order they happened.
+     * Updates are kept in the buffer until they have been written so that concurrent reads still see them. Updates of
+     * elements that no longer exist are discarded. If writing an update fails otherwise, flushing stops and the failed
+     * update and all following updates are kept so that they are retried in order with the next flush.
+     *
+     * @param filter the updates to write
+     * @throws PersistenceException if writing an update fails
+     */
+    private void flush(Predicate<SubmodelElementIdentifier> filter) throws PersistenceException {
+        if (!hasPending(filter)) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            List<Map.Entry<SubmodelElementIdentifier, PendingChange>> updates = new ArrayList<>();
+            synchronized (pending) {
+                pending.entrySet().stream()
+                        .filter(x -> filter.test(x.getKey()))
+                        .forEach(x -> updates.add(Map.entry(x.getKey(), x.getValue())));
+            }
+            for (var update: updates) {
+                try {
+                    update.getValue().write(persistence, update.getKey());
+                }
+                catch (ResourceNotFoundException e) {
+                    LOGGER.warn("writing buffered update failed as element does not exist, update is discarded (submodelId: {}, idShortPath: {})",
+                            update.getKey().getSubmodelId(),
+                            update.getKey().getIdShortPath(),
+                            e);
+                }
+                catch (ValueMappingException e) {
+                    LOGGER.warn("writing buffered update failed as value does not match element, update is discarded (submodelId: {}, idShortPath: {})",
+                            update.getKey().getSubmodelId(),
+                            update.getKey().getIdShortPath(),
+                            e);
+                }
+                synchronized (pending) {
+                    pending.remove(update.getKey(), update.getValue());
+                }
+            }
+        }
+        finally {
+            flushLock.unlock();
+        }
+    }
+
+
+    private void discard(Predicate<SubmodelElementIdentifier> filter) {
+        flushLock.lock();
+        try {
+            synchronized (pending) {
+                pending.keySet().removeIf(filter);
+            }
+        }
+        finally {
+            flushLock.unlock();
+        }
+    }
+
+
+    private boolean hasPending(Predicate<SubmodelElementIdentifier> filter) {
+        synchronized (pending) {
+            return pending.keySet().stream().anyMatch(filter);
+        }
+    }
+
+
+    /**
+     * Checks if a submodel element is an ancestor of another submodel element.
+     *
+     * @param ancestor the potential ancestor
+     * @param identifier the submodel element
+     * @return true if ancestor is an ancestor of the submodel element, otherwise false
+     */
+    private static boolean isAncestor(SubmodelElementIdentifier ancestor, SubmodelElementIdentifier identifier) {
+        List<String> ancestorPath = ancestor.getIdShortPath().getElements();
+        List<String> path = identifier.getIdShortPath().getElements();
+        return Objects.equals(ancestor.getSubmodelId(), identifier.getSubmodelId())
+                && ancestorPath.size() < path.size()
+                && Objects.equals(ancestorPath, path.subList(0, ancestorPath.size()));
+    }
+
+
+    /**
+     * Checks if two submodel elements are related, i.e. are identical or one is an ancestor of the other.
+     *
+     * @param first the first submodel element
+     * @param second the second submodel element
+     * @return true if the submodel elements are related, otherwise false
+     */
+    private static boolean isRelated(SubmodelElementIdentifier first, SubmodelElementIdentifier second) {
+        if (!Objects.equals(first.getSubmodelId(), second.getSubmodelId())) {
+            return false;
+        }
+        List<String> firstPath = first.getIdShortPath().getElements();
+        List<String> secondPath = second.getIdShortPath().getElements();
+        int length = Math.min(firstPath.size(), secondPath.size());
+        return Objects.equals(firstPath.subList(0, length), secondPath.subList(0, length));
+    }
+
+    /**
+     * A buffered update of a submodel element.
+     */
+    private static class PendingChange {
+
+        private final SubmodelElement element;
+        private final ElementValue value;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param element the updated element
+         * @param value the updated value if only the value has been updated, otherwise null
+         */
+        PendingChange(SubmodelElement element, ElementValue value) {
+            this.element = element;
+            this.value = value;
+        }
+
+
+        boolean isValueOnly() {
+            return Objects.nonNull(value);
+        }
+
+
+        void write(Persistence<?> persistence, SubmodelElementIdentifier identifier) throws ResourceNotFoundException, ValueMappingException, PersistenceException {
+            if (isValueOnly()) {
+                persistence.setValue(identifier, value);
+            }
+            else {
+                persistence.update(identifier, element);
+            }
+        }
+    }
+}
@@ -15,16 +15,11 @@
 package de.fraunhofer.iosb.ilt.faaast.service.request.handler;
 
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.Response;
-import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Level;
-import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.OutputModifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.request.AbstractSubmodelInterfaceRequest;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
 import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
-import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceBuilder;
-import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceHelper;
-import org.eclipse.digitaltwin.aas4j.v3.model.AssetAdministrationShell;
-import org.eclipse.digitaltwin.aas4j.v3.model.Reference;
 
 
 /**
@@ -54,19 +49,13 @@ public abstract class AbstractSubmodelInterfaceRequestHandler<T extends Abstract
      * @throws ResourceNotFoundException if AAS does not exist or submodel does not belong to AAS
      */
     protected void validateSubmodelWithinAAS(T request, RequestExecutionContext context) throws ResourceNotFoundException, PersistenceException {
-        if (request.getAasId() != null) {
-            Reference submodelRef = ReferenceBuilder.forSubmodel(request.getSubmodelId());
-            AssetAdministrationShell aas = context.getPersistence().getAssetAdministrationShell(
+        if (request.getAasId() != null && !context.getPersistence().submodelRefExists(request.getAasId(), request.getSubmodelId())) {
+            // throws if the AAS itself does not exist
+            context.getPersistence().getAssetAdministrationShell(request.getAasId(), QueryModifier.MINIMAL);
+            throw new ResourceNotFoundException(String.format(
+                    "AAS does not contain requested submodel (aasId: %s, submodelId: %s)",
                     request.getAasId(),
-                    new OutputModifier.Builder()
-                            .level(Level.CORE)
-                            .build());
-            if (aas.getSubmodels().stream().noneMatch(x -> ReferenceHelper.equals(x, submodelRef))) {
-                throw new ResourceNotFoundException(String.format(
-                        "AAS does not contain requested submodel (aasId: %s, submodelId: %s)",
-                        request.getAasId(),
-                        request.getSubmodelId()));
-            }
+                    request.getSubmodelId()));
         }
     }
 
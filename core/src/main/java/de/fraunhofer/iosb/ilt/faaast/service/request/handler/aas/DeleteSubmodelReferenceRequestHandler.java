@@ -22,6 +22,7 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.api.response.aas.DeleteSubmod
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ElementUpdateEventMessage;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.util.PersistenceHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.request.handler.AbstractRequestHandler;
 import de.fraunhofer.iosb.ilt.faaast.service.request.handler.RequestExecutionContext;
 import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceHelper;
@@ -41,7 +42,9 @@ public class DeleteSubmodelReferenceRequestHandler extends AbstractRequestHandle
     public DeleteSubmodelReferenceResponse process(DeleteSubmodelReferenceRequest request, RequestExecutionContext context)
             throws ResourceNotFoundException, MessageBusException, PersistenceException {
         DeleteSubmodelReferenceResponse response = new DeleteSubmodelReferenceResponse();
-        AssetAdministrationShell aas = context.getPersistence().getAssetAdministrationShell(request.getId(), QueryModifier.DEFAULT);
+        AssetAdministrationShell aas = PersistenceHelper.copyIfShared(
+                context.getPersistence(),
+                context.getPersistence().getAssetAdministrationShell(request.getId(), QueryModifier.DEFAULT));
         Reference submodelRefToDelete = aas.getSubmodels().stream()
                 .filter(x -> ReferenceHelper.equals(request.getSubmodelRef(), x, false))
                 .findFirst()
@@ -21,6 +21,7 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.api.response.aas.DeleteThumbn
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ElementUpdateEventMessage;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.util.PersistenceHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.request.handler.AbstractRequestHandler;
 import de.fraunhofer.iosb.ilt.faaast.service.request.handler.RequestExecutionContext;
 import de.fraunhofer.iosb.ilt.faaast.service.util.StringHelper;
@@ -38,7 +39,9 @@ public class DeleteThumbnailRequestHandler extends AbstractRequestHandler<Delete
     @Override
     public DeleteThumbnailResponse process(DeleteThumbnailRequest request, RequestExecutionContext context)
             throws ResourceNotFoundException, MessageBusException, IOException, PersistenceException {
-        AssetAdministrationShell aas = context.getPersistence().getAssetAdministrationShell(request.getId(), QueryModifier.DEFAULT);
+        AssetAdministrationShell aas = PersistenceHelper.copyIfShared(
+                context.getPersistence(),
+                context.getPersistence().getAssetAdministrationShell(request.getId(), QueryModifier.DEFAULT));
         if (Objects.isNull(aas.getAssetInformation())
                 || Objects.isNull(aas.getAssetInformation().getDefaultThumbnail())
                 || StringHelper.isBlank(aas.getAssetInformation().getDefaultThumbnail().getPath())) {
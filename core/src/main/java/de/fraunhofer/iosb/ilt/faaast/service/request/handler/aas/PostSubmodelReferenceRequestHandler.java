@@ -22,6 +22,7 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceExceptio
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceAlreadyExistsException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ElementUpdateEventMessage;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.util.PersistenceHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.request.handler.AbstractRequestHandler;
 import de.fraunhofer.iosb.ilt.faaast.service.request.handler.RequestExecutionContext;
 import org.eclipse.digitaltwin.aas4j.v3.model.AssetAdministrationShell;
@@ -38,7 +39,9 @@ public class PostSubmodelReferenceRequestHandler extends AbstractRequestHandler<
     @Override
     public PostSubmodelReferenceResponse process(PostSubmodelReferenceRequest request, RequestExecutionContext context)
             throws ResourceNotFoundException, MessageBusException, ResourceAlreadyExistsException, PersistenceException {
-        AssetAdministrationShell aas = context.getPersistence().getAssetAdministrationShell(request.getId(), QueryModifier.DEFAULT);
+        AssetAdministrationShell aas = PersistenceHelper.copyIfShared(
+                context.getPersistence(),
+                context.getPersistence().getAssetAdministrationShell(request.getId(), QueryModifier.DEFAULT));
         if (aas.getSubmodels().contains(request.getSubmodelRef())) {
             throw new ResourceAlreadyExistsException(request.getSubmodelRef());
         }
@@ -24,6 +24,7 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundExc
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ValidationException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ElementUpdateEventMessage;
 import de.fraunhofer.iosb.ilt.faaast.service.model.validation.ModelValidator;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.util.PersistenceHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.request.handler.AbstractRequestHandler;
 import de.fraunhofer.iosb.ilt.faaast.service.request.handler.RequestExecutionContext;
 import org.eclipse.digitaltwin.aas4j.v3.model.AssetAdministrationShell;
@@ -42,7 +43,9 @@ public class PutAssetInformationRequestHandler extends AbstractRequestHandler<Pu
             throws ResourceNotFoundException, MessageBusException, ValidationException, PersistenceException {
         ModelValidator.validate(request.getAssetInformation(), context.getCoreConfig().getValidationOnUpdate());
         PutAssetInformationResponse response = new PutAssetInformationResponse();
-        AssetAdministrationShell shell = context.getPersistence().getAssetAdministrationShell(request.getId(), QueryModifier.DEFAULT);
+        AssetAdministrationShell shell = PersistenceHelper.copyIfShared(
+                context.getPersistence(),
+                context.getPersistence().getAssetAdministrationShell(request.getId(), QueryModifier.DEFAULT));
         shell.setAssetInformation(request.getAssetInformation());
         context.getPersistence().save(shell);
         response.setStatusCode(StatusCode.SUCCESS_NO_CONTENT);
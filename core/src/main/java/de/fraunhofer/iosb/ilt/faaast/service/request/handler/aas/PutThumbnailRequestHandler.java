@@ -23,6 +23,7 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.api.response.aas.PutThumbnail
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ElementUpdateEventMessage;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.util.PersistenceHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.request.handler.AbstractRequestHandler;
 import de.fraunhofer.iosb.ilt.faaast.service.request.handler.RequestExecutionContext;
 import java.io.IOException;
@@ -39,7 +40,9 @@ public class PutThumbnailRequestHandler extends AbstractRequestHandler<PutThumbn
     @Override
     public PutThumbnailResponse process(PutThumbnailRequest request, RequestExecutionContext context)
             throws ResourceNotFoundException, MessageBusException, IOException, PersistenceException {
-        AssetAdministrationShell aas = context.getPersistence().getAssetAdministrationShell(request.getId(), QueryModifier.DEFAULT);
+        AssetAdministrationShell aas = PersistenceHelper.copyIfShared(
+                context.getPersistence(),
+                context.getPersistence().getAssetAdministrationShell(request.getId(), QueryModifier.DEFAULT));
         if (Objects.isNull(aas.getAssetInformation())) {
             throw new ResourceNotFoundException(String.format("no thumbnail information set for AAS (id: %s)", request.getId()));
         }
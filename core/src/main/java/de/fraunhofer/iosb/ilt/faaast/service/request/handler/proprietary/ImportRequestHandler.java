@@ -32,11 +32,18 @@ import de.fraunhofer.iosb.ilt.faaast.service.request.handler.AbstractRequestHand
 import de.fraunhofer.iosb.ilt.faaast.service.request.handler.RequestExecutionContext;
 import de.fraunhofer.iosb.ilt.faaast.service.util.StreamHelper;
 import java.io.ByteArrayInputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.eclipse.digitaltwin.aas4j.v3.dataformat.core.util.AasUtils;
 import org.eclipse.digitaltwin.aas4j.v3.model.AssetAdministrationShell;
 import org.eclipse.digitaltwin.aas4j.v3.model.ConceptDescription;
+import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
 import org.eclipse.digitaltwin.aas4j.v3.model.Identifiable;
+import org.eclipse.digitaltwin.aas4j.v3.model.Reference;
 import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultEnvironment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,18 +63,41 @@ public class ImportRequestHandler extends AbstractRequestHandler<ImportRequest,
                                 MediaType.parse(request.getContentType())))
                 .read(new ByteArrayInputStream(request.getContent()));
         ImportResult.Builder result = ImportResult.builder();
-        StreamHelper.concat(
-                environmentContext.getEnvironment().getSubmodels().stream(),
-                environmentContext.getEnvironment().getAssetAdministrationShells().stream(),
-                environmentContext.getEnvironment().getConceptDescriptions().stream())
-                .forEach(x -> {
-                    try {
-                        saveAndSend(x, context);
-                    }
-                    catch (PersistenceException | ResourceAlreadyExistsException e) {
-                        result.modelError(AasUtils.toReference(x), e.getMessage());
-                    }
-                });
+        // existence of all identifiables is checked at once, those that do not exist yet are saved in a single batch
+        Set<Reference> existing = getReferences(context.getPersistence().filterExisting(environmentContext.getEnvironment()));
+        Environment newIdentifiables = new DefaultEnvironment.Builder().build();
+        Set<Reference> newReferences = new HashSet<>();
+        for (Submodel submodel: environmentContext.getEnvironment().getSubmodels()) {
+            if (isNew(submodel, existing, newReferences, result)) {
+                newIdentifiables.getSubmodels().add(submodel);
+            }
+        }
+        for (AssetAdministrationShell aas: environmentContext.getEnvironment().getAssetAdministrationShells()) {
+            if (isNew(aas, existing, newReferences, result)) {
+                newIdentifiables.getAssetAdministrationShells().add(aas);
+            }
+        }
+        for (ConceptDescription cd: environmentContext.getEnvironment().getConceptDescriptions()) {
+            if (isNew(cd, existing, newReferences, result)) {
+                newIdentifiables.getConceptDescriptions().add(cd);
+            }
+        }
+        try {
+            context.getPersistence().saveAll(newIdentifiables);
+            getIdentifiables(newIdentifiables).forEach(x -> publishCreated(x, context));
+        }
+        catch (PersistenceException e) {
+            // saving may have failed after some of the identifiables have already been written
+            Set<Reference> written = getReferences(context.getPersistence().filterExisting(newIdentifiables));
+            getIdentifiables(newIdentifiables).forEach(x -> {
+                if (written.contains(AasUtils.toReference(x))) {
+                    publishCreated(x, context);
+                }
+                else {
+                    result.modelError(AasUtils.toReference(x), e.getMessage());
+                }
+            });
+        }
         environmentContext.getFiles().forEach(x -> {
             try {
                 context.getFileStorage().save(
@@ -87,26 +117,35 @@ public class ImportRequestHandler extends AbstractRequestHandler<ImportRequest,
     }
 
 
-    private void saveAndSend(Identifiable identifiable, RequestExecutionContext context) throws PersistenceException, ResourceAlreadyExistsException {
+    private static boolean isNew(Identifiable identifiable, Set<Reference> existing, Set<Reference> newReferences, ImportResult.Builder result) {
+        Reference reference = AasUtils.toReference(identifiable);
+        // ids must also be unique within the imported environment
+        if (existing.contains(reference) || !newReferences.add(reference)) {
+            result.modelError(reference, new ResourceAlreadyExistsException(reference).getMessage());
+            return false;
+        }
+        return true;
+    }
+
+
+    private static Stream<Identifiable> getIdentifiables(Environment environment) {
+        return StreamHelper.concat(
+                environment.getSubmodels().stream(),
+                environment.getAssetAdministrationShells().stream(),
+                environment.getConceptDescriptions().stream())
+                .map(Identifiable.class::cast);
+    }
+
+
+    private static Set<Reference> getReferences(Environment environment) {
+        return getIdentifiables(environment)
+                .map(AasUtils::toReference)
+                .collect(Collectors.toSet());
+    }
+
+
+    private void publishCreated(Identifiable identifiable, RequestExecutionContext context) {
         try {
-            if (identifiable instanceof AssetAdministrationShell aas) {
-                if (context.getPersistence().assetAdministrationShellExists(aas.getId())) {
-                    throw new ResourceAlreadyExistsException(AasUtils.toReference(aas));
-                }
-                context.getPersistence().save(aas);
-            }
-            else if (identifiable instanceof Submodel submodel) {
-                if (context.getPersistence().submodelExists(submodel.getId())) {
-                    throw new ResourceAlreadyExistsException(AasUtils.toReference(submodel));
-                }
-                context.getPersistence().save(submodel);
-            }
-            else if (identifiable instanceof ConceptDescription cd) {
-                if (context.getPersistence().conceptDescriptionExists(cd.getId())) {
-                    throw new ResourceAlreadyExistsException(AasUtils.toReference(cd));
-                }
-                context.getPersistence().save(cd);
-            }
             context.getMessageBus().publish(ElementCreateEventMessage.builder()
                     .value(identifiable)
                     .element(identifiable)
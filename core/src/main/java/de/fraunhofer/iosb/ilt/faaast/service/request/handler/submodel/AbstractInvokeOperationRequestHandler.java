@@ -25,6 +25,7 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundExc
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ValueMappingException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.EventMessage;
 import de.fraunhofer.iosb.ilt.faaast.service.model.value.mapper.ElementValueMapper;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.util.PersistenceHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.request.handler.AbstractSubmodelInterfaceRequestHandler;
 import de.fraunhofer.iosb.ilt.faaast.service.request.handler.RequestExecutionContext;
 import de.fraunhofer.iosb.ilt.faaast.service.util.DeepCopyHelper;
@@ -216,7 +217,9 @@ public abstract class AbstractInvokeOperationRequestHandler<T extends InvokeOper
 
     private static void writeValueToReference(SubmodelElement argument, Reference reference, RequestExecutionContext context) throws InvalidRequestException {
         try {
-            SubmodelElement referencedElement = context.getPersistence().getSubmodelElement(reference, QueryModifier.MAXIMAL);
+            SubmodelElement referencedElement = PersistenceHelper.copyIfShared(
+                    context.getPersistence(),
+                    context.getPersistence().getSubmodelElement(reference, QueryModifier.MAXIMAL));
             ElementValueMapper.setValue(referencedElement, ElementValueMapper.toValue(argument));
             context.getPersistence().update(reference, referencedElement);
         }
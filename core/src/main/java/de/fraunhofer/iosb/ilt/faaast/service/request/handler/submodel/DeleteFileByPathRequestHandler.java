@@ -26,6 +26,7 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.Eleme
 import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ValueChangeEventMessage;
 import de.fraunhofer.iosb.ilt.faaast.service.model.value.ElementValue;
 import de.fraunhofer.iosb.ilt.faaast.service.model.value.mapper.ElementValueMapper;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.util.PersistenceHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.request.handler.AbstractSubmodelInterfaceRequestHandler;
 import de.fraunhofer.iosb.ilt.faaast.service.request.handler.RequestExecutionContext;
 import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceBuilder;
@@ -48,13 +49,14 @@ public class DeleteFileByPathRequestHandler extends AbstractSubmodelInterfaceReq
                 .submodel(request.getSubmodelId())
                 .idShortPath(request.getPath())
                 .build();
-        File file = context.getPersistence().getSubmodelElement(reference, request.getOutputModifier(), File.class);
+        File file = PersistenceHelper.copyIfShared(
+                context.getPersistence(),
+                context.getPersistence().getSubmodelElement(reference, request.getOutputModifier(), File.class));
         context.getFileStorage().delete(file.getValue());
-        File oldFile = file;
+        ElementValue oldValue = ElementValueMapper.toValue(file);
         file.setValue("");
         file.setContentType("");
         context.getPersistence().update(reference, file);
-        ElementValue oldValue = ElementValueMapper.toValue(oldFile);
         ElementValue newValue = ElementValueMapper.toValue(file);
         if (!request.isInternal() && !Objects.equals(oldValue, newValue)) {
             context.getMessageBus().publish(ValueChangeEventMessage.builder()
@@ -32,6 +32,7 @@ import de.fraunhofer.iosb.ilt.faaast.service.request.handler.AbstractSubmodelInt
 import de.fraunhofer.iosb.ilt.faaast.service.request.handler.RequestExecutionContext;
 import de.fraunhofer.iosb.ilt.faaast.service.util.LambdaExceptionHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceBuilder;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -50,55 +51,37 @@ import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElement;
  */
 public class GetAllSubmodelElementsPathRequestHandler extends AbstractSubmodelInterfaceRequestHandler<GetAllSubmodelElementsPathRequest, GetAllSubmodelElementsPathResponse> {
 
-    private static <T> Page<T> preparePagedResult(Stream<T> input, PagingInfo paging) {
-        Stream<T> result = input;
+    /**
+     * Creates a page of idShort paths sorted by their string representation. The cursor is the last path of the
+     * previous page, i.e. the next page continues right after it even if elements have been added or removed in the
+     * meantime.
+     *
+     * @param input the paths
+     * @param paging the paging information
+     * @return the page
+     */
+    private static Page<IdShortPath> preparePagedResult(Stream<IdShortPath> input, PagingInfo paging) {
+        Stream<IdShortPath> result = input.sorted(Comparator.comparing(IdShortPath::toString));
         if (Objects.nonNull(paging.getCursor())) {
-            result = result.skip(readCursor(paging.getCursor()));
+            result = result.filter(x -> x.toString().compareTo(paging.getCursor()) > 0);
         }
         if (paging.hasLimit()) {
             result = result.limit(paging.getLimit() + 1);
         }
-        List<T> temp = result.collect(Collectors.toList());
-        return Page.<T> builder()
-                .result(temp.stream()
-                        .limit(paging.hasLimit() ? paging.getLimit() : temp.size())
-                        .collect(Collectors.toList()))
+        List<IdShortPath> temp = result.collect(Collectors.toList());
+        boolean hasMoreData = paging.hasLimit() && temp.size() > paging.getLimit();
+        List<IdShortPath> content = hasMoreData
+                ? temp.subList(0, (int) paging.getLimit())
+                : temp;
+        return Page.<IdShortPath> builder()
+                .result(content)
                 .metadata(PagingMetadata.builder()
-                        .cursor(nextCursor(paging, temp.size()))
+                        .cursor(hasMoreData ? content.get(content.size() - 1).toString() : null)
                         .build())
                 .build();
     }
 
 
-    private static long readCursor(String cursor) {
-        return Long.parseLong(cursor);
-    }
-
-
-    private static String writeCursor(long index) {
-        return Long.toString(index);
-    }
-
-
-    private static String nextCursor(PagingInfo paging, boolean hasMoreData) {
-        if (!hasMoreData) {
-            return null;
-        }
-        if (!paging.hasLimit()) {
-            throw new IllegalStateException("unable to generate next cursor for paging - there should not be more data available if previous request did not have a limit set");
-        }
-        if (Objects.isNull(paging.getCursor())) {
-            return writeCursor(paging.getLimit());
-        }
-        return writeCursor(readCursor(paging.getCursor()) + paging.getLimit());
-    }
-
-
-    private static String nextCursor(PagingInfo paging, int resultCount) {
-        return nextCursor(paging, paging.hasLimit() && resultCount > paging.getLimit());
-    }
-
-
     @Override
     public GetAllSubmodelElementsPathResponse doProcess(GetAllSubmodelElementsPathRequest request, RequestExecutionContext context)
             throws AssetConnectionException, ValueMappingException, ResourceNotFoundException, MessageBusException, ResourceNotAContainerElementException, PersistenceException {
@@ -109,8 +92,7 @@ public class GetAllSubmodelElementsPathRequestHandler extends AbstractSubmodelIn
                 .flatMap(x -> ReferenceCollector.collect(x).keySet().stream()
                         .map(y -> IdShortPath.combine(
                                 IdShortPath.builder().idShort(x.getIdShort()).build(),
-                                IdShortPath.fromReference(y))))
-                .sorted((x, y) -> x.toString().compareTo(y.toString())),
+                                IdShortPath.fromReference(y)))),
                 request.getPagingInfo());
         if (!request.isInternal() && Objects.nonNull(submodelElements.getContent())) {
             submodelElements.getContent().forEach(LambdaExceptionHelper.rethrowConsumer(
@@ -48,7 +48,7 @@ public class GetAllSubmodelElementsValueRequestHandler extends AbstractSubmodelI
             throws AssetConnectionException, ValueMappingException, ResourceNotFoundException, MessageBusException, ResourceNotAContainerElementException, PersistenceException {
         Reference reference = ReferenceBuilder.forSubmodel(request.getSubmodelId());
         Page<SubmodelElement> page = context.getPersistence().getSubmodelElementsValueOnly(reference, request.getOutputModifier(), request.getPagingInfo());
-        context.getAssetConnectionManager().syncValueProvidersOnRead(reference, page, !request.isInternal());
+        page = context.getAssetConnectionManager().syncValueProvidersOnRead(reference, page, !request.isInternal());
         if (!request.isInternal() && Objects.nonNull(page.getContent())) {
             page.getContent().forEach(LambdaExceptionHelper.rethrowConsumer(
                     x -> context.getMessageBus().publish(ElementReadEventMessage.builder()
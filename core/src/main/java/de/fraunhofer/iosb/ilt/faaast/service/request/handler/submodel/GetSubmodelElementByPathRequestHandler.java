@@ -16,6 +16,9 @@ package de.fraunhofer.iosb.ilt.faaast.service.request.handler.submodel;
 
 import de.fraunhofer.iosb.ilt.faaast.service.assetconnection.AssetConnectionException;
 import de.fraunhofer.iosb.ilt.faaast.service.exception.MessageBusException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.IdShortPath;
+import de.fraunhofer.iosb.ilt.faaast.service.model.SubmodelElementIdentifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Content;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.request.submodel.GetSubmodelElementByPathRequest;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.response.submodel.GetSubmodelElementByPathResponse;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceException;
@@ -23,9 +26,14 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotAContain
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ValueMappingException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.access.ElementReadEventMessage;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.DataElementValue;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.ElementValue;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.mapper.ElementValueMapper;
 import de.fraunhofer.iosb.ilt.faaast.service.request.handler.AbstractSubmodelInterfaceRequestHandler;
 import de.fraunhofer.iosb.ilt.faaast.service.request.handler.RequestExecutionContext;
 import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceBuilder;
+import java.util.List;
+import org.eclipse.digitaltwin.aas4j.v3.dataformat.core.internal.util.ReflectionHelper;
 import org.eclipse.digitaltwin.aas4j.v3.model.Reference;
 import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElement;
 
@@ -47,8 +55,17 @@ public class GetSubmodelElementByPathRequestHandler extends AbstractSubmodelInte
                 .submodel(request.getSubmodelId())
                 .idShortPath(request.getPath())
                 .build();
-        SubmodelElement submodelElement = context.getPersistence().getSubmodelElement(reference, request.getOutputModifier());
-        context.getAssetConnectionManager().syncValueProvidersOnRead(reference, submodelElement, !request.isInternal());
+        SubmodelElement submodelElement = null;
+        // external reads publish the whole element on the message bus and therefore cannot be served from the value only
+        if (request.isInternal()
+                && request.getOutputModifier().getContent() == Content.VALUE
+                && !context.getAssetConnectionManager().hasValueProviderRecursive(reference)) {
+            submodelElement = readValue(request, reference, context);
+        }
+        if (submodelElement == null) {
+            submodelElement = context.getPersistence().getSubmodelElement(reference, request.getOutputModifier());
+            submodelElement = context.getAssetConnectionManager().syncValueProvidersOnRead(reference, submodelElement, !request.isInternal());
+        }
         if (!request.isInternal()) {
             context.getMessageBus().publish(ElementReadEventMessage.builder()
                     .element(reference)
@@ -60,4 +77,39 @@ public class GetSubmodelElementByPathRequestHandler extends AbstractSubmodelInte
                 .success()
                 .build();
     }
+
+
+    /**
+     * Reads only the value of the element via {@code Persistence.getValue} and wraps it into a new element carrying
+     * nothing but idShort and value, which is all value-only serialization needs. Values of containers cannot be mapped
+     * onto a new element as their mappers rely on the existing children, therefore null is returned in that case.
+     *
+     * @param request the request
+     * @param reference reference to the element
+     * @param context the execution context
+     * @return a new element holding the value, or null if the value is not a data element value
+     * @throws ResourceNotFoundException if the element does not exist
+     * @throws ValueMappingException if mapping the value fails
+     * @throws PersistenceException if reading from the persistence fails
+     */
+    private static SubmodelElement readValue(GetSubmodelElementByPathRequest request, Reference reference, RequestExecutionContext context)
+            throws ResourceNotFoundException, ValueMappingException, PersistenceException {
+        ElementValue value = context.getPersistence().getValue(SubmodelElementIdentifier.fromReference(reference));
+        if (!DataElementValue.class.isInstance(value)) {
+            return null;
+        }
+        SubmodelElement result;
+        try {
+            result = ReflectionHelper.getDefaultImplementation(ElementValueMapper.getElementClass(value.getClass()))
+                    .getConstructor()
+                    .newInstance();
+        }
+        catch (ReflectiveOperationException e) {
+            throw new ValueMappingException(String.format("unable to create element for value type %s", value.getClass().getSimpleName()), e);
+        }
+        List<String> path = IdShortPath.parse(request.getPath()).getElements();
+        String idShort = path.get(path.size() - 1);
+        result.setIdShort(idShort.startsWith("[") ? null : idShort);
+        return ElementValueMapper.setValue(result, value);
+    }
 }
@@ -14,9 +14,9 @@
  */
 package de.fraunhofer.iosb.ilt.faaast.service.request.handler.submodel;
 
+import de.fraunhofer.iosb.ilt.faaast.service.model.SubmodelElementIdentifier;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.StatusCode;
-import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Extent;
-import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.OutputModifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.request.PatchSubmodelElementValueByPathRequest;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.response.PatchSubmodelElementValueByPathResponse;
 import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ValueChangeEventMessage;
@@ -51,22 +51,25 @@ public class PatchSubmodelElementValueByPathRequestHandler
                 .submodel(request.getSubmodelId())
                 .idShortPath(request.getPath())
                 .build();
-        SubmodelElement submodelElement = context.getPersistence().getSubmodelElement(
-                reference,
-                new OutputModifier.Builder()
-                        .extend(Extent.WITH_BLOB_VALUE)
-                        .build());
-        ElementValue oldValue = ElementValueMapper.toValue(submodelElement);
-        ElementValue newValue = request.getValueParser().parse(request.getRawValue(), oldValue.getClass());
-        SubmodelElement newSubmodelElement = ElementValueMapper.setValue(DeepCopyHelper.deepCopy(submodelElement), newValue);
-        if (request.isSyncWithAsset()) {
+        SubmodelElementIdentifier identifier = SubmodelElementIdentifier.fromReference(reference);
+        ElementValue oldValue;
+        ElementValue newValue;
+        if (request.isSyncWithAsset() && context.getAssetConnectionManager().hasValueProviderRecursive(reference)) {
+            // synchronizing with the asset requires the whole element to find the affected value providers
+            SubmodelElement submodelElement = context.getPersistence().getSubmodelElement(identifier, QueryModifier.MAXIMAL);
+            oldValue = ElementValueMapper.toValue(submodelElement);
+            newValue = request.getValueParser().parse(request.getRawValue(), oldValue.getClass());
             context.getAssetConnectionManager().syncValueProvidersOnWrite(
                     reference,
                     submodelElement,
-                    newSubmodelElement,
+                    ElementValueMapper.setValue(DeepCopyHelper.deepCopy(submodelElement), newValue),
                     !request.isInternal());
         }
-        context.getPersistence().update(reference, newSubmodelElement);
+        else {
+            oldValue = context.getPersistence().getValue(identifier);
+            newValue = request.getValueParser().parse(request.getRawValue(), oldValue.getClass());
+        }
+        context.getPersistence().setValue(identifier, newValue);
         if (!request.isInternal() && !Objects.equals(oldValue, newValue)) {
             context.getMessageBus().publish(ValueChangeEventMessage.builder()
                     .element(reference)
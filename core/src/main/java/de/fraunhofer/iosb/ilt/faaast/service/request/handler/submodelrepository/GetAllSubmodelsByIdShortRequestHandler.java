@@ -48,7 +48,7 @@ public class GetAllSubmodelsByIdShortRequestHandler extends AbstractRequestHandl
                         .build(),
                 QueryModifier.DEFAULT,
                 request.getPagingInfo());
-        context.getAssetConnectionManager().syncValueProvidersOnRead(null, page, !request.isInternal());
+        page = context.getAssetConnectionManager().syncValueProvidersOnRead(null, page, !request.isInternal());
         return GetAllSubmodelsByIdShortResponse.builder()
                 .payload(page)
                 .success()
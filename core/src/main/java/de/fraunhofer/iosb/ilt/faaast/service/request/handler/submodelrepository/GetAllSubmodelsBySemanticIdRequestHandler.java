@@ -48,7 +48,7 @@ public class GetAllSubmodelsBySemanticIdRequestHandler extends AbstractRequestHa
                         .build(),
                 QueryModifier.DEFAULT,
                 request.getPagingInfo());
-        context.getAssetConnectionManager().syncValueProvidersOnRead(null, page, !request.isInternal());
+        page = context.getAssetConnectionManager().syncValueProvidersOnRead(null, page, !request.isInternal());
         return GetAllSubmodelsBySemanticIdResponse.builder()
                 .payload(page)
                 .success()
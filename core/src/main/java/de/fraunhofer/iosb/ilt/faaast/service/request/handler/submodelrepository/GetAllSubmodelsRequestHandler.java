@@ -45,7 +45,7 @@ public class GetAllSubmodelsRequestHandler extends AbstractRequestHandler<GetAll
                 SubmodelSearchCriteria.NONE,
                 request.getOutputModifier(),
                 request.getPagingInfo());
-        context.getAssetConnectionManager().syncValueProvidersOnRead(null, page, !request.isInternal());
+        page = context.getAssetConnectionManager().syncValueProvidersOnRead(null, page, !request.isInternal());
         return GetAllSubmodelsResponse.builder()
                 .payload(page)
                 .success()
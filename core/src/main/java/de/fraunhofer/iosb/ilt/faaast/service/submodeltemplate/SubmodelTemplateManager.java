@@ -26,6 +26,7 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.SubscriptionInfo;
 import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ElementCreateEventMessage;
 import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ElementDeleteEventMessage;
 import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ElementUpdateEventMessage;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.util.PersistenceHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
 import java.util.ArrayList;
 import java.util.List;
@@ -145,7 +146,9 @@ public class SubmodelTemplateManager {
     }
 
 
-    private void addSubmodel(Submodel submodel) {
+    private void addSubmodel(Submodel original) {
+        // processors may modify the submodel, which must not happen to an instance shared with the persistence
+        Submodel submodel = PersistenceHelper.copyIfShared(serviceContext.getPersistence(), original);
         for (var submodelTemplateProcessor: submodelTemplateProcessors) {
             if (submodelTemplateProcessor.accept(submodel) && submodelTemplateProcessor.add(submodel)) {
                 LOGGER.debug("addSubmodel: submodelTemplate processed successfully");
@@ -163,7 +166,9 @@ public class SubmodelTemplateManager {
     }
 
 
-    private void updateSubmodel(Submodel submodel) {
+    private void updateSubmodel(Submodel original) {
+        // processors may modify the submodel, which must not happen to an instance shared with the persistence
+        Submodel submodel = PersistenceHelper.copyIfShared(serviceContext.getPersistence(), original);
         for (var submodelTemplateProcessor: submodelTemplateProcessors) {
             if (submodelTemplateProcessor.accept(submodel) && submodelTemplateProcessor.update(submodel)) {
                 LOGGER.debug("updateSubmodel: submodelTemplate processed successfully");
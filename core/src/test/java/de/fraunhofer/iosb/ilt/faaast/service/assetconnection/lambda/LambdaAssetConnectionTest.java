@@ -35,6 +35,7 @@ import de.fraunhofer.iosb.ilt.faaast.service.exception.EndpointException;
 import de.fraunhofer.iosb.ilt.faaast.service.exception.MessageBusException;
 import de.fraunhofer.iosb.ilt.faaast.service.filestorage.FileStorage;
 import de.fraunhofer.iosb.ilt.faaast.service.messagebus.MessageBus;
+import de.fraunhofer.iosb.ilt.faaast.service.model.SubmodelElementIdentifier;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.Response;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.request.submodel.GetSubmodelElementByPathRequest;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.request.submodel.InvokeOperationSyncRequest;
@@ -44,10 +45,11 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.api.response.submodel.InvokeO
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ValueFormatException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ValueMappingException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.value.Datatype;
 import de.fraunhofer.iosb.ilt.faaast.service.model.value.PropertyValue;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.mapper.ElementValueMapper;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.Persistence;
-import de.fraunhofer.iosb.ilt.faaast.service.util.DeepCopyHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceBuilder;
 import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceHelper;
 import java.util.List;
@@ -153,7 +155,7 @@ public class LambdaAssetConnectionTest {
     @Test
     public void testSubscriptionProvider()
             throws ConfigurationInitializationException, ConfigurationException, AssetConnectionException, MessageBusException, EndpointException, ResourceNotFoundException,
-            InterruptedException, PersistenceException {
+            InterruptedException, PersistenceException, ValueMappingException, ValueFormatException {
         final String submodelId = "submodel";
         final String propertyId = "property";
         final int initialValueAAS = 0;
@@ -169,7 +171,10 @@ public class LambdaAssetConnectionTest {
                 .element(propertyId)
                 .build();
 
+        final SubmodelElementIdentifier propertyIdentifier = SubmodelElementIdentifier.fromReference(propertyRef);
+
         when(persistence.getSubmodelElement(eq(propertyRef), any())).thenReturn(property);
+        when(persistence.getValue(propertyIdentifier)).thenReturn(ElementValueMapper.toValue(property));
 
         List<Integer> values = List.of(1, 2, 3, 4);
         Semaphore canUpdate = new Semaphore(1);
@@ -211,9 +216,7 @@ public class LambdaAssetConnectionTest {
         canUpdate.release();
         for (int value: values) {
             updated.acquire();
-            Property expected = DeepCopyHelper.deepCopy(property);
-            expected.setValue(Integer.toString(value));
-            verify(persistence).update(propertyRef, expected);
+            verify(persistence).setValue(propertyIdentifier, PropertyValue.of(Datatype.INT, Integer.toString(value)));
             canUpdate.release();
         }
     }
@@ -26,12 +26,19 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Level;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.OutputModifier;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.operation.OperationHandle;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.paging.Page;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.paging.PagingInfo;
 import de.fraunhofer.iosb.ilt.faaast.service.model.asset.GlobalAssetIdentification;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceAlreadyExistsException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotAContainerElementException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ValueFormatException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ValueMappingException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.Datatype;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.ElementValue;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.PropertyValue;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.mapper.ElementValueMapper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.DeepCopyHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.EnvironmentHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.ExtendHelper;
@@ -42,6 +49,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
@@ -53,6 +61,7 @@ import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
 import org.eclipse.digitaltwin.aas4j.v3.model.ExecutionState;
 import org.eclipse.digitaltwin.aas4j.v3.model.KeyTypes;
 import org.eclipse.digitaltwin.aas4j.v3.model.OperationResult;
+import org.eclipse.digitaltwin.aas4j.v3.model.Property;
 import org.eclipse.digitaltwin.aas4j.v3.model.Reference;
 import org.eclipse.digitaltwin.aas4j.v3.model.ReferenceTypes;
 import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
@@ -61,6 +70,7 @@ import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElementCollection;
 import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElementList;
 import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultAssetAdministrationShell;
 import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultConceptDescription;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultEnvironment;
 import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultKey;
 import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultOperationResult;
 import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultReference;
@@ -84,7 +94,12 @@ public abstract class AbstractPersistenceTest<T extends Persistence<C>, C extend
 
     private static final String FULL_MODEL_FILENAME = "AASFull.json";
     private static final String MINIMAL_MODEL_FILENAME = "AASMinimal.json";
-    private static final ServiceContext SERVICE_CONTEXT = Mockito.mock(ServiceContext.class);
+    protected static final ServiceContext SERVICE_CONTEXT = Mockito.mock(ServiceContext.class);
+    protected static final String DELETED_SUBMODEL_ID = "http://acplt.org/Submodels/Assets/TestAsset/BillOfMaterial";
+    protected static final SubmodelElementIdentifier MODIFIED_PROPERTY_IDENTIFIER = SubmodelElementIdentifier.builder()
+            .submodelId("http://acplt.org/Submodels/Assets/TestAsset/Identification")
+            .idShortPath(IdShortPath.parse("ManufacturerName"))
+            .build();
 
     @Rule
     public TemporaryFolder tempDir = new TemporaryFolder();
@@ -365,6 +380,89 @@ public abstract class AbstractPersistenceTest<T extends Persistence<C>, C extend
     }
 
 
+    @Test
+    public void getSubmodelsPaged() throws PersistenceException {
+        List<Submodel> expected = environment.getSubmodels();
+        ExtendHelper.withoutBlobValue(expected);
+        List<Submodel> actual = new ArrayList<>();
+        Page<Submodel> page = null;
+        do {
+            page = persistence.getAllSubmodels(QueryModifier.DEFAULT, PagingInfo.builder()
+                    .cursor(Objects.nonNull(page) ? page.getMetadata().getCursor() : null)
+                    .limit(2)
+                    .build());
+            actual.addAll(page.getContent());
+        } while (Objects.nonNull(page.getMetadata().getCursor()));
+        Assert.assertEquals(expected, actual);
+    }
+
+
+    @Test
+    public void getSubmodelsPagedWithConcurrentChanges() throws ResourceNotFoundException, PersistenceException {
+        List<Submodel> expected = new ArrayList<>(environment.getSubmodels());
+        ExtendHelper.withoutBlobValue(expected);
+        Page<Submodel> firstPage = persistence.getAllSubmodels(QueryModifier.DEFAULT, PagingInfo.builder()
+                .limit(2)
+                .build());
+        Assert.assertEquals(expected.subList(0, 2), firstPage.getContent());
+        persistence.deleteSubmodel(expected.get(0).getId());
+        persistence.deleteSubmodel(expected.get(1).getId());
+        Page<Submodel> secondPage = persistence.getAllSubmodels(QueryModifier.DEFAULT, PagingInfo.builder()
+                .cursor(firstPage.getMetadata().getCursor())
+                .limit(2)
+                .build());
+        Assert.assertEquals(expected.subList(2, 4), secondPage.getContent());
+    }
+
+
+    @Test
+    public void getSubmodelElementsPaged() throws ResourceNotFoundException, PersistenceException {
+        List<SubmodelElement> expected = persistence.findSubmodelElements(
+                SubmodelElementSearchCriteria.NONE,
+                QueryModifier.DEFAULT,
+                PagingInfo.ALL)
+                .getContent();
+        List<SubmodelElement> actual = new ArrayList<>();
+        Page<SubmodelElement> page = null;
+        do {
+            page = persistence.findSubmodelElements(
+                    SubmodelElementSearchCriteria.NONE,
+                    QueryModifier.DEFAULT,
+                    PagingInfo.builder()
+                            .cursor(Objects.nonNull(page) ? page.getMetadata().getCursor() : null)
+                            .limit(3)
+                            .build());
+            actual.addAll(page.getContent());
+        } while (Objects.nonNull(page.getMetadata().getCursor()));
+        Assert.assertEquals(expected, actual);
+    }
+
+
+    @Test
+    public void getSubmodelElementsOfSubmodelPaged() throws ResourceNotFoundException, PersistenceException {
+        SubmodelElementSearchCriteria criteria = SubmodelElementSearchCriteria.builder()
+                .parent(SubmodelElementIdentifier.builder()
+                        .submodelId("https://acplt.org/Test_Submodel_Mandatory")
+                        .build())
+                .build();
+        List<SubmodelElement> expected = persistence.findSubmodelElements(criteria, QueryModifier.DEFAULT, PagingInfo.ALL).getContent();
+        List<SubmodelElement> actual = new ArrayList<>();
+        Page<SubmodelElement> page = null;
+        do {
+            page = persistence.findSubmodelElements(
+                    criteria,
+                    QueryModifier.DEFAULT,
+                    PagingInfo.builder()
+                            .cursor(Objects.nonNull(page) ? page.getMetadata().getCursor() : null)
+                            .limit(2)
+                            .build());
+            actual.addAll(page.getContent());
+        } while (Objects.nonNull(page.getMetadata().getCursor()));
+        Assert.assertTrue(expected.size() > 2);
+        Assert.assertEquals(expected, actual);
+    }
+
+
     @Test
     public void getSubmodelsWithIdShort() throws PersistenceException {
         String submodelIdShort = "TestSubmodel";
@@ -406,6 +504,45 @@ public abstract class AbstractPersistenceTest<T extends Persistence<C>, C extend
     }
 
 
+    @Test
+    public void getSubmodelsWithsemanticIdAfterChange() throws PersistenceException {
+        Reference oldSemanticId = new DefaultReference.Builder()
+                .keys(new DefaultKey.Builder()
+                        .type(KeyTypes.GLOBAL_REFERENCE)
+                        .value("http://acplt.org/SubmodelTemplates/ExampleSubmodel")
+                        .build())
+                .build();
+        Reference newSemanticId = new DefaultReference.Builder()
+                .keys(new DefaultKey.Builder()
+                        .type(KeyTypes.GLOBAL_REFERENCE)
+                        .value("http://example.org/NewSemanticId")
+                        .build())
+                .build();
+        Submodel expected = DeepCopyHelper.deepCopy(environment.getSubmodels().stream()
+                .filter(x -> ReferenceHelper.equals(x.getSemanticId(), oldSemanticId))
+                .findFirst()
+                .get());
+        expected.setSemanticId(newSemanticId);
+        persistence.save(expected);
+        Assert.assertFalse(persistence.findSubmodels(
+                SubmodelSearchCriteria.builder()
+                        .semanticId(oldSemanticId)
+                        .build(),
+                QueryModifier.DEFAULT,
+                PagingInfo.ALL)
+                .getContent().stream()
+                .anyMatch(x -> Objects.equals(x.getId(), expected.getId())));
+        List<Submodel> actual = persistence.findSubmodels(
+                SubmodelSearchCriteria.builder()
+                        .semanticId(newSemanticId)
+                        .build(),
+                QueryModifier.MAXIMAL,
+                PagingInfo.ALL)
+                .getContent();
+        Assert.assertEquals(List.of(expected), actual);
+    }
+
+
     @Test
     public void getSubmodelElements() throws ResourceNotFoundException, PersistenceException, ResourceNotAContainerElementException {
         String submodelId = "http://acplt.org/Submodels/Assets/TestAsset/Identification";
@@ -451,6 +588,25 @@ public abstract class AbstractPersistenceTest<T extends Persistence<C>, C extend
     }
 
 
+    @Test
+    public void getSubmodelElementsWithsemanticIdDifferentReferredSemanticId() throws ResourceNotFoundException, PersistenceException {
+        String submodelId = "http://acplt.org/Submodels/Assets/TestAsset/Identification";
+        Reference semanticId = ReferenceBuilder.global("0173-1#02-AAO677#002");
+        semanticId.setReferredSemanticId(ReferenceBuilder.global("http://example.org/ReferredSemanticId"));
+        List<SubmodelElement> actual = persistence.findSubmodelElements(
+                SubmodelElementSearchCriteria.builder()
+                        .parent(SubmodelElementIdentifier.builder()
+                                .submodelId(submodelId)
+                                .build())
+                        .semanticId(semanticId)
+                        .build(),
+                QueryModifier.DEFAULT,
+                PagingInfo.ALL)
+                .getContent();
+        Assert.assertEquals(List.of(), actual);
+    }
+
+
     @Test
     public void getSubmodelElementsFromSubmodelElementCollection() throws ResourceNotFoundException, PersistenceException, ResourceNotAContainerElementException {
         String submodelId = "https://acplt.org/Test_Submodel_Mandatory";
@@ -712,6 +868,88 @@ public abstract class AbstractPersistenceTest<T extends Persistence<C>, C extend
     }
 
 
+    @Test
+    public void getValueSubmodelElementCollection() throws ResourceNotFoundException, ValueMappingException, PersistenceException {
+        String submodelId = "https://acplt.org/Test_Submodel_Mandatory";
+        String submodelElementCollectionId = "ExampleSubmodelElementCollection";
+        Reference reference = ReferenceBuilder.forSubmodel(submodelId, submodelElementCollectionId);
+        ElementValue expected = ElementValueMapper.toValue(EnvironmentHelper.resolve(reference, environment, SubmodelElementCollection.class));
+        ElementValue actual = persistence.getValue(SubmodelElementIdentifier.fromReference(reference));
+        Assert.assertEquals(expected, actual);
+    }
+
+
+    @Test
+    public void setValueProperty() throws ResourceNotFoundException, ValueMappingException, ValueFormatException, PersistenceException {
+        Reference reference = ReferenceBuilder.forSubmodel("http://acplt.org/Submodels/Assets/TestAsset/Identification", "ManufacturerName");
+        SubmodelElementIdentifier identifier = SubmodelElementIdentifier.fromReference(reference);
+        PropertyValue value = PropertyValue.of(Datatype.STRING, "new value");
+        Property expected = DeepCopyHelper.deepCopy(EnvironmentHelper.resolve(reference, environment, Property.class), Property.class);
+        expected.setValue("new value");
+        persistence.setValue(identifier, value);
+        Assert.assertEquals(expected, persistence.getSubmodelElement(identifier, QueryModifier.DEFAULT));
+        Assert.assertEquals(value, persistence.getValue(identifier));
+    }
+
+
+    @Test
+    public void setValueNotFound() {
+        SubmodelElementIdentifier identifier = SubmodelElementIdentifier.fromReference(
+                ReferenceBuilder.forSubmodel("http://acplt.org/Submodels/Assets/TestAsset/Identification", "NonExistent"));
+        Assert.assertThrows(ResourceNotFoundException.class, () -> persistence.setValue(identifier, PropertyValue.of(Datatype.STRING, "new value")));
+    }
+
+
+    @Test
+    public void identifiableExists() {
+        Assert.assertTrue(persistence.assetAdministrationShellExists("https://acplt.org/Test_AssetAdministrationShell_Mandatory"));
+        Assert.assertTrue(persistence.submodelExists("https://acplt.org/Test_Submodel_Mandatory"));
+        Assert.assertTrue(persistence.conceptDescriptionExists(environment.getConceptDescriptions().get(0).getId()));
+        Assert.assertFalse(persistence.assetAdministrationShellExists("https://acplt.org/NonExistent"));
+        Assert.assertFalse(persistence.submodelExists("https://acplt.org/NonExistent"));
+        Assert.assertFalse(persistence.conceptDescriptionExists("https://acplt.org/NonExistent"));
+    }
+
+
+    @Test
+    public void filterExisting() {
+        Submodel newSubmodel = DeepCopyHelper.deepCopy(environment.getSubmodels().get(0), environment.getSubmodels().get(0).getClass());
+        newSubmodel.setId("http://newIdentifier.org");
+        AssetAdministrationShell newShell = new DefaultAssetAdministrationShell.Builder()
+                .id("http://example.org/NewShell")
+                .build();
+        Environment expected = new DefaultEnvironment.Builder()
+                .assetAdministrationShells(environment.getAssetAdministrationShells().get(0))
+                .submodels(environment.getSubmodels().get(1))
+                .conceptDescriptions(environment.getConceptDescriptions().get(0))
+                .build();
+        Environment actual = persistence.filterExisting(new DefaultEnvironment.Builder()
+                .assetAdministrationShells(List.of(newShell, environment.getAssetAdministrationShells().get(0)))
+                .submodels(List.of(environment.getSubmodels().get(1), newSubmodel))
+                .conceptDescriptions(environment.getConceptDescriptions().get(0))
+                .build());
+        Assert.assertEquals(expected, actual);
+    }
+
+
+    @Test
+    public void submodelElementExists() {
+        String submodelId = "https://acplt.org/Test_Submodel_Mandatory";
+        Assert.assertTrue(persistence.submodelElementExists(ReferenceBuilder.forSubmodel(submodelId, "ExampleSubmodelElementCollection")));
+        Assert.assertFalse(persistence.submodelElementExists(ReferenceBuilder.forSubmodel(submodelId, "NonExistent")));
+        Assert.assertFalse(persistence.submodelElementExists(ReferenceBuilder.forSubmodel("https://acplt.org/NonExistent", "ExampleSubmodelElementCollection")));
+    }
+
+
+    @Test
+    public void submodelRefExists() {
+        String aasId = "https://acplt.org/Test_AssetAdministrationShell_Mandatory";
+        Assert.assertTrue(persistence.submodelRefExists(aasId, "https://acplt.org/Test_Submodel_Mandatory"));
+        Assert.assertFalse(persistence.submodelRefExists(aasId, "https://acplt.org/NonExistent"));
+        Assert.assertFalse(persistence.submodelRefExists("https://acplt.org/NonExistent", "https://acplt.org/Test_Submodel_Mandatory"));
+    }
+
+
     @Test
     public void removeSubmodel() throws ResourceNotFoundException, PersistenceException {
         String submodelId = "https://acplt.org/Test_Submodel_Mandatory";
@@ -785,6 +1023,23 @@ public abstract class AbstractPersistenceTest<T extends Persistence<C>, C extend
     }
 
 
+    @Test
+    public void removeByReferenceInSubmodelElementListShiftsIndex() throws ResourceNotFoundException, PersistenceException {
+        Reference listReference = ReferenceBuilder.forSubmodel("https://acplt.org/Test_Submodel", "ExampleSubmodelElementListOrdered");
+        SubmodelElementList original = persistence.getSubmodelElement(listReference, QueryModifier.MAXIMAL, SubmodelElementList.class);
+        int size = original.getValue().size();
+        persistence.deleteSubmodelElement(ReferenceHelper.combine(listReference, new ReferenceBuilder().index(0).build()));
+        for (int i = 0; i < size - 1; i++) {
+            Assert.assertEquals(
+                    original.getValue().get(i + 1),
+                    persistence.getSubmodelElement(ReferenceHelper.combine(listReference, new ReferenceBuilder().index(i).build()), QueryModifier.MAXIMAL));
+        }
+        Assert.assertThrows(ResourceNotFoundException.class, () -> persistence.getSubmodelElement(
+                ReferenceHelper.combine(listReference, new ReferenceBuilder().index(size - 1).build()),
+                QueryModifier.MAXIMAL));
+    }
+
+
     @Test
     public void removeByReferenceProperty() throws ResourceNotFoundException, PersistenceException {
         String submodelId = "http://acplt.org/Submodels/Assets/TestAsset/BillOfMaterial";
@@ -831,6 +1086,39 @@ public abstract class AbstractPersistenceTest<T extends Persistence<C>, C extend
     }
 
 
+    @Test
+    public void putIdentifiablesBatch() throws ResourceNotFoundException, PersistenceException {
+        Submodel newSubmodel = DeepCopyHelper.deepCopy(environment.getSubmodels().get(0),
+                environment.getSubmodels().get(0).getClass());
+        newSubmodel.setId("http://newIdentifier.org");
+        AssetAdministrationShell newShell = new DefaultAssetAdministrationShell.Builder()
+                .idShort("NewShell")
+                .id("http://example.org/NewShell")
+                .build();
+        int changedIndex = 0;
+        ConceptDescription changedConceptDescription = DeepCopyHelper.deepCopy(
+                environment.getConceptDescriptions().get(changedIndex),
+                environment.getConceptDescriptions().get(changedIndex).getClass());
+        changedConceptDescription.setCategory("NewCategory");
+        int submodelCount = persistence.getAllSubmodels(QueryModifier.MINIMAL, PagingInfo.ALL).getContent().size();
+        persistence.saveAll(new DefaultEnvironment.Builder()
+                .assetAdministrationShells(newShell)
+                .submodels(newSubmodel)
+                .conceptDescriptions(changedConceptDescription)
+                .build());
+        Assert.assertEquals(newSubmodel, persistence.getSubmodel(newSubmodel.getId(), QueryModifier.MAXIMAL));
+        Assert.assertEquals(newShell, persistence.getAssetAdministrationShell(newShell.getId(), QueryModifier.DEFAULT));
+        ConceptDescription actual = persistence.getConceptDescription(changedConceptDescription.getId(), QueryModifier.DEFAULT);
+        Assert.assertEquals(changedConceptDescription, actual);
+        Assert.assertEquals(changedIndex, persistence
+                .getAllConceptDescriptions(QueryModifier.DEFAULT, PagingInfo.ALL)
+                .getContent()
+                .indexOf(actual));
+        Assert.assertEquals(submodelCount + 1,
+                persistence.getAllSubmodels(QueryModifier.MINIMAL, PagingInfo.ALL).getContent().size());
+    }
+
+
     @Test
     public void testQueryModifierExtend() throws ResourceNotFoundException, PersistenceException {
         String submodelId = "https://acplt.org/Test_Submodel_Mandatory";
@@ -898,6 +1186,60 @@ public abstract class AbstractPersistenceTest<T extends Persistence<C>, C extend
     }
 
 
+    /**
+     * Updates the value of the property identified by {@link #MODIFIED_PROPERTY_IDENTIFIER}.
+     *
+     * @param persistence the persistence containing {@link AASFull}
+     * @param value the new value
+     * @return the updated property
+     * @throws ResourceNotFoundException if the property does not exist
+     * @throws PersistenceException if updating fails
+     */
+    protected static Property updateModifiedProperty(Persistence<?> persistence, String value) throws ResourceNotFoundException, PersistenceException {
+        Property result = (Property) DeepCopyHelper.deepCopy(persistence.getSubmodelElement(MODIFIED_PROPERTY_IDENTIFIER, QueryModifier.MAXIMAL));
+        result.setValue(value);
+        persistence.update(MODIFIED_PROPERTY_IDENTIFIER, result);
+        return result;
+    }
+
+
+    /**
+     * Applies the modifications persistent implementations are expected to keep across restarts, i.e. updates the
+     * property identified by {@link #MODIFIED_PROPERTY_IDENTIFIER} and deletes the submodel identified by
+     * {@link #DELETED_SUBMODEL_ID}. Use {@link #assertModifiedAfterRestart(Persistence, Property)} to check the restarted
+     * persistence.
+     *
+     * @param persistence the persistence containing {@link AASFull}
+     * @param value the new value of the property
+     * @return the updated property
+     * @throws ResourceNotFoundException if the property or submodel does not exist
+     * @throws PersistenceException if modifying fails
+     */
+    protected static Property modifyBeforeRestart(Persistence<?> persistence, String value) throws ResourceNotFoundException, PersistenceException {
+        Property result = updateModifiedProperty(persistence, value);
+        persistence.deleteSubmodel(DELETED_SUBMODEL_ID);
+        return result;
+    }
+
+
+    /**
+     * Asserts that a restarted persistence contains the modifications applied by
+     * {@link #modifyBeforeRestart(Persistence, String)}.
+     *
+     * @param restarted the restarted persistence
+     * @param expected the property returned by {@link #modifyBeforeRestart(Persistence, String)}
+     * @throws ResourceNotFoundException if the property does not exist
+     * @throws PersistenceException if reading fails
+     */
+    protected static void assertModifiedAfterRestart(Persistence<?> restarted, Property expected) throws ResourceNotFoundException, PersistenceException {
+        Assert.assertEquals(expected, restarted.getSubmodelElement(MODIFIED_PROPERTY_IDENTIFIER, QueryModifier.MAXIMAL));
+        Assert.assertThrows(ResourceNotFoundException.class, () -> restarted.getSubmodel(DELETED_SUBMODEL_ID, QueryModifier.MINIMAL));
+        Reference deletedSubmodelRef = ReferenceBuilder.forSubmodel(DELETED_SUBMODEL_ID);
+        Assert.assertTrue(restarted.getAllAssetAdministrationShells(QueryModifier.MINIMAL, PagingInfo.ALL).getContent().stream()
+                .noneMatch(x -> x.getSubmodels().stream().anyMatch(ref -> ReferenceHelper.equals(ref, deletedSubmodelRef))));
+    }
+
+
     private File copyResourceToTempDir(String resourceName) throws IOException {
         File result = tempDir.newFile(resourceName);
         try (InputStream inputStream = AbstractPersistenceTest.class.getClassLoader().getResourceAsStream(resourceName)) {
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.cache;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import de.fraunhofer.iosb.ilt.faaast.service.messagebus.MessageBus;
+import de.fraunhofer.iosb.ilt.faaast.service.model.IdShortPath;
+import de.fraunhofer.iosb.ilt.faaast.service.model.SubmodelElementIdentifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.SubscriptionInfo;
+import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ElementUpdateEventMessage;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.Datatype;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.PropertyValue;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.Persistence;
+import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceBuilder;
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.eclipse.digitaltwin.aas4j.v3.model.Property;
+import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
+import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElement;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultProperty;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultSubmodel;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultSubmodelElementCollection;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+
+public class CachingPersistenceTest {
+
+    private static final String SUBMODEL_ID = "http://example.org/submodel";
+    private static final SubmodelElementIdentifier COLLECTION = SubmodelElementIdentifier.builder()
+            .submodelId(SUBMODEL_ID)
+            .idShortPath(IdShortPath.parse("collection"))
+            .build();
+    private static final SubmodelElementIdentifier PROPERTY = SubmodelElementIdentifier.builder()
+            .submodelId(SUBMODEL_ID)
+            .idShortPath(IdShortPath.parse("collection.property"))
+            .build();
+    private static final SubmodelElementIdentifier OTHER_PROPERTY = SubmodelElementIdentifier.builder()
+            .submodelId(SUBMODEL_ID)
+            .idShortPath(IdShortPath.parse("other"))
+            .build();
+
+    private Persistence persistence;
+    private CachingPersistence cachingPersistence;
+
+    @Before
+    public void init() throws Exception {
+        persistence = Mockito.mock(Persistence.class);
+        Property property = new DefaultProperty.Builder()
+                .idShort("property")
+                .value("foo")
+                .build();
+        when(persistence.getSubmodel(any(), any())).thenReturn(new DefaultSubmodel.Builder()
+                .id(SUBMODEL_ID)
+                .idShort("submodel")
+                .build());
+        when(persistence.getSubmodelElement(COLLECTION, QueryModifier.DEFAULT)).thenReturn(new DefaultSubmodelElementCollection.Builder()
+                .idShort("collection")
+                .value(property)
+                .build());
+        when(persistence.getSubmodelElement(PROPERTY, QueryModifier.DEFAULT)).thenReturn(property);
+        when(persistence.getSubmodelElement(OTHER_PROPERTY, QueryModifier.DEFAULT)).thenReturn(new DefaultProperty.Builder()
+                .idShort("other")
+                .build());
+        cachingPersistence = new CachingPersistence(persistence, PersistenceCacheConfig.builder().build());
+    }
+
+
+    @Test
+    public void testReadCached() throws Exception {
+        Submodel first = cachingPersistence.getSubmodel(SUBMODEL_ID, QueryModifier.DEFAULT);
+        Submodel second = cachingPersistence.getSubmodel(SUBMODEL_ID, QueryModifier.DEFAULT);
+        cachingPersistence.getSubmodel(SUBMODEL_ID, QueryModifier.MINIMAL);
+        Assert.assertEquals(first, second);
+        Assert.assertNotSame(first, second);
+        verify(persistence, times(1)).getSubmodel(SUBMODEL_ID, QueryModifier.DEFAULT);
+        verify(persistence, times(1)).getSubmodel(SUBMODEL_ID, QueryModifier.MINIMAL);
+        Assert.assertEquals(1, cachingPersistence.getStats().hitCount());
+        Assert.assertEquals(2, cachingPersistence.getStats().missCount());
+    }
+
+
+    @Test
+    public void testModifyingResultDoesNotChangeCache() throws Exception {
+        ((Property) cachingPersistence.getSubmodelElement(PROPERTY, QueryModifier.DEFAULT)).setValue("bar");
+        Assert.assertEquals("foo", ((Property) cachingPersistence.getSubmodelElement(PROPERTY, QueryModifier.DEFAULT)).getValue());
+    }
+
+
+    @Test
+    public void testUpdateInvalidatesAncestorsAndSubmodel() throws Exception {
+        readAll();
+        cachingPersistence.update(PROPERTY, new DefaultProperty.Builder()
+                .idShort("property")
+                .build());
+        readAll();
+        verify(persistence, times(2)).getSubmodel(SUBMODEL_ID, QueryModifier.DEFAULT);
+        verify(persistence, times(2)).getSubmodelElement(COLLECTION, QueryModifier.DEFAULT);
+        verify(persistence, times(2)).getSubmodelElement(PROPERTY, QueryModifier.DEFAULT);
+        verify(persistence, times(1)).getSubmodelElement(OTHER_PROPERTY, QueryModifier.DEFAULT);
+    }
+
+
+    @Test
+    public void testSetValueInvalidates() throws Exception {
+        readAll();
+        cachingPersistence.setValue(PROPERTY, PropertyValue.of(Datatype.STRING, "bar"));
+        readAll();
+        verify(persistence).setValue(PROPERTY, PropertyValue.of(Datatype.STRING, "bar"));
+        verify(persistence, times(2)).getSubmodelElement(COLLECTION, QueryModifier.DEFAULT);
+        verify(persistence, times(2)).getSubmodelElement(PROPERTY, QueryModifier.DEFAULT);
+        verify(persistence, times(1)).getSubmodelElement(OTHER_PROPERTY, QueryModifier.DEFAULT);
+    }
+
+
+    @Test
+    public void testRepeatedUpdatesInvalidate() throws Exception {
+        readAll();
+        cachingPersistence.update(PROPERTY, new DefaultProperty.Builder()
+                .idShort("property")
+                .build());
+        readAll();
+        cachingPersistence.update(PROPERTY, new DefaultProperty.Builder()
+                .idShort("property")
+                .build());
+        readAll();
+        verify(persistence, times(3)).getSubmodel(SUBMODEL_ID, QueryModifier.DEFAULT);
+        verify(persistence, times(3)).getSubmodelElement(PROPERTY, QueryModifier.DEFAULT);
+        verify(persistence, times(1)).getSubmodelElement(OTHER_PROPERTY, QueryModifier.DEFAULT);
+    }
+
+
+    @Test
+    public void testStatisticsExposedViaJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName pattern = new ObjectName("de.fraunhofer.iosb.ilt.faaast.service:type=PersistenceCache,*");
+        Set<ObjectName> before = server.queryNames(pattern, null);
+        cachingPersistence.start();
+        Set<ObjectName> registered = server.queryNames(pattern, null);
+        registered.removeAll(before);
+        Assert.assertEquals(1, registered.size());
+        ObjectName name = registered.iterator().next();
+        cachingPersistence.getSubmodel(SUBMODEL_ID, QueryModifier.DEFAULT);
+        cachingPersistence.getSubmodel(SUBMODEL_ID, QueryModifier.DEFAULT);
+        Assert.assertEquals(1L, server.getAttribute(name, "HitCount"));
+        Assert.assertEquals(1L, server.getAttribute(name, "MissCount"));
+        Assert.assertEquals(0.5, server.getAttribute(name, "HitRate"));
+        Assert.assertEquals(1L, server.getAttribute(name, "Size"));
+        cachingPersistence.stop();
+        Assert.assertFalse(server.isRegistered(name));
+    }
+
+
+    @Test
+    public void testDeleteInvalidatesSiblings() throws Exception {
+        readAll();
+        cachingPersistence.deleteSubmodelElement(COLLECTION);
+        readAll();
+        verify(persistence, times(2)).getSubmodelElement(COLLECTION, QueryModifier.DEFAULT);
+        verify(persistence, times(2)).getSubmodelElement(PROPERTY, QueryModifier.DEFAULT);
+        verify(persistence, times(2)).getSubmodelElement(OTHER_PROPERTY, QueryModifier.DEFAULT);
+    }
+
+
+    @Test
+    public void testChangeEventInvalidates() throws Exception {
+        MessageBus messageBus = Mockito.mock(MessageBus.class);
+        AtomicReference<SubscriptionInfo> subscription = new AtomicReference<>();
+        when(messageBus.subscribe(any())).thenAnswer(x -> {
+            subscription.set(x.getArgument(0));
+            return null;
+        });
+        cachingPersistence.subscribe(messageBus);
+        readAll();
+        subscription.get().getHandler().accept(ElementUpdateEventMessage.builder()
+                .element(ReferenceBuilder.forSubmodel(SUBMODEL_ID, "other"))
+                .build());
+        readAll();
+        verify(persistence, times(2)).getSubmodel(SUBMODEL_ID, QueryModifier.DEFAULT);
+        verify(persistence, times(1)).getSubmodelElement(COLLECTION, QueryModifier.DEFAULT);
+        verify(persistence, times(2)).getSubmodelElement(OTHER_PROPERTY, QueryModifier.DEFAULT);
+    }
+
+
+    private void readAll() throws Exception {
+        cachingPersistence.getSubmodel(SUBMODEL_ID, QueryModifier.DEFAULT);
+        for (SubmodelElementIdentifier identifier: new SubmodelElementIdentifier[] {
+                COLLECTION,
+                PROPERTY,
+                OTHER_PROPERTY
+        }) {
+            SubmodelElement element = cachingPersistence.getSubmodelElement(identifier, QueryModifier.DEFAULT);
+            Assert.assertNotNull(element);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.writebehind;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import de.fraunhofer.iosb.ilt.faaast.service.model.IdShortPath;
+import de.fraunhofer.iosb.ilt.faaast.service.model.SubmodelElementIdentifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.Datatype;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.PropertyValue;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.Persistence;
+import org.eclipse.digitaltwin.aas4j.v3.model.DataTypeDefXsd;
+import org.eclipse.digitaltwin.aas4j.v3.model.Property;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultProperty;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+
+public class WriteBehindPersistenceTest {
+
+    private static final String SUBMODEL_ID = "http://example.org/submodel";
+    private static final SubmodelElementIdentifier PROPERTY = SubmodelElementIdentifier.builder()
+            .submodelId(SUBMODEL_ID)
+            .idShortPath(IdShortPath.parse("collection.property"))
+            .build();
+    private static final SubmodelElementIdentifier COLLECTION = SubmodelElementIdentifier.builder()
+            .submodelId(SUBMODEL_ID)
+            .idShortPath(IdShortPath.parse("collection"))
+            .build();
+    private static final SubmodelElementIdentifier OTHER_PROPERTY = SubmodelElementIdentifier.builder()
+            .submodelId(SUBMODEL_ID)
+            .idShortPath(IdShortPath.parse("otherProperty"))
+            .build();
+
+    private Persistence persistence;
+    private WriteBehindPersistence writeBehindPersistence;
+
+    @Before
+    public void init() throws Exception {
+        persistence = Mockito.mock(Persistence.class);
+        when(persistence.submodelElementExists(any(SubmodelElementIdentifier.class))).thenReturn(true);
+        start(PersistenceWriteBehindConfig.builder()
+                .flushInterval(0)
+                .build());
+    }
+
+
+    @After
+    public void stop() {
+        writeBehindPersistence.stop();
+    }
+
+
+    private void start(PersistenceWriteBehindConfig config) throws Exception {
+        writeBehindPersistence = new WriteBehindPersistence(persistence, config);
+        writeBehindPersistence.start();
+    }
+
+
+    private static Property property(String value) {
+        return new DefaultProperty.Builder()
+                .idShort("property")
+                .value(value)
+                .build();
+    }
+
+
+    @Test
+    public void testUpdatesCoalesced() throws Exception {
+        writeBehindPersistence.update(PROPERTY, property("1"));
+        writeBehindPersistence.update(PROPERTY, property("2"));
+        writeBehindPersistence.update(PROPERTY, property("3"));
+        Assert.assertEquals(property("3"), writeBehindPersistence.getSubmodelElement(PROPERTY, QueryModifier.DEFAULT));
+        verify(persistence, never()).update(any(SubmodelElementIdentifier.class), any());
+        verify(persistence, never()).getSubmodelElement(any(SubmodelElementIdentifier.class), any());
+        writeBehindPersistence.flush();
+        verify(persistence, times(1)).update(PROPERTY, property("3"));
+        Assert.assertEquals(0, writeBehindPersistence.getPendingChanges());
+    }
+
+
+    @Test
+    public void testValueUpdatesCoalesced() throws Exception {
+        when(persistence.getSubmodelElement(PROPERTY, QueryModifier.MAXIMAL)).thenReturn(property("1"));
+        writeBehindPersistence.setValue(PROPERTY, PropertyValue.of(Datatype.STRING, "2"));
+        writeBehindPersistence.setValue(PROPERTY, PropertyValue.of(Datatype.STRING, "3"));
+        Assert.assertEquals(PropertyValue.of(Datatype.STRING, "3"), writeBehindPersistence.getValue(PROPERTY));
+        verify(persistence, times(1)).getSubmodelElement(PROPERTY, QueryModifier.MAXIMAL);
+        verify(persistence, never()).setValue(any(SubmodelElementIdentifier.class), any());
+        writeBehindPersistence.flush();
+        verify(persistence, times(1)).setValue(PROPERTY, PropertyValue.of(Datatype.STRING, "3"));
+        verify(persistence, never()).update(any(SubmodelElementIdentifier.class), any());
+    }
+
+
+    @Test
+    public void testValueUpdateAfterUpdateWrittenAsUpdate() throws Exception {
+        writeBehindPersistence.update(PROPERTY, property("1"));
+        writeBehindPersistence.setValue(PROPERTY, PropertyValue.of(Datatype.STRING, "2"));
+        writeBehindPersistence.flush();
+        Property expected = property("2");
+        expected.setValueType(DataTypeDefXsd.STRING);
+        verify(persistence, times(1)).update(PROPERTY, expected);
+        verify(persistence, never()).setValue(any(SubmodelElementIdentifier.class), any());
+    }
+
+
+    @Test
+    public void testReadingAncestorFlushesFirst() throws Exception {
+        writeBehindPersistence.update(PROPERTY, property("1"));
+        writeBehindPersistence.getSubmodelElement(COLLECTION, QueryModifier.DEFAULT);
+        writeBehindPersistence.getSubmodel(SUBMODEL_ID, QueryModifier.DEFAULT);
+        InOrder inOrder = Mockito.inOrder(persistence);
+        inOrder.verify(persistence).update(PROPERTY, property("1"));
+        inOrder.verify(persistence).getSubmodelElement(COLLECTION, QueryModifier.DEFAULT);
+        inOrder.verify(persistence).getSubmodel(SUBMODEL_ID, QueryModifier.DEFAULT);
+    }
+
+
+    @Test
+    public void testUpdatesWrittenInOrder() throws Exception {
+        writeBehindPersistence.update(PROPERTY, property("1"));
+        writeBehindPersistence.update(COLLECTION, property("2"));
+        writeBehindPersistence.update(PROPERTY, property("3"));
+        writeBehindPersistence.flush();
+        InOrder inOrder = Mockito.inOrder(persistence);
+        inOrder.verify(persistence).update(COLLECTION, property("2"));
+        inOrder.verify(persistence).update(PROPERTY, property("3"));
+        verify(persistence, never()).update(PROPERTY, property("1"));
+    }
+
+
+    @Test
+    public void testStopFlushes() throws Exception {
+        writeBehindPersistence.update(PROPERTY, property("1"));
+        writeBehindPersistence.stop();
+        verify(persistence).update(PROPERTY, property("1"));
+        verify(persistence).stop();
+    }
+
+
+    @Test
+    public void testMaxPendingChangesFlushesSynchronously() throws Exception {
+        writeBehindPersistence.stop();
+        start(PersistenceWriteBehindConfig.builder()
+                .flushInterval(0)
+                .flushMaxPendingChanges(0)
+                .maxPendingChanges(2)
+                .build());
+        writeBehindPersistence.update(PROPERTY, property("1"));
+        writeBehindPersistence.update(COLLECTION, property("2"));
+        Assert.assertEquals(2, writeBehindPersistence.getPendingChanges());
+        verify(persistence, never()).update(any(SubmodelElementIdentifier.class), any());
+        writeBehindPersistence.update(OTHER_PROPERTY, property("3"));
+        Assert.assertEquals(1, writeBehindPersistence.getPendingChanges());
+        verify(persistence).update(PROPERTY, property("1"));
+        verify(persistence).update(COLLECTION, property("2"));
+        verify(persistence, never()).update(OTHER_PROPERTY, property("3"));
+    }
+
+
+    @Test
+    public void testMaxPendingChangesRejectsUpdateIfFlushFails() throws Exception {
+        writeBehindPersistence.stop();
+        start(PersistenceWriteBehindConfig.builder()
+                .flushInterval(0)
+                .flushMaxPendingChanges(0)
+                .maxPendingChanges(2)
+                .build());
+        doThrow(new PersistenceException("temporarily unavailable"))
+                .doNothing()
+                .when(persistence).update(PROPERTY, property("1"));
+        writeBehindPersistence.update(PROPERTY, property("1"));
+        writeBehindPersistence.update(COLLECTION, property("2"));
+        Assert.assertThrows(PersistenceException.class, () -> writeBehindPersistence.update(OTHER_PROPERTY, property("3")));
+        Assert.assertEquals(2, writeBehindPersistence.getPendingChanges());
+        // updates of already buffered elements are still accepted
+        writeBehindPersistence.update(PROPERTY, property("4"));
+        Assert.assertEquals(2, writeBehindPersistence.getPendingChanges());
+    }
+
+
+    @Test
+    public void testFailedUpdateRetried() throws Exception {
+        doThrow(new PersistenceException("temporarily unavailable"))
+                .doNothing()
+                .when(persistence).update(PROPERTY, property("1"));
+        writeBehindPersistence.update(PROPERTY, property("1"));
+        writeBehindPersistence.update(COLLECTION, property("2"));
+        Assert.assertThrows(PersistenceException.class, () -> writeBehindPersistence.flush());
+        Assert.assertEquals(2, writeBehindPersistence.getPendingChanges());
+        verify(persistence, never()).update(COLLECTION, property("2"));
+        writeBehindPersistence.flush();
+        Assert.assertEquals(0, writeBehindPersistence.getPendingChanges());
+        InOrder inOrder = Mockito.inOrder(persistence);
+        inOrder.verify(persistence, times(2)).update(PROPERTY, property("1"));
+        inOrder.verify(persistence).update(COLLECTION, property("2"));
+    }
+
+
+    @Test
+    public void testUpdateOfRemovedElementDiscarded() throws Exception {
+        doThrow(new ResourceNotFoundException("removed"))
+                .when(persistence).update(PROPERTY, property("1"));
+        writeBehindPersistence.update(PROPERTY, property("1"));
+        writeBehindPersistence.update(COLLECTION, property("2"));
+        writeBehindPersistence.flush();
+        Assert.assertEquals(0, writeBehindPersistence.getPendingChanges());
+        verify(persistence).update(COLLECTION, property("2"));
+    }
+
+
+    @Test
+    public void testUpdateNonExistingElement() throws Exception {
+        when(persistence.submodelElementExists(PROPERTY)).thenReturn(false);
+        Assert.assertThrows(ResourceNotFoundException.class, () -> writeBehindPersistence.update(PROPERTY, property("1")));
+        Assert.assertEquals(0, writeBehindPersistence.getPendingChanges());
+    }
+}
@@ -23,6 +23,7 @@ import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -50,6 +51,7 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.api.Message;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.Request;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.Response;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.StatusCode;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Content;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.OutputModifier;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.operation.OperationHandle;
@@ -148,6 +150,7 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceExceptio
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ValueMappingException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.EventMessage;
+import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.access.ElementReadEventMessage;
 import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ElementCreateEventMessage;
 import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ValueChangeEventMessage;
 import de.fraunhofer.iosb.ilt.faaast.service.model.value.DataElementValue;
@@ -520,16 +523,23 @@ public class RequestHandlerManagerTest {
                 .content("foo".getBytes())
                 .build();
         String aasId = "aasid";
-        doReturn(new DefaultAssetAdministrationShell.Builder()
+        AtomicReference<AssetAdministrationShell> aas = new AtomicReference<>(new DefaultAssetAdministrationShell.Builder()
                 .id(aasId)
                 .assetInformation(new DefaultAssetInformation.Builder()
                         .defaultThumbnail(new DefaultResource.Builder()
                                 .path(file.getPath())
                                 .build())
                         .build())
-                .build())
+                .build());
+        doAnswer(x -> aas.get())
                 .when(persistence)
                 .getAssetAdministrationShell(eq(aasId), any());
+        doAnswer(x -> {
+            aas.set(x.getArgument(0));
+            return null;
+        })
+                .when(persistence)
+                .save(any(AssetAdministrationShell.class));
         doReturn(file.getContent())
                 .when(fileStorage)
                 .get(file.getPath());
@@ -574,9 +584,16 @@ public class RequestHandlerManagerTest {
                 .idShort("ExampleFile")
                 .value("file://TestFile.pdf")
                 .build();
-        doReturn(file)
+        AtomicReference<SubmodelElement> current = new AtomicReference<>(file);
+        doAnswer(x -> current.get())
                 .when(persistence)
                 .getSubmodelElement(any(SubmodelElementIdentifier.class), any());
+        doAnswer(x -> {
+            current.set(x.getArgument(1));
+            return null;
+        })
+                .when(persistence)
+                .update(any(SubmodelElementIdentifier.class), any());
         PutFileByPathRequest putFileByPathRequest = new PutFileByPathRequest.Builder()
                 .submodelId(environment.getSubmodels().get(0).getId())
                 .path(file.getIdShort())
@@ -646,6 +663,8 @@ public class RequestHandlerManagerTest {
 
     @Test
     public void testPostSubmodelReferenceRequest() throws Exception {
+        AssetAdministrationShell expectedAas = DeepCopyHelper.deepCopy(environment.getAssetAdministrationShells().get(0));
+        expectedAas.getSubmodels().add(SUBMODEL_ELEMENT_REF);
         doReturn(environment.getAssetAdministrationShells().get(0))
                 .when(persistence)
                 .getAssetAdministrationShell(eq(environment.getAssetAdministrationShells().get(0).getId()), any());
@@ -660,7 +679,7 @@ public class RequestHandlerManagerTest {
                 .payload(SUBMODEL_ELEMENT_REF)
                 .build();
         Assert.assertTrue(ResponseHelper.equalsIgnoringTime(expected, actual));
-        verify(persistence).save(environment.getAssetAdministrationShells().get(0));
+        verify(persistence).save(expectedAas);
     }
 
 
@@ -1120,6 +1139,62 @@ public class RequestHandlerManagerTest {
     }
 
 
+    @Test
+    public void testGetSubmodelElementByPathRequestValueOnly() throws Exception {
+        Submodel submodel = environment.getSubmodels().get(0);
+        PropertyValue propertyValue = new PropertyValue.Builder().value(new StringValue("test")).build();
+        doReturn(propertyValue)
+                .when(persistence)
+                .getValue(any());
+        OutputModifier outputModifier = new OutputModifier.Builder()
+                .content(Content.VALUE)
+                .build();
+        GetSubmodelElementByPathRequest request = new GetSubmodelElementByPathRequest.Builder()
+                .submodelId(submodel.getId())
+                .outputModifier(outputModifier)
+                .path(ReferenceHelper.toPath(SUBMODEL_ELEMENT_REF))
+                .internal()
+                .build();
+        GetSubmodelElementByPathResponse actual = manager.execute(request, context);
+
+        SubmodelElement expected_submodelElement = new DefaultProperty.Builder()
+                .idShort(SUBMODEL_ELEMENT.getIdShort())
+                .value("test")
+                .valueType(DataTypeDefXsd.STRING)
+                .build();
+        GetSubmodelElementByPathResponse expected = new GetSubmodelElementByPathResponse.Builder()
+                .payload(expected_submodelElement)
+                .statusCode(StatusCode.SUCCESS)
+                .build();
+        Assert.assertTrue(ResponseHelper.equalsIgnoringTime(expected, actual));
+        verify(persistence, never()).getSubmodelElement((SubmodelElementIdentifier) any(), any());
+        verify(messageBus, never()).publish(any());
+    }
+
+
+    @Test
+    public void testGetSubmodelElementByPathRequestValueOnlyPublishesElement() throws Exception {
+        Submodel submodel = environment.getSubmodels().get(0);
+        doReturn(SUBMODEL_ELEMENT)
+                .when(persistence)
+                .getSubmodelElement((SubmodelElementIdentifier) any(), any());
+        OutputModifier outputModifier = new OutputModifier.Builder()
+                .content(Content.VALUE)
+                .build();
+        GetSubmodelElementByPathRequest request = new GetSubmodelElementByPathRequest.Builder()
+                .submodelId(submodel.getId())
+                .outputModifier(outputModifier)
+                .path(ReferenceHelper.toPath(SUBMODEL_ELEMENT_REF))
+                .build();
+        GetSubmodelElementByPathResponse actual = manager.execute(request, context);
+
+        Assert.assertEquals(SUBMODEL_ELEMENT, actual.getPayload());
+        verify(persistence, never()).getValue(any());
+        verify(messageBus).publish(argThat(x -> x instanceof ElementReadEventMessage
+                && Objects.equals(SUBMODEL_ELEMENT, ((ElementReadEventMessage) x).getValue())));
+    }
+
+
     @Test
     public void testGetSubmodelElementByPathRequestWithAssetConnection() throws Exception {
         Submodel submodel = environment.getSubmodels().get(0);
@@ -1366,6 +1441,9 @@ public class RequestHandlerManagerTest {
         doReturn(true)
                 .when(assetConnectionManager)
                 .hasValueProvider(any());
+        doReturn(true)
+                .when(assetConnectionManager)
+                .hasValueProviderRecursive(any());
         doNothing()
                 .when(assetConnectionManager)
                 .setValue(any(), any());
@@ -1390,6 +1468,32 @@ public class RequestHandlerManagerTest {
     }
 
 
+    @Test
+    public void testPatchSubmodelElementValueByPathRequestWithoutValueProvider() throws Exception {
+        doReturn(environment.getSubmodels().get(0).getSubmodelElements().get(0))
+                .when(persistence)
+                .getSubmodelElement((SubmodelElementIdentifier) any(), any());
+        PropertyValue propertyValue = new PropertyValue.Builder()
+                .value(new StringValue("Test"))
+                .build();
+        PatchSubmodelElementValueByPathRequest request = new PatchSubmodelElementValueByPathRequest.Builder<ElementValue>()
+                .submodelId(environment.getSubmodels().get(0).getId())
+                .value(propertyValue)
+                .path(ReferenceHelper.toPath(SUBMODEL_ELEMENT_REF))
+                .build();
+
+        Response actual = manager.execute(request, context);
+        PatchSubmodelElementValueByPathResponse expected = new PatchSubmodelElementValueByPathResponse.Builder()
+                .statusCode(StatusCode.SUCCESS_NO_CONTENT)
+                .build();
+        Assert.assertTrue(ResponseHelper.equalsIgnoringTime(expected, actual));
+        verify(persistence).setValue(
+                any(),
+                eq(propertyValue));
+        verify(assetConnectionManager, never()).setValue(any(), any());
+    }
+
+
     @Test
     public void testDeleteSubmodelElementByPathRequest() throws Exception {
         Submodel submodel = environment.getSubmodels().get(0);
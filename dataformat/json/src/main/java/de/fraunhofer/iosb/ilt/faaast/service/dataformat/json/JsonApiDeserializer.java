@@ -16,6 +16,7 @@ package de.fraunhofer.iosb.ilt.faaast.service.dataformat.json;
 
 import com.fasterxml.jackson.annotation.JsonSetter;
 import com.fasterxml.jackson.annotation.Nulls;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.BeanDescription;
 import com.fasterxml.jackson.databind.DeserializationConfig;
@@ -129,6 +130,27 @@ public class JsonApiDeserializer implements ApiDeserializer {
     }
 
 
+    /**
+     * Deserializes the next value of a parser, e.g. of a {@link com.fasterxml.jackson.databind.util.TokenBuffer},
+     * without reading it into a string first.
+     *
+     * @param <T> the target type
+     * @param parser the parser to read from
+     * @param type the target type
+     * @return the deserialized value
+     * @throws DeserializationException if deserialization fails
+     */
+    public <T> T read(JsonParser parser, Class<T> type) throws DeserializationException {
+        Ensure.requireNonNull(parser, "parser must be non-null");
+        try {
+            return wrapper.getMapper().readValue(parser, type);
+        }
+        catch (IOException e) {
+            throw new DeserializationException(ERROR_MSG_DESERIALIZATION_FAILED, e);
+        }
+    }
+
+
     @Override
     public <T> T read(String json, JavaType type) throws DeserializationException {
         try {
@@ -14,6 +14,7 @@
  */
 package de.fraunhofer.iosb.ilt.faaast.service.dataformat.json;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.json.JsonMapper;
@@ -46,6 +47,7 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.value.ReferenceElementValue;
 import de.fraunhofer.iosb.ilt.faaast.service.util.CollectionHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
 import de.fraunhofer.iosb.ilt.faaast.service.util.ReflectionHelper;
+import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
 import org.eclipse.digitaltwin.aas4j.v3.model.Message;
@@ -110,6 +112,27 @@ public class JsonApiSerializer implements ApiSerializer {
     }
 
 
+    /**
+     * Serializes given obj directly to a generator using {@link OutputModifier#DEFAULT}, e.g. to a
+     * {@link com.fasterxml.jackson.databind.util.TokenBuffer}, without creating an intermediate string.
+     *
+     * @param generator the generator to write to
+     * @param obj the object to serialize
+     * @throws SerializationException if serialization fails
+     */
+    public void write(JsonGenerator generator, Object obj) throws SerializationException {
+        Ensure.requireNonNull(generator, "generator must be non-null");
+        try {
+            wrapper.getMapper().writer()
+                    .withAttribute(ModifierAwareSerializer.LEVEL, OutputModifier.DEFAULT)
+                    .writeValue(generator, obj);
+        }
+        catch (IOException e) {
+            throw new SerializationException("serialization failed", e);
+        }
+    }
+
+
     private String serializeNormal(Object obj, OutputModifier modifier) throws SerializationException, UnsupportedModifierException {
         if (obj != null && ElementValue.class.isAssignableFrom(obj.getClass())) {
             return valueOnlySerializer.write(obj, modifier.getLevel(), modifier.getExtent());
@@ -14,21 +14,31 @@
  */
 package de.fraunhofer.iosb.ilt.faaast.service.util;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.databind.type.TypeFactory;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Extent;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Level;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.paging.Page;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.paging.PagingMetadata;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.eclipse.digitaltwin.aas4j.v3.dataformat.json.JsonMapperFactory;
 import org.eclipse.digitaltwin.aas4j.v3.dataformat.json.SimpleAbstractTypeResolverFactory;
+import org.eclipse.digitaltwin.aas4j.v3.model.Blob;
+import org.eclipse.digitaltwin.aas4j.v3.model.Entity;
 import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
 import org.eclipse.digitaltwin.aas4j.v3.model.OperationVariable;
 import org.eclipse.digitaltwin.aas4j.v3.model.Referable;
+import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
+import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElement;
+import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElementCollection;
 import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultOperationVariable;
 
 
@@ -39,14 +49,19 @@ import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultOperationVariable;
  * <li>{@link org.eclipse.digitaltwin.aas4j.v3.model.Referable}
  * <li>{@link org.eclipse.digitaltwin.aas4j.v3.model.Environment}
  * </ul>
+ *
+ * <p>Model elements are copied by directly copying their fields, see {@link ModelCopier}. Only other objects passed to
+ * {@link #deepCopyAny(Object, JavaType)} are copied by serializing them to JSON and parsing them back.
  */
 public class DeepCopyHelper {
 
     private static final JsonMapper mapper;
+    private static final ModelCopier copier;
 
     static {
         mapper = new JsonMapperFactory().create(new SimpleAbstractTypeResolverFactory().create());
         mapper.setTypeFactory(mapper.getTypeFactory().withClassLoader(ImplementationManager.getClassLoader()));
+        copier = new ModelCopier(mapper);
     }
 
     private DeepCopyHelper() {}
@@ -61,9 +76,9 @@ public class DeepCopyHelper {
      */
     public static Environment deepCopy(Environment env) {
         try {
-            return mapper.readValue(mapper.writeValueAsString(env), Environment.class);
+            return copier.copy(env);
         }
-        catch (JsonProcessingException e) {
+        catch (IllegalStateException e) {
             throw new IllegalArgumentException("deep copy of AAS environment failed", e);
         }
     }
@@ -85,6 +100,65 @@ public class DeepCopyHelper {
     }
 
 
+    /**
+     * Create a deep copy of a {@link org.eclipse.digitaltwin.aas4j.v3.model.Referable} object in which all lists are
+     * unmodifiable, e.g. to share it with code that must not modify it.
+     *
+     * @param referable which should be deep copied
+     * @param <T> type of the referable
+     * @return the deep copied referable
+     * @throws RuntimeException when operation fails
+     */
+    public static <T extends Referable> T deepCopyReadOnly(T referable) {
+        return copier.copyReadOnly(referable);
+    }
+
+
+    /**
+     * Create a shallow copy of a {@link org.eclipse.digitaltwin.aas4j.v3.model.Referable} object, i.e. all properties
+     * of the copy, including lists, are shared with the original.
+     *
+     * @param referable which should be copied
+     * @param <T> type of the referable
+     * @return the shallow copy of the referable
+     * @throws RuntimeException when operation fails
+     */
+    public static <T extends Referable> T shallowCopy(T referable) {
+        return copier.copyShallow(referable);
+    }
+
+
+    /**
+     * Create a deep copy of a {@link org.eclipse.digitaltwin.aas4j.v3.model.Referable} object with a
+     * {@link QueryModifier} applied. The result is the same as first creating a deep copy and then applying the
+     * modifier, but content removed by the modifier is never copied, i.e.
+     * <ul>
+     * <li>if the extent is {@link Extent#WITHOUT_BLOB_VALUE}, values of {@link Blob}s are not copied
+     * <li>if the level is {@link Level#CORE}, values of {@link SubmodelElementCollection}s that are direct children of
+     * the referable are not copied
+     * </ul>
+     *
+     * @param referable which should be deep copied
+     * @param modifier the modifier to apply
+     * @param <T> type of the referable
+     * @return the deep copied referable
+     * @throws IllegalArgumentException if modifier is null
+     * @throws RuntimeException when operation fails
+     */
+    public static <T extends Referable> T deepCopyWithModifier(T referable, QueryModifier modifier) {
+        Ensure.requireNonNull(modifier, "modifier must be non-null");
+        if (Objects.isNull(referable)) {
+            return null;
+        }
+        boolean skipBlobValues = modifier.getExtent() == Extent.WITHOUT_BLOB_VALUE;
+        Set<Object> skipCollectionValues = modifier.getLevel() == Level.CORE
+                ? getDirectChildCollections(referable)
+                : Set.of();
+        return copier.copy(referable, (owner, value) -> (skipBlobValues && owner instanceof Blob && value instanceof byte[])
+                || (skipCollectionValues.contains(owner) && value == ((SubmodelElementCollection) owner).getValue()));
+    }
+
+
     /**
      * Create a deep copy of a {@link org.eclipse.digitaltwin.aas4j.v3.model.Referable} object.
      *
@@ -104,12 +178,7 @@ public class DeepCopyHelper {
             throw new IllegalArgumentException(
                     String.format("type mismatch - can not create deep copy of instance of type %s with target type %s", referable.getClass(), outputClass));
         }
-        try {
-            return mapper.readValue(mapper.writeValueAsString(referable), outputClass);
-        }
-        catch (JsonProcessingException e) {
-            throw new RuntimeException("deep copy of AAS environment failed", e);
-        }
+        return outputClass.cast(copier.copy(referable));
     }
 
 
@@ -210,7 +279,9 @@ public class DeepCopyHelper {
                     JavaType contentType = typeParams[0];
                     Page result = (Page) Page.builder()
                             .result((List) page.getContent().stream()
-                                    .map(LambdaExceptionHelper.rethrowFunction(x -> mapper.readValue(mapper.writeValueAsString(x), contentType)))
+                                    .map(LambdaExceptionHelper.rethrowFunction(x -> isModelElement(x)
+                                            ? copier.copy(x)
+                                            : mapper.readValue(mapper.writeValueAsString(x), contentType)))
                                     .collect(Collectors.toList()))
                             .build();
                     if (Objects.nonNull(page.getMetadata())) {
@@ -221,7 +292,9 @@ public class DeepCopyHelper {
                     return (T) result;
                 }
             }
-
+            if (isModelElement(original)) {
+                return copier.copy(original);
+            }
             String json = mapper.writeValueAsString(original);
             return mapper.readValue(json, type);
         }
@@ -229,4 +302,30 @@ public class DeepCopyHelper {
             throw new RuntimeException("Deep copy failed", e);
         }
     }
+
+
+    private static boolean isModelElement(Object obj) {
+        return obj instanceof Referable || obj instanceof Environment;
+    }
+
+
+    private static Set<Object> getDirectChildCollections(Referable referable) {
+        Collection<? extends SubmodelElement> children = null;
+        if (referable instanceof Submodel submodel) {
+            children = submodel.getSubmodelElements();
+        }
+        else if (referable instanceof SubmodelElementCollection submodelElementCollection) {
+            children = submodelElementCollection.getValue();
+        }
+        else if (referable instanceof Entity entity) {
+            children = entity.getStatements();
+        }
+        Set<Object> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (Objects.nonNull(children)) {
+            children.stream()
+                    .filter(SubmodelElementCollection.class::isInstance)
+                    .forEach(result::add);
+        }
+        return result;
+    }
 }
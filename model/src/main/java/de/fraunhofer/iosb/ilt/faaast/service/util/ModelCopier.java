@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.google.common.reflect.TypeToken;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiPredicate;
+
+
+/**
+ * Creates deep copies of object graphs by directly copying all fields instead of serializing to and parsing from
+ * JSON. The fields of each class are resolved once via reflection and cached.
+ *
+ * <p>The copy has the same content as a JSON round-trip using the AAS4J mapper would produce, i.e. fields that are
+ * null in the original keep the value set by the no-argument constructor of the class. Lists are always copied as
+ * {@link ArrayList}. Classes that cannot be copied field by field, i.e. classes without no-argument constructor or with
+ * final fields, are copied using the given JSON mapper as fallback. The fallback parses the JSON using the generic type
+ * of the field or list holding the value, and fails if the type arguments of a generic class cannot be resolved from it.
+ */
+final class ModelCopier {
+
+    private static final Set<Class<?>> IMMUTABLE_TYPES = Set.of(
+            String.class,
+            Boolean.class,
+            Character.class,
+            Byte.class,
+            Short.class,
+            Integer.class,
+            Long.class,
+            Float.class,
+            Double.class,
+            BigInteger.class,
+            BigDecimal.class,
+            UUID.class);
+    private static final TypeVariable<?> LIST_ELEMENT_TYPE = List.class.getTypeParameters()[0];
+
+    private final JsonMapper fallbackMapper;
+    private final ClassValue<ClassInfo> classInfos = new ClassValue<>() {
+        @Override
+        protected ClassInfo computeValue(Class<?> type) {
+            return ClassInfo.create(type);
+        }
+    };
+
+    ModelCopier(JsonMapper fallbackMapper) {
+        Ensure.requireNonNull(fallbackMapper, "fallbackMapper must be non-null");
+        this.fallbackMapper = fallbackMapper;
+    }
+
+
+    /**
+     * Creates a deep copy of an object.
+     *
+     * @param <T> the type of the object
+     * @param original the object to copy
+     * @return a deep copy of the object or null if original is null
+     * @throws IllegalStateException if copying fails
+     */
+    <T> T copy(T original) {
+        return copy(original, (owner, value) -> false);
+    }
+
+
+    /**
+     * Creates a deep copy of an object while skipping selected field values. Skipped fields are not copied and keep
+     * the value set by the no-argument constructor, i.e. the skipped content is never materialized.
+     *
+     * @param <T> the type of the object
+     * @param original the object to copy
+     * @param skip predicate called with the object currently being copied and the value of one of its fields, returns
+     *            true if the field should not be copied
+     * @return a deep copy of the object or null if original is null
+     * @throws IllegalStateException if copying fails
+     */
+    <T> T copy(T original, BiPredicate<Object, Object> skip) {
+        Ensure.requireNonNull(skip, "skip must be non-null");
+        return (T) copyValue(original, typeOf(original), skip, false);
+    }
+
+
+    /**
+     * Creates a deep copy of an object in which all lists are unmodifiable.
+     *
+     * @param <T> the type of the object
+     * @param original the object to copy
+     * @return a deep copy of the object or null if original is null
+     * @throws IllegalStateException if copying fails
+     */
+    <T> T copyReadOnly(T original) {
+        return (T) copyValue(original, typeOf(original), (owner, value) -> false, true);
+    }
+
+
+    /**
+     * Creates a shallow copy of an object, i.e. a new instance of the same class whose fields reference the same values
+     * as the fields of the original.
+     *
+     * @param <T> the type of the object
+     * @param original the object to copy
+     * @return a shallow copy of the object or null if original is null
+     * @throws IllegalStateException if the object cannot be copied field by field or copying fails
+     */
+    <T> T copyShallow(T original) {
+        if (Objects.isNull(original)) {
+            return null;
+        }
+        ClassInfo classInfo = classInfos.get(original.getClass());
+        if (!classInfo.isCopyable()) {
+            throw new IllegalStateException(String.format("shallow copy not supported (type: %s)", original.getClass()));
+        }
+        try {
+            Object result = classInfo.constructor.newInstance();
+            for (Field field: classInfo.fields) {
+                field.set(result, field.get(original));
+            }
+            return (T) result;
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(String.format("shallow copy failed (type: %s)", original.getClass()), e);
+        }
+    }
+
+
+    private Object copyValue(Object value, Type declaredType, BiPredicate<Object, Object> skip, boolean readOnly) {
+        if (Objects.isNull(value) || isImmutable(value)) {
+            return value;
+        }
+        if (value instanceof byte[] bytes) {
+            return bytes.clone();
+        }
+        if (value instanceof List<?> list) {
+            Type elementType = getElementType(declaredType);
+            List<Object> result = new ArrayList<>(list.size());
+            for (Object element: list) {
+                result.add(copyValue(element, elementType, skip, readOnly));
+            }
+            return readOnly
+                    ? Collections.unmodifiableList(result)
+                    : result;
+        }
+        ClassInfo classInfo = classInfos.get(value.getClass());
+        return classInfo.isCopyable()
+                ? copyFields(value, classInfo, skip, readOnly)
+                : copyViaJson(value, declaredType);
+    }
+
+
+    private Object copyFields(Object original, ClassInfo classInfo, BiPredicate<Object, Object> skip, boolean readOnly) {
+        try {
+            Object result = classInfo.constructor.newInstance();
+            for (Field field: classInfo.fields) {
+                Object value = field.get(original);
+                if (Objects.nonNull(value) && !skip.test(original, value)) {
+                    field.set(result, copyValue(value, field.getGenericType(), skip, readOnly));
+                }
+            }
+            return result;
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(String.format("deep copy failed (type: %s)", original.getClass()), e);
+        }
+    }
+
+
+    private Object copyViaJson(Object value, Type declaredType) {
+        JavaType type = resolveType(value.getClass(), declaredType);
+        try {
+            return fallbackMapper.readValue(fallbackMapper.writeValueAsString(value), type);
+        }
+        catch (JsonProcessingException e) {
+            throw new IllegalStateException(String.format("deep copy failed (type: %s)", type), e);
+        }
+    }
+
+
+    /**
+     * Resolves the full generic type of a value from its class and the declared type of the field or list holding it.
+     *
+     * @param type the class of the value
+     * @param declaredType the declared type
+     * @return the resolved type
+     * @throws IllegalStateException if type is generic and its type arguments cannot be resolved from declaredType
+     */
+    private JavaType resolveType(Class<?> type, Type declaredType) {
+        if (type.getTypeParameters().length == 0) {
+            return fallbackMapper.getTypeFactory().constructType(type);
+        }
+        Type result = null;
+        try {
+            result = TypeToken.of(declaredType).getSubtype(type).getType();
+        }
+        catch (IllegalArgumentException e) {
+            // declared type is a type variable or not a supertype of type, i.e. type arguments are unknown
+        }
+        if (Objects.isNull(result) || !isResolved(result)) {
+            throw new IllegalStateException(String.format(
+                    "deep copy failed, unable to resolve type arguments (type: %s, declared type: %s)",
+                    type,
+                    declaredType.getTypeName()));
+        }
+        return fallbackMapper.getTypeFactory().constructType(result);
+    }
+
+
+    private static Type typeOf(Object value) {
+        return Objects.nonNull(value)
+                ? value.getClass()
+                : Object.class;
+    }
+
+
+    private static Type getElementType(Type listType) {
+        if (listType instanceof ParameterizedType parameterizedType && parameterizedType.getRawType() == List.class) {
+            return parameterizedType.getActualTypeArguments()[0];
+        }
+        return TypeToken.of(listType).resolveType(LIST_ELEMENT_TYPE).getType();
+    }
+
+
+    private static boolean isResolved(Type type) {
+        if (type instanceof Class<?> rawType) {
+            return rawType.isArray()
+                    ? isResolved(rawType.getComponentType())
+                    : rawType.getTypeParameters().length == 0;
+        }
+        if (type instanceof ParameterizedType parameterizedType) {
+            for (Type argument: parameterizedType.getActualTypeArguments()) {
+                if (!isResolved(argument)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (type instanceof GenericArrayType arrayType) {
+            return isResolved(arrayType.getGenericComponentType());
+        }
+        if (type instanceof WildcardType wildcardType) {
+            return wildcardType.getLowerBounds().length == 0
+                    && wildcardType.getUpperBounds().length == 1
+                    && isResolved(wildcardType.getUpperBounds()[0]);
+        }
+        return false;
+    }
+
+
+    private static boolean isImmutable(Object value) {
+        return IMMUTABLE_TYPES.contains(value.getClass())
+                || value instanceof Enum
+                || value instanceof TemporalAccessor;
+    }
+
+    /**
+     * Cached information how to copy instances of a class field by field.
+     */
+    private static class ClassInfo {
+
+        private static final ClassInfo NOT_COPYABLE = new ClassInfo(null, null);
+
+        private final Constructor<?> constructor;
+        private final Field[] fields;
+
+        private ClassInfo(Constructor<?> constructor, Field[] fields) {
+            this.constructor = constructor;
+            this.fields = fields;
+        }
+
+
+        /**
+         * Resolves the constructor and all instance fields of a class including inherited ones. Classes of the JDK,
+         * classes without no-argument constructor and classes with final instance fields are not copyable field by
+         * field.
+         *
+         * @param type the class
+         * @return the information how to copy the class
+         */
+        private static ClassInfo create(Class<?> type) {
+            if (type.isArray()
+                    || type.isInterface()
+                    || Modifier.isAbstract(type.getModifiers())
+                    || type.getName().startsWith("java.")
+                    || type.getName().startsWith("javax.")) {
+                return NOT_COPYABLE;
+            }
+            try {
+                Constructor<?> constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                List<Field> fields = new ArrayList<>();
+                for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+                    for (Field field: current.getDeclaredFields()) {
+                        if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                            continue;
+                        }
+                        if (Modifier.isFinal(field.getModifiers())) {
+                            return NOT_COPYABLE;
+                        }
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+                return new ClassInfo(constructor, fields.toArray(Field[]::new));
+            }
+            catch (NoSuchMethodException | RuntimeException e) {
+                return NOT_COPYABLE;
+            }
+        }
+
+
+        private boolean isCopyable() {
+            return Objects.nonNull(constructor);
+        }
+    }
+}
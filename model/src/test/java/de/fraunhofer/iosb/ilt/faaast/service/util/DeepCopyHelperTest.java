@@ -16,8 +16,12 @@ package de.fraunhofer.iosb.ilt.faaast.service.util;
 
 import com.fasterxml.jackson.databind.type.TypeFactory;
 import de.fraunhofer.iosb.ilt.faaast.service.model.AASFull;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Extent;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Level;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.paging.Page;
 import java.util.List;
+import org.eclipse.digitaltwin.aas4j.v3.model.Blob;
 import org.eclipse.digitaltwin.aas4j.v3.model.DataTypeDefXsd;
 import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
 import org.eclipse.digitaltwin.aas4j.v3.model.Property;
@@ -25,9 +29,12 @@ import org.eclipse.digitaltwin.aas4j.v3.model.Range;
 import org.eclipse.digitaltwin.aas4j.v3.model.Referable;
 import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
 import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElement;
+import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElementCollection;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultBlob;
 import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultProperty;
 import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultRange;
 import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultSubmodel;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultSubmodelElementCollection;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -179,4 +186,118 @@ public class DeepCopyHelperTest {
         Assert.assertEquals(expected, actual);
     }
 
+
+    @Test
+    public void testDeepCopyIsIndependent() {
+        Submodel expected = new DefaultSubmodel.Builder()
+                .id("submodel1")
+                .submodelElements(new DefaultProperty.Builder()
+                        .idShort("property1")
+                        .value("some value")
+                        .build())
+                .build();
+        Submodel actual = DeepCopyHelper.deepCopy(expected);
+        Assert.assertEquals(expected, actual);
+        Assert.assertNotSame(expected.getSubmodelElements(), actual.getSubmodelElements());
+        Assert.assertNotSame(expected.getSubmodelElements().get(0), actual.getSubmodelElements().get(0));
+        ((Property) actual.getSubmodelElements().get(0)).setValue("other value");
+        Assert.assertEquals("some value", ((Property) expected.getSubmodelElements().get(0)).getValue());
+    }
+
+
+    @Test
+    public void testDeepCopyReadOnly() {
+        Submodel expected = new DefaultSubmodel.Builder()
+                .id("submodel1")
+                .submodelElements(new DefaultSubmodelElementCollection.Builder()
+                        .idShort("collection1")
+                        .value(new DefaultProperty.Builder()
+                                .idShort("property1")
+                                .build())
+                        .build())
+                .build();
+        Submodel actual = DeepCopyHelper.deepCopyReadOnly(expected);
+        Assert.assertEquals(expected, actual);
+        Assert.assertThrows(UnsupportedOperationException.class, () -> actual.getSubmodelElements().clear());
+        Assert.assertThrows(UnsupportedOperationException.class,
+                () -> ((SubmodelElementCollection) actual.getSubmodelElements().get(0)).getValue().clear());
+        expected.getSubmodelElements().clear();
+        Assert.assertEquals(1, actual.getSubmodelElements().size());
+    }
+
+
+    @Test
+    public void testShallowCopy() {
+        Submodel expected = new DefaultSubmodel.Builder()
+                .id("submodel1")
+                .submodelElements(new DefaultProperty.Builder()
+                        .idShort("property1")
+                        .build())
+                .build();
+        Submodel actual = DeepCopyHelper.shallowCopy(expected);
+        Assert.assertEquals(expected, actual);
+        Assert.assertNotSame(expected, actual);
+        Assert.assertSame(expected.getSubmodelElements(), actual.getSubmodelElements());
+        actual.setId("submodel2");
+        Assert.assertEquals("submodel1", expected.getId());
+    }
+
+
+    @Test
+    public void testDeepCopyNullListBecomesEmpty() {
+        Submodel original = new DefaultSubmodel.Builder()
+                .id("submodel1")
+                .build();
+        original.setSubmodelElements(null);
+        Submodel actual = DeepCopyHelper.deepCopy(original);
+        Assert.assertEquals(List.of(), actual.getSubmodelElements());
+    }
+
+
+    @Test
+    public void testDeepCopyWithModifierWithoutBlobValue() {
+        Submodel original = new DefaultSubmodel.Builder()
+                .id("submodel1")
+                .submodelElements(new DefaultSubmodelElementCollection.Builder()
+                        .idShort("collection1")
+                        .value(new DefaultBlob.Builder()
+                                .idShort("blob1")
+                                .contentType("application/octet-stream")
+                                .value("foo".getBytes())
+                                .build())
+                        .build())
+                .build();
+        Submodel expected = DeepCopyHelper.deepCopy(original);
+        ((Blob) ((SubmodelElementCollection) expected.getSubmodelElements().get(0)).getValue().get(0)).setValue(null);
+        Submodel actual = DeepCopyHelper.deepCopyWithModifier(original, new QueryModifier.Builder()
+                .extend(Extent.WITHOUT_BLOB_VALUE)
+                .build());
+        Assert.assertEquals(expected, actual);
+        Assert.assertArrayEquals("foo".getBytes(),
+                ((Blob) ((SubmodelElementCollection) original.getSubmodelElements().get(0)).getValue().get(0)).getValue());
+    }
+
+
+    @Test
+    public void testDeepCopyWithModifierLevelCore() {
+        Submodel original = new DefaultSubmodel.Builder()
+                .id("submodel1")
+                .submodelElements(new DefaultSubmodelElementCollection.Builder()
+                        .idShort("collection1")
+                        .value(new DefaultSubmodelElementCollection.Builder()
+                                .idShort("collection2")
+                                .value(new DefaultProperty.Builder()
+                                        .idShort("property1")
+                                        .build())
+                                .build())
+                        .build())
+                .build();
+        Submodel expected = DeepCopyHelper.deepCopy(original);
+        ((SubmodelElementCollection) expected.getSubmodelElements().get(0)).getValue().clear();
+        Submodel actual = DeepCopyHelper.deepCopyWithModifier(original, new QueryModifier.Builder()
+                .level(Level.CORE)
+                .build());
+        Assert.assertEquals(expected, actual);
+        Assert.assertEquals(1, ((SubmodelElementCollection) original.getSubmodelElements().get(0)).getValue().size());
+    }
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.util;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class ModelCopierTest {
+
+    private final ModelCopier copier = new ModelCopier(new JsonMapper());
+
+    @Test
+    public void testFallbackUsesGenericFieldType() {
+        Holder expected = new Holder();
+        expected.value = new Wrapper<>(1L);
+        expected.values = new ArrayList<>(List.of(new Wrapper<>(2L)));
+        Holder actual = copier.copy(expected);
+        Assert.assertNotSame(expected.value, actual.value);
+        Assert.assertEquals(Long.valueOf(1L), actual.value.getValue());
+        Assert.assertEquals(Long.valueOf(2L), actual.values.get(0).getValue());
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void testFallbackFailsOnUnresolvedTypeArguments() {
+        Holder expected = new Holder();
+        expected.untyped = new Wrapper<>(1L);
+        copier.copy(expected);
+    }
+
+    private static class Holder {
+
+        private Wrapper<Long> value;
+        private List<Wrapper<Long>> values;
+        private Object untyped;
+    }
+
+    private static class Wrapper<T> {
+
+        private final T value;
+
+        @JsonCreator
+        Wrapper(@JsonProperty("value") T value) {
+            this.value = value;
+        }
+
+
+        public T getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.embedded;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+
+
+/**
+ * Stores the JSON representation of all identifiables of one type in an {@link MVStore}.
+ *
+ * <p>Each identifiable is assigned a sequence number when it is added. Identifiables are returned in the order of their
+ * sequence numbers, i.e. in insertion order, and replacing an identifiable keeps its sequence number. Sequence numbers
+ * are used as paging cursors as they never change.
+ *
+ * <p>Secondary indexes map the keys extracted from the JSON representation of an identifiable, e.g. its semanticId, to
+ * the sequence numbers of all identifiables with that key. Each index is stored as a separate map with entries of the
+ * form {@code key\0id -> sequence number} so that all identifiables with a given key can be found by a range scan.
+ */
+class IdentifiableStore {
+
+    private static final char SEPARATOR = '\0';
+
+    private final MVStore store;
+    private final String name;
+    private final MVMap<String, String> values;
+    private final MVMap<String, Long> sequenceNumbers;
+    private final MVMap<Long, String> ids;
+    private final Map<String, SecondaryIndex> indexes;
+
+    IdentifiableStore(MVStore store, String name) {
+        Ensure.requireNonNull(store, "store must be non-null");
+        Ensure.requireNonNull(name, "name must be non-null");
+        this.store = store;
+        this.name = name;
+        this.values = store.openMap(name);
+        this.sequenceNumbers = store.openMap(name + ".sequenceNumbers");
+        this.ids = store.openMap(name + ".ids");
+        this.indexes = new LinkedHashMap<>();
+    }
+
+
+    /**
+     * Adds a secondary index. Must be called before any identifiable is added.
+     *
+     * @param index the name of the index
+     * @param keyExtractor function to extract the keys from the JSON representation of an identifiable
+     */
+    void addIndex(String index, Function<JsonNode, Collection<String>> keyExtractor) {
+        indexes.put(index, new SecondaryIndex(store.openMap(name + ".index." + index), keyExtractor));
+    }
+
+
+    boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+
+    boolean contains(String id) {
+        return values.containsKey(id);
+    }
+
+
+    /**
+     * Gets the JSON representation of an identifiable.
+     *
+     * @param id the id
+     * @return the JSON representation or null if there is no such identifiable
+     */
+    String get(String id) {
+        return values.get(id);
+    }
+
+
+    /**
+     * Gets the JSON representation of an identifiable by its sequence number.
+     *
+     * @param sequenceNumber the sequence number
+     * @return the JSON representation or null if there is no such identifiable
+     */
+    String get(long sequenceNumber) {
+        String id = ids.get(sequenceNumber);
+        return Objects.nonNull(id) ? values.get(id) : null;
+    }
+
+
+    /**
+     * Gets the id of an identifiable by its sequence number.
+     *
+     * @param sequenceNumber the sequence number
+     * @return the id or null if there is no such identifiable
+     */
+    String getId(long sequenceNumber) {
+        return ids.get(sequenceNumber);
+    }
+
+
+    /**
+     * Gets the sequence number of an identifiable.
+     *
+     * @param id the id
+     * @return the sequence number or -1 if there is no such identifiable
+     */
+    long getSequenceNumber(String id) {
+        Long result = sequenceNumbers.get(id);
+        return Objects.nonNull(result) ? result : -1;
+    }
+
+
+    /**
+     * Adds or replaces an identifiable.
+     *
+     * @param id the id
+     * @param json the JSON representation
+     */
+    void put(String id, JsonNode json) {
+        Long sequenceNumber = sequenceNumbers.get(id);
+        if (Objects.nonNull(sequenceNumber)) {
+            removeFromIndexes(id, values.get(id));
+        }
+        else {
+            Long last = ids.lastKey();
+            sequenceNumber = Objects.nonNull(last) ? last + 1 : 0;
+            sequenceNumbers.put(id, sequenceNumber);
+            ids.put(sequenceNumber, id);
+        }
+        values.put(id, json.toString());
+        for (SecondaryIndex index: indexes.values()) {
+            index.add(id, sequenceNumber, json);
+        }
+    }
+
+
+    /**
+     * Removes an identifiable.
+     *
+     * @param id the id
+     * @return true if the identifiable has been removed, false if there is no such identifiable
+     */
+    boolean remove(String id) {
+        String json = values.remove(id);
+        if (Objects.isNull(json)) {
+            return false;
+        }
+        ids.remove(sequenceNumbers.remove(id));
+        removeFromIndexes(id, json);
+        return true;
+    }
+
+
+    void clear() {
+        values.clear();
+        sequenceNumbers.clear();
+        ids.clear();
+        indexes.values().forEach(SecondaryIndex::clear);
+    }
+
+
+    /**
+     * Gets the sequence numbers of all identifiables after the given sequence number in ascending order.
+     *
+     * @param after the sequence number to start after, -1 to start from the beginning
+     * @return the sequence numbers
+     */
+    Stream<Long> getSequenceNumbers(long after) {
+        Iterator<Long> iterator = ids.keyIterator(after + 1);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+    }
+
+
+    /**
+     * Gets the sequence numbers of all identifiables with any of the given keys in a secondary index in ascending
+     * order. As keys are extracted from the JSON representation, the result may contain false positives, e.g. when
+     * comparing references that only differ in key types, and must be filtered by the caller.
+     *
+     * @param index the name of the index
+     * @param keys the keys
+     * @return the sequence numbers
+     */
+    Set<Long> lookup(String index, Collection<String> keys) {
+        Ensure.require(indexes.containsKey(index), String.format("unknown index (name: %s)", index));
+        Set<Long> result = new TreeSet<>();
+        for (String key: keys) {
+            result.addAll(indexes.get(index).get(key));
+        }
+        return result;
+    }
+
+
+    private void removeFromIndexes(String id, String json) {
+        if (indexes.isEmpty()) {
+            return;
+        }
+        JsonNode node = JsonHelper.parse(json);
+        for (SecondaryIndex index: indexes.values()) {
+            index.remove(id, node);
+        }
+    }
+
+    private static class SecondaryIndex {
+
+        private final MVMap<String, Long> entries;
+        private final Function<JsonNode, Collection<String>> keyExtractor;
+
+        SecondaryIndex(MVMap<String, Long> entries, Function<JsonNode, Collection<String>> keyExtractor) {
+            this.entries = entries;
+            this.keyExtractor = keyExtractor;
+        }
+
+
+        void add(String id, long sequenceNumber, JsonNode json) {
+            for (String key: keyExtractor.apply(json)) {
+                entries.put(key + SEPARATOR + id, sequenceNumber);
+            }
+        }
+
+
+        void remove(String id, JsonNode json) {
+            for (String key: keyExtractor.apply(json)) {
+                entries.remove(key + SEPARATOR + id);
+            }
+        }
+
+
+        List<Long> get(String key) {
+            String prefix = key + SEPARATOR;
+            List<Long> result = new ArrayList<>();
+            Iterator<String> iterator = entries.keyIterator(prefix);
+            while (iterator.hasNext()) {
+                String entry = iterator.next();
+                if (!entry.startsWith(prefix)) {
+                    break;
+                }
+                result.add(entries.get(entry));
+            }
+            return result;
+        }
+
+
+        void clear() {
+            entries.clear();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.embedded;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceHelper;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import org.eclipse.digitaltwin.aas4j.v3.model.Key;
+import org.eclipse.digitaltwin.aas4j.v3.model.Reference;
+
+
+/**
+ * Helper class for working with the JSON representation of AAS elements as stored by {@link PersistenceEmbedded}.
+ */
+class JsonHelper {
+
+    static final String MODEL_TYPE = "modelType";
+    static final String ID_SHORT = "idShort";
+    static final String KEYS = "keys";
+    static final String VALUE = "value";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String KEY_SEPARATOR = "\u0001";
+    private static final TypeReference<List<String>> STRING_LIST = new TypeReference<>() {};
+
+    private JsonHelper() {}
+
+
+    /**
+     * Parses a JSON object. As all JSON is written by the persistence itself, parsing errors indicate a corrupted store
+     * and are therefore not expected to be handled by the caller.
+     *
+     * @param json the JSON
+     * @return the parsed object
+     * @throws UncheckedIOException if parsing fails
+     */
+    static ObjectNode parse(String json) {
+        try {
+            return (ObjectNode) MAPPER.readTree(json);
+        }
+        catch (JsonProcessingException e) {
+            throw new UncheckedIOException("error parsing stored JSON", e);
+        }
+    }
+
+
+    /**
+     * Parses a JSON array of strings.
+     *
+     * @param json the JSON
+     * @return the parsed list
+     * @throws UncheckedIOException if parsing fails
+     */
+    static List<String> parseList(String json) {
+        try {
+            return MAPPER.readValue(json, STRING_LIST);
+        }
+        catch (JsonProcessingException e) {
+            throw new UncheckedIOException("error parsing stored JSON", e);
+        }
+    }
+
+
+    /**
+     * Serializes a list of strings as JSON array.
+     *
+     * @param list the list
+     * @return the JSON
+     */
+    static String writeList(List<String> list) {
+        try {
+            return MAPPER.writeValueAsString(list);
+        }
+        catch (JsonProcessingException e) {
+            throw new UncheckedIOException("error serializing JSON", e);
+        }
+    }
+
+
+    /**
+     * Gets the name of the property holding the child elements of an element, e.g. {@code value} for a
+     * SubmodelElementCollection.
+     *
+     * @param node the JSON representation of the element
+     * @return the name of the property or null if the element cannot have children
+     */
+    static String getChildrenProperty(JsonNode node) {
+        switch (node.path(MODEL_TYPE).asText()) {
+            case "Submodel":
+                return "submodelElements";
+            case "SubmodelElementCollection":
+            case "SubmodelElementList":
+                return VALUE;
+            case "Entity":
+                return "statements";
+            case "AnnotatedRelationshipElement":
+                return "annotations";
+            default:
+                return null;
+        }
+    }
+
+
+    static boolean isList(JsonNode node) {
+        return Objects.equals(node.path(MODEL_TYPE).asText(), "SubmodelElementList");
+    }
+
+
+    /**
+     * Creates the key of a reference used in secondary indexes. Only the values of the keys are taken into account.
+     *
+     * @param reference the reference
+     * @return the key or null if the reference is null or empty
+     */
+    static String referenceKey(Reference reference) {
+        if (ReferenceHelper.isNullOrEmpty(reference)) {
+            return null;
+        }
+        return reference.getKeys().stream()
+                .map(Key::getValue)
+                .collect(Collectors.joining(KEY_SEPARATOR));
+    }
+
+
+    /**
+     * Creates the key of the JSON representation of a reference used in secondary indexes, see
+     * {@link #referenceKey(Reference)}.
+     *
+     * @param reference the JSON representation of the reference
+     * @return the key or null if the reference is missing or empty
+     */
+    static String referenceKey(JsonNode reference) {
+        if (Objects.isNull(reference) || !reference.path(KEYS).isArray() || reference.path(KEYS).isEmpty()) {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        reference.path(KEYS).forEach(x -> values.add(x.path(VALUE).asText()));
+        return String.join(KEY_SEPARATOR, values);
+    }
+
+
+    /**
+     * Creates the key of a specific asset id used in secondary indexes.
+     *
+     * @param name the name of the specific asset id
+     * @param value the value of the specific asset id
+     * @return the key
+     */
+    static String specificAssetIdKey(String name, String value) {
+        return name + KEY_SEPARATOR + value;
+    }
+}
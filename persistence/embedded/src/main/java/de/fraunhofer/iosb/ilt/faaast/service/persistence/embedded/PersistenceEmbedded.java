@@ -0,0 +1,925 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.embedded;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import de.fraunhofer.iosb.ilt.faaast.service.ServiceContext;
+import de.fraunhofer.iosb.ilt.faaast.service.config.CoreConfig;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.DeserializationException;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.SerializationException;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.json.JsonApiDeserializer;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.json.JsonApiSerializer;
+import de.fraunhofer.iosb.ilt.faaast.service.exception.ConfigurationInitializationException;
+import de.fraunhofer.iosb.ilt.faaast.service.exception.InvalidConfigurationException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.IdShortPath;
+import de.fraunhofer.iosb.ilt.faaast.service.model.SubmodelElementIdentifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.operation.OperationHandle;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.paging.Page;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.paging.PagingInfo;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.paging.PagingMetadata;
+import de.fraunhofer.iosb.ilt.faaast.service.model.asset.AssetIdentification;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotAContainerElementException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.UnsupportedModifierException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.visitor.AssetAdministrationShellElementWalker;
+import de.fraunhofer.iosb.ilt.faaast.service.model.visitor.DefaultAssetAdministrationShellElementVisitor;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.AssetAdministrationShellSearchCriteria;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.ConceptDescriptionSearchCriteria;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.Persistence;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.SubmodelElementSearchCriteria;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.SubmodelSearchCriteria;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.util.PersistenceHelper;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.util.QueryModifierHelper;
+import de.fraunhofer.iosb.ilt.faaast.service.util.ElementValueHelper;
+import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
+import de.fraunhofer.iosb.ilt.faaast.service.util.LambdaExceptionHelper;
+import de.fraunhofer.iosb.ilt.faaast.service.util.LambdaExceptionHelper.RunnableWithExceptions;
+import de.fraunhofer.iosb.ilt.faaast.service.util.LambdaExceptionHelper.SupplierWithExceptions;
+import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceBuilder;
+import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceHelper;
+import de.fraunhofer.iosb.ilt.faaast.service.util.StringHelper;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.eclipse.digitaltwin.aas4j.v3.model.AssetAdministrationShell;
+import org.eclipse.digitaltwin.aas4j.v3.model.ConceptDescription;
+import org.eclipse.digitaltwin.aas4j.v3.model.DataElement;
+import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
+import org.eclipse.digitaltwin.aas4j.v3.model.HasSemantics;
+import org.eclipse.digitaltwin.aas4j.v3.model.OperationResult;
+import org.eclipse.digitaltwin.aas4j.v3.model.Referable;
+import org.eclipse.digitaltwin.aas4j.v3.model.Reference;
+import org.eclipse.digitaltwin.aas4j.v3.model.SpecificAssetId;
+import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
+import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElement;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.h2.mvstore.MVStoreException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Implementation of {@link de.fraunhofer.iosb.ilt.faaast.service.persistence.Persistence} based on an embedded
+ * <a href="https://www.h2database.com/html/mvstore.html">MVStore</a>, i.e. a transactional key-value store persisted
+ * to a single file.
+ *
+ * <p>Asset administration shells, submodels and concept descriptions are stored by id, see {@link IdentifiableStore},
+ * while submodel elements are stored separately by submodel id and idShort path, see {@link SubmodelElementStore}.
+ * Searching asset administration shells by asset ids and submodels by semanticId is backed by secondary indexes. As
+ * data is read from the file on demand, startup time does not depend on the size of the model.
+ *
+ * <p>Each modification is committed as a single transaction, i.e. after a modification returns it is persisted
+ * entirely and a failing modification is rolled back entirely. Reads are executed in parallel while modifications are
+ * serialized.
+ */
+public class PersistenceEmbedded implements Persistence<PersistenceEmbeddedConfig> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersistenceEmbedded.class);
+    private static final String MSG_RESOURCE_NOT_FOUND_BY_ID = "resource not found (id %s)";
+    private static final String MSG_ID_NOT_NULL = "id must be non-null";
+    private static final String MSG_MODIFIER_NOT_NULL = "modifier must be non-null";
+    private static final String MSG_CRITERIA_NOT_NULL = "criteria must be non-null";
+    private static final String MSG_PAGING_NOT_NULL = "paging must be non-null";
+    private static final String INDEX_GLOBAL_ASSET_ID = "globalAssetId";
+    private static final String INDEX_SPECIFIC_ASSET_ID = "specificAssetId";
+    private static final String INDEX_SUBMODEL = "submodel";
+    private static final String INDEX_SEMANTIC_ID = "semanticId";
+    private static final String CURSOR_SEPARATOR = ":";
+
+    private final JsonApiSerializer serializer = new JsonApiSerializer();
+    private final JsonApiDeserializer deserializer = new JsonApiDeserializer();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private PersistenceEmbeddedConfig config;
+    private MVStore store;
+    private IdentifiableStore assetAdministrationShells;
+    private IdentifiableStore submodels;
+    private IdentifiableStore conceptDescriptions;
+    private SubmodelElementStore submodelElements;
+    private MVMap<String, String> operationResults;
+
+    @Override
+    public void init(CoreConfig coreConfig, PersistenceEmbeddedConfig config, ServiceContext serviceContext) throws ConfigurationInitializationException {
+        Ensure.requireNonNull(config, "config must be non-null");
+        this.config = config;
+        try {
+            Paths.get(config.getDataDir()).toRealPath();
+        }
+        catch (IOException | InvalidPathException | NullPointerException e) {
+            throw new ConfigurationInitializationException(String.format("dataDir is not a valid directory (dataDir: %s)", config.getDataDir()), e);
+        }
+    }
+
+
+    @Override
+    public PersistenceEmbeddedConfig asConfig() {
+        return config;
+    }
+
+
+    @Override
+    public void start() throws PersistenceException {
+        try {
+            store = new MVStore.Builder()
+                    .fileName(config.getFilePath().toString())
+                    .cacheSize(config.getCacheSize())
+                    .autoCommitDisabled()
+                    .open();
+        }
+        catch (MVStoreException e) {
+            throw new PersistenceException(String.format("opening store failed (file: %s)", config.getFilePath()), e);
+        }
+        assetAdministrationShells = new IdentifiableStore(store, "assetAdministrationShells");
+        assetAdministrationShells.addIndex(INDEX_GLOBAL_ASSET_ID, PersistenceEmbedded::getGlobalAssetIdKeys);
+        assetAdministrationShells.addIndex(INDEX_SPECIFIC_ASSET_ID, PersistenceEmbedded::getSpecificAssetIdKeys);
+        assetAdministrationShells.addIndex(INDEX_SUBMODEL, PersistenceEmbedded::getSubmodelKeys);
+        submodels = new IdentifiableStore(store, "submodels");
+        submodels.addIndex(INDEX_SEMANTIC_ID, PersistenceEmbedded::getSemanticIdKeys);
+        conceptDescriptions = new IdentifiableStore(store, "conceptDescriptions");
+        submodelElements = new SubmodelElementStore(store);
+        operationResults = store.openMap("operationResults");
+        if (config.isOverride()) {
+            deleteAll();
+        }
+        if (assetAdministrationShells.isEmpty() && submodels.isEmpty() && conceptDescriptions.isEmpty()) {
+            LOGGER.debug("store is empty, loading initial model (file: {})", config.getFilePath());
+            try {
+                saveAll(config.loadInitialModel());
+            }
+            catch (InvalidConfigurationException | DeserializationException e) {
+                throw new PersistenceException("error loading initial model", e);
+            }
+        }
+    }
+
+
+    @Override
+    public void stop() {
+        if (Objects.nonNull(store) && !store.isClosed()) {
+            store.close();
+        }
+    }
+
+
+    @Override
+    public AssetAdministrationShell getAssetAdministrationShell(String id, QueryModifier modifier) throws ResourceNotFoundException, PersistenceException {
+        Ensure.requireNonNull(id, MSG_ID_NOT_NULL);
+        Ensure.requireNonNull(modifier, MSG_MODIFIER_NOT_NULL);
+        String json = read(() -> assetAdministrationShells.get(id));
+        return prepareResult(deserialize(requireFound(json, id), AssetAdministrationShell.class), modifier);
+    }
+
+
+    @Override
+    public Page<Reference> getSubmodelRefs(String aasId, PagingInfo paging) throws ResourceNotFoundException, PersistenceException {
+        Ensure.requireNonNull(paging, MSG_PAGING_NOT_NULL);
+        List<Reference> references = getAssetAdministrationShell(aasId, QueryModifier.MINIMAL).getSubmodels();
+        int from = (int) Math.min(parsePosition(paging.getCursor()) + 1, references.size());
+        List<Map.Entry<String, Reference>> entries = new ArrayList<>();
+        for (int i = from; i < references.size(); i++) {
+            entries.add(Map.entry(String.valueOf(i), references.get(i)));
+        }
+        return preparePagedResult(entries.stream(), paging);
+    }
+
+
+    @Override
+    public boolean assetAdministrationShellExists(String id) {
+        return read(() -> assetAdministrationShells.contains(id));
+    }
+
+
+    @Override
+    public boolean submodelExists(String id) {
+        return read(() -> submodels.contains(id));
+    }
+
+
+    @Override
+    public boolean conceptDescriptionExists(String id) {
+        return read(() -> conceptDescriptions.contains(id));
+    }
+
+
+    @Override
+    public boolean submodelElementExists(SubmodelElementIdentifier identifier) {
+        Ensure.requireNonNull(identifier, "identifier must be non-null");
+        return !identifier.getIdShortPath().isEmpty()
+                && read(() -> submodels.contains(identifier.getSubmodelId())
+                        && submodelElements.contains(identifier.getSubmodelId(), identifier.getIdShortPath()));
+    }
+
+
+    @Override
+    public boolean submodelRefExists(String aasId, String submodelId) {
+        String key = JsonHelper.referenceKey(ReferenceBuilder.forSubmodel(submodelId));
+        return read(() -> {
+            long sequenceNumber = assetAdministrationShells.getSequenceNumber(aasId);
+            return sequenceNumber >= 0
+                    && assetAdministrationShells.lookup(INDEX_SUBMODEL, List.of(key)).contains(sequenceNumber);
+        });
+    }
+
+
+    @Override
+    public Submodel getSubmodel(String id, QueryModifier modifier) throws ResourceNotFoundException, PersistenceException {
+        Ensure.requireNonNull(id, MSG_ID_NOT_NULL);
+        Ensure.requireNonNull(modifier, MSG_MODIFIER_NOT_NULL);
+        String json = read(() -> getSubmodelWithSubmodelElements(id));
+        return prepareResult(deserialize(requireFound(json, id), Submodel.class), modifier);
+    }
+
+
+    @Override
+    public ConceptDescription getConceptDescription(String id, QueryModifier modifier) throws ResourceNotFoundException, PersistenceException {
+        Ensure.requireNonNull(id, MSG_ID_NOT_NULL);
+        Ensure.requireNonNull(modifier, MSG_MODIFIER_NOT_NULL);
+        String json = read(() -> conceptDescriptions.get(id));
+        return prepareResult(deserialize(requireFound(json, id), ConceptDescription.class), modifier);
+    }
+
+
+    @Override
+    public SubmodelElement getSubmodelElement(SubmodelElementIdentifier identifier, QueryModifier modifier) throws ResourceNotFoundException, PersistenceException {
+        Ensure.requireNonNull(identifier, "identifier must be non-null");
+        Ensure.requireNonNull(modifier, MSG_MODIFIER_NOT_NULL);
+        ObjectNode node = read(() -> submodelElements.getWithChildren(identifier.getSubmodelId(), identifier.getIdShortPath()));
+        if (Objects.isNull(node)) {
+            throw new ResourceNotFoundException(identifier.toReference());
+        }
+        return prepareResult(deserialize(node.toString(), SubmodelElement.class), modifier);
+    }
+
+
+    @Override
+    public OperationResult getOperationResult(OperationHandle handle) throws ResourceNotFoundException, PersistenceException {
+        Ensure.requireNonNull(handle, "handle must be non-null");
+        String json = read(() -> operationResults.get(handle.getHandleId()));
+        if (Objects.isNull(json)) {
+            throw new ResourceNotFoundException(String.format("Operation handle does not exist (handleId: %s)", handle.getHandleId()));
+        }
+        return deserialize(json, OperationResult.class);
+    }
+
+
+    @Override
+    public Page<AssetAdministrationShell> findAssetAdministrationShells(AssetAdministrationShellSearchCriteria criteria, QueryModifier modifier, PagingInfo paging)
+            throws PersistenceException {
+        Ensure.requireNonNull(criteria, MSG_CRITERIA_NOT_NULL);
+        Ensure.requireNonNull(modifier, MSG_MODIFIER_NOT_NULL);
+        Ensure.requireNonNull(paging, MSG_PAGING_NOT_NULL);
+        List<String> globalAssetIds = new ArrayList<>();
+        List<SpecificAssetId> specificAssetIds = new ArrayList<>();
+        if (criteria.isAssetIdsSet() && Objects.nonNull(criteria.getAssetIds())) {
+            PersistenceHelper.splitAssetIdsIntoGlobalAndSpecificIds(criteria.getAssetIds(), globalAssetIds, specificAssetIds);
+        }
+        Page<AssetAdministrationShell> result = read(() -> {
+            List<Set<Long>> candidates = new ArrayList<>();
+            if (!globalAssetIds.isEmpty()) {
+                candidates.add(assetAdministrationShells.lookup(INDEX_GLOBAL_ASSET_ID, globalAssetIds));
+            }
+            if (!specificAssetIds.isEmpty()) {
+                candidates.add(assetAdministrationShells.lookup(INDEX_SPECIFIC_ASSET_ID, specificAssetIds.stream()
+                        .map(x -> JsonHelper.specificAssetIdKey(x.getName(), x.getValue()))
+                        .collect(Collectors.toList())));
+            }
+            Stream<Map.Entry<String, AssetAdministrationShell>> temp = lookup(assetAdministrationShells, candidates, paging, AssetAdministrationShell.class);
+            if (criteria.isIdShortSet()) {
+                temp = temp.filter(x -> Objects.equals(x.getValue().getIdShort(), criteria.getIdShort()));
+            }
+            if (criteria.isAssetIdsSet()) {
+                temp = temp.filter(x -> matchesAssetIds(x.getValue(), criteria.getAssetIds()));
+            }
+            return preparePagedResult(temp, paging);
+        });
+        return prepareResult(result, modifier);
+    }
+
+
+    @Override
+    public Page<Submodel> findSubmodels(SubmodelSearchCriteria criteria, QueryModifier modifier, PagingInfo paging) throws PersistenceException {
+        Ensure.requireNonNull(criteria, MSG_CRITERIA_NOT_NULL);
+        Ensure.requireNonNull(modifier, MSG_MODIFIER_NOT_NULL);
+        Ensure.requireNonNull(paging, MSG_PAGING_NOT_NULL);
+        Page<Submodel> result = read(() -> {
+            List<Set<Long>> candidates = new ArrayList<>();
+            String semanticIdKey = criteria.isSemanticIdSet()
+                    ? JsonHelper.referenceKey(criteria.getSemanticId())
+                    : null;
+            if (Objects.nonNull(semanticIdKey)) {
+                candidates.add(submodels.lookup(INDEX_SEMANTIC_ID, List.of(semanticIdKey)));
+            }
+            // filtering only requires the submodels themselves, their elements are only fetched for the current page
+            Stream<Map.Entry<String, Submodel>> temp = lookup(submodels, candidates, paging, Submodel.class);
+            if (criteria.isIdShortSet()) {
+                temp = temp.filter(x -> Objects.equals(x.getValue().getIdShort(), criteria.getIdShort()));
+            }
+            if (criteria.isSemanticIdSet()) {
+                temp = filterBySemanticId(temp, criteria.getSemanticId());
+            }
+            Page<Submodel> page = preparePagedResult(temp, paging);
+            page.setContent(page.getContent().stream()
+                    .map(LambdaExceptionHelper.rethrowFunction(x -> deserialize(getSubmodelWithSubmodelElements(x.getId()), Submodel.class)))
+                    .collect(Collectors.toList()));
+            return page;
+        });
+        return prepareResult(result, modifier);
+    }
+
+
+    @Override
+    public Page<SubmodelElement> findSubmodelElements(SubmodelElementSearchCriteria criteria, QueryModifier modifier, PagingInfo paging)
+            throws ResourceNotFoundException, PersistenceException {
+        Ensure.requireNonNull(criteria, MSG_CRITERIA_NOT_NULL);
+        Ensure.requireNonNull(modifier, MSG_MODIFIER_NOT_NULL);
+        Ensure.requireNonNull(paging, MSG_PAGING_NOT_NULL);
+        long requiredCount = paging.hasLimit() && !criteria.isSemanticIdSet() && !criteria.getValueOnly()
+                ? paging.getLimit() + 1
+                : Long.MAX_VALUE;
+        if (criteria.isParentSet()) {
+            SubmodelElementIdentifier parent = criteria.getParent();
+            long from = parsePosition(paging.getCursor()) + 1;
+            // children are fetched while holding the lock, filtering and deserialization happen afterwards
+            List<Map.Entry<String, String>> children = read(() -> {
+                if (!submodels.contains(parent.getSubmodelId())
+                        || (!parent.getIdShortPath().isEmpty() && !submodelElements.contains(parent.getSubmodelId(), parent.getIdShortPath()))) {
+                    throw new ResourceNotFoundException(parent.toReference());
+                }
+                List<IdShortPath> paths = submodelElements.getChildPaths(parent.getSubmodelId(), parent.getIdShortPath());
+                List<Map.Entry<String, String>> temp = new ArrayList<>();
+                for (long i = from; i < paths.size() && temp.size() < requiredCount; i++) {
+                    temp.add(Map.entry(
+                            String.valueOf(i),
+                            submodelElements.getWithChildren(parent.getSubmodelId(), paths.get((int) i)).toString()));
+                }
+                return temp;
+            });
+            return prepareResult(
+                    preparePagedResult(filterSubmodelElements(children.stream()
+                            .map(LambdaExceptionHelper.rethrowFunction(x -> Map.entry(x.getKey(), deserialize(x.getValue(), SubmodelElement.class)))),
+                            criteria),
+                            paging),
+                    modifier);
+        }
+        // elements are collected per submodel, walking stops as soon as enough elements for the requested page have been
+        // found
+        String[] cursor = parseElementCursor(paging.getCursor());
+        long cursorSequenceNumber = Long.parseLong(cursor[0]);
+        long cursorOffset = Long.parseLong(cursor[1]);
+        List<Long> sequenceNumbers = read(() -> submodels.getSequenceNumbers(cursorSequenceNumber - 1).collect(Collectors.toList()));
+        List<Map.Entry<String, SubmodelElement>> elements = new ArrayList<>();
+        for (long sequenceNumber: sequenceNumbers) {
+            if (elements.size() >= requiredCount) {
+                break;
+            }
+            String json = read(() -> {
+                String id = submodels.getId(sequenceNumber);
+                return Objects.nonNull(id) ? getSubmodelWithSubmodelElements(id) : null;
+            });
+            if (Objects.isNull(json)) {
+                // submodel has been deleted concurrently
+                continue;
+            }
+            List<Map.Entry<String, SubmodelElement>> temp = new ArrayList<>();
+            AssetAdministrationShellElementWalker.builder()
+                    .visitor(new DefaultAssetAdministrationShellElementVisitor() {
+                        @Override
+                        public void visit(SubmodelElement submodelElement) {
+                            temp.add(Map.entry("", submodelElement));
+                        }
+                    })
+                    .build()
+                    .walk(deserialize(json, Submodel.class));
+            long skip = sequenceNumber == cursorSequenceNumber ? cursorOffset : 0;
+            List<Map.Entry<String, SubmodelElement>> matches = filterSubmodelElements(temp.stream(), criteria)
+                    .skip(skip)
+                    .limit(requiredCount - elements.size())
+                    .collect(Collectors.toList());
+            for (int i = 0; i < matches.size(); i++) {
+                elements.add(Map.entry(sequenceNumber + CURSOR_SEPARATOR + (skip + i + 1), matches.get(i).getValue()));
+            }
+        }
+        return prepareResult(preparePagedResult(elements.stream(), paging), modifier);
+    }
+
+
+    @Override
+    public Page<ConceptDescription> findConceptDescriptions(ConceptDescriptionSearchCriteria criteria, QueryModifier modifier, PagingInfo paging) throws PersistenceException {
+        Ensure.requireNonNull(criteria, MSG_CRITERIA_NOT_NULL);
+        Ensure.requireNonNull(modifier, MSG_MODIFIER_NOT_NULL);
+        Ensure.requireNonNull(paging, MSG_PAGING_NOT_NULL);
+        Page<ConceptDescription> result = read(() -> {
+            Stream<Map.Entry<String, ConceptDescription>> temp = lookup(conceptDescriptions, List.of(), paging, ConceptDescription.class);
+            if (criteria.isIdShortSet()) {
+                temp = temp.filter(x -> Objects.equals(x.getValue().getIdShort(), criteria.getIdShort()));
+            }
+            if (criteria.isIsCaseOfSet() && Objects.nonNull(criteria.getIsCaseOf())) {
+                temp = temp.filter(x -> x.getValue().getIsCaseOf().stream()
+                        .anyMatch(y -> ReferenceHelper.equals(y, criteria.getIsCaseOf())));
+            }
+            if (criteria.isDataSpecificationSet() && Objects.nonNull(criteria.getDataSpecification())) {
+                temp = temp.filter(x -> Objects.nonNull(x.getValue().getEmbeddedDataSpecifications())
+                        && x.getValue().getEmbeddedDataSpecifications().stream()
+                                .anyMatch(y -> ReferenceHelper.equals(y.getDataSpecification(), criteria.getDataSpecification())));
+            }
+            return preparePagedResult(temp, paging);
+        });
+        return prepareResult(result, modifier);
+    }
+
+
+    @Override
+    public void save(AssetAdministrationShell assetAdministrationShell) throws PersistenceException {
+        Ensure.requireNonNull(assetAdministrationShell, "assetAdministrationShell must be non-null");
+        ObjectNode node = serialize(assetAdministrationShell);
+        write(() -> assetAdministrationShells.put(assetAdministrationShell.getId(), node));
+    }
+
+
+    @Override
+    public void save(ConceptDescription conceptDescription) throws PersistenceException {
+        Ensure.requireNonNull(conceptDescription, "conceptDescription must be non-null");
+        ObjectNode node = serialize(conceptDescription);
+        write(() -> conceptDescriptions.put(conceptDescription.getId(), node));
+    }
+
+
+    @Override
+    public void save(Submodel submodel) throws PersistenceException {
+        Ensure.requireNonNull(submodel, "submodel must be non-null");
+        ObjectNode node = serialize(submodel);
+        write(() -> saveSubmodel(submodel.getId(), node));
+    }
+
+
+    @Override
+    public void saveAll(Environment environment) throws PersistenceException {
+        Ensure.requireNonNull(environment, "environment must be non-null");
+        // everything is serialized upfront and written in a single transaction
+        List<Map.Entry<String, ObjectNode>> shellNodes = serializeAll(environment.getAssetAdministrationShells());
+        List<Map.Entry<String, ObjectNode>> submodelNodes = serializeAll(environment.getSubmodels());
+        List<Map.Entry<String, ObjectNode>> conceptDescriptionNodes = serializeAll(environment.getConceptDescriptions());
+        write(() -> {
+            shellNodes.forEach(x -> assetAdministrationShells.put(x.getKey(), x.getValue()));
+            submodelNodes.forEach(x -> saveSubmodel(x.getKey(), x.getValue()));
+            conceptDescriptionNodes.forEach(x -> conceptDescriptions.put(x.getKey(), x.getValue()));
+        });
+    }
+
+
+    @Override
+    public void save(OperationHandle handle, OperationResult result) throws PersistenceException {
+        Ensure.requireNonNull(handle, "handle must be non-null");
+        Ensure.requireNonNull(result, "result must be non-null");
+        ObjectNode node = serialize(result);
+        write(() -> operationResults.put(handle.getHandleId(), node.toString()));
+    }
+
+
+    @Override
+    public void insert(SubmodelElementIdentifier parentIdentifier, SubmodelElement submodelElement)
+            throws ResourceNotFoundException, ResourceNotAContainerElementException, PersistenceException {
+        Ensure.requireNonNull(parentIdentifier, "parent must be non-null");
+        Ensure.requireNonNull(submodelElement, "submodelElement must be non-null");
+        ObjectNode node = serialize(submodelElement);
+        String submodelId = parentIdentifier.getSubmodelId();
+        IdShortPath parentPath = parentIdentifier.getIdShortPath();
+        lock.writeLock().lock();
+        try {
+            JsonNode parent = parentPath.isEmpty()
+                    ? Optional.ofNullable(submodels.get(submodelId)).map(JsonHelper::parse).orElse(null)
+                    : submodelElements.get(submodelId, parentPath);
+            if (Objects.isNull(parent)) {
+                throw new ResourceNotFoundException(parentIdentifier.toReference());
+            }
+            String childrenProperty = JsonHelper.getChildrenProperty(parent);
+            if (Objects.isNull(childrenProperty)) {
+                throw new ResourceNotAContainerElementException(String.format(
+                        "illegal type for parent: %s. Must be one of: Submodel, SubmodelElementCollection, SubmodelElementList, Entity, AnnotatedRelationshipElement",
+                        parent.path(JsonHelper.MODEL_TYPE).asText()));
+            }
+            if (Objects.equals(parent.path(JsonHelper.MODEL_TYPE).asText(), "AnnotatedRelationshipElement")
+                    && !DataElement.class.isAssignableFrom(submodelElement.getClass())) {
+                throw new IllegalArgumentException(String.format("illegal type for new SubmodelElement: %s: Must be a %s",
+                        submodelElement.getClass(),
+                        DataElement.class));
+            }
+            boolean parentIsList = JsonHelper.isList(parent);
+            if (!parentIsList && StringHelper.isBlank(submodelElement.getIdShort())) {
+                throw new IllegalArgumentException("idShort must be non-empty");
+            }
+            submodelElements.add(submodelId, parentPath, parentIsList, node);
+            store.commit();
+        }
+        catch (RuntimeException e) {
+            store.rollback();
+            throw e;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    @Override
+    public void update(SubmodelElementIdentifier identifier, SubmodelElement submodelElement) throws ResourceNotFoundException, PersistenceException {
+        Ensure.requireNonNull(identifier, "identifier must be non-null");
+        Ensure.requireNonNull(submodelElement, "submodelElement must be non-null");
+        ObjectNode node = serialize(submodelElement);
+        write(() -> {
+            requireSubmodelElementExists(identifier);
+            submodelElements.replace(identifier.getSubmodelId(), identifier.getIdShortPath(), node);
+        });
+    }
+
+
+    @Override
+    public void deleteAssetAdministrationShell(String id) throws ResourceNotFoundException, PersistenceException {
+        Ensure.requireNonNull(id, MSG_ID_NOT_NULL);
+        write(() -> {
+            if (!assetAdministrationShells.remove(id)) {
+                throw new ResourceNotFoundException(String.format(MSG_RESOURCE_NOT_FOUND_BY_ID, id));
+            }
+        });
+    }
+
+
+    @Override
+    public void deleteSubmodel(String id) throws ResourceNotFoundException, PersistenceException {
+        Ensure.requireNonNull(id, MSG_ID_NOT_NULL);
+        write(() -> {
+            if (!submodels.remove(id)) {
+                throw new ResourceNotFoundException(String.format(MSG_RESOURCE_NOT_FOUND_BY_ID, id));
+            }
+            submodelElements.removeAll(id);
+            removeSubmodelReferences(id);
+        });
+    }
+
+
+    @Override
+    public void deleteConceptDescription(String id) throws ResourceNotFoundException, PersistenceException {
+        Ensure.requireNonNull(id, MSG_ID_NOT_NULL);
+        write(() -> {
+            if (!conceptDescriptions.remove(id)) {
+                throw new ResourceNotFoundException(String.format(MSG_RESOURCE_NOT_FOUND_BY_ID, id));
+            }
+        });
+    }
+
+
+    @Override
+    public void deleteSubmodelElement(SubmodelElementIdentifier identifier) throws ResourceNotFoundException, PersistenceException {
+        Ensure.requireNonNull(identifier, "identifier must be non-null");
+        write(() -> {
+            requireSubmodelElementExists(identifier);
+            submodelElements.delete(identifier.getSubmodelId(), identifier.getIdShortPath());
+        });
+    }
+
+
+    @Override
+    public void deleteAll() throws PersistenceException {
+        write(() -> {
+            assetAdministrationShells.clear();
+            submodels.clear();
+            conceptDescriptions.clear();
+            submodelElements.clear();
+            operationResults.clear();
+        });
+    }
+
+
+    private void saveSubmodel(String id, ObjectNode node) {
+        submodelElements.removeAll(id);
+        // removes the submodel elements from node so that the submodel is stored without them
+        submodelElements.put(id, IdShortPath.EMPTY, node);
+        submodels.put(id, node);
+    }
+
+
+    /**
+     * Removes all references to a submodel from all asset administration shells.
+     *
+     * @param submodelId the id of the submodel
+     */
+    private void removeSubmodelReferences(String submodelId) {
+        String key = JsonHelper.referenceKey(ReferenceBuilder.forSubmodel(submodelId));
+        for (long sequenceNumber: assetAdministrationShells.lookup(INDEX_SUBMODEL, List.of(key))) {
+            ObjectNode node = JsonHelper.parse(assetAdministrationShells.get(sequenceNumber));
+            ArrayNode references = (ArrayNode) node.get("submodels");
+            for (int i = references.size() - 1; i >= 0; i--) {
+                if (Objects.equals(key, JsonHelper.referenceKey(references.get(i)))) {
+                    references.remove(i);
+                }
+            }
+            if (references.isEmpty()) {
+                node.remove("submodels");
+            }
+            assetAdministrationShells.put(node.path("id").asText(), node);
+        }
+    }
+
+
+    private void requireSubmodelElementExists(SubmodelElementIdentifier identifier) throws ResourceNotFoundException {
+        if (!submodels.contains(identifier.getSubmodelId())
+                || !submodelElements.contains(identifier.getSubmodelId(), identifier.getIdShortPath())) {
+            throw new ResourceNotFoundException(identifier.toReference());
+        }
+    }
+
+
+    private String getSubmodelWithSubmodelElements(String id) {
+        String json = submodels.get(id);
+        if (Objects.isNull(json)) {
+            return null;
+        }
+        ObjectNode node = JsonHelper.parse(json);
+        submodelElements.addChildren(id, IdShortPath.EMPTY, node);
+        return node.toString();
+    }
+
+
+    /**
+     * Gets the identifiables to apply the search criteria to. If any criteria is backed by an index, only the
+     * identifiables referenced by the smallest set of candidates are returned, otherwise all identifiables. As indexes
+     * may produce false positives, the actual filters still need to be applied to the result. If paging is requested
+     * with a cursor, only identifiables after the last identifiable of the previous page are returned.
+     *
+     * @param store the store
+     * @param candidates sequence numbers of candidates found via secondary indexes
+     * @param paging the paging information
+     * @param type the type of the identifiables
+     * @return stream of identifiables mapped by their cursor
+     * @throws PersistenceException if deserialization fails
+     */
+    private <T> Stream<Map.Entry<String, T>> lookup(IdentifiableStore store, List<Set<Long>> candidates, PagingInfo paging, Class<T> type)
+            throws PersistenceException {
+        long after = parsePosition(paging.getCursor());
+        return candidates.stream()
+                .min(Comparator.comparingInt(Set::size))
+                .map(x -> x.stream().filter(y -> y > after))
+                .orElseGet(() -> store.getSequenceNumbers(after))
+                .map(x -> {
+                    String json = store.get(x);
+                    return Objects.nonNull(json) ? Map.entry(String.valueOf(x), json) : null;
+                })
+                .filter(Objects::nonNull)
+                .map(LambdaExceptionHelper.rethrowFunction(x -> Map.entry(x.getKey(), deserialize(x.getValue(), type))));
+    }
+
+
+    private static Stream<Map.Entry<String, SubmodelElement>> filterSubmodelElements(Stream<Map.Entry<String, SubmodelElement>> stream,
+                                                                                     SubmodelElementSearchCriteria criteria) {
+        Stream<Map.Entry<String, SubmodelElement>> result = stream;
+        if (criteria.isSemanticIdSet()) {
+            result = filterBySemanticId(result, criteria.getSemanticId());
+        }
+        if (criteria.getValueOnly()) {
+            result = result.filter(x -> ElementValueHelper.isValueOnlySupported(x.getValue()));
+        }
+        return result;
+    }
+
+
+    private static <T extends HasSemantics> Stream<Map.Entry<String, T>> filterBySemanticId(Stream<Map.Entry<String, T>> stream, Reference semanticId) {
+        if (Objects.isNull(semanticId)) {
+            return stream;
+        }
+        return stream.filter(x -> ReferenceHelper.equals(x.getValue().getSemanticId(), semanticId)
+                || Optional.ofNullable(x.getValue().getSupplementalSemanticIds())
+                        .orElse(List.of()).stream()
+                        .anyMatch(y -> ReferenceHelper.equals(y, semanticId)));
+    }
+
+
+    private static boolean matchesAssetIds(AssetAdministrationShell shell, List<AssetIdentification> assetIds) {
+        if (Objects.isNull(assetIds)) {
+            return true;
+        }
+        List<String> globalAssetIds = new ArrayList<>();
+        List<SpecificAssetId> specificAssetIds = new ArrayList<>();
+        PersistenceHelper.splitAssetIdsIntoGlobalAndSpecificIds(assetIds, globalAssetIds, specificAssetIds);
+        if (!globalAssetIds.isEmpty() && !globalAssetIds.contains(shell.getAssetInformation().getGlobalAssetId())) {
+            return false;
+        }
+        return specificAssetIds.isEmpty()
+                || specificAssetIds.stream().anyMatch(x -> shell.getAssetInformation().getSpecificAssetIds().contains(x));
+    }
+
+
+    private static Collection<String> getGlobalAssetIdKeys(JsonNode node) {
+        JsonNode globalAssetId = node.path("assetInformation").path("globalAssetId");
+        return globalAssetId.isTextual()
+                ? List.of(globalAssetId.asText())
+                : List.of();
+    }
+
+
+    private static Collection<String> getSpecificAssetIdKeys(JsonNode node) {
+        Set<String> result = new LinkedHashSet<>();
+        node.path("assetInformation").path("specificAssetIds")
+                .forEach(x -> result.add(JsonHelper.specificAssetIdKey(x.path("name").asText(), x.path(JsonHelper.VALUE).asText())));
+        return result;
+    }
+
+
+    private static Collection<String> getSubmodelKeys(JsonNode node) {
+        Set<String> result = new LinkedHashSet<>();
+        node.path("submodels").forEach(x -> Optional.ofNullable(JsonHelper.referenceKey(x)).ifPresent(result::add));
+        return result;
+    }
+
+
+    private static Collection<String> getSemanticIdKeys(JsonNode node) {
+        Set<String> result = new LinkedHashSet<>();
+        Optional.ofNullable(JsonHelper.referenceKey(node.get("semanticId"))).ifPresent(result::add);
+        node.path("supplementalSemanticIds").forEach(x -> Optional.ofNullable(JsonHelper.referenceKey(x)).ifPresent(result::add));
+        return result;
+    }
+
+
+    /**
+     * Parses a cursor denoting a position, i.e. a sequence number or an index within a list.
+     *
+     * @param cursor the cursor, may be null
+     * @return the position or -1 if cursor is null
+     * @throws IllegalArgumentException if cursor is not a valid position
+     */
+    private static long parsePosition(String cursor) {
+        if (Objects.isNull(cursor)) {
+            return -1;
+        }
+        try {
+            long result = Long.parseLong(cursor);
+            Ensure.require(result >= 0, "position must be >= 0");
+            return result;
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("invalid cursor (cursor: %s)", cursor), e);
+        }
+    }
+
+
+    /**
+     * Parses a cursor used when paging over the submodel elements of all submodels. Such cursors are of the form
+     * {@code sequenceNumber:offset} where sequenceNumber denotes the submodel and offset the number of elements already
+     * returned from that submodel.
+     *
+     * @param cursor the cursor, may be null
+     * @return the sequence number and the offset, both 0 if cursor is null
+     * @throws IllegalArgumentException if cursor is not valid
+     */
+    private static String[] parseElementCursor(String cursor) {
+        if (Objects.isNull(cursor)) {
+            return new String[] {
+                    "0",
+                    "0"
+            };
+        }
+        String[] result = cursor.split(CURSOR_SEPARATOR, 2);
+        if (result.length != 2) {
+            throw new IllegalArgumentException(String.format("invalid cursor (cursor: %s)", cursor));
+        }
+        parsePosition(result[0]);
+        parsePosition(result[1]);
+        return result;
+    }
+
+
+    private static <T> Page<T> preparePagedResult(Stream<Map.Entry<String, T>> input, PagingInfo paging) {
+        Stream<Map.Entry<String, T>> result = input;
+        if (paging.hasLimit()) {
+            result = result.limit(paging.getLimit() + 1);
+        }
+        List<Map.Entry<String, T>> temp = result.collect(Collectors.toList());
+        boolean hasMoreData = paging.hasLimit() && temp.size() > paging.getLimit();
+        List<Map.Entry<String, T>> content = hasMoreData
+                ? temp.subList(0, (int) paging.getLimit())
+                : temp;
+        return Page.<T> builder()
+                .result(content.stream()
+                        .map(Map.Entry::getValue)
+                        .collect(Collectors.toList()))
+                .metadata(PagingMetadata.builder()
+                        .cursor(hasMoreData && !content.isEmpty()
+                                ? content.get(content.size() - 1).getKey()
+                                : null)
+                        .build())
+                .build();
+    }
+
+
+    private static <T extends Referable> T prepareResult(T result, QueryModifier modifier) {
+        return QueryModifierHelper.applyQueryModifier(result, modifier);
+    }
+
+
+    private static <T extends Referable> Page<T> prepareResult(Page<T> page, QueryModifier modifier) {
+        QueryModifierHelper.applyQueryModifier(page.getContent(), modifier);
+        return page;
+    }
+
+
+    private static String requireFound(String json, String id) throws ResourceNotFoundException {
+        if (Objects.isNull(json)) {
+            throw new ResourceNotFoundException(String.format(MSG_RESOURCE_NOT_FOUND_BY_ID, id));
+        }
+        return json;
+    }
+
+
+    private <T> T deserialize(String json, Class<T> type) throws PersistenceException {
+        try {
+            return deserializer.read(json, type);
+        }
+        catch (DeserializationException e) {
+            throw new PersistenceException(String.format("error deserializing stored element (type: %s)", type.getSimpleName()), e);
+        }
+    }
+
+
+    private ObjectNode serialize(Object obj) throws PersistenceException {
+        try {
+            return JsonHelper.parse(serializer.write(obj));
+        }
+        catch (SerializationException | UnsupportedModifierException e) {
+            throw new PersistenceException(String.format("error serializing element (type: %s)", obj.getClass().getSimpleName()), e);
+        }
+    }
+
+
+    private <T extends org.eclipse.digitaltwin.aas4j.v3.model.Identifiable> List<Map.Entry<String, ObjectNode>> serializeAll(List<T> identifiables)
+            throws PersistenceException {
+        List<Map.Entry<String, ObjectNode>> result = new ArrayList<>();
+        if (Objects.nonNull(identifiables)) {
+            for (T identifiable: identifiables) {
+                result.add(Map.entry(identifiable.getId(), serialize(identifiable)));
+            }
+        }
+        return result;
+    }
+
+
+    private <T, E extends Exception> T read(SupplierWithExceptions<T, E> action) throws E {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Executes a modification and commits it. If the modification fails, all changes made so far are rolled back.
+     *
+     * @param <E> the exception type
+     * @param action the modification
+     * @throws E if the modification fails
+     */
+    private <E extends Exception> void write(RunnableWithExceptions<E> action) throws E {
+        lock.writeLock().lock();
+        try {
+            action.run();
+            store.commit();
+        }
+        catch (Exception e) {
+            store.rollback();
+            throw e;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
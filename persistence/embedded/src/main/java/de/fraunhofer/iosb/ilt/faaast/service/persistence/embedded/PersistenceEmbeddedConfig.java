@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.embedded;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.PersistenceConfig;
+import java.nio.file.Path;
+import java.util.Objects;
+
+
+/**
+ * Configuration for {@link PersistenceEmbedded}.
+ */
+public class PersistenceEmbeddedConfig extends PersistenceConfig<PersistenceEmbedded> {
+
+    public static final String DEFAULT_FILENAME = "model_persistence.mv.db";
+    public static final int DEFAULT_CACHE_SIZE = 16;
+
+    private String dataDir = Path.of("").toAbsolutePath().toString();
+    private String filename = DEFAULT_FILENAME;
+    private boolean override = false;
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+
+    /**
+     * Gets the path of the store file.
+     *
+     * @return the path of the store file
+     */
+    @JsonIgnore
+    public Path getFilePath() {
+        return Path.of(dataDir, filename);
+    }
+
+
+    public String getDataDir() {
+        return dataDir;
+    }
+
+
+    public void setDataDir(String dataDir) {
+        this.dataDir = dataDir;
+    }
+
+
+    public String getFilename() {
+        return filename;
+    }
+
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+
+    /**
+     * If enabled, all content of an existing store file is deleted on startup and the initial model is loaded instead.
+     * Otherwise, the initial model is only loaded if the store file does not contain any data yet.
+     *
+     * @return true if the content of the store file should be replaced on startup, otherwise false
+     */
+    public boolean isOverride() {
+        return override;
+    }
+
+
+    public void setOverride(boolean override) {
+        this.override = override;
+    }
+
+
+    /**
+     * Gets the size of the read cache of the store in MB.
+     *
+     * @return the size of the read cache in MB
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(dataDir,
+                filename,
+                override,
+                cacheSize);
+    }
+
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final PersistenceEmbeddedConfig other = (PersistenceEmbeddedConfig) obj;
+        return Objects.equals(this.dataDir, other.dataDir)
+                && Objects.equals(this.filename, other.filename)
+                && Objects.equals(this.override, other.override)
+                && Objects.equals(this.cacheSize, other.cacheSize);
+    }
+
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private abstract static class AbstractBuilder<T extends PersistenceEmbeddedConfig, B extends AbstractBuilder<T, B>>
+            extends PersistenceConfig.AbstractBuilder<PersistenceEmbedded, T, B> {
+
+        public B dataDir(String value) {
+            getBuildingInstance().setDataDir(value);
+            return getSelf();
+        }
+
+
+        public B filename(String value) {
+            getBuildingInstance().setFilename(value);
+            return getSelf();
+        }
+
+
+        public B override(boolean value) {
+            getBuildingInstance().setOverride(value);
+            return getSelf();
+        }
+
+
+        public B cacheSize(int value) {
+            getBuildingInstance().setCacheSize(value);
+            return getSelf();
+        }
+    }
+
+    public static class Builder extends AbstractBuilder<PersistenceEmbeddedConfig, Builder> {
+
+        @Override
+        protected Builder getSelf() {
+            return this;
+        }
+
+
+        @Override
+        protected PersistenceEmbeddedConfig newBuildingInstance() {
+            return new PersistenceEmbeddedConfig();
+        }
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.embedded;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import de.fraunhofer.iosb.ilt.faaast.service.model.IdShortPath;
+import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
+import de.fraunhofer.iosb.ilt.faaast.service.util.StringHelper;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+
+
+/**
+ * Stores the submodel elements of all submodels in an {@link MVStore}.
+ *
+ * <p>Each submodel element is stored as a separate entry keyed by {@code submodelId\0idShortPath}, e.g.
+ * {@code http://example.org/submodel\0collection.list[0]}. The stored JSON does not contain the child elements, which
+ * are stored as entries of their own instead. The order of the children of each submodel or submodel element is stored
+ * in a second map under the key of the parent as a list of path segments, i.e. idShorts or indexes in case of
+ * SubmodelElementLists. This way, reading or modifying a single submodel element only touches the entries of the
+ * element and its descendants.
+ *
+ * <p>As keys are sorted, all descendants of an element can be found by a range scan starting at the key of the
+ * element.
+ */
+class SubmodelElementStore {
+
+    private static final char SEPARATOR = '\0';
+
+    private final MVMap<String, String> elements;
+    private final MVMap<String, String> children;
+
+    SubmodelElementStore(MVStore store) {
+        Ensure.requireNonNull(store, "store must be non-null");
+        this.elements = store.openMap("submodelElements");
+        this.children = store.openMap("submodelElements.children");
+    }
+
+
+    /**
+     * Gets a submodel element without its children.
+     *
+     * @param submodelId the id of the submodel
+     * @param path the path of the element
+     * @return the JSON representation without children or null if there is no such element
+     */
+    ObjectNode get(String submodelId, IdShortPath path) {
+        String json = elements.get(key(submodelId, path));
+        return Objects.nonNull(json) ? JsonHelper.parse(json) : null;
+    }
+
+
+    /**
+     * Gets a submodel element including all its children.
+     *
+     * @param submodelId the id of the submodel
+     * @param path the path of the element
+     * @return the JSON representation or null if there is no such element
+     */
+    ObjectNode getWithChildren(String submodelId, IdShortPath path) {
+        ObjectNode result = get(submodelId, path);
+        if (Objects.nonNull(result)) {
+            addChildren(submodelId, path, result);
+        }
+        return result;
+    }
+
+
+    boolean contains(String submodelId, IdShortPath path) {
+        return elements.containsKey(key(submodelId, path));
+    }
+
+
+    /**
+     * Gets the paths of all children of a submodel or submodel element.
+     *
+     * @param submodelId the id of the submodel
+     * @param path the path of the parent, empty for the submodel itself
+     * @return the paths of the children in order
+     */
+    List<IdShortPath> getChildPaths(String submodelId, IdShortPath path) {
+        List<IdShortPath> result = new ArrayList<>();
+        for (String segment: getSegments(submodelId, path)) {
+            result.add(childPath(path, segment));
+        }
+        return result;
+    }
+
+
+    /**
+     * Adds all children of a submodel or submodel element to its JSON representation.
+     *
+     * @param submodelId the id of the submodel
+     * @param path the path of the parent, empty for the submodel itself
+     * @param node the JSON representation of the parent without children
+     */
+    void addChildren(String submodelId, IdShortPath path, ObjectNode node) {
+        String property = JsonHelper.getChildrenProperty(node);
+        if (Objects.isNull(property)) {
+            return;
+        }
+        List<IdShortPath> childPaths = getChildPaths(submodelId, path);
+        if (childPaths.isEmpty()) {
+            return;
+        }
+        ArrayNode array = node.putArray(property);
+        for (IdShortPath childPath: childPaths) {
+            array.add(getWithChildren(submodelId, childPath));
+        }
+    }
+
+
+    /**
+     * Writes a submodel or submodel element including all its children. The children are removed from the given JSON
+     * representation. If path is empty, only the children are written as the submodel itself is stored separately.
+     * Any existing element at the given path must have been removed before.
+     *
+     * @param submodelId the id of the submodel
+     * @param path the path of the element, empty for the submodel itself
+     * @param node the JSON representation of the element
+     */
+    void put(String submodelId, IdShortPath path, ObjectNode node) {
+        String property = JsonHelper.getChildrenProperty(node);
+        List<String> segments = new ArrayList<>();
+        if (Objects.nonNull(property) && node.has(property)) {
+            JsonNode childNodes = node.remove(property);
+            boolean isList = JsonHelper.isList(node);
+            for (int i = 0; i < childNodes.size(); i++) {
+                ObjectNode child = (ObjectNode) childNodes.get(i);
+                String segment = isList
+                        ? "[" + i + "]"
+                        : child.path(JsonHelper.ID_SHORT).asText();
+                put(submodelId, childPath(path, segment), child);
+                segments.add(segment);
+            }
+        }
+        if (!path.isEmpty()) {
+            elements.put(key(submodelId, path), node.toString());
+        }
+        setSegments(submodelId, path, segments);
+    }
+
+
+    /**
+     * Adds a submodel element to a parent. If the parent is not a SubmodelElementList and already contains an element
+     * with the same idShort, that element is replaced at its current position, otherwise the element is appended.
+     *
+     * @param submodelId the id of the submodel
+     * @param parentPath the path of the parent, empty for the submodel itself
+     * @param parentIsList if the parent is a SubmodelElementList
+     * @param node the JSON representation of the element to add
+     */
+    void add(String submodelId, IdShortPath parentPath, boolean parentIsList, ObjectNode node) {
+        List<String> segments = getSegments(submodelId, parentPath);
+        String idShort = node.path(JsonHelper.ID_SHORT).asText();
+        int position = -1;
+        if (!parentIsList) {
+            for (int i = 0; i < segments.size(); i++) {
+                if (segments.get(i).equalsIgnoreCase(idShort)) {
+                    position = i;
+                    break;
+                }
+            }
+        }
+        if (position >= 0) {
+            remove(submodelId, childPath(parentPath, segments.get(position)));
+            segments.set(position, idShort);
+        }
+        else {
+            segments.add(parentIsList ? "[" + segments.size() + "]" : idShort);
+            position = segments.size() - 1;
+        }
+        put(submodelId, childPath(parentPath, segments.get(position)), node);
+        setSegments(submodelId, parentPath, segments);
+    }
+
+
+    /**
+     * Replaces an existing submodel element at its current position. If the element is not part of a
+     * SubmodelElementList and the idShort of the new element differs, the element is moved to the path matching the new
+     * idShort.
+     *
+     * @param submodelId the id of the submodel
+     * @param path the path of the existing element
+     * @param node the JSON representation of the new element
+     */
+    void replace(String submodelId, IdShortPath path, ObjectNode node) {
+        IdShortPath parentPath = path.getParent();
+        List<String> segments = getSegments(submodelId, parentPath);
+        String segment = path.getElements().get(path.getElements().size() - 1);
+        int position = segments.indexOf(segment);
+        String idShort = node.path(JsonHelper.ID_SHORT).asText();
+        String newSegment = isIndex(segment) || StringHelper.isBlank(idShort)
+                ? segment
+                : idShort;
+        remove(submodelId, path);
+        put(submodelId, childPath(parentPath, newSegment), node);
+        if (position >= 0 && !Objects.equals(segment, newSegment)) {
+            segments.set(position, newSegment);
+            setSegments(submodelId, parentPath, segments);
+        }
+    }
+
+
+    /**
+     * Deletes a submodel element including all its children. If the element is part of a SubmodelElementList, all
+     * subsequent elements of the list are moved one index up.
+     *
+     * @param submodelId the id of the submodel
+     * @param path the path of the element
+     */
+    void delete(String submodelId, IdShortPath path) {
+        IdShortPath parentPath = path.getParent();
+        List<String> segments = getSegments(submodelId, parentPath);
+        String segment = path.getElements().get(path.getElements().size() - 1);
+        int position = segments.indexOf(segment);
+        remove(submodelId, path);
+        if (position < 0) {
+            return;
+        }
+        if (!isIndex(segment)) {
+            segments.remove(position);
+            setSegments(submodelId, parentPath, segments);
+            return;
+        }
+        // removing an element from a list changes the index of all subsequent elements
+        for (int i = position + 1; i < segments.size(); i++) {
+            IdShortPath oldPath = childPath(parentPath, segments.get(i));
+            ObjectNode node = getWithChildren(submodelId, oldPath);
+            remove(submodelId, oldPath);
+            put(submodelId, childPath(parentPath, "[" + (i - 1) + "]"), node);
+        }
+        segments.remove(segments.size() - 1);
+        setSegments(submodelId, parentPath, segments);
+    }
+
+
+    /**
+     * Removes all submodel elements of a submodel.
+     *
+     * @param submodelId the id of the submodel
+     */
+    void removeAll(String submodelId) {
+        String prefix = submodelId + SEPARATOR;
+        removeByPrefix(elements, prefix, true);
+        removeByPrefix(children, prefix, true);
+    }
+
+
+    void clear() {
+        elements.clear();
+        children.clear();
+    }
+
+
+    /**
+     * Removes a submodel element including all its descendants without updating the list of children of its parent.
+     *
+     * @param submodelId the id of the submodel
+     * @param path the path of the element
+     */
+    private void remove(String submodelId, IdShortPath path) {
+        String prefix = key(submodelId, path);
+        removeByPrefix(elements, prefix, false);
+        removeByPrefix(children, prefix, false);
+    }
+
+
+    private static void removeByPrefix(MVMap<String, String> map, String prefix, boolean includeAll) {
+        List<String> keys = new ArrayList<>();
+        Iterator<String> iterator = map.keyIterator(prefix);
+        while (iterator.hasNext()) {
+            String key = iterator.next();
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            // keys of siblings with the same prefix, e.g. 'foo2' for 'foo', are sorted between descendants
+            if (includeAll
+                    || key.length() == prefix.length()
+                    || key.charAt(prefix.length()) == '.'
+                    || key.charAt(prefix.length()) == '[') {
+                keys.add(key);
+            }
+        }
+        keys.forEach(map::remove);
+    }
+
+
+    private List<String> getSegments(String submodelId, IdShortPath path) {
+        String json = children.get(key(submodelId, path));
+        return Objects.nonNull(json)
+                ? new ArrayList<>(JsonHelper.parseList(json))
+                : new ArrayList<>();
+    }
+
+
+    private void setSegments(String submodelId, IdShortPath path, List<String> segments) {
+        if (segments.isEmpty()) {
+            children.remove(key(submodelId, path));
+        }
+        else {
+            children.put(key(submodelId, path), JsonHelper.writeList(segments));
+        }
+    }
+
+
+    private static IdShortPath childPath(IdShortPath parentPath, String segment) {
+        return IdShortPath.builder()
+                .from(parentPath)
+                .pathSegment(segment)
+                .build();
+    }
+
+
+    private static boolean isIndex(String segment) {
+        return segment.startsWith("[");
+    }
+
+
+    private static String key(String submodelId, IdShortPath path) {
+        return submodelId + SEPARATOR + path.toString();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.embedded;
+
+import de.fraunhofer.iosb.ilt.faaast.service.config.CoreConfig;
+import de.fraunhofer.iosb.ilt.faaast.service.exception.ConfigurationInitializationException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.AASFull;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.AbstractPersistenceTest;
+import java.io.File;
+import java.io.IOException;
+import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
+import org.eclipse.digitaltwin.aas4j.v3.model.Property;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultEnvironment;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class PersistenceEmbeddedTest extends AbstractPersistenceTest<PersistenceEmbedded, PersistenceEmbeddedConfig> {
+
+    @Override
+    public PersistenceEmbeddedConfig getPersistenceConfig(File initialModelFile, Environment initialModel) throws ConfigurationInitializationException {
+        try {
+            // each instance needs its own store file as tests may create multiple instances at once
+            return PersistenceEmbeddedConfig.builder()
+                    .initialModel(initialModel)
+                    .initialModelFile(initialModelFile)
+                    .dataDir(tempDir.newFolder().toString())
+                    .build();
+        }
+        catch (IOException e) {
+            throw new ConfigurationInitializationException("error creating data directory", e);
+        }
+    }
+
+
+    private static PersistenceEmbedded start(File dataDir, Environment initialModel, boolean override) throws Exception {
+        PersistenceEmbedded result = PersistenceEmbeddedConfig.builder()
+                .initialModel(initialModel)
+                .dataDir(dataDir.toString())
+                .override(override)
+                .build()
+                .newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        result.start();
+        return result;
+    }
+
+
+    @Test
+    public void testDataPersistedAcrossRestarts() throws Exception {
+        File dataDir = tempDir.newFolder();
+        PersistenceEmbedded persistence = start(dataDir, AASFull.createEnvironment(), false);
+        Property expected = modifyBeforeRestart(persistence, "persisted value");
+        persistence.stop();
+
+        // initial model must not be loaded again as the store is not empty
+        PersistenceEmbedded restarted = start(dataDir, new DefaultEnvironment(), false);
+        assertModifiedAfterRestart(restarted, expected);
+        restarted.stop();
+    }
+
+
+    @Test
+    public void testOverrideReloadsInitialModel() throws Exception {
+        File dataDir = tempDir.newFolder();
+        PersistenceEmbedded persistence = start(dataDir, AASFull.createEnvironment(), false);
+        persistence.deleteSubmodel(DELETED_SUBMODEL_ID);
+        persistence.stop();
+
+        PersistenceEmbedded restarted = start(dataDir, AASFull.createEnvironment(), true);
+        Assert.assertEquals(AASFull.SUBMODEL_2, restarted.getSubmodel(DELETED_SUBMODEL_ID, QueryModifier.MAXIMAL));
+        restarted.stop();
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.file;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.DeserializationException;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.SerializationException;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.json.JsonApiDeserializer;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.json.JsonApiSerializer;
+import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.eclipse.digitaltwin.aas4j.v3.model.AssetAdministrationShell;
+import org.eclipse.digitaltwin.aas4j.v3.model.ConceptDescription;
+import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
+import org.eclipse.digitaltwin.aas4j.v3.model.Identifiable;
+import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultEnvironment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Binary snapshot of an environment that is stored next to the model file and can be loaded considerably faster than
+ * the model file itself. The snapshot records size and modification time of the model file it has been written for
+ * and is only used if the model file has not been changed since.
+ *
+ * <p>Layout of the file (all numbers big-endian):
+ * <ul>
+ * <li>magic number and format version (int each)
+ * <li>size and last modification time in milliseconds of the model file (long each)
+ * <li>for asset administration shells, submodels and concept descriptions: number of records (int) followed by the
+ * records, each consisting of its length in bytes (int) and the identifiable encoded as
+ * <a href="https://github.com/FasterXML/smile-format-specification">Smile</a>, i.e. binary JSON
+ * </ul>
+ *
+ * <p>The file is read through a memory-mapped {@link FileChannel}. As each identifiable is a self-contained record,
+ * records are decoded in parallel on the common fork-join pool. Records are decoded directly from the mapped memory
+ * without creating intermediate strings.
+ */
+class BinarySnapshot {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BinarySnapshot.class);
+    private static final int MAGIC = 0x46413353;
+    private static final int VERSION = 1;
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+    private final Path file;
+    private final JsonApiSerializer serializer;
+    private final JsonApiDeserializer deserializer;
+    private final SmileFactory smileFactory;
+
+    BinarySnapshot(Path file, JsonApiSerializer serializer, JsonApiDeserializer deserializer) {
+        Ensure.requireNonNull(file, "file must be non-null");
+        Ensure.requireNonNull(serializer, "serializer must be non-null");
+        Ensure.requireNonNull(deserializer, "deserializer must be non-null");
+        this.file = file;
+        this.serializer = serializer;
+        this.deserializer = deserializer;
+        this.smileFactory = new SmileFactory();
+    }
+
+
+    /**
+     * Gets the path of the snapshot file.
+     *
+     * @return the path of the snapshot file
+     */
+    Path getFile() {
+        return file;
+    }
+
+
+    /**
+     * Checks if the snapshot exists and has been written for the current state of the model file.
+     *
+     * @param modelFile the model file the snapshot must match
+     * @return true if the snapshot matches the model file, otherwise false
+     */
+    boolean isUpToDate(Path modelFile) {
+        if (!Files.isRegularFile(file) || !Files.isRegularFile(modelFile)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return in.readInt() == MAGIC
+                    && in.readInt() == VERSION
+                    && in.readLong() == Files.size(modelFile)
+                    && in.readLong() == Files.getLastModifiedTime(modelFile).toMillis();
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+
+    /**
+     * Reads the snapshot if it exists and has been written for the current state of the model file.
+     *
+     * @param modelFile the model file the snapshot must match
+     * @return the environment or null if there is no snapshot matching the model file
+     * @throws IOException if reading the file fails
+     * @throws DeserializationException if decoding a record fails
+     */
+    Environment read(Path modelFile) throws IOException, DeserializationException {
+        if (!Files.isRegularFile(file) || !Files.isRegularFile(modelFile)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                LOGGER.warn("ignoring binary snapshot with unsupported format (file: {})", file);
+                return null;
+            }
+            if (buffer.getLong() != Files.size(modelFile)
+                    || buffer.getLong() != Files.getLastModifiedTime(modelFile).toMillis()) {
+                LOGGER.debug("ignoring outdated binary snapshot (file: {})", file);
+                return null;
+            }
+            List<ByteBuffer> shells = readRecords(buffer);
+            List<ByteBuffer> submodels = readRecords(buffer);
+            List<ByteBuffer> conceptDescriptions = readRecords(buffer);
+            return new DefaultEnvironment.Builder()
+                    .assetAdministrationShells(decode(shells, AssetAdministrationShell.class))
+                    .submodels(decode(submodels, Submodel.class))
+                    .conceptDescriptions(decode(conceptDescriptions, ConceptDescription.class))
+                    .build();
+        }
+        catch (BufferUnderflowException | IllegalArgumentException e) {
+            LOGGER.warn("ignoring truncated binary snapshot (file: {})", file);
+            return null;
+        }
+    }
+
+
+    private static List<ByteBuffer> readRecords(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        List<ByteBuffer> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt();
+            // slices share the mapped memory, i.e. records are not copied before decoding
+            result.add(buffer.slice(buffer.position(), length));
+            buffer.position(buffer.position() + length);
+        }
+        return result;
+    }
+
+
+    private <T extends Identifiable> List<T> decode(List<ByteBuffer> records, Class<T> type) throws DeserializationException {
+        try {
+            return records.parallelStream()
+                    .map(x -> {
+                        try (JsonParser parser = smileFactory.createParser(new ByteBufferBackedInputStream(x))) {
+                            return deserializer.read(parser, type);
+                        }
+                        catch (IOException e) {
+                            throw new IllegalStateException(new DeserializationException("decoding binary snapshot record failed", e));
+                        }
+                        catch (DeserializationException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    })
+                    .collect(Collectors.toList());
+        }
+        catch (IllegalStateException e) {
+            if (e.getCause() instanceof DeserializationException) {
+                throw (DeserializationException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+
+    /**
+     * Writes the snapshot for the current state of the model file. The snapshot is written to a temporary file first
+     * which is then moved atomically.
+     *
+     * @param environment the environment contained in the model file
+     * @param modelFile the model file
+     * @throws IOException if writing the file fails
+     * @throws SerializationException if serializing an identifiable fails
+     */
+    void write(Environment environment, Path modelFile) throws IOException, SerializationException {
+        Ensure.requireNonNull(environment, "environment must be non-null");
+        Ensure.requireNonNull(modelFile, "modelFile must be non-null");
+        Path tempFile = file.resolveSibling(file.getFileName() + TEMP_FILE_EXTENSION);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(Files.size(modelFile));
+            out.writeLong(Files.getLastModifiedTime(modelFile).toMillis());
+            writeRecords(out, environment.getAssetAdministrationShells());
+            writeRecords(out, environment.getSubmodels());
+            writeRecords(out, environment.getConceptDescriptions());
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    private void writeRecords(DataOutputStream out, List<? extends Identifiable> identifiables) throws IOException, SerializationException {
+        out.writeInt(identifiables.size());
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (Identifiable identifiable: identifiables) {
+            buffer.reset();
+            try (JsonGenerator generator = smileFactory.createGenerator(buffer)) {
+                serializer.write(generator, identifiable);
+            }
+            out.writeInt(buffer.size());
+            buffer.writeTo(out);
+        }
+    }
+
+
+    /**
+     * Deletes the snapshot if it exists.
+     *
+     * @throws IOException if deleting fails
+     */
+    void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.file;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceException;
+import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Append-only change journal consisting of one or more segment files. Each segment file is named
+ * {@code <name>.journal.<generation>} and contains one {@link JournalEntry} per line serialized as JSON. Entries are
+ * always appended to the segment with the highest generation, older segments are closed and only kept until their
+ * changes are contained in a snapshot.
+ *
+ * <p>Each entry is forced to the storage device before {@link #append(JournalEntry)} returns, i.e. appended entries
+ * survive a crash of the process or the operating system.
+ *
+ * <p>This class is not thread-safe.
+ */
+class Journal implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Journal.class);
+    private static final String SEGMENT_INFIX = ".journal.";
+    private final Path directory;
+    private final String segmentPrefix;
+    private final Pattern segmentPattern;
+    private final ObjectMapper mapper;
+    private FileChannel channel;
+    private long generation;
+    private long size;
+
+    Journal(Path directory, String name) {
+        Ensure.requireNonNull(directory, "directory must be non-null");
+        Ensure.requireNonNull(name, "name must be non-null");
+        this.directory = directory;
+        this.segmentPrefix = name + SEGMENT_INFIX;
+        this.segmentPattern = Pattern.compile(Pattern.quote(segmentPrefix) + "(\\d+)");
+        this.mapper = new ObjectMapper();
+    }
+
+
+    /**
+     * Lists all existing segments ordered by generation.
+     *
+     * @return all existing segments
+     * @throws IOException if listing the directory fails
+     */
+    List<Path> getSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(x -> segmentPattern.matcher(x.getFileName().toString()).matches())
+                    .sorted(Comparator.comparingLong(this::getGeneration))
+                    .collect(Collectors.toList());
+        }
+    }
+
+
+    /**
+     * Reads all entries of a segment. If the last line of the segment is incomplete, e.g. because writing was
+     * interrupted, it is skipped.
+     *
+     * @param segment the segment to read
+     * @param consumer consumer for the entries
+     * @throws IOException if reading fails
+     * @throws PersistenceException if the consumer fails to process an entry
+     */
+    void read(Path segment, EntryConsumer consumer) throws IOException, PersistenceException {
+        try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+            String line;
+            while (Objects.nonNull(line = reader.readLine())) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JournalEntry entry;
+                try {
+                    entry = mapper.readValue(line, JournalEntry.class);
+                }
+                catch (JsonProcessingException e) {
+                    if (Objects.isNull(reader.readLine())) {
+                        LOGGER.warn("skipping incomplete last entry of journal segment (segment: {})", segment);
+                        return;
+                    }
+                    throw e;
+                }
+                consumer.accept(entry);
+            }
+        }
+    }
+
+
+    /**
+     * Opens a new empty segment following all existing segments for appending.
+     *
+     * @throws IOException if creating the segment fails
+     */
+    void open() throws IOException {
+        List<Path> segments = getSegments();
+        generation = segments.isEmpty()
+                ? 0
+                : getGeneration(segments.get(segments.size() - 1)) + 1;
+        openSegment();
+    }
+
+
+    /**
+     * Appends an entry to the current segment.
+     *
+     * @param entry the entry to append
+     * @return the size of the current segment in bytes after appending
+     * @throws IOException if writing fails
+     */
+    long append(JournalEntry entry) throws IOException {
+        Ensure.requireNonNull(channel, "journal must be opened before appending");
+        ByteBuffer line = ByteBuffer.wrap((mapper.writeValueAsString(entry) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        size += line.remaining();
+        while (line.hasRemaining()) {
+            channel.write(line);
+        }
+        channel.force(false);
+        return size;
+    }
+
+
+    /**
+     * Checks if the current segment is empty.
+     *
+     * @return true if no entries have been appended to the current segment, otherwise false
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+
+    /**
+     * Closes the current segment and opens a new one. All following entries are appended to the new segment.
+     *
+     * @throws IOException if closing the current or opening the new segment fails
+     */
+    void rotate() throws IOException {
+        close();
+        generation++;
+        openSegment();
+    }
+
+
+    /**
+     * Deletes all segments except the current one.
+     *
+     * @throws IOException if deleting fails
+     */
+    void deleteClosedSegments() throws IOException {
+        for (Path segment: getSegments()) {
+            if (getGeneration(segment) < generation) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+
+
+    /**
+     * Deletes all segments including the current one.
+     *
+     * @throws IOException if deleting fails
+     */
+    void deleteAll() throws IOException {
+        close();
+        for (Path segment: getSegments()) {
+            Files.deleteIfExists(segment);
+        }
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        if (Objects.nonNull(channel)) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+
+    private void openSegment() throws IOException {
+        channel = FileChannel.open(
+                directory.resolve(segmentPrefix + generation),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        size = 0;
+    }
+
+
+    private long getGeneration(Path segment) {
+        Matcher matcher = segmentPattern.matcher(segment.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(String.format("not a journal segment (file: %s)", segment));
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    /**
+     * Consumer for entries read from a segment.
+     */
+    @FunctionalInterface
+    interface EntryConsumer {
+
+        public void accept(JournalEntry entry) throws PersistenceException;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.file;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+
+/**
+ * Entry of the change journal of {@link PersistenceFile}. Each entry describes a single modification of the
+ * environment. Identifiables and submodel elements contained in an entry are stored as serialized JSON string in the
+ * payload so that each entry can be written as a single line. Values of submodel elements are stored using value-only
+ * serialization.
+ *
+ * <p>Entries are appended before the modification is applied. If applying the modification fails, an entry of type
+ * {@link Type#ABORTED} is appended directly afterwards so that the failed modification is skipped on replay.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+class JournalEntry {
+
+    /**
+     * Types of modifications.
+     */
+    enum Type {
+        SAVE_ASSET_ADMINISTRATION_SHELL,
+        SAVE_SUBMODEL,
+        SAVE_CONCEPT_DESCRIPTION,
+        INSERT_SUBMODEL_ELEMENT,
+        UPDATE_SUBMODEL_ELEMENT,
+        SET_SUBMODEL_ELEMENT_VALUE,
+        DELETE_ASSET_ADMINISTRATION_SHELL,
+        DELETE_SUBMODEL,
+        DELETE_CONCEPT_DESCRIPTION,
+        DELETE_SUBMODEL_ELEMENT,
+        DELETE_ALL,
+        /**
+         * Marks that the modification described by the preceding entry has failed and has not been applied.
+         */
+        ABORTED
+    }
+
+    private Type type;
+    private String id;
+    private String idShortPath;
+    private String payload;
+
+    JournalEntry() {}
+
+
+    JournalEntry(Type type, String id, String idShortPath, String payload) {
+        this.type = type;
+        this.id = id;
+        this.idShortPath = idShortPath;
+        this.payload = payload;
+    }
+
+
+    public Type getType() {
+        return type;
+    }
+
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+
+    /**
+     * The id of the affected identifiable, i.e. the id of the containing submodel for submodel elements.
+     *
+     * @return the id
+     */
+    public String getId() {
+        return id;
+    }
+
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+
+    /**
+     * The idShortPath of the affected submodel element, or of its parent in case of
+     * {@link Type#INSERT_SUBMODEL_ELEMENT}.
+     *
+     * @return the idShortPath
+     */
+    public String getIdShortPath() {
+        return idShortPath;
+    }
+
+
+    public void setIdShortPath(String idShortPath) {
+        this.idShortPath = idShortPath;
+    }
+
+
+    public String getPayload() {
+        return payload;
+    }
+
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+}
@@ -14,22 +14,19 @@
  */
 package de.fraunhofer.iosb.ilt.faaast.service.persistence.file;
 
-import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonSerializer;
-import com.fasterxml.jackson.databind.KeyDeserializer;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializerProvider;
-import com.fasterxml.jackson.databind.module.SimpleModule;
 import de.fraunhofer.iosb.ilt.faaast.service.ServiceContext;
 import de.fraunhofer.iosb.ilt.faaast.service.config.CoreConfig;
 import de.fraunhofer.iosb.ilt.faaast.service.dataformat.DeserializationException;
 import de.fraunhofer.iosb.ilt.faaast.service.dataformat.EnvironmentSerializationManager;
 import de.fraunhofer.iosb.ilt.faaast.service.dataformat.SerializationException;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.json.JsonApiDeserializer;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.json.JsonApiSerializer;
 import de.fraunhofer.iosb.ilt.faaast.service.exception.ConfigurationException;
 import de.fraunhofer.iosb.ilt.faaast.service.exception.ConfigurationInitializationException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.IdShortPath;
 import de.fraunhofer.iosb.ilt.faaast.service.model.SubmodelElementIdentifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Extent;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.OutputModifier;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.operation.OperationHandle;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.paging.Page;
@@ -37,6 +34,9 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.api.paging.PagingInfo;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotAContainerElementException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.UnsupportedModifierException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ValueMappingException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.ElementValue;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.AssetAdministrationShellSearchCriteria;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.ConceptDescriptionSearchCriteria;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.Persistence;
@@ -44,14 +44,35 @@ import de.fraunhofer.iosb.ilt.faaast.service.persistence.SubmodelElementSearchCr
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.SubmodelSearchCriteria;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.memory.PersistenceInMemory;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.memory.PersistenceInMemoryConfig;
+import de.fraunhofer.iosb.ilt.faaast.service.util.FileHelper;
+import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceBuilder;
+import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceHelper;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.eclipse.digitaltwin.aas4j.v3.model.AssetAdministrationShell;
 import org.eclipse.digitaltwin.aas4j.v3.model.ConceptDescription;
 import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
+import org.eclipse.digitaltwin.aas4j.v3.model.Identifiable;
 import org.eclipse.digitaltwin.aas4j.v3.model.OperationResult;
 import org.eclipse.digitaltwin.aas4j.v3.model.Reference;
 import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
@@ -68,33 +89,71 @@ import org.slf4j.LoggerFactory;
  * <li>AASX packages
  * <li>Package Descriptors
  * </ul>
+ *
+ * <p>Results of asynchronous operations are stored as one file per operation handle in the subdirectory
+ * {@code operation-states} of {@link PersistenceFileConfig#getDataDir()}, i.e. saving a result only writes the file of
+ * that result. Files of evicted results are deleted.
+ *
+ * <p>If {@link PersistenceFileConfig#isJournaling()} is enabled, modifications are not written to the model file
+ * directly but appended to a change journal (see {@link Journal}) so that the cost of a modification does not depend on
+ * the size of the model. Each modification is appended and forced to disk before it is applied, i.e. a modification that
+ * cannot be journaled fails with a {@link PersistenceException} and is not applied. The journal is compacted into the model file in the background once it exceeds
+ * {@link PersistenceFileConfig#getJournalCompactionSize()} or every
+ * {@link PersistenceFileConfig#getJournalCompactionInterval()}, as well as on {@link #stop()}. On startup, the
+ * journal is replayed on top of the model file. During compaction, the new model file is first written to a temporary
+ * file which is then atomically moved over the model file. As long as the temporary file exists, the model file does
+ * not contain any changes from the journal.
+ *
+ * <p>Otherwise, the whole model file is rewritten after modifications. If {@link PersistenceFileConfig#getFlushInterval()}
+ * is set, this happens asynchronously, i.e. modifications only mark the model as changed and a background task
+ * coalesces all changes since the last write into a single write every flush interval or as soon as
+ * {@link PersistenceFileConfig#getFlushMaxPendingChanges()} is exceeded. Use {@link #flush()} to wait until all
+ * changes have been written. In all cases, the model file is replaced atomically by first writing to a temporary file.
+ *
+ * <p>If {@link PersistenceFileConfig#isSharded()} is enabled, the model is not stored in a single file but in a
+ * directory with one file per identifiable (see {@link ShardedStore}), i.e. a modification only writes the file of the
+ * affected identifiable.
+ *
+ * <p>If {@link PersistenceFileConfig#isBinarySnapshot()} is enabled, a {@link BinarySnapshot} is written next to the
+ * model file on compaction of the journal and on {@link #stop()}, i.e. modifications do not pay for writing it. On
+ * startup, the snapshot is loaded instead of the model file as long as the model file has not been modified since.
  */
 public class PersistenceFile implements Persistence<PersistenceFileConfig> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PersistenceFile.class);
-    private static final String OPERATION_STATES_FILENAME = "operation-states.json";
-    private final ObjectMapper mapper;
+    private static final String OPERATION_STATES_DIRECTORY = "operation-states";
+    private static final String LEGACY_OPERATION_STATES_FILENAME = "operation-states.json";
+    private static final String OPERATION_STATE_FILE_EXTENSION = ".json";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    private static final String SHARD_DIRECTORY_EXTENSION = ".shards";
+    private static final String BINARY_SNAPSHOT_FILE_EXTENSION = ".snapshot";
+    // value-only serialization omits the content of blobs by default
+    private static final OutputModifier JOURNAL_OUTPUT_MODIFIER = new OutputModifier.Builder()
+            .extend(Extent.WITH_BLOB_VALUE)
+            .build();
+    private final Object journalLock = new Object();
+    private final AtomicBoolean compactionPending = new AtomicBoolean();
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+    private final AtomicLong pendingChanges = new AtomicLong();
+    private final AtomicBoolean allShardsDirty = new AtomicBoolean();
+    private final Map<Class<? extends Identifiable>, Set<String>> dirtyShards = Map.of(
+            AssetAdministrationShell.class, ConcurrentHashMap.newKeySet(),
+            Submodel.class, ConcurrentHashMap.newKeySet(),
+            ConceptDescription.class, ConcurrentHashMap.newKeySet());
+    private final JsonApiSerializer serializer;
+    private final JsonApiDeserializer deserializer;
     private PersistenceFileConfig config;
     private PersistenceInMemory persistence;
-    private File operationStatesFile;
+    private File operationStatesDir;
+    private Journal journal;
+    private ShardedStore shards;
+    private BinarySnapshot binarySnapshot;
+    private ScheduledExecutorService backgroundExecutor;
+    private long journalSize;
 
     public PersistenceFile() {
-        mapper = new ObjectMapper();
-        SimpleModule module = new SimpleModule();
-        module.addKeySerializer(OperationHandle.class, new JsonSerializer<OperationHandle>() {
-            @Override
-            public void serialize(OperationHandle value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
-                gen.writeFieldName(value.getHandleId());
-            }
-        });
-        module.addKeyDeserializer(OperationHandle.class, new KeyDeserializer() {
-            @Override
-            public Object deserializeKey(String key, DeserializationContext ctxt) throws IOException {
-                return OperationHandle.builder()
-                        .handleId(key)
-                        .build();
-            }
-        });
+        serializer = new JsonApiSerializer();
+        deserializer = new JsonApiDeserializer();
     }
 
 
@@ -109,21 +168,154 @@ public class PersistenceFile implements Persistence<PersistenceFileConfig> {
         this.config = config;
         try {
             config.init();
-            Environment aasEnvironment = config.loadInitialModel();
+            Environment aasEnvironment;
+            boolean loadedFromShards = false;
+            if (config.isSharded()) {
+                shards = new ShardedStore(
+                        Path.of(config.getDataDir(), FileHelper.getFilenameWithoutExtension(config.getFilePath().toFile()) + SHARD_DIRECTORY_EXTENSION),
+                        serializer,
+                        deserializer);
+                // as for the model file, previous changes are discarded if the initial model should be kept
+                loadedFromShards = shards.exists()
+                        && !(config.isKeepInitial() && (Objects.nonNull(config.getInitialModel()) || Objects.nonNull(config.getInitialModelFile())));
+            }
+            // snapshots are only useful if the model file itself is loaded on the next startup
+            if (config.isBinarySnapshot() && isLoadedFromFilePath()) {
+                binarySnapshot = new BinarySnapshot(Path.of(config.getFilePath() + BINARY_SNAPSHOT_FILE_EXTENSION), serializer, deserializer);
+            }
+            boolean loadedFromBinarySnapshot = false;
+            if (loadedFromShards) {
+                LOGGER.info("loading model from shards");
+                aasEnvironment = shards.load();
+            }
+            else {
+                aasEnvironment = loadBinarySnapshot();
+                loadedFromBinarySnapshot = Objects.nonNull(aasEnvironment);
+                if (!loadedFromBinarySnapshot) {
+                    aasEnvironment = config.loadInitialModel();
+                }
+            }
             persistence = PersistenceInMemoryConfig.builder()
                     .initialModel(aasEnvironment)
+                    .operationResultMaxCount(config.getOperationResultMaxCount())
+                    .operationResultTimeToLive(config.getOperationResultTimeToLive())
                     .build()
                     .newInstance(coreConfig, context);
-            saveEnvironment();
-            operationStatesFile = Path.of(config.getDataDir(), OPERATION_STATES_FILENAME).toFile();
+            if (config.isJournaling()) {
+                initJournal(loadedFromBinarySnapshot);
+            }
+            else {
+                if (Objects.nonNull(shards)) {
+                    if (!loadedFromShards) {
+                        shards.writeAll(aasEnvironment);
+                    }
+                }
+                else if (!loadedFromBinarySnapshot) {
+                    // the model file is unchanged if it has been loaded from a matching binary snapshot
+                    saveEnvironment();
+                }
+                if (config.getFlushInterval() > 0) {
+                    backgroundExecutor = createBackgroundExecutor();
+                    backgroundExecutor.scheduleWithFixedDelay(
+                            this::flush,
+                            config.getFlushInterval(),
+                            config.getFlushInterval(),
+                            TimeUnit.MILLISECONDS);
+                }
+            }
+            operationStatesDir = Path.of(config.getDataDir(), OPERATION_STATES_DIRECTORY).toFile();
+            Files.createDirectories(operationStatesDir.toPath());
+            persistence.setOperationResultRemovalListener(this::deleteOperationState);
             loadOperationStates();
+            warnAboutLegacyOperationStatesFile();
         }
-        catch (ConfigurationException | DeserializationException e) {
+        catch (ConfigurationException | DeserializationException | SerializationException | IOException | PersistenceException e) {
             throw new ConfigurationInitializationException("initializing file persistence failed", e);
         }
     }
 
 
+    private Environment loadBinarySnapshot() {
+        if (Objects.isNull(binarySnapshot)) {
+            return null;
+        }
+        try {
+            Environment result = binarySnapshot.read(config.getFilePath());
+            if (Objects.nonNull(result)) {
+                LOGGER.info("loading model from binary snapshot (file: {})", binarySnapshot.getFile());
+            }
+            return result;
+        }
+        catch (IOException | DeserializationException e) {
+            LOGGER.warn(String.format("Could not load binary snapshot %s, loading model file instead", binarySnapshot.getFile()), e);
+            return null;
+        }
+    }
+
+
+    private void initJournal(boolean modelFileUpToDate) throws IOException, SerializationException, PersistenceException {
+        Path filePath = config.getFilePath();
+        journal = new Journal(filePath.toAbsolutePath().getParent(), filePath.getFileName().toString());
+        List<Path> segments = journal.getSegments();
+        File tempFile = getTempFile();
+        AtomicLong replayedEntries = new AtomicLong();
+        if (isLoadedFromFilePath() && !segments.isEmpty()) {
+            // unless a compaction has been interrupted, all closed segments are already contained in the model file
+            List<Path> pendingSegments = tempFile.exists()
+                    ? segments
+                    : segments.subList(segments.size() - 1, segments.size());
+            // an entry is only replayed once the next entry is known as it is skipped if the next entry marks it as aborted
+            AtomicReference<JournalEntry> pending = new AtomicReference<>();
+            for (Path segment: pendingSegments) {
+                LOGGER.info("replaying journal (file: {})", segment);
+                journal.read(segment, x -> {
+                    JournalEntry previous = pending.getAndSet(x.getType() == JournalEntry.Type.ABORTED ? null : x);
+                    if (Objects.nonNull(previous) && x.getType() != JournalEntry.Type.ABORTED) {
+                        replay(previous);
+                        replayedEntries.incrementAndGet();
+                    }
+                });
+            }
+            if (Objects.nonNull(pending.get())) {
+                replay(pending.get());
+                replayedEntries.incrementAndGet();
+            }
+        }
+        if (!modelFileUpToDate || replayedEntries.get() > 0) {
+            // replaying the journal is a compaction
+            Environment environment = persistence.getEnvironment();
+            writeSnapshot(environment);
+            writeBinarySnapshot(environment);
+        }
+        journal.deleteAll();
+        journal.open();
+        backgroundExecutor = createBackgroundExecutor();
+        if (config.getJournalCompactionInterval() > 0) {
+            backgroundExecutor.scheduleWithFixedDelay(
+                    this::compact,
+                    config.getJournalCompactionInterval(),
+                    config.getJournalCompactionInterval(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    private static ScheduledExecutorService createBackgroundExecutor() {
+        return Executors.newSingleThreadScheduledExecutor(
+                new BasicThreadFactory.Builder()
+                        .namingPattern("PersistenceFile-%d")
+                        .daemon(true)
+                        .build());
+    }
+
+
+    private boolean isLoadedFromFilePath() {
+        return Objects.isNull(config.getInitialModel())
+                && Objects.nonNull(config.getInitialModelFile())
+                && config.getInitialModelFile().toPath().toAbsolutePath().normalize().equals(config.getFilePath().toAbsolutePath().normalize());
+    }
+
+
     @Override
     public void start() throws PersistenceException {
         //intentionally left empty
@@ -132,7 +324,38 @@ public class PersistenceFile implements Persistence<PersistenceFileConfig> {
 
     @Override
     public void stop() {
-        //intentionally left empty
+        if (Objects.nonNull(backgroundExecutor)) {
+            backgroundExecutor.shutdown();
+            try {
+                if (!backgroundExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    LOGGER.warn("background writes of file persistence did not terminate in time");
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+        if (Objects.nonNull(journal)) {
+            synchronized (journalLock) {
+                try {
+                    journal.close();
+                }
+                catch (IOException e) {
+                    LOGGER.warn("closing journal failed", e);
+                }
+            }
+        }
+        // modifications only write the model file, the binary snapshot is only written on compaction and here
+        if (Objects.nonNull(binarySnapshot) && pendingChanges.get() == 0 && !binarySnapshot.isUpToDate(config.getFilePath())) {
+            writeBinarySnapshot(persistence.getEnvironment());
+        }
+    }
+
+
+    @Override
+    public boolean isSharingResults() {
+        return persistence.isSharingResults();
     }
 
 
@@ -197,116 +420,610 @@ public class PersistenceFile implements Persistence<PersistenceFileConfig> {
 
 
     @Override
-    public void save(AssetAdministrationShell assetAdministrationShell) {
-        persistence.save(assetAdministrationShell);
-        saveEnvironment();
+    public boolean assetAdministrationShellExists(String id) {
+        return persistence.assetAdministrationShellExists(id);
     }
 
 
     @Override
-    public void save(ConceptDescription conceptDescription) {
-        persistence.save(conceptDescription);
-        saveEnvironment();
+    public boolean submodelExists(String id) {
+        return persistence.submodelExists(id);
     }
 
 
     @Override
-    public void save(Submodel submodel) {
-        persistence.save(submodel);
-        saveEnvironment();
+    public boolean conceptDescriptionExists(String id) {
+        return persistence.conceptDescriptionExists(id);
     }
 
 
     @Override
-    public void insert(SubmodelElementIdentifier parentIdentifier, SubmodelElement submodelElement) throws ResourceNotFoundException, ResourceNotAContainerElementException {
-        persistence.insert(parentIdentifier, submodelElement);
-        saveEnvironment();
+    public boolean submodelElementExists(SubmodelElementIdentifier identifier) {
+        return persistence.submodelElementExists(identifier);
     }
 
 
     @Override
-    public void update(SubmodelElementIdentifier identifier, SubmodelElement submodelElement) throws ResourceNotFoundException {
-        persistence.update(identifier, submodelElement);
+    public boolean submodelRefExists(String aasId, String submodelId) {
+        return persistence.submodelRefExists(aasId, submodelId);
+    }
+
+
+    @Override
+    public Environment filterExisting(Environment environment) {
+        return persistence.filterExisting(environment);
+    }
+
+
+    @Override
+    public void save(AssetAdministrationShell assetAdministrationShell) throws PersistenceException {
+        modify(
+                () -> persistence.save(assetAdministrationShell),
+                JournalEntry.Type.SAVE_ASSET_ADMINISTRATION_SHELL,
+                assetAdministrationShell.getId(),
+                null,
+                assetAdministrationShell);
+    }
+
+
+    @Override
+    public void save(ConceptDescription conceptDescription) throws PersistenceException {
+        modify(
+                () -> persistence.save(conceptDescription),
+                JournalEntry.Type.SAVE_CONCEPT_DESCRIPTION,
+                conceptDescription.getId(),
+                null,
+                conceptDescription);
+    }
+
+
+    @Override
+    public void save(Submodel submodel) throws PersistenceException {
+        modify(
+                () -> persistence.save(submodel),
+                JournalEntry.Type.SAVE_SUBMODEL,
+                submodel.getId(),
+                null,
+                submodel);
+    }
+
+
+    @Override
+    public void saveAll(Environment environment) throws PersistenceException {
+        if (Objects.nonNull(journal) || Objects.nonNull(shards) || Objects.nonNull(backgroundExecutor)) {
+            // journal entries, shards and pending changes are tracked per identifiable
+            Persistence.super.saveAll(environment);
+            return;
+        }
+        persistence.saveAll(environment);
         saveEnvironment();
     }
 
 
+    @Override
+    public void insert(SubmodelElementIdentifier parentIdentifier, SubmodelElement submodelElement) throws ResourceNotFoundException, ResourceNotAContainerElementException, PersistenceException {
+        this.<ResourceNotFoundException, ResourceNotAContainerElementException> modify(
+                () -> persistence.insert(parentIdentifier, submodelElement),
+                JournalEntry.Type.INSERT_SUBMODEL_ELEMENT,
+                parentIdentifier.getSubmodelId(),
+                parentIdentifier.getIdShortPath(),
+                submodelElement);
+    }
+
+
+    @Override
+    public void update(SubmodelElementIdentifier identifier, SubmodelElement submodelElement) throws ResourceNotFoundException, PersistenceException {
+        modify(
+                () -> persistence.update(identifier, submodelElement),
+                JournalEntry.Type.UPDATE_SUBMODEL_ELEMENT,
+                identifier.getSubmodelId(),
+                identifier.getIdShortPath(),
+                submodelElement);
+    }
+
+
+    @Override
+    public ElementValue getValue(SubmodelElementIdentifier identifier) throws ResourceNotFoundException, ValueMappingException {
+        return persistence.getValue(identifier);
+    }
+
+
+    @Override
+    public void setValue(SubmodelElementIdentifier identifier, ElementValue value) throws ResourceNotFoundException, ValueMappingException, PersistenceException {
+        this.<ResourceNotFoundException, ValueMappingException> modify(
+                () -> persistence.setValue(identifier, value),
+                JournalEntry.Type.SET_SUBMODEL_ELEMENT_VALUE,
+                identifier.getSubmodelId(),
+                identifier.getIdShortPath(),
+                value);
+    }
+
+
     @Override
     public void save(OperationHandle handle, OperationResult result) {
         persistence.save(handle, result);
-        saveOperationStates();
+        saveOperationState(handle, result);
     }
 
 
     @Override
-    public void deleteAssetAdministrationShell(String id) throws ResourceNotFoundException {
-        persistence.deleteAssetAdministrationShell(id);
-        saveEnvironment();
+    public void deleteAssetAdministrationShell(String id) throws ResourceNotFoundException, PersistenceException {
+        modify(
+                () -> persistence.deleteAssetAdministrationShell(id),
+                JournalEntry.Type.DELETE_ASSET_ADMINISTRATION_SHELL,
+                id,
+                null,
+                null);
     }
 
 
     @Override
-    public void deleteSubmodel(String id) throws ResourceNotFoundException {
-        persistence.deleteSubmodel(id);
-        saveEnvironment();
+    public void deleteSubmodel(String id) throws ResourceNotFoundException, PersistenceException {
+        // deleting a submodel also removes the references to it from all shells, so their shards must be written as well
+        List<String> referencingShells = Objects.nonNull(shards)
+                ? getShellsReferencing(id)
+                : List.of();
+        modify(
+                () -> persistence.deleteSubmodel(id),
+                JournalEntry.Type.DELETE_SUBMODEL,
+                id,
+                null,
+                null);
+        referencingShells.forEach(x -> environmentChanged(JournalEntry.Type.SAVE_ASSET_ADMINISTRATION_SHELL, x));
+    }
+
+
+    private List<String> getShellsReferencing(String submodelId) {
+        Reference submodelRef = ReferenceBuilder.forSubmodel(submodelId);
+        return persistence.findAssetAdministrationShells(AssetAdministrationShellSearchCriteria.NONE, QueryModifier.MINIMAL, PagingInfo.ALL)
+                .getContent().stream()
+                .filter(x -> Objects.nonNull(x.getSubmodels()) && x.getSubmodels().stream().anyMatch(ref -> ReferenceHelper.equals(ref, submodelRef)))
+                .map(AssetAdministrationShell::getId)
+                .toList();
     }
 
 
     @Override
-    public void deleteConceptDescription(String id) throws ResourceNotFoundException {
-        persistence.deleteConceptDescription(id);
-        saveEnvironment();
+    public void deleteConceptDescription(String id) throws ResourceNotFoundException, PersistenceException {
+        modify(
+                () -> persistence.deleteConceptDescription(id),
+                JournalEntry.Type.DELETE_CONCEPT_DESCRIPTION,
+                id,
+                null,
+                null);
     }
 
 
     @Override
-    public void deleteSubmodelElement(SubmodelElementIdentifier identifier) throws ResourceNotFoundException {
-        persistence.deleteSubmodelElement(identifier);
-        saveEnvironment();
+    public void deleteSubmodelElement(SubmodelElementIdentifier identifier) throws ResourceNotFoundException, PersistenceException {
+        modify(
+                () -> persistence.deleteSubmodelElement(identifier),
+                JournalEntry.Type.DELETE_SUBMODEL_ELEMENT,
+                identifier.getSubmodelId(),
+                identifier.getIdShortPath(),
+                null);
     }
 
 
     @Override
     public void deleteAll() throws PersistenceException {
-        persistence.deleteAll();
-        saveEnvironment();
+        modify(
+                () -> persistence.deleteAll(),
+                JournalEntry.Type.DELETE_ALL,
+                null,
+                null,
+                null);
     }
 
 
-    private void saveEnvironment() {
+    private <E1 extends Exception, E2 extends Exception> void modify(
+                                                                     Modification<E1, E2> modification,
+                                                                     JournalEntry.Type type,
+                                                                     String id,
+                                                                     IdShortPath idShortPath,
+                                                                     Object payload)
+            throws E1, E2, PersistenceException {
+        if (Objects.isNull(journal)) {
+            modification.run();
+            environmentChanged(type, id);
+            return;
+        }
+        JournalEntry entry = journalEntry(type, id, idShortPath, payload);
+        synchronized (journalLock) {
+            // the entry is written ahead so that a modification is never visible without being durable, and append and
+            // modification must happen atomically so that the journal has the same order as the modifications
+            appendToJournal(entry);
+            try {
+                modification.run();
+            }
+            catch (Exception e) {
+                abortJournalEntry(entry);
+                throw e;
+            }
+        }
+        triggerCompactionIfNeeded();
+    }
+
+
+    private JournalEntry journalEntry(JournalEntry.Type type, String id, IdShortPath idShortPath, Object payload) throws PersistenceException {
         try {
-            EnvironmentSerializationManager
-                    .serializerFor(config.getDataformat())
-                    .write(new File(String.valueOf(config.getFilePath())), persistence.getEnvironment());
+            return new JournalEntry(
+                    type,
+                    id,
+                    Objects.nonNull(idShortPath) && !idShortPath.isEmpty() ? idShortPath.toString() : null,
+                    Objects.nonNull(payload) ? serializer.write(payload, JOURNAL_OUTPUT_MODIFIER) : null);
+        }
+        catch (SerializationException | UnsupportedModifierException e) {
+            throw new PersistenceException(String.format("serializing journal entry failed (type: %s, id: %s)", type, id), e);
+        }
+    }
+
+
+    private void appendToJournal(JournalEntry entry) throws PersistenceException {
+        try {
+            journalSize = journal.append(entry);
+        }
+        catch (IOException e) {
+            throw new PersistenceException(String.format("appending to journal of file %s failed", config.getFilePath()), e);
+        }
+    }
+
+
+    private void abortJournalEntry(JournalEntry entry) {
+        try {
+            journalSize = journal.append(new JournalEntry(JournalEntry.Type.ABORTED, null, null, null));
+        }
+        catch (IOException e) {
+            // replaying the entry fails the same way the modification did, so startup fails instead of silently diverging
+            LOGGER.error(String.format("Could not mark failed modification in journal of file %s (type: %s, id: %s)",
+                    config.getFilePath(),
+                    entry.getType(),
+                    entry.getId()),
+                    e);
+        }
+    }
+
+
+    private void triggerCompactionIfNeeded() {
+        if (config.getJournalCompactionSize() > 0
+                && journalSize >= config.getJournalCompactionSize()
+                && compactionPending.compareAndSet(false, true)) {
+            backgroundExecutor.execute(this::compact);
+        }
+    }
+
+
+    private void replay(JournalEntry entry) throws PersistenceException {
+        try {
+            IdShortPath idShortPath = Objects.nonNull(entry.getIdShortPath())
+                    ? IdShortPath.parse(entry.getIdShortPath())
+                    : IdShortPath.EMPTY;
+            SubmodelElementIdentifier identifier = SubmodelElementIdentifier.builder()
+                    .submodelId(entry.getId())
+                    .idShortPath(idShortPath)
+                    .build();
+            switch (entry.getType()) {
+                case SAVE_ASSET_ADMINISTRATION_SHELL:
+                    persistence.save(deserializer.read(entry.getPayload(), AssetAdministrationShell.class));
+                    break;
+                case SAVE_SUBMODEL:
+                    persistence.save(deserializer.read(entry.getPayload(), Submodel.class));
+                    break;
+                case SAVE_CONCEPT_DESCRIPTION:
+                    persistence.save(deserializer.read(entry.getPayload(), ConceptDescription.class));
+                    break;
+                case INSERT_SUBMODEL_ELEMENT:
+                    persistence.insert(identifier, deserializer.read(entry.getPayload(), SubmodelElement.class));
+                    break;
+                case UPDATE_SUBMODEL_ELEMENT:
+                    persistence.update(identifier, deserializer.read(entry.getPayload(), SubmodelElement.class));
+                    break;
+                case SET_SUBMODEL_ELEMENT_VALUE:
+                    // values are serialized as value-only and therefore require the type information of the element
+                    persistence.setValue(identifier, deserializer.readValue(
+                            entry.getPayload(),
+                            persistence.getSubmodelElement(identifier, QueryModifier.DEFAULT)));
+                    break;
+                case DELETE_ASSET_ADMINISTRATION_SHELL:
+                    persistence.deleteAssetAdministrationShell(entry.getId());
+                    break;
+                case DELETE_SUBMODEL:
+                    persistence.deleteSubmodel(entry.getId());
+                    break;
+                case DELETE_CONCEPT_DESCRIPTION:
+                    persistence.deleteConceptDescription(entry.getId());
+                    break;
+                case DELETE_SUBMODEL_ELEMENT:
+                    persistence.deleteSubmodelElement(identifier);
+                    break;
+                case DELETE_ALL:
+                    persistence.deleteAll();
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("unsupported journal entry type: %s", entry.getType()));
+            }
+        }
+        catch (DeserializationException | ResourceNotFoundException | ResourceNotAContainerElementException | ValueMappingException
+                | IllegalArgumentException e) {
+            // entries of failed modifications are marked as aborted, so any other failure means the journal does not match
+            // the model file
+            throw new PersistenceException(String.format("replaying journal entry failed (type: %s, id: %s, idShortPath: %s)",
+                    entry.getType(),
+                    entry.getId(),
+                    entry.getIdShortPath()),
+                    e);
+        }
+    }
+
+
+    private void compact() {
+        compactionPending.set(false);
+        try {
+            Environment environment;
+            synchronized (journalLock) {
+                if (journal.isEmpty()) {
+                    return;
+                }
+                // the temp file marks that the model file does not yet contain the closed segments
+                Files.write(getTempFile().toPath(), new byte[0]);
+                environment = persistence.getEnvironment();
+                journal.rotate();
+            }
+            writeSnapshot(environment);
+            writeBinarySnapshot(environment);
+            synchronized (journalLock) {
+                journal.deleteClosedSegments();
+            }
+        }
+        catch (IOException | SerializationException e) {
+            LOGGER.error(String.format("Could not compact journal into file %s", config.getFilePath()), e);
+        }
+    }
+
+
+    private synchronized void writeSnapshot(Environment environment) throws IOException, SerializationException {
+        File tempFile = getTempFile();
+        EnvironmentSerializationManager
+                .serializerFor(config.getDataformat())
+                .write(tempFile, environment);
+        Files.move(tempFile.toPath(), config.getFilePath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    private synchronized void writeBinarySnapshot(Environment environment) {
+        if (Objects.isNull(binarySnapshot)) {
+            return;
+        }
+        try {
+            binarySnapshot.write(environment, config.getFilePath());
+        }
+        catch (IOException | SerializationException e) {
+            // an outdated snapshot does not match the model file and is therefore ignored on startup
+            LOGGER.warn(String.format("Could not write binary snapshot %s", binarySnapshot.getFile()), e);
+        }
+    }
+
+
+    private File getTempFile() {
+        return new File(config.getFilePath() + TEMP_FILE_EXTENSION);
+    }
+
+
+    private void environmentChanged(JournalEntry.Type type, String id) {
+        if (Objects.isNull(backgroundExecutor)) {
+            if (Objects.nonNull(shards)) {
+                saveShard(getAffectedType(type), id);
+            }
+            else {
+                saveEnvironment();
+            }
+            return;
+        }
+        if (Objects.nonNull(shards)) {
+            Class<? extends Identifiable> affectedType = getAffectedType(type);
+            if (Objects.isNull(affectedType)) {
+                allShardsDirty.set(true);
+            }
+            else {
+                dirtyShards.get(affectedType).add(id);
+            }
+        }
+        long changes = pendingChanges.incrementAndGet();
+        if (config.getFlushMaxPendingChanges() > 0
+                && changes >= config.getFlushMaxPendingChanges()
+                && flushPending.compareAndSet(false, true)) {
+            backgroundExecutor.execute(this::flush);
+        }
+    }
+
+
+    /**
+     * Writes all pending changes to the model file and returns once they have been written. When using journaling,
+     * this compacts the journal into the model file. If there are no pending changes, this method returns immediately.
+     */
+    public void flush() {
+        if (Objects.nonNull(journal)) {
+            compact();
+            return;
+        }
+        flushPending.set(false);
+        long changes = pendingChanges.getAndSet(0);
+        if (changes > 0 && !(Objects.nonNull(shards) ? saveDirtyShards() : saveEnvironment())) {
+            // keep changes pending so that the next flush retries writing them
+            pendingChanges.addAndGet(changes);
+        }
+    }
+
+
+    private boolean saveDirtyShards() {
+        if (allShardsDirty.getAndSet(false)) {
+            dirtyShards.values().forEach(Set::clear);
+            if (!saveShard(null, null)) {
+                allShardsDirty.set(true);
+                return false;
+            }
+            return true;
+        }
+        boolean result = true;
+        for (var entry: dirtyShards.entrySet()) {
+            for (String id: List.copyOf(entry.getValue())) {
+                entry.getValue().remove(id);
+                if (!saveShard(entry.getKey(), id)) {
+                    entry.getValue().add(id);
+                    result = false;
+                }
+            }
+        }
+        return result;
+    }
+
+
+    private boolean saveShard(Class<? extends Identifiable> type, String id) {
+        try {
+            if (Objects.isNull(type)) {
+                shards.writeAll(persistence.getEnvironment());
+            }
+            else {
+                shards.update(type, id, () -> getIdentifiable(type, id));
+            }
+            return true;
+        }
+        catch (IOException | SerializationException e) {
+            LOGGER.error(String.format("Could not save shard (type: %s, id: %s)", Objects.nonNull(type) ? type.getSimpleName() : "all", id), e);
+            return false;
+        }
+    }
+
+
+    private Identifiable getIdentifiable(Class<? extends Identifiable> type, String id) {
+        try {
+            if (AssetAdministrationShell.class.equals(type)) {
+                return persistence.getAssetAdministrationShell(id, QueryModifier.MAXIMAL);
+            }
+            if (Submodel.class.equals(type)) {
+                return persistence.getSubmodel(id, QueryModifier.MAXIMAL);
+            }
+            return persistence.getConceptDescription(id, QueryModifier.MAXIMAL);
+        }
+        catch (ResourceNotFoundException e) {
+            return null;
+        }
+    }
+
+
+    private static Class<? extends Identifiable> getAffectedType(JournalEntry.Type type) {
+        switch (type) {
+            case SAVE_ASSET_ADMINISTRATION_SHELL:
+            case DELETE_ASSET_ADMINISTRATION_SHELL:
+                return AssetAdministrationShell.class;
+            case SAVE_CONCEPT_DESCRIPTION:
+            case DELETE_CONCEPT_DESCRIPTION:
+                return ConceptDescription.class;
+            case DELETE_ALL:
+                return null;
+            default:
+                // all other modifications affect a submodel or its elements
+                return Submodel.class;
+        }
+    }
+
+
+    private synchronized boolean saveEnvironment() {
+        try {
+            writeSnapshot(persistence.getEnvironment());
+            return true;
         }
         catch (IOException | SerializationException e) {
             LOGGER.error(String.format("Could not save environment to file %s", config.getFilePath()), e);
+            return false;
         }
     }
 
 
-    private void saveOperationStates() {
+    private void saveOperationState(OperationHandle handle, OperationResult result) {
+        File file = getOperationStateFile(handle);
         try {
-            mapper.writeValue(operationStatesFile, persistence.getOperationStates());
+            serializer.write(file, result);
         }
-        catch (IOException e) {
-            LOGGER.error(String.format("Error persisting operation states to file %s", operationStatesFile.getAbsolutePath()), e);
+        catch (IOException | SerializationException | UnsupportedModifierException e) {
+            LOGGER.error(String.format("Error persisting operation state to file %s", file.getAbsolutePath()), e);
         }
     }
 
 
+    private void deleteOperationState(OperationHandle handle) {
+        deleteFile(getOperationStateFile(handle));
+    }
+
+
+    private File getOperationStateFile(OperationHandle handle) {
+        // handle ids are encoded as they are not guaranteed to be valid file names
+        return new File(
+                operationStatesDir,
+                Base64.getUrlEncoder().withoutPadding().encodeToString(handle.getHandleId().getBytes(StandardCharsets.UTF_8))
+                        + OPERATION_STATE_FILE_EXTENSION);
+    }
+
+
     private void loadOperationStates() {
-        try {
-            if (Objects.nonNull(operationStatesFile) && operationStatesFile.exists()) {
-                persistence.setOperationStates(
-                        mapper.readValue(
-                                operationStatesFile,
-                                new TypeReference<HashMap<OperationHandle, OperationResult>>() {}));
+        File[] files = operationStatesDir.listFiles(x -> x.isFile() && x.getName().endsWith(OPERATION_STATE_FILE_EXTENSION));
+        if (Objects.isNull(files)) {
+            return;
+        }
+        // oldest results are loaded first so that they are evicted first if there are more than the configured maximum
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        long now = System.currentTimeMillis();
+        Map<OperationHandle, OperationResult> operationStates = new LinkedHashMap<>();
+        for (File file: files) {
+            if (config.getOperationResultTimeToLive() > 0 && now - file.lastModified() > config.getOperationResultTimeToLive()) {
+                deleteFile(file);
+                continue;
+            }
+            try {
+                String filename = file.getName();
+                String handleId = new String(
+                        Base64.getUrlDecoder().decode(filename.substring(0, filename.length() - OPERATION_STATE_FILE_EXTENSION.length())),
+                        StandardCharsets.UTF_8);
+                operationStates.put(
+                        OperationHandle.builder()
+                                .handleId(handleId)
+                                .build(),
+                        deserializer.read(file, OperationResult.class));
+            }
+            catch (IOException | DeserializationException | IllegalArgumentException e) {
+                LOGGER.error(String.format("Error loading operation state from file %s", file.getAbsolutePath()), e);
             }
         }
+        persistence.setOperationStates(operationStates);
+    }
+
+
+    private void warnAboutLegacyOperationStatesFile() {
+        // previous versions stored all results in a single file keyed by the identity of the handle instead of its id,
+        // so the handle ids cannot be restored from it
+        File legacyFile = Path.of(config.getDataDir(), LEGACY_OPERATION_STATES_FILENAME).toFile();
+        if (legacyFile.exists()) {
+            LOGGER.warn(String.format(
+                    "Ignoring operation states file %s written by a previous version as it does not contain the handle ids of the stored results. "
+                            + "Results of asynchronous operations are now stored in %s, the file can safely be deleted.",
+                    legacyFile.getAbsolutePath(),
+                    operationStatesDir.getAbsolutePath()));
+        }
+    }
+
+
+    private static void deleteFile(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        }
         catch (IOException e) {
-            LOGGER.error(String.format("Error loading operation states from file %s", operationStatesFile.getAbsolutePath()), e);
+            LOGGER.warn(String.format("Error deleting operation state file %s", file.getAbsolutePath()), e);
         }
     }
 
+    @FunctionalInterface
+    private interface Modification<E1 extends Exception, E2 extends Exception> {
+
+        public void run() throws E1, E2;
+    }
 }
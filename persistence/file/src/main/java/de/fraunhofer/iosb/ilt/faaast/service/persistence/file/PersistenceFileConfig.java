@@ -20,6 +20,7 @@ import de.fraunhofer.iosb.ilt.faaast.service.dataformat.EnvironmentSerialization
 import de.fraunhofer.iosb.ilt.faaast.service.exception.ConfigurationInitializationException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.serialization.DataFormat;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.PersistenceConfig;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.memory.PersistenceInMemoryConfig;
 import java.io.IOException;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
@@ -40,6 +41,13 @@ public class PersistenceFileConfig extends PersistenceConfig<PersistenceFile> {
     public static final DataFormat DEFAULT_DATAFORMAT = DataFormat.JSON;
     public static final String DEFAULT_FILENAME_PREFIX = "model_persistence";
     public static final String DEFAULT_FILENAME = DEFAULT_FILENAME_PREFIX + "." + DEFAULT_DATAFORMAT.toString().toLowerCase();
+    public static final boolean DEFAULT_JOURNALING = false;
+    public static final long DEFAULT_JOURNAL_COMPACTION_SIZE = 64L * 1024 * 1024;
+    public static final long DEFAULT_JOURNAL_COMPACTION_INTERVAL = 600000;
+    public static final long DEFAULT_FLUSH_INTERVAL = 0;
+    public static final long DEFAULT_FLUSH_MAX_PENDING_CHANGES = 1000;
+    public static final boolean DEFAULT_SHARDED = false;
+    public static final boolean DEFAULT_BINARY_SNAPSHOT = false;
 
     private String dataDir;
 
@@ -49,8 +57,35 @@ public class PersistenceFileConfig extends PersistenceConfig<PersistenceFile> {
 
     private DataFormat dataformat;
 
+    private long operationResultMaxCount;
+
+    private long operationResultTimeToLive;
+
+    private boolean journaling;
+
+    private long journalCompactionSize;
+
+    private long journalCompactionInterval;
+
+    private long flushInterval;
+
+    private long flushMaxPendingChanges;
+
+    private boolean sharded;
+
+    private boolean binarySnapshot;
+
     public PersistenceFileConfig() {
         keepInitial = DEFAULT_KEEP_INITIAL;
+        operationResultMaxCount = PersistenceInMemoryConfig.DEFAULT_OPERATION_RESULT_MAX_COUNT;
+        operationResultTimeToLive = PersistenceInMemoryConfig.DEFAULT_OPERATION_RESULT_TIME_TO_LIVE;
+        journaling = DEFAULT_JOURNALING;
+        journalCompactionSize = DEFAULT_JOURNAL_COMPACTION_SIZE;
+        journalCompactionInterval = DEFAULT_JOURNAL_COMPACTION_INTERVAL;
+        flushInterval = DEFAULT_FLUSH_INTERVAL;
+        flushMaxPendingChanges = DEFAULT_FLUSH_MAX_PENDING_CHANGES;
+        sharded = DEFAULT_SHARDED;
+        binarySnapshot = DEFAULT_BINARY_SNAPSHOT;
     }
 
 
@@ -96,6 +131,12 @@ public class PersistenceFileConfig extends PersistenceConfig<PersistenceFile> {
         if (Objects.isNull(filename)) {
             filename = DEFAULT_FILENAME_PREFIX + "." + dataformat.toString().toLowerCase();
         }
+        if (sharded && journaling) {
+            throw new ConfigurationInitializationException("sharded layout cannot be combined with journaling");
+        }
+        if (sharded && binarySnapshot) {
+            throw new ConfigurationInitializationException("sharded layout cannot be combined with binary snapshots");
+        }
         LOGGER.debug("File Persistence uses file {}", getFilePath().toAbsolutePath());
     }
 
@@ -141,6 +182,156 @@ public class PersistenceFileConfig extends PersistenceConfig<PersistenceFile> {
     }
 
 
+    /**
+     * The maximum number of results of asynchronous operations to keep, see
+     * {@link PersistenceInMemoryConfig#getOperationResultMaxCount()}.
+     *
+     * @return the maximum number of operation results
+     */
+    public long getOperationResultMaxCount() {
+        return operationResultMaxCount;
+    }
+
+
+    public void setOperationResultMaxCount(long operationResultMaxCount) {
+        this.operationResultMaxCount = operationResultMaxCount;
+    }
+
+
+    /**
+     * The time in milliseconds after which the result of an asynchronous operation is evicted, see
+     * {@link PersistenceInMemoryConfig#getOperationResultTimeToLive()}.
+     *
+     * @return the time-to-live of operation results in milliseconds
+     */
+    public long getOperationResultTimeToLive() {
+        return operationResultTimeToLive;
+    }
+
+
+    public void setOperationResultTimeToLive(long operationResultTimeToLive) {
+        this.operationResultTimeToLive = operationResultTimeToLive;
+    }
+
+
+    /**
+     * If enabled, modifications are appended to a change journal next to the model file instead of rewriting the
+     * whole model file. The journal is compacted into the model file in the background, see
+     * {@link #getJournalCompactionSize()} and {@link #getJournalCompactionInterval()}.
+     *
+     * @return true if journaling is enabled, otherwise false
+     */
+    public boolean isJournaling() {
+        return journaling;
+    }
+
+
+    public void setJournaling(boolean journaling) {
+        this.journaling = journaling;
+    }
+
+
+    /**
+     * The size of the journal in bytes that triggers compaction into the model file. A value of 0 or less disables
+     * size-based compaction.
+     *
+     * @return the size in bytes
+     */
+    public long getJournalCompactionSize() {
+        return journalCompactionSize;
+    }
+
+
+    public void setJournalCompactionSize(long journalCompactionSize) {
+        this.journalCompactionSize = journalCompactionSize;
+    }
+
+
+    /**
+     * The interval in milliseconds in which the journal is compacted into the model file if it is not empty. A value of
+     * 0 or less disables time-based compaction.
+     *
+     * @return the interval in milliseconds
+     */
+    public long getJournalCompactionInterval() {
+        return journalCompactionInterval;
+    }
+
+
+    public void setJournalCompactionInterval(long journalCompactionInterval) {
+        this.journalCompactionInterval = journalCompactionInterval;
+    }
+
+
+    /**
+     * The interval in milliseconds in which pending changes are written to the model file. If greater than 0, changes
+     * are written asynchronously and multiple changes are coalesced into a single write, otherwise the model file is
+     * written synchronously after each change. Ignored if journaling is enabled.
+     *
+     * @return the interval in milliseconds
+     */
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+
+    /**
+     * The number of pending changes that triggers writing the model file before the flush interval has passed. A value
+     * of 0 or less means no limit. Only used if {@link #getFlushInterval()} is greater than 0.
+     *
+     * @return the maximum number of pending changes
+     */
+    public long getFlushMaxPendingChanges() {
+        return flushMaxPendingChanges;
+    }
+
+
+    public void setFlushMaxPendingChanges(long flushMaxPendingChanges) {
+        this.flushMaxPendingChanges = flushMaxPendingChanges;
+    }
+
+
+    /**
+     * If enabled, the model is stored in the directory {@code <filename without extension>.shards} inside
+     * {@link #getDataDir()} with one JSON file per asset administration shell, submodel and concept description
+     * instead of a single model file. Modifications then only write the file of the affected identifiable. Cannot be
+     * combined with journaling.
+     *
+     * @return true if the sharded layout is enabled, otherwise false
+     */
+    public boolean isSharded() {
+        return sharded;
+    }
+
+
+    public void setSharded(boolean sharded) {
+        this.sharded = sharded;
+    }
+
+
+    /**
+     * If enabled, a binary snapshot of the model is written to {@code <filename>.snapshot} next to the model file
+     * when the journal is compacted and when the persistence is stopped. On startup, the snapshot is loaded instead of parsing the model file as long
+     * as the model file has not been changed since. This only applies if the model file itself is loaded on startup,
+     * i.e. if {@link #isKeepInitial()} is false. Cannot be combined with the sharded layout.
+     *
+     * @return true if binary snapshots are enabled, otherwise false
+     */
+    public boolean isBinarySnapshot() {
+        return binarySnapshot;
+    }
+
+
+    public void setBinarySnapshot(boolean binarySnapshot) {
+        this.binarySnapshot = binarySnapshot;
+    }
+
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
@@ -156,13 +347,24 @@ public class PersistenceFileConfig extends PersistenceConfig<PersistenceFile> {
 
         return Objects.equals(this.dataDir, other.dataDir)
                 && Objects.equals(this.keepInitial, other.keepInitial)
-                && Objects.equals(this.dataformat, other.dataformat);
+                && Objects.equals(this.dataformat, other.dataformat)
+                && Objects.equals(this.operationResultMaxCount, other.operationResultMaxCount)
+                && Objects.equals(this.operationResultTimeToLive, other.operationResultTimeToLive)
+                && Objects.equals(this.journaling, other.journaling)
+                && Objects.equals(this.journalCompactionSize, other.journalCompactionSize)
+                && Objects.equals(this.journalCompactionInterval, other.journalCompactionInterval)
+                && Objects.equals(this.flushInterval, other.flushInterval)
+                && Objects.equals(this.flushMaxPendingChanges, other.flushMaxPendingChanges)
+                && Objects.equals(this.sharded, other.sharded)
+                && Objects.equals(this.binarySnapshot, other.binarySnapshot);
     }
 
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), this.dataDir, this.keepInitial, this.dataformat);
+        return Objects.hash(super.hashCode(), this.dataDir, this.keepInitial, this.dataformat, this.operationResultMaxCount, this.operationResultTimeToLive,
+                this.journaling, this.journalCompactionSize, this.journalCompactionInterval, this.flushInterval, this.flushMaxPendingChanges,
+                this.sharded, this.binarySnapshot);
     }
 
 
@@ -190,6 +392,60 @@ public class PersistenceFileConfig extends PersistenceConfig<PersistenceFile> {
             return getSelf();
         }
 
+
+        public B operationResultMaxCount(long value) {
+            getBuildingInstance().setOperationResultMaxCount(value);
+            return getSelf();
+        }
+
+
+        public B operationResultTimeToLive(long value) {
+            getBuildingInstance().setOperationResultTimeToLive(value);
+            return getSelf();
+        }
+
+
+        public B journaling(boolean value) {
+            getBuildingInstance().setJournaling(value);
+            return getSelf();
+        }
+
+
+        public B journalCompactionSize(long value) {
+            getBuildingInstance().setJournalCompactionSize(value);
+            return getSelf();
+        }
+
+
+        public B journalCompactionInterval(long value) {
+            getBuildingInstance().setJournalCompactionInterval(value);
+            return getSelf();
+        }
+
+
+        public B flushInterval(long value) {
+            getBuildingInstance().setFlushInterval(value);
+            return getSelf();
+        }
+
+
+        public B flushMaxPendingChanges(long value) {
+            getBuildingInstance().setFlushMaxPendingChanges(value);
+            return getSelf();
+        }
+
+
+        public B sharded(boolean value) {
+            getBuildingInstance().setSharded(value);
+            return getSelf();
+        }
+
+
+        public B binarySnapshot(boolean value) {
+            getBuildingInstance().setBinarySnapshot(value);
+            return getSelf();
+        }
+
     }
 
     public static class Builder extends AbstractBuilder<PersistenceFileConfig, Builder> {
@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.file;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.ApiDeserializer;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.ApiSerializer;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.DeserializationException;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.SerializationException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.UnsupportedModifierException;
+import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.eclipse.digitaltwin.aas4j.v3.model.AssetAdministrationShell;
+import org.eclipse.digitaltwin.aas4j.v3.model.ConceptDescription;
+import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
+import org.eclipse.digitaltwin.aas4j.v3.model.Identifiable;
+import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultEnvironment;
+
+
+/**
+ * Stores an environment in a directory with one file (shard) per asset administration shell, submodel and concept
+ * description. A manifest file contains the ids of all identifiables in order so that the environment can be restored
+ * exactly. The manifest is only rewritten if identifiables are added or removed, i.e. updating an identifiable only
+ * writes a single shard. All files are written to a temporary file first and then moved atomically.
+ *
+ * <p>Layout of the directory:
+ * <ul>
+ * <li>{@code manifest.json}
+ * <li>{@code shells/<hashed id>.json}
+ * <li>{@code submodels/<hashed id>.json}
+ * <li>{@code concept-descriptions/<hashed id>.json}
+ * </ul>
+ *
+ * <p>Shard files are named by the hex-encoded SHA-256 hash of the lower-cased id so that file names have a fixed length
+ * regardless of the id. The manifest keeps the original ids.
+ */
+class ShardedStore {
+
+    private static final String MANIFEST_FILENAME = "manifest.json";
+    private static final String SHARD_FILE_EXTENSION = ".json";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final Map<Class<? extends Identifiable>, String> DIRECTORIES = Map.of(
+            AssetAdministrationShell.class, "shells",
+            Submodel.class, "submodels",
+            ConceptDescription.class, "concept-descriptions");
+
+    private final Path directory;
+    private final ApiSerializer serializer;
+    private final ApiDeserializer deserializer;
+    private final ObjectMapper mapper;
+    private final Map<Class<? extends Identifiable>, Map<String, String>> ids;
+
+    ShardedStore(Path directory, ApiSerializer serializer, ApiDeserializer deserializer) {
+        Ensure.requireNonNull(directory, "directory must be non-null");
+        Ensure.requireNonNull(serializer, "serializer must be non-null");
+        Ensure.requireNonNull(deserializer, "deserializer must be non-null");
+        this.directory = directory;
+        this.serializer = serializer;
+        this.deserializer = deserializer;
+        this.mapper = new ObjectMapper();
+        this.ids = new LinkedHashMap<>();
+        DIRECTORIES.keySet().forEach(x -> ids.put(x, new LinkedHashMap<>()));
+    }
+
+
+    /**
+     * Checks if there is a stored environment.
+     *
+     * @return true if a manifest exists, otherwise false
+     */
+    boolean exists() {
+        return Files.isRegularFile(directory.resolve(MANIFEST_FILENAME));
+    }
+
+
+    /**
+     * Loads the stored environment. Shards are loaded in parallel.
+     *
+     * @return the environment
+     * @throws IOException if reading any file fails
+     * @throws DeserializationException if parsing any file fails
+     */
+    synchronized Environment load() throws IOException, DeserializationException {
+        Map<String, List<String>> manifest = mapper.readValue(
+                directory.resolve(MANIFEST_FILENAME).toFile(),
+                new TypeReference<Map<String, List<String>>>() {});
+        return new DefaultEnvironment.Builder()
+                .assetAdministrationShells(load(AssetAdministrationShell.class, manifest))
+                .submodels(load(Submodel.class, manifest))
+                .conceptDescriptions(load(ConceptDescription.class, manifest))
+                .build();
+    }
+
+
+    private <T extends Identifiable> List<T> load(Class<T> type, Map<String, List<String>> manifest) throws IOException, DeserializationException {
+        List<String> shardIds = manifest.getOrDefault(DIRECTORIES.get(type), List.of());
+        ids.get(type).clear();
+        shardIds.forEach(x -> ids.get(type).put(key(x), x));
+        try {
+            // parallel streams are executed on the common fork-join pool
+            return shardIds.parallelStream()
+                    .map(x -> {
+                        try {
+                            return deserializer.read(getShardFile(type, x).toFile(), type);
+                        }
+                        catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        catch (DeserializationException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    })
+                    .collect(Collectors.toList());
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        catch (IllegalStateException e) {
+            if (e.getCause() instanceof DeserializationException) {
+                throw (DeserializationException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+
+    /**
+     * Replaces the stored environment.
+     *
+     * @param environment the environment to store
+     * @throws IOException if writing any file fails
+     * @throws SerializationException if serializing any identifiable fails
+     */
+    synchronized void writeAll(Environment environment) throws IOException, SerializationException {
+        for (var entry: DIRECTORIES.entrySet()) {
+            Path shardDirectory = directory.resolve(entry.getValue());
+            Files.createDirectories(shardDirectory);
+            try (Stream<Path> files = Files.list(shardDirectory)) {
+                for (Path file: files.collect(Collectors.toList())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            ids.get(entry.getKey()).clear();
+        }
+        List<Identifiable> identifiables = new ArrayList<>();
+        identifiables.addAll(environment.getAssetAdministrationShells());
+        identifiables.addAll(environment.getSubmodels());
+        identifiables.addAll(environment.getConceptDescriptions());
+        for (Identifiable identifiable: identifiables) {
+            Class<? extends Identifiable> type = getType(identifiable);
+            writeShard(type, identifiable);
+            ids.get(type).put(key(identifiable.getId()), identifiable.getId());
+        }
+        writeManifest();
+    }
+
+
+    /**
+     * Updates the shard of a single identifiable. The current state of the identifiable is resolved while holding
+     * the lock of this store so that concurrent updates of the same identifiable are always written in order.
+     *
+     * @param type the type of the identifiable
+     * @param id the id of the identifiable
+     * @param current supplier for the current state of the identifiable, returning null if it has been deleted
+     * @throws IOException if writing fails
+     * @throws SerializationException if serialization fails
+     */
+    synchronized void update(Class<? extends Identifiable> type, String id, Supplier<Identifiable> current) throws IOException, SerializationException {
+        Ensure.requireNonNull(type, "type must be non-null");
+        Ensure.requireNonNull(id, "id must be non-null");
+        Identifiable identifiable = current.get();
+        Map<String, String> idsOfType = ids.get(type);
+        if (Objects.nonNull(identifiable)) {
+            writeShard(type, identifiable);
+            if (!idsOfType.containsKey(key(id))) {
+                idsOfType.put(key(id), identifiable.getId());
+                writeManifest();
+            }
+        }
+        else {
+            Files.deleteIfExists(getShardFile(type, id));
+            if (Objects.nonNull(idsOfType.remove(key(id)))) {
+                writeManifest();
+            }
+        }
+    }
+
+
+    private void writeShard(Class<? extends Identifiable> type, Identifiable identifiable) throws IOException, SerializationException {
+        Path file = getShardFile(type, identifiable.getId());
+        Files.createDirectories(file.getParent());
+        try {
+            writeAtomically(file, serializer.write(identifiable));
+        }
+        catch (UnsupportedModifierException e) {
+            throw new SerializationException(String.format("serializing identifiable failed (id: %s)", identifiable.getId()), e);
+        }
+    }
+
+
+    private void writeManifest() throws IOException {
+        Map<String, List<String>> manifest = new LinkedHashMap<>();
+        DIRECTORIES.forEach((type, name) -> manifest.put(name, new ArrayList<>(ids.get(type).values())));
+        writeAtomically(directory.resolve(MANIFEST_FILENAME), mapper.writeValueAsString(manifest));
+    }
+
+
+    private static void writeAtomically(Path file, String content) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + TEMP_FILE_EXTENSION);
+        Files.writeString(tempFile, content, StandardCharsets.UTF_8);
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    private Path getShardFile(Class<? extends Identifiable> type, String id) {
+        // ids are hashed as they are neither guaranteed to be valid file names nor to fit the file name length limit
+        return directory
+                .resolve(DIRECTORIES.get(type))
+                .resolve(HexFormat.of().formatHex(sha256(key(id))) + SHARD_FILE_EXTENSION);
+    }
+
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM).digest(value.getBytes(StandardCharsets.UTF_8));
+        }
+        catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(String.format("hash algorithm not supported (algorithm: %s)", HASH_ALGORITHM), e);
+        }
+    }
+
+
+    private static Class<? extends Identifiable> getType(Identifiable identifiable) {
+        return DIRECTORIES.keySet().stream()
+                .filter(x -> x.isAssignableFrom(identifiable.getClass()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(String.format("unsupported identifiable type: %s", identifiable.getClass())));
+    }
+
+
+    private static String key(String id) {
+        // ids are matched case-insensitively by the in-memory persistence
+        return id.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.file;
+
+import de.fraunhofer.iosb.ilt.faaast.service.config.CoreConfig;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.EnvironmentSerializationManager;
+import de.fraunhofer.iosb.ilt.faaast.service.exception.ConfigurationInitializationException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.AASFull;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.serialization.DataFormat;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.Datatype;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.PropertyValue;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.AbstractPersistenceTest;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
+import org.eclipse.digitaltwin.aas4j.v3.model.Property;
+import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class PersistenceFileJournalTest extends AbstractPersistenceTest<PersistenceFile, PersistenceFileConfig> {
+
+    private File modelFile;
+
+    @Before
+    public void createModelFile() throws Exception {
+        modelFile = new File(tempDir.getRoot(), "model.json");
+        EnvironmentSerializationManager
+                .serializerFor(DataFormat.JSON)
+                .write(modelFile, AASFull.createEnvironment());
+    }
+
+
+    @Override
+    public PersistenceFileConfig getPersistenceConfig(File initialModelFile, Environment initialModel) throws ConfigurationInitializationException {
+        PersistenceFileConfig result = PersistenceFileConfig.builder()
+                .initialModel(initialModel)
+                .initialModelFile(initialModelFile)
+                .dataDir(tempDir.getRoot().toString())
+                .journaling(true)
+                .build();
+        result.init();
+        return result;
+    }
+
+
+    private PersistenceFileConfig getJournalingConfig(long compactionSize) {
+        return PersistenceFileConfig.builder()
+                .initialModelFile(modelFile)
+                .keepInitial(false)
+                .journaling(true)
+                .journalCompactionSize(compactionSize)
+                .build();
+    }
+
+
+    private long getJournalSize() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir.getRoot().toPath())) {
+            return files
+                    .filter(x -> x.getFileName().toString().startsWith("model.json.journal."))
+                    .mapToLong(x -> x.toFile().length())
+                    .sum();
+        }
+    }
+
+
+    @Test
+    public void testModificationsAppendedToJournal() throws Exception {
+        PersistenceFile persistence = getJournalingConfig(0).newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        byte[] snapshot = Files.readAllBytes(modelFile.toPath());
+        Property expected = modifyBeforeRestart(persistence, "journaled value");
+        Assert.assertArrayEquals(snapshot, Files.readAllBytes(modelFile.toPath()));
+        Assert.assertTrue(getJournalSize() > 0);
+
+        // simulates a restart without compaction, e.g. after a crash
+        PersistenceFile restarted = getJournalingConfig(0).newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        assertModifiedAfterRestart(restarted, expected);
+        restarted.stop();
+        Assert.assertEquals(0, getJournalSize());
+        Environment compacted = EnvironmentSerializationManager.deserialize(modelFile).getEnvironment();
+        Assert.assertTrue(compacted.getSubmodels().stream().noneMatch(x -> DELETED_SUBMODEL_ID.equals(x.getId())));
+    }
+
+
+    @Test
+    public void testValueModificationsReplayedFromJournal() throws Exception {
+        PersistenceFile persistence = getJournalingConfig(0).newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        PropertyValue value = PropertyValue.of(Datatype.STRING, "journaled value");
+        persistence.setValue(MODIFIED_PROPERTY_IDENTIFIER, value);
+        Assert.assertTrue(getJournalSize() > 0);
+
+        // simulates a restart without compaction, e.g. after a crash
+        PersistenceFile restarted = getJournalingConfig(0).newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        Assert.assertEquals(value, restarted.getValue(MODIFIED_PROPERTY_IDENTIFIER));
+        restarted.stop();
+    }
+
+
+    @Test
+    public void testCompactionWhenSizeExceeded() throws Exception {
+        PersistenceFile persistence = getJournalingConfig(1).newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        Property expected = updateModifiedProperty(persistence, "compacted value");
+        long timeout = System.currentTimeMillis() + 10000;
+        while (getJournalSize() > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(0, getJournalSize());
+        Assert.assertFalse(new File(modelFile + ".tmp").exists());
+        Submodel submodel = EnvironmentSerializationManager.deserialize(modelFile).getEnvironment().getSubmodels().stream()
+                .filter(x -> MODIFIED_PROPERTY_IDENTIFIER.getSubmodelId().equals(x.getId()))
+                .findFirst()
+                .orElseThrow();
+        Assert.assertTrue(submodel.getSubmodelElements().contains(expected));
+        persistence.stop();
+    }
+
+
+    @Test
+    public void testRecoveryFromCrashDuringCompaction() throws Exception {
+        PersistenceFile persistence = getJournalingConfig(0).newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        Property expected = modifyBeforeRestart(persistence, "value before compaction");
+        byte[] snapshot = Files.readAllBytes(modelFile.toPath());
+
+        // simulates a crash during compaction after the journal has been rotated and while the new model file was written
+        Path modelDir = tempDir.getRoot().toPath();
+        Files.write(modelDir.resolve("model.json.journal.1"), new byte[0]);
+        Files.write(modelDir.resolve("model.json.tmp"), "{\"assetAdministrationShells\": [".getBytes(StandardCharsets.UTF_8));
+        Assert.assertArrayEquals(snapshot, Files.readAllBytes(modelFile.toPath()));
+
+        PersistenceFile restarted = getJournalingConfig(0).newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        assertModifiedAfterRestart(restarted, expected);
+        Assert.assertFalse(new File(modelFile + ".tmp").exists());
+        restarted.stop();
+        Submodel submodel = EnvironmentSerializationManager.deserialize(modelFile).getEnvironment().getSubmodels().stream()
+                .filter(x -> MODIFIED_PROPERTY_IDENTIFIER.getSubmodelId().equals(x.getId()))
+                .findFirst()
+                .orElseThrow();
+        Assert.assertTrue(submodel.getSubmodelElements().contains(expected));
+    }
+
+
+    @Test
+    public void testFailedModificationsSkippedOnReplay() throws Exception {
+        PersistenceFile persistence = getJournalingConfig(0).newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        Assert.assertThrows(ResourceNotFoundException.class, () -> persistence.deleteSubmodel("http://example.org/submodel/unknown"));
+        Property expected = updateModifiedProperty(persistence, "value after failed modification");
+        Assert.assertTrue(getJournalSize() > 0);
+
+        // simulates a restart without compaction, e.g. after a crash
+        PersistenceFile restarted = getJournalingConfig(0).newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        Assert.assertEquals(expected, restarted.getSubmodelElement(MODIFIED_PROPERTY_IDENTIFIER, QueryModifier.MAXIMAL));
+        restarted.stop();
+    }
+
+
+    @Test
+    public void testInconsistentJournalFailsStartup() throws Exception {
+        PersistenceFile persistence = getJournalingConfig(0).newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        updateModifiedProperty(persistence, "journaled value");
+        // the journaled update cannot be applied to a model file that does not contain the submodel anymore
+        Environment environment = AASFull.createEnvironment();
+        environment.getSubmodels().removeIf(x -> MODIFIED_PROPERTY_IDENTIFIER.getSubmodelId().equals(x.getId()));
+        EnvironmentSerializationManager
+                .serializerFor(DataFormat.JSON)
+                .write(modelFile, environment);
+        Assert.assertThrows(ConfigurationInitializationException.class, () -> getJournalingConfig(0).newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT));
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.file;
+
+import de.fraunhofer.iosb.ilt.faaast.service.config.CoreConfig;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.EnvironmentSerializationManager;
+import de.fraunhofer.iosb.ilt.faaast.service.exception.ConfigurationInitializationException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.AASFull;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.serialization.DataFormat;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.AbstractPersistenceTest;
+import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceBuilder;
+import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceHelper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
+import org.eclipse.digitaltwin.aas4j.v3.model.Identifiable;
+import org.eclipse.digitaltwin.aas4j.v3.model.Property;
+import org.eclipse.digitaltwin.aas4j.v3.model.Reference;
+import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultSubmodel;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class PersistenceFileShardedTest extends AbstractPersistenceTest<PersistenceFile, PersistenceFileConfig> {
+
+    private File modelFile;
+
+    @Before
+    public void createModelFile() throws Exception {
+        modelFile = new File(tempDir.getRoot(), "model.json");
+        EnvironmentSerializationManager
+                .serializerFor(DataFormat.JSON)
+                .write(modelFile, AASFull.createEnvironment());
+    }
+
+
+    @Override
+    public PersistenceFileConfig getPersistenceConfig(File initialModelFile, Environment initialModel) throws ConfigurationInitializationException {
+        PersistenceFileConfig result = PersistenceFileConfig.builder()
+                .initialModel(initialModel)
+                .initialModelFile(initialModelFile)
+                .dataDir(tempDir.getRoot().toString())
+                .sharded(true)
+                .build();
+        result.init();
+        return result;
+    }
+
+
+    private PersistenceFileConfig getShardedConfig() {
+        return PersistenceFileConfig.builder()
+                .initialModelFile(modelFile)
+                .keepInitial(false)
+                .sharded(true)
+                .build();
+    }
+
+
+    private Map<Path, byte[]> readShards() throws IOException {
+        Map<Path, byte[]> result = new HashMap<>();
+        try (Stream<Path> files = Files.walk(tempDir.getRoot().toPath().resolve("model.shards"))) {
+            for (Path file: files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                result.put(file, Files.readAllBytes(file));
+            }
+        }
+        return result;
+    }
+
+
+    private static long countChanged(Map<Path, byte[]> before, Map<Path, byte[]> after) {
+        return before.entrySet().stream()
+                .filter(x -> !after.containsKey(x.getKey()) || !Arrays.equals(x.getValue(), after.get(x.getKey())))
+                .count();
+    }
+
+
+    @Test
+    public void testModificationWritesOnlyAffectedShard() throws Exception {
+        PersistenceFile persistence = getShardedConfig().newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        Map<Path, byte[]> initial = readShards();
+        Environment environment = AASFull.createEnvironment();
+        Assert.assertEquals(
+                1 + environment.getAssetAdministrationShells().size() + environment.getSubmodels().size() + environment.getConceptDescriptions().size(),
+                initial.size());
+
+        Property property = updateModifiedProperty(persistence, "sharded value");
+        Map<Path, byte[]> afterUpdate = readShards();
+        Assert.assertEquals(1, countChanged(initial, afterUpdate));
+
+        Reference deletedSubmodelRef = ReferenceBuilder.forSubmodel(DELETED_SUBMODEL_ID);
+        long referencingShells = environment.getAssetAdministrationShells().stream()
+                .filter(x -> x.getSubmodels().stream().anyMatch(ref -> ReferenceHelper.equals(ref, deletedSubmodelRef)))
+                .count();
+        Assert.assertTrue(referencingShells > 0);
+        persistence.deleteSubmodel(DELETED_SUBMODEL_ID);
+        Map<Path, byte[]> afterDelete = readShards();
+        // the shard of the deleted submodel, the manifest and the shards of all shells referencing it
+        Assert.assertEquals(2 + referencingShells, countChanged(afterUpdate, afterDelete));
+        Assert.assertEquals(initial.size() - 1, afterDelete.size());
+        persistence.stop();
+
+        PersistenceFile restarted = getShardedConfig().newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        assertModifiedAfterRestart(restarted, property);
+        Assert.assertEquals(
+                environment.getSubmodels().stream()
+                        .map(Identifiable::getId)
+                        .filter(x -> !DELETED_SUBMODEL_ID.equals(x))
+                        .collect(Collectors.toList()),
+                restarted.getEnvironment().getSubmodels().stream()
+                        .map(Identifiable::getId)
+                        .collect(Collectors.toList()));
+        restarted.stop();
+    }
+
+
+    @Test
+    public void testLongIdentifier() throws Exception {
+        PersistenceFile persistence = getShardedConfig().newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        Submodel submodel = new DefaultSubmodel.Builder()
+                .id("http://example.org/" + "a".repeat(500))
+                .build();
+        persistence.save(submodel);
+        persistence.stop();
+
+        PersistenceFile restarted = getShardedConfig().newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        Assert.assertEquals(submodel, restarted.getSubmodel(submodel.getId(), QueryModifier.MAXIMAL));
+        restarted.stop();
+    }
+
+
+    @Test
+    public void testShardedWithJournalingNotAllowed() {
+        Assert.assertThrows(ConfigurationInitializationException.class, () -> PersistenceFileConfig.builder()
+                .initialModelFile(modelFile)
+                .sharded(true)
+                .journaling(true)
+                .build()
+                .newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT));
+    }
+}
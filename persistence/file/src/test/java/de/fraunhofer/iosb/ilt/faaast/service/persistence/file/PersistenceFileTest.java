@@ -17,23 +17,32 @@ package de.fraunhofer.iosb.ilt.faaast.service.persistence.file;
 import de.fraunhofer.iosb.ilt.faaast.service.ServiceContext;
 import de.fraunhofer.iosb.ilt.faaast.service.assetconnection.AssetConnectionException;
 import de.fraunhofer.iosb.ilt.faaast.service.config.CoreConfig;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.EnvironmentSerializationManager;
 import de.fraunhofer.iosb.ilt.faaast.service.exception.ConfigurationException;
 import de.fraunhofer.iosb.ilt.faaast.service.exception.ConfigurationInitializationException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.AASFull;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.operation.OperationHandle;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.serialization.DataFormat;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.AbstractPersistenceTest;
 import de.fraunhofer.iosb.ilt.faaast.service.util.FileHelper;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
 import java.util.Comparator;
 import org.bouncycastle.util.Objects;
 import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
+import org.eclipse.digitaltwin.aas4j.v3.model.ExecutionState;
+import org.eclipse.digitaltwin.aas4j.v3.model.OperationResult;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultEnvironment;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultOperationResult;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -139,7 +148,7 @@ public class PersistenceFileTest extends AbstractPersistenceTest<PersistenceFile
 
 
     @Test
-    public void testOverrideInitial() throws ResourceNotFoundException, ConfigurationException, AssetConnectionException, IOException {
+    public void testOverrideInitial() throws ResourceNotFoundException, ConfigurationException, AssetConnectionException, IOException, PersistenceException {
         PersistenceFileConfig config = PersistenceFileConfig.builder()
                 .initialModelFile(modelFileJson)
                 .keepInitial(false)
@@ -190,6 +199,173 @@ public class PersistenceFileTest extends AbstractPersistenceTest<PersistenceFile
     }
 
 
+    @Test
+    public void testOperationResultsSavedPerHandle() throws Exception {
+        PersistenceFileConfig config = PersistenceFileConfig.builder()
+                .initialModelFile(modelFileJson)
+                .dataDir(tempDir.toString())
+                .operationResultMaxCount(2)
+                .build();
+        PersistenceFile persistence = config.newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        OperationHandle first = new OperationHandle();
+        OperationHandle second = new OperationHandle();
+        OperationHandle third = new OperationHandle();
+        OperationResult expected = new DefaultOperationResult.Builder()
+                .executionState(ExecutionState.COMPLETED)
+                .build();
+        persistence.save(first, new DefaultOperationResult.Builder().executionState(ExecutionState.RUNNING).build());
+        persistence.save(second, expected);
+        persistence.save(third, expected);
+        Assert.assertEquals(2, countOperationStateFiles());
+        PersistenceFile newPersistence = config.newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        Assert.assertThrows(ResourceNotFoundException.class, () -> newPersistence.getOperationResult(first));
+        Assert.assertEquals(expected, newPersistence.getOperationResult(second));
+        Assert.assertEquals(expected, newPersistence.getOperationResult(third));
+        newPersistence.deleteAll();
+        Assert.assertEquals(0, countOperationStateFiles());
+    }
+
+
+    @Test
+    public void testLegacyOperationStatesFileIgnored() throws Exception {
+        File legacyFile = tempDir.resolve("operation-states.json").toFile();
+        Files.writeString(legacyFile.toPath(),
+                "{\"de.fraunhofer.iosb.ilt.faaast.service.model.api.operation.OperationHandle@ce8\":{\"executionState\":\"COMPLETED\"}}");
+        PersistenceFile persistence = PersistenceFileConfig.builder()
+                .initialModelFile(modelFileJson)
+                .dataDir(tempDir.toString())
+                .build()
+                .newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        OperationHandle handle = new OperationHandle();
+        OperationResult expected = new DefaultOperationResult.Builder()
+                .executionState(ExecutionState.COMPLETED)
+                .build();
+        persistence.save(handle, expected);
+        Assert.assertEquals(expected, persistence.getOperationResult(handle));
+        Assert.assertEquals(1, countOperationStateFiles());
+        Assert.assertTrue(legacyFile.exists());
+    }
+
+
+    @Test
+    public void testWriteBehind() throws Exception {
+        PersistenceFileConfig config = PersistenceFileConfig.builder()
+                .initialModelFile(modelFileJson)
+                .dataDir(tempDir.toString())
+                .flushInterval(3600000)
+                .flushMaxPendingChanges(0)
+                .build();
+        PersistenceFile persistence = config.newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        String identifier = model.getAssetAdministrationShells().get(0).getId();
+        persistence.deleteAssetAdministrationShell(identifier);
+        Assert.assertTrue(containsAssetAdministrationShell(config, identifier));
+        persistence.flush();
+        Assert.assertFalse(containsAssetAdministrationShell(config, identifier));
+        persistence.save(model.getAssetAdministrationShells().get(0));
+        persistence.stop();
+        Assert.assertTrue(containsAssetAdministrationShell(config, identifier));
+    }
+
+
+    @Test
+    public void testWriteBehindMaxPendingChanges() throws Exception {
+        PersistenceFileConfig config = PersistenceFileConfig.builder()
+                .initialModelFile(modelFileJson)
+                .dataDir(tempDir.toString())
+                .flushInterval(3600000)
+                .flushMaxPendingChanges(2)
+                .build();
+        PersistenceFile persistence = config.newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        String first = model.getAssetAdministrationShells().get(0).getId();
+        String second = model.getAssetAdministrationShells().get(1).getId();
+        persistence.deleteAssetAdministrationShell(first);
+        persistence.deleteAssetAdministrationShell(second);
+        long timeout = System.currentTimeMillis() + 10000;
+        while (containsAssetAdministrationShell(config, second) && System.currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+        }
+        Assert.assertFalse(containsAssetAdministrationShell(config, first));
+        Assert.assertFalse(containsAssetAdministrationShell(config, second));
+        persistence.stop();
+    }
+
+
+    @Test
+    public void testBinarySnapshot() throws Exception {
+        PersistenceFile persistence = getBinarySnapshotConfig().newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        persistence.deleteAssetAdministrationShell(model.getAssetAdministrationShells().get(0).getId());
+        Environment expected = persistence.getEnvironment();
+        persistence.stop();
+        Path snapshotFile = Path.of(modelFileXml + ".snapshot");
+        Assert.assertTrue(Files.exists(snapshotFile));
+        // replace the model file by an empty model that looks unchanged, i.e. the model can only be restored from the snapshot
+        FileTime lastModified = Files.getLastModifiedTime(modelFileXml.toPath());
+        byte[] emptyModel = EnvironmentSerializationManager
+                .serializerFor(DataFormat.XML)
+                .write(new DefaultEnvironment());
+        byte[] content = " ".repeat((int) modelFileXml.length()).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(emptyModel, 0, content, 0, emptyModel.length);
+        Files.write(modelFileXml.toPath(), content);
+        Files.setLastModifiedTime(modelFileXml.toPath(), lastModified);
+        Assert.assertEquals(lastModified, Files.getLastModifiedTime(modelFileXml.toPath()));
+        PersistenceFile restarted = getBinarySnapshotConfig().newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        Assert.assertEquals(expected, restarted.getEnvironment());
+        restarted.stop();
+    }
+
+
+    @Test
+    public void testBinarySnapshotOnlyWrittenOnStop() throws Exception {
+        PersistenceFile persistence = getBinarySnapshotConfig().newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        Path snapshotFile = Path.of(modelFileXml + ".snapshot");
+        persistence.deleteAssetAdministrationShell(model.getAssetAdministrationShells().get(0).getId());
+        Assert.assertFalse(Files.exists(snapshotFile));
+        persistence.stop();
+        Assert.assertTrue(Files.exists(snapshotFile));
+    }
+
+
+    @Test
+    public void testOutdatedBinarySnapshotIgnored() throws Exception {
+        getBinarySnapshotConfig().newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT).stop();
+        Assert.assertTrue(Files.exists(Path.of(modelFileXml + ".snapshot")));
+        Environment expected = new DefaultEnvironment.Builder()
+                .submodels(model.getSubmodels().get(0))
+                .build();
+        EnvironmentSerializationManager
+                .serializerFor(DataFormat.XML)
+                .write(modelFileXml, expected);
+        PersistenceFile restarted = getBinarySnapshotConfig().newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        Assert.assertEquals(expected, restarted.getEnvironment());
+        restarted.stop();
+    }
+
+
+    private PersistenceFileConfig getBinarySnapshotConfig() {
+        return PersistenceFileConfig.builder()
+                .initialModelFile(modelFileXml)
+                .keepInitial(false)
+                .binarySnapshot(true)
+                .build();
+    }
+
+
+    private static boolean containsAssetAdministrationShell(PersistenceFileConfig config, String id) throws Exception {
+        return EnvironmentSerializationManager.deserialize(config.getFilePath().toFile())
+                .getEnvironment()
+                .getAssetAdministrationShells()
+                .stream()
+                .anyMatch(x -> id.equals(x.getId()));
+    }
+
+
+    private long countOperationStateFiles() throws IOException {
+        try (var files = Files.list(tempDir.resolve("operation-states"))) {
+            return files.count();
+        }
+    }
+
+
     @After
     public void deleteTempFiles() throws IOException {
         Files.walk(tempDir)
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.memory;
+
+import com.google.common.util.concurrent.Striped;
+import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
+import de.fraunhofer.iosb.ilt.faaast.service.util.LambdaExceptionHelper.RunnableWithExceptions;
+import de.fraunhofer.iosb.ilt.faaast.service.util.LambdaExceptionHelper.SupplierWithExceptions;
+import java.util.Locale;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * Locks guarding concurrent access to an in-memory environment.
+ *
+ * <p>The structure lock guards the top-level lists of the environment as well as all indexes on them, i.e. it must be
+ * held to look up, add, replace or remove identifiables. The content of each submodel, i.e. its element tree, is
+ * guarded by a read/write lock striped by submodel id so that operations on different submodels can run in parallel.
+ *
+ * <p>To avoid deadlocks, a submodel lock must always be acquired before the structure lock and at most one submodel
+ * lock must be held at a time, except for {@link #writeAll(RunnableWithExceptions)}.
+ */
+class EnvironmentLock {
+
+    static final int DEFAULT_STRIPES = 64;
+
+    private final ReadWriteLock structureLock;
+    private final Striped<ReadWriteLock> submodelLocks;
+    private final boolean lockSubmodelReads;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param stripes the number of stripes to use for submodel locks
+     * @param lockSubmodelReads if reading the content of a submodel requires a lock, false if submodels are never
+     *            modified in place
+     */
+    EnvironmentLock(int stripes, boolean lockSubmodelReads) {
+        Ensure.require(stripes > 0, "stripes must be greater than 0");
+        this.structureLock = new ReentrantReadWriteLock();
+        this.submodelLocks = Striped.readWriteLock(stripes);
+        this.lockSubmodelReads = lockSubmodelReads;
+    }
+
+
+    /**
+     * Executes an action reading the structure of the environment.
+     *
+     * @param <T> the result type
+     * @param <E> the exception type
+     * @param action the action
+     * @return the result of the action
+     * @throws E if action fails
+     */
+    <T, E extends Exception> T readStructure(SupplierWithExceptions<T, E> action) throws E {
+        return execute(structureLock.readLock(), action::get);
+    }
+
+
+    /**
+     * Executes an action modifying the structure of the environment.
+     *
+     * @param <E> the exception type
+     * @param action the action
+     * @throws E if action fails
+     */
+    <E extends Exception> void writeStructure(RunnableWithExceptions<E> action) throws E {
+        execute(structureLock.writeLock(), () -> {
+            action.run();
+            return null;
+        });
+    }
+
+
+    /**
+     * Executes an action reading the content of a submodel.
+     *
+     * @param <T> the result type
+     * @param <E1> the first exception type
+     * @param <E2> the second exception type, same as the first if the action only throws one type of exception
+     * @param submodelId the id of the submodel
+     * @param action the action
+     * @return the result of the action
+     * @throws E1 if action fails
+     * @throws E2 if action fails
+     */
+    <T, E1 extends Exception, E2 extends Exception> T readSubmodel(String submodelId, SupplierWithTwoExceptions<T, E1, E2> action) throws E1, E2 {
+        if (!lockSubmodelReads) {
+            return action.get();
+        }
+        return execute(submodelLocks.get(key(submodelId)).readLock(), action);
+    }
+
+
+    /**
+     * Executes an action modifying the content of a submodel.
+     *
+     * @param <E1> the first exception type
+     * @param <E2> the second exception type, same as the first if the action only throws one type of exception
+     * @param submodelId the id of the submodel
+     * @param action the action
+     * @throws E1 if action fails
+     * @throws E2 if action fails
+     */
+    <E1 extends Exception, E2 extends Exception> void writeSubmodel(String submodelId, RunnableWithTwoExceptions<E1, E2> action) throws E1, E2 {
+        EnvironmentLock.<Void, E1, E2> execute(submodelLocks.get(key(submodelId)).writeLock(), () -> {
+            action.run();
+            return null;
+        });
+    }
+
+
+    /**
+     * Executes an action with exclusive access to the whole environment, i.e. while holding all submodel locks and the
+     * structure lock.
+     *
+     * @param <E> the exception type
+     * @param action the action
+     * @throws E if action fails
+     */
+    <E extends Exception> void writeAll(RunnableWithExceptions<E> action) throws E {
+        // stripes are always acquired in the same order so that concurrent calls cannot deadlock
+        for (int i = 0; i < submodelLocks.size(); i++) {
+            submodelLocks.getAt(i).writeLock().lock();
+        }
+        try {
+            writeStructure(action);
+        }
+        finally {
+            for (int i = submodelLocks.size() - 1; i >= 0; i--) {
+                submodelLocks.getAt(i).writeLock().unlock();
+            }
+        }
+    }
+
+
+    private static <T, E1 extends Exception, E2 extends Exception> T execute(Lock lock, SupplierWithTwoExceptions<T, E1, E2> action) throws E1, E2 {
+        lock.lock();
+        try {
+            return action.get();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+
+    private static String key(String submodelId) {
+        // ids are matched case-insensitively, see IdentifiableIndex
+        return String.valueOf(submodelId).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Like {@link SupplierWithExceptions} but allowing to throw two different types of checked exceptions.
+     *
+     * @param <T> the result type
+     * @param <E1> the first exception type
+     * @param <E2> the second exception type
+     */
+    @FunctionalInterface
+    interface SupplierWithTwoExceptions<T, E1 extends Exception, E2 extends Exception> {
+
+        /**
+         * Gets the result.
+         *
+         * @return the result
+         * @throws E1 if execution fails
+         * @throws E2 if execution fails
+         */
+        T get() throws E1, E2;
+    }
+
+    /**
+     * Like {@link RunnableWithExceptions} but allowing to throw two different types of checked exceptions.
+     *
+     * @param <E1> the first exception type
+     * @param <E2> the second exception type
+     */
+    @FunctionalInterface
+    interface RunnableWithTwoExceptions<E1 extends Exception, E2 extends Exception> {
+
+        /**
+         * Runs the action.
+         *
+         * @throws E1 if execution fails
+         * @throws E2 if execution fails
+         */
+        void run() throws E1, E2;
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.memory;
+
+import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import org.eclipse.digitaltwin.aas4j.v3.model.Identifiable;
+
+
+/**
+ * Hash index on top of one of the identifiable lists of an {@link org.eclipse.digitaltwin.aas4j.v3.model.Environment}.
+ * The index maps the id of each element to its position in the list so that lookups and upserts by id do not need to
+ * scan the list. The list itself stays the primary storage and keeps its order, i.e. replacing an existing element
+ * keeps its position and new elements are appended.
+ *
+ * <p>Additionally, each element is assigned a sequence number when it is added. As new elements are always appended,
+ * the list is ordered by sequence number which allows resuming an iteration after a given element in logarithmic time
+ * even if elements have been removed in the meantime, see {@link #positionAfter(long)}.
+ *
+ * <p>Ids are matched case-insensitive when upserting, i.e. saving an element with id "foo" replaces an existing
+ * element with id "FOO", while lookups require an exact match.
+ *
+ * @param <T> type of the elements
+ */
+class IdentifiableIndex<T extends Identifiable> {
+
+    private final Map<String, Integer> positions;
+    private final List<T> elements;
+    private final List<SecondaryIndex<T>> secondaryIndexes;
+    private final List<Long> sequenceNumbers;
+    private long nextSequenceNumber;
+
+    IdentifiableIndex(List<T> elements) {
+        Ensure.requireNonNull(elements, "elements must be non-null");
+        this.positions = new HashMap<>();
+        this.elements = elements;
+        this.secondaryIndexes = new ArrayList<>();
+        this.sequenceNumbers = new ArrayList<>(elements.size());
+        for (int i = 0; i < elements.size(); i++) {
+            if (Objects.nonNull(elements.get(i)) && Objects.nonNull(elements.get(i).getId())) {
+                positions.put(key(elements.get(i).getId()), i);
+            }
+            sequenceNumbers.add(nextSequenceNumber++);
+        }
+    }
+
+
+    /**
+     * Creates a secondary index that is maintained together with this index.
+     *
+     * @param keyExtractor function returning all keys an element should be indexed with
+     * @return the secondary index
+     */
+    SecondaryIndex<T> addSecondaryIndex(Function<T, Collection<?>> keyExtractor) {
+        SecondaryIndex<T> result = new SecondaryIndex<>(keyExtractor);
+        elements.stream()
+                .filter(x -> Objects.nonNull(x) && Objects.nonNull(x.getId()))
+                .forEach(result::add);
+        secondaryIndexes.add(result);
+        return result;
+    }
+
+
+    /**
+     * Gets the elements with the given ids that are located at or after the given position in the order of the
+     * underlying list. Unknown ids are ignored.
+     *
+     * @param ids the ids
+     * @param from the position of the first element to consider
+     * @return the elements with the given ids
+     */
+    Stream<T> getAll(Collection<String> ids, int from) {
+        return ids.stream()
+                .mapToInt(this::indexOf)
+                .filter(x -> x >= from)
+                .sorted()
+                .mapToObj(elements::get);
+    }
+
+
+    /**
+     * Gets the element with the given id.
+     *
+     * @param id the id
+     * @return the element if present, otherwise empty
+     */
+    Optional<T> get(String id) {
+        if (Objects.isNull(id)) {
+            return Optional.empty();
+        }
+        Integer position = positions.get(key(id));
+        if (Objects.isNull(position)) {
+            return Optional.empty();
+        }
+        T result = elements.get(position);
+        return Objects.equals(result.getId(), id)
+                ? Optional.of(result)
+                : Optional.empty();
+    }
+
+
+    /**
+     * Checks if an element with the given id exists.
+     *
+     * @param id the id
+     * @return true if present, otherwise false
+     */
+    boolean contains(String id) {
+        return get(id).isPresent();
+    }
+
+
+    /**
+     * Gets the position of the element with the given id within the underlying list.
+     *
+     * @param id the id
+     * @return the position if present, otherwise -1
+     */
+    int indexOf(String id) {
+        return get(id).isPresent()
+                ? positions.get(key(id))
+                : -1;
+    }
+
+
+    /**
+     * Gets the sequence number of the element at the given position.
+     *
+     * @param position the position
+     * @return the sequence number
+     */
+    long getSequenceNumber(int position) {
+        return sequenceNumbers.get(position);
+    }
+
+
+    /**
+     * Gets the position of the first element with a sequence number greater than the given one.
+     *
+     * @param sequenceNumber the sequence number
+     * @return the position of the first element with a greater sequence number or the size of the list if there is no
+     *         such element
+     */
+    int positionAfter(long sequenceNumber) {
+        int result = Collections.binarySearch(sequenceNumbers, sequenceNumber);
+        return result >= 0 ? result + 1 : -(result + 1);
+    }
+
+
+    /**
+     * Adds an element or replaces an existing element with the same id.
+     *
+     * @param element the element to add
+     */
+    void put(T element) {
+        Ensure.requireNonNull(element, "element must be non-null");
+        Ensure.requireNonNull(element.getId(), "id must be non-null");
+        String key = key(element.getId());
+        Integer position = positions.get(key);
+        if (Objects.nonNull(position)) {
+            T oldElement = elements.set(position, element);
+            secondaryIndexes.forEach(x -> {
+                x.remove(oldElement);
+                x.add(element);
+            });
+            return;
+        }
+        elements.add(element);
+        sequenceNumbers.add(nextSequenceNumber++);
+        positions.put(key, elements.size() - 1);
+        secondaryIndexes.forEach(x -> x.add(element));
+    }
+
+
+    /**
+     * Removes the element with the given id. Removing requires the positions of all subsequent elements to be updated
+     * which is linear in the number of these elements, same as removing from the underlying list.
+     *
+     * @param id the id
+     * @return the removed element if present, otherwise empty
+     */
+    Optional<T> remove(String id) {
+        Optional<T> result = get(id);
+        if (result.isEmpty()) {
+            return result;
+        }
+        int position = positions.remove(key(id));
+        elements.remove(position);
+        sequenceNumbers.remove(position);
+        secondaryIndexes.forEach(x -> x.remove(result.get()));
+        for (int i = position; i < elements.size(); i++) {
+            if (Objects.nonNull(elements.get(i)) && Objects.nonNull(elements.get(i).getId())) {
+                positions.put(key(elements.get(i).getId()), i);
+            }
+        }
+        return result;
+    }
+
+
+    private static String key(String id) {
+        return id.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.memory;
+
+import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
+import de.fraunhofer.iosb.ilt.faaast.service.util.StringHelper;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+
+/**
+ * Cursor for keyset pagination. A cursor identifies the last element returned by the previous page by its position,
+ * which is either the sequence number of an identifiable (see {@link IdentifiableIndex}) or the position within a list
+ * of child elements, optionally combined with a key, e.g. the idShort of a submodel element. The next page starts right
+ * after this element, i.e. it can be resolved without iterating over all elements of previous pages and remains stable
+ * if elements are added or removed concurrently.
+ *
+ * <p>The offset is only used when paging over elements spanning multiple lists and denotes the number of elements
+ * already returned from the list at the given position.
+ *
+ * <p>Cursors are serialized as {@code position:offset:key}. Clients must treat them as opaque.
+ */
+class PagingCursor {
+
+    private static final String SEPARATOR = ":";
+
+    private final long position;
+    private final int offset;
+    private final String key;
+
+    PagingCursor(long position, int offset, String key) {
+        Ensure.require(position >= 0, "position must be >= 0");
+        Ensure.require(offset >= 0, "offset must be >= 0");
+        this.position = position;
+        this.offset = offset;
+        this.key = Objects.nonNull(key) ? key : "";
+    }
+
+
+    PagingCursor(long position, String key) {
+        this(position, 0, key);
+    }
+
+
+    /**
+     * Parses a cursor from its string representation.
+     *
+     * @param value the string representation
+     * @return the parsed cursor or null if value is null
+     * @throws IllegalArgumentException if value is not a valid cursor
+     */
+    static PagingCursor parse(String value) {
+        if (Objects.isNull(value)) {
+            return null;
+        }
+        String[] parts = value.split(SEPARATOR, 3);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException(String.format("invalid cursor (cursor: %s)", value));
+        }
+        try {
+            return new PagingCursor(Long.parseLong(parts[0]), Integer.parseInt(parts[1]), parts[2]);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("invalid cursor (cursor: %s)", value), e);
+        }
+    }
+
+
+    long getPosition() {
+        return position;
+    }
+
+
+    int getOffset() {
+        return offset;
+    }
+
+
+    String getKey() {
+        return key;
+    }
+
+
+    /**
+     * Gets the position within a list to continue with. If the element at the position of the cursor does not match
+     * its key, the list has been modified since the cursor was created and the element is searched by its key. If
+     * there is no such element, it has been removed and the next element is expected at the position of the cursor.
+     *
+     * @param <T> type of the elements
+     * @param cursor the cursor, may be null
+     * @param list the list
+     * @param keyExtractor function to get the key of an element
+     * @return the position to continue with
+     */
+    static <T> int resume(PagingCursor cursor, List<T> list, Function<T, String> keyExtractor) {
+        if (Objects.isNull(cursor)) {
+            return 0;
+        }
+        if (cursor.position < list.size() && cursor.matches(keyExtractor.apply(list.get((int) cursor.position)))) {
+            return (int) cursor.position + 1;
+        }
+        if (!cursor.key.isEmpty()) {
+            for (int i = 0; i < list.size(); i++) {
+                if (cursor.matches(keyExtractor.apply(list.get(i)))) {
+                    return i + 1;
+                }
+            }
+        }
+        return (int) Math.min(cursor.position, list.size());
+    }
+
+
+    private boolean matches(String otherKey) {
+        return key.isEmpty()
+                || (!StringHelper.isBlank(otherKey) && key.equalsIgnoreCase(otherKey));
+    }
+
+
+    @Override
+    public String toString() {
+        return position + SEPARATOR + offset + SEPARATOR + key;
+    }
+}
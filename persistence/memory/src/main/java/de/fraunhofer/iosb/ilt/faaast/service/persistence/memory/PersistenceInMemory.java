@@ -14,11 +14,15 @@
  */
 package de.fraunhofer.iosb.ilt.faaast.service.persistence.memory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
 import de.fraunhofer.iosb.ilt.faaast.service.ServiceContext;
 import de.fraunhofer.iosb.ilt.faaast.service.config.CoreConfig;
 import de.fraunhofer.iosb.ilt.faaast.service.dataformat.DeserializationException;
 import de.fraunhofer.iosb.ilt.faaast.service.exception.ConfigurationInitializationException;
 import de.fraunhofer.iosb.ilt.faaast.service.exception.InvalidConfigurationException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.IdShortPath;
 import de.fraunhofer.iosb.ilt.faaast.service.model.SubmodelElementIdentifier;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.operation.OperationHandle;
@@ -31,6 +35,9 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.asset.SpecificAssetIdentifica
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotAContainerElementException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ValueMappingException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.ElementValue;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.mapper.ElementValueMapper;
 import de.fraunhofer.iosb.ilt.faaast.service.model.visitor.AssetAdministrationShellElementWalker;
 import de.fraunhofer.iosb.ilt.faaast.service.model.visitor.DefaultAssetAdministrationShellElementVisitor;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.AssetAdministrationShellSearchCriteria;
@@ -38,34 +45,44 @@ import de.fraunhofer.iosb.ilt.faaast.service.persistence.ConceptDescriptionSearc
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.Persistence;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.SubmodelElementSearchCriteria;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.SubmodelSearchCriteria;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.util.PersistenceHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.util.QueryModifierHelper;
-import de.fraunhofer.iosb.ilt.faaast.service.util.CollectionHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.DeepCopyHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.ElementValueHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
-import de.fraunhofer.iosb.ilt.faaast.service.util.EnvironmentHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceBuilder;
 import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.StringHelper;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.eclipse.digitaltwin.aas4j.v3.model.AnnotatedRelationshipElement;
 import org.eclipse.digitaltwin.aas4j.v3.model.AssetAdministrationShell;
+import org.eclipse.digitaltwin.aas4j.v3.model.Blob;
 import org.eclipse.digitaltwin.aas4j.v3.model.ConceptDescription;
 import org.eclipse.digitaltwin.aas4j.v3.model.DataElement;
+import org.eclipse.digitaltwin.aas4j.v3.model.EmbeddedDataSpecification;
 import org.eclipse.digitaltwin.aas4j.v3.model.Entity;
 import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
 import org.eclipse.digitaltwin.aas4j.v3.model.HasSemantics;
 import org.eclipse.digitaltwin.aas4j.v3.model.Identifiable;
+import org.eclipse.digitaltwin.aas4j.v3.model.Operation;
 import org.eclipse.digitaltwin.aas4j.v3.model.OperationResult;
+import org.eclipse.digitaltwin.aas4j.v3.model.Property;
+import org.eclipse.digitaltwin.aas4j.v3.model.Range;
 import org.eclipse.digitaltwin.aas4j.v3.model.Referable;
 import org.eclipse.digitaltwin.aas4j.v3.model.Reference;
 import org.eclipse.digitaltwin.aas4j.v3.model.SpecificAssetId;
@@ -85,6 +102,22 @@ import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultSpecificAssetId;
  * <li>AASX packages
  * <li>Package Descriptors
  * </ul>
+ *
+ * <p>By default, all results are deep copies of the stored elements so that callers can freely modify them. If
+ * {@link PersistenceInMemoryConfig#isCopyOnWrite()} is enabled, stored elements are treated as immutable snapshots
+ * instead, i.e. modifying a submodel element creates a new version of the containing submodel which is published by
+ * replacing the previous version once the modification is complete. Only the submodel and the elements on the path to
+ * the modified element are copied, all other elements, identifiables and submodels remain shared between versions.
+ * Results are then returned without copying unless the query modifier requires changes to them. To keep snapshots
+ * immutable, elements passed to this persistence are stored as copies and all lists within stored elements are
+ * unmodifiable, i.e. modifying the structure of a result fails.
+ *
+ * <p>All operations are thread-safe. Operations on different submodels are executed in parallel while modifications of
+ * the same submodel are serialized, see {@link EnvironmentLock}.
+ *
+ * <p>Results of asynchronous operations are kept in a cache bounded by
+ * {@link PersistenceInMemoryConfig#getOperationResultMaxCount()} and
+ * {@link PersistenceInMemoryConfig#getOperationResultTimeToLive()}.
  */
 public class PersistenceInMemory implements Persistence<PersistenceInMemoryConfig> {
 
@@ -95,22 +128,61 @@ public class PersistenceInMemory implements Persistence<PersistenceInMemoryConfi
     private static final String MSG_PAGING_NOT_NULL = "paging must be non-null";
 
     private Environment environment;
+    private IdentifiableIndex<AssetAdministrationShell> assetAdministrationShells;
+    private IdentifiableIndex<Submodel> submodels;
+    private IdentifiableIndex<ConceptDescription> conceptDescriptions;
+    private SecondaryIndex<AssetAdministrationShell> assetAdministrationShellsByIdShort;
+    private SecondaryIndex<AssetAdministrationShell> assetAdministrationShellsByGlobalAssetId;
+    private SecondaryIndex<AssetAdministrationShell> assetAdministrationShellsBySpecificAssetId;
+    private SecondaryIndex<Submodel> submodelsByIdShort;
+    private SecondaryIndex<Submodel> submodelsBySemanticId;
+    private SecondaryIndex<ConceptDescription> conceptDescriptionsByIdShort;
+    private SecondaryIndex<ConceptDescription> conceptDescriptionsByIsCaseOf;
+    private SecondaryIndex<ConceptDescription> conceptDescriptionsByDataSpecification;
     private PersistenceInMemoryConfig config;
-    private Map<OperationHandle, OperationResult> operationStates;
-
-    public PersistenceInMemory() {
-        operationStates = new ConcurrentHashMap<>();
-    }
-
+    private Cache<OperationHandle, OperationResult> operationStates;
+    private volatile Consumer<OperationHandle> operationResultRemovalListener;
+    private Map<String, SubmodelElementIndex> submodelElementIndexes;
+    private boolean copyOnWrite;
+    private Cache<Referable, Boolean> blobValueFlags;
+    private EnvironmentLock lock;
 
     @Override
     public Environment getEnvironment() {
-        return DeepCopyHelper.deepCopy(environment);
+        if (copyOnWrite) {
+            return lock.readStructure(() -> new DefaultEnvironment.Builder()
+                    .assetAdministrationShells(new ArrayList<>(environment.getAssetAdministrationShells()))
+                    .submodels(new ArrayList<>(environment.getSubmodels()))
+                    .conceptDescriptions(new ArrayList<>(environment.getConceptDescriptions()))
+                    .build());
+        }
+        List<Submodel> currentSubmodels = new ArrayList<>();
+        Environment result = lock.readStructure(() -> {
+            currentSubmodels.addAll(environment.getSubmodels());
+            return new DefaultEnvironment.Builder()
+                    .assetAdministrationShells(environment.getAssetAdministrationShells().stream()
+                            .map(DeepCopyHelper::deepCopy)
+                            .collect(Collectors.toList()))
+                    .conceptDescriptions(environment.getConceptDescriptions().stream()
+                            .map(DeepCopyHelper::deepCopy)
+                            .collect(Collectors.toList()))
+                    .build();
+        });
+        // submodels may be modified concurrently and are therefore copied while holding their lock
+        result.setSubmodels(currentSubmodels.stream()
+                .map(x -> lock.readSubmodel(x.getId(), () -> DeepCopyHelper.deepCopy(x)))
+                .collect(Collectors.toList()));
+        return result;
     }
 
 
+    /**
+     * Gets a live view of all operation results currently stored.
+     *
+     * @return the operation results
+     */
     public Map<OperationHandle, OperationResult> getOperationStates() {
-        return operationStates;
+        return operationStates.asMap();
     }
 
 
@@ -126,93 +198,126 @@ public class PersistenceInMemory implements Persistence<PersistenceInMemoryConfi
     }
 
 
+    @Override
+    public boolean isSharingResults() {
+        return copyOnWrite;
+    }
+
+
+    /**
+     * Replaces all stored operation results.
+     *
+     * @param operationStates the new operation results
+     */
     public void setOperationStates(Map<OperationHandle, OperationResult> operationStates) {
-        this.operationStates = operationStates;
+        Ensure.requireNonNull(operationStates, "operationStates must be non-null");
+        this.operationStates.invalidateAll();
+        this.operationStates.putAll(operationStates);
+    }
+
+
+    /**
+     * Sets a listener that is notified whenever an operation result is removed, either because it has been evicted
+     * due to size or time-to-live constraints or because of {@link #deleteAll()}. The listener is not notified if a
+     * result is replaced by a newer result for the same handle.
+     *
+     * @param listener the listener, may be null to remove the current listener
+     */
+    public void setOperationResultRemovalListener(Consumer<OperationHandle> listener) {
+        this.operationResultRemovalListener = listener;
     }
 
 
     @Override
     public void deleteAssetAdministrationShell(String id) throws ResourceNotFoundException {
         Ensure.requireNonNull(id, MSG_ID_NOT_NULL);
-        if (!environment.getAssetAdministrationShells().removeIf(x -> Objects.equals(x.getId(), id))) {
-            throw new ResourceNotFoundException(String.format(MSG_RESOURCE_NOT_FOUND_BY_ID, id));
-        }
+        lock.writeStructure(() -> {
+            if (assetAdministrationShells.remove(id).isEmpty()) {
+                throw new ResourceNotFoundException(String.format(MSG_RESOURCE_NOT_FOUND_BY_ID, id));
+            }
+        });
     }
 
 
     @Override
     public void deleteConceptDescription(String id) throws ResourceNotFoundException {
         Ensure.requireNonNull(id, MSG_ID_NOT_NULL);
-        if (!environment.getConceptDescriptions().removeIf(x -> Objects.equals(x.getId(), id))) {
-            throw new ResourceNotFoundException(String.format(MSG_RESOURCE_NOT_FOUND_BY_ID, id));
-        }
+        lock.writeStructure(() -> {
+            if (conceptDescriptions.remove(id).isEmpty()) {
+                throw new ResourceNotFoundException(String.format(MSG_RESOURCE_NOT_FOUND_BY_ID, id));
+            }
+        });
     }
 
 
     @Override
     public void deleteSubmodel(String id) throws ResourceNotFoundException {
         Ensure.requireNonNull(id, MSG_ID_NOT_NULL);
-        if (!environment.getSubmodels().removeIf(x -> Objects.equals(x.getId(), id))) {
+        lock.writeSubmodel(id, () -> lock.writeStructure(() -> doDeleteSubmodel(id)));
+    }
+
+
+    private void doDeleteSubmodel(String id) throws ResourceNotFoundException {
+        if (submodels.remove(id).isEmpty()) {
             throw new ResourceNotFoundException(String.format(MSG_RESOURCE_NOT_FOUND_BY_ID, id));
         }
+        submodelElementIndexes.remove(id);
         // TODO check if submodelRef inside AAS should really be deleted or this has to be done manually
         Reference submodelRef = ReferenceBuilder.forSubmodel(id);
-        environment.getAssetAdministrationShells().forEach(x -> x.getSubmodels().remove(submodelRef));
+        if (!copyOnWrite) {
+            environment.getAssetAdministrationShells().forEach(x -> x.getSubmodels().removeIf(ref -> ReferenceHelper.equals(ref, submodelRef)));
+            return;
+        }
+        environment.getAssetAdministrationShells().stream()
+                .filter(x -> x.getSubmodels().stream().anyMatch(ref -> ReferenceHelper.equals(ref, submodelRef)))
+                .collect(Collectors.toList())
+                .forEach(x -> {
+                    AssetAdministrationShell copy = DeepCopyHelper.shallowCopy(x);
+                    copy.setSubmodels(x.getSubmodels().stream()
+                            .filter(ref -> !ReferenceHelper.equals(ref, submodelRef))
+                            .toList());
+                    assetAdministrationShells.put(copy);
+                });
     }
 
 
     @Override
     public void deleteSubmodelElement(SubmodelElementIdentifier identifier) throws ResourceNotFoundException {
         Ensure.requireNonNull(identifier, "path must be non-null");
-        final Reference reference = identifier.toReference();
-        final SubmodelElement element = EnvironmentHelper.resolve(reference, environment, SubmodelElement.class);
-        Referable parent = EnvironmentHelper.resolve(ReferenceHelper.getParent(reference), environment);
-        final AtomicBoolean deleted = new AtomicBoolean(false);
-        AssetAdministrationShellElementWalker.builder()
-                .visitor(new DefaultAssetAdministrationShellElementVisitor() {
-                    @Override
-                    public void visit(SubmodelElementCollection submodelElementCollection) {
-                        deleted.compareAndSet(false, submodelElementCollection.getValue().remove(element));
-                    }
-
-
-                    @Override
-                    public void visit(SubmodelElementList submodelElementList) {
-                        deleted.compareAndSet(false, submodelElementList.getValue().remove(element));
-                    }
-
-
-                    @Override
-                    public void visit(Submodel submodel) {
-                        deleted.compareAndSet(false, submodel.getSubmodelElements().remove(element));
-                    }
-
-
-                    @Override
-                    public void visit(Entity entity) {
-                        deleted.compareAndSet(false, entity.getStatements().remove(element));
-                    }
+        lock.writeSubmodel(identifier.getSubmodelId(), () -> doDeleteSubmodelElement(identifier));
+    }
 
 
-                    @Override
-                    public void visit(AnnotatedRelationshipElement annotatedRelationshipElement) {
-                        if (element instanceof DataElement dataElement) {
-                            deleted.compareAndSet(false, annotatedRelationshipElement.getAnnotations().remove(dataElement));
-                        }
-                    }
-                })
-                .build()
-                .walk(parent);
-        if (!deleted.get()) {
-            throw new ResourceNotFoundException(reference);
+    private void doDeleteSubmodelElement(SubmodelElementIdentifier identifier) throws ResourceNotFoundException {
+        SubmodelElementIndex index = getSubmodelElementIndexForUpdate(identifier);
+        IdShortPath path = identifier.getIdShortPath();
+        SubmodelElement element = resolve(index, identifier, SubmodelElement.class);
+        Referable parent = index.getParent(path);
+        List<? extends SubmodelElement> container = SubmodelElementIndex.getChildren(parent);
+        int position = SubmodelElementIndex.indexOf(container, element);
+        if (position < 0) {
+            throw new ResourceNotFoundException(identifier.toReference());
+        }
+        if (parent instanceof SubmodelElementList) {
+            // removing an element from a list changes the index of all subsequent elements
+            container.remove(position);
+            index.reindexChildren(path.getParent());
         }
+        else {
+            index.remove(path);
+            container.remove(position);
+        }
+        publish(index);
     }
 
 
     @Override
     public void deleteAll() throws PersistenceException {
-        operationStates.clear();
-        environment = new DefaultEnvironment();
+        operationStates.invalidateAll();
+        lock.writeAll(() -> {
+            environment = new DefaultEnvironment();
+            initIndexes();
+        });
     }
 
 
@@ -221,15 +326,33 @@ public class PersistenceInMemory implements Persistence<PersistenceInMemoryConfi
         Ensure.requireNonNull(criteria, MSG_CRITERIA_NOT_NULL);
         Ensure.requireNonNull(modifier, MSG_MODIFIER_NOT_NULL);
         Ensure.requireNonNull(paging, MSG_PAGING_NOT_NULL);
-
-        Stream<AssetAdministrationShell> result = environment.getAssetAdministrationShells().stream();
-        if (criteria.isIdShortSet()) {
-            result = filterByIdShort(result, criteria.getIdShort());
-        }
-        if (criteria.isAssetIdsSet()) {
-            result = filterByAssetIds(result, criteria.getAssetIds());
-        }
-        return preparePagedResult(result, modifier, paging);
+        return lock.readStructure(() -> {
+            List<Set<String>> candidates = new ArrayList<>();
+            if (criteria.isIdShortSet()) {
+                candidates.add(assetAdministrationShellsByIdShort.get(criteria.getIdShort()));
+            }
+            if (criteria.isAssetIdsSet() && Objects.nonNull(criteria.getAssetIds())) {
+                List<String> globalAssetIds = new ArrayList<>();
+                List<SpecificAssetId> specificAssetIds = new ArrayList<>();
+                PersistenceHelper.splitAssetIdsIntoGlobalAndSpecificIds(criteria.getAssetIds(), globalAssetIds, specificAssetIds);
+                if (!globalAssetIds.isEmpty()) {
+                    candidates.add(assetAdministrationShellsByGlobalAssetId.getAny(globalAssetIds));
+                }
+                if (!specificAssetIds.isEmpty()) {
+                    candidates.add(assetAdministrationShellsBySpecificAssetId.getAny(specificAssetIds.stream()
+                            .map(PersistenceInMemory::specificAssetIdKey)
+                            .collect(Collectors.toList())));
+                }
+            }
+            Stream<AssetAdministrationShell> result = lookup(assetAdministrationShells, candidates, environment.getAssetAdministrationShells(), paging);
+            if (criteria.isIdShortSet()) {
+                result = filterByIdShort(result, criteria.getIdShort());
+            }
+            if (criteria.isAssetIdsSet()) {
+                result = filterByAssetIds(result, criteria.getAssetIds());
+            }
+            return preparePagedResult(result, modifier, paging, identifiableCursor(assetAdministrationShells));
+        });
     }
 
 
@@ -238,17 +361,29 @@ public class PersistenceInMemory implements Persistence<PersistenceInMemoryConfi
         Ensure.requireNonNull(criteria, MSG_CRITERIA_NOT_NULL);
         Ensure.requireNonNull(modifier, MSG_MODIFIER_NOT_NULL);
         Ensure.requireNonNull(paging, MSG_PAGING_NOT_NULL);
-        Stream<ConceptDescription> result = environment.getConceptDescriptions().stream();
-        if (criteria.isIdShortSet()) {
-            result = filterByIdShort(result, criteria.getIdShort());
-        }
-        if (criteria.isIsCaseOfSet()) {
-            result = filterByIsCaseOf(result, criteria.getIsCaseOf());
-        }
-        if (criteria.isDataSpecificationSet()) {
-            result = filterByDataSpecification(result, criteria.getDataSpecification());
-        }
-        return preparePagedResult(result, modifier, paging);
+        return lock.readStructure(() -> {
+            List<Set<String>> candidates = new ArrayList<>();
+            if (criteria.isIdShortSet()) {
+                candidates.add(conceptDescriptionsByIdShort.get(criteria.getIdShort()));
+            }
+            if (criteria.isIsCaseOfSet() && Objects.nonNull(criteria.getIsCaseOf())) {
+                candidates.add(conceptDescriptionsByIsCaseOf.get(SecondaryIndex.referenceKey(criteria.getIsCaseOf())));
+            }
+            if (criteria.isDataSpecificationSet() && Objects.nonNull(criteria.getDataSpecification())) {
+                candidates.add(conceptDescriptionsByDataSpecification.get(SecondaryIndex.referenceKey(criteria.getDataSpecification())));
+            }
+            Stream<ConceptDescription> result = lookup(conceptDescriptions, candidates, environment.getConceptDescriptions(), paging);
+            if (criteria.isIdShortSet()) {
+                result = filterByIdShort(result, criteria.getIdShort());
+            }
+            if (criteria.isIsCaseOfSet()) {
+                result = filterByIsCaseOf(result, criteria.getIsCaseOf());
+            }
+            if (criteria.isDataSpecificationSet()) {
+                result = filterByDataSpecification(result, criteria.getDataSpecification());
+            }
+            return preparePagedResult(result, modifier, paging, identifiableCursor(conceptDescriptions));
+        });
     }
 
 
@@ -257,44 +392,81 @@ public class PersistenceInMemory implements Persistence<PersistenceInMemoryConfi
         Ensure.requireNonNull(criteria, MSG_CRITERIA_NOT_NULL);
         Ensure.requireNonNull(modifier, MSG_MODIFIER_NOT_NULL);
         Ensure.requireNonNull(paging, MSG_PAGING_NOT_NULL);
-        final Collection<SubmodelElement> elements = new ArrayList<>();
+        PagingCursor cursor = PagingCursor.parse(paging.getCursor());
         if (criteria.isParentSet()) {
-            Referable parent = EnvironmentHelper.resolve(criteria.getParent().toReference(), environment);
-            if (Submodel.class.isAssignableFrom(parent.getClass())) {
-                elements.addAll(((Submodel) parent).getSubmodelElements());
-            }
-            else if (SubmodelElementCollection.class.isAssignableFrom(parent.getClass())) {
-                elements.addAll(((SubmodelElementCollection) parent).getValue());
-            }
-            else if (SubmodelElementList.class.isAssignableFrom(parent.getClass())) {
-                elements.addAll(((SubmodelElementList) parent).getValue());
-            }
-            else if (Entity.class.isAssignableFrom(parent.getClass())) {
-                elements.addAll(((Entity) parent).getStatements());
+            return lock.readSubmodel(criteria.getParent().getSubmodelId(), () -> {
+                List<SubmodelElement> children = new ArrayList<>();
+                Referable parent = resolve(getSubmodelElementIndex(criteria.getParent()), criteria.getParent(), Referable.class);
+                Optional.ofNullable(SubmodelElementIndex.getChildren(parent)).ifPresent(children::addAll);
+                return preparePagedResult(
+                        filterSubmodelElements(
+                                children.subList(PagingCursor.resume(cursor, children, SubmodelElement::getIdShort), children.size()).stream(),
+                                criteria),
+                        modifier,
+                        paging,
+                        x -> new PagingCursor(SubmodelElementIndex.indexOf(children, x), x.getIdShort()));
+            });
+        }
+        // elements are collected and copied per submodel while holding the lock of the containing submodel, walking
+        // stops as soon as enough elements for the requested page have been found
+        List<Submodel> currentSubmodels = new ArrayList<>();
+        List<Long> sequenceNumbers = new ArrayList<>();
+        int first = lock.readStructure(() -> {
+            currentSubmodels.addAll(environment.getSubmodels());
+            for (int i = 0; i < currentSubmodels.size(); i++) {
+                sequenceNumbers.add(submodels.getSequenceNumber(i));
             }
-            else if (AnnotatedRelationshipElement.class.isAssignableFrom(parent.getClass())) {
-                elements.addAll(((AnnotatedRelationshipElement) parent).getAnnotations());
+            // continue with the submodel of the cursor or the next one if it has been removed
+            return Objects.nonNull(cursor)
+                    ? submodels.positionAfter(cursor.getPosition() - 1)
+                    : 0;
+        });
+        long requiredCount = paging.hasLimit() ? paging.getLimit() + 1 : Long.MAX_VALUE;
+        Map<SubmodelElement, PagingCursor> cursors = new IdentityHashMap<>();
+        List<SubmodelElement> elements = new ArrayList<>();
+        for (int i = first; i < currentSubmodels.size() && elements.size() < requiredCount; i++) {
+            Submodel submodel = currentSubmodels.get(i);
+            int skip = Objects.nonNull(cursor) && sequenceNumbers.get(i) == cursor.getPosition()
+                    ? cursor.getOffset()
+                    : 0;
+            List<SubmodelElement> matches = lock.readSubmodel(submodel.getId(), () -> {
+                List<SubmodelElement> temp = new ArrayList<>();
+                AssetAdministrationShellElementWalker.builder()
+                        .visitor(new DefaultAssetAdministrationShellElementVisitor() {
+                            @Override
+                            public void visit(SubmodelElement submodelElement) {
+                                temp.add(submodelElement);
+                            }
+                        })
+                        .build()
+                        .walk(submodel);
+                return filterSubmodelElements(temp.stream(), criteria)
+                        .skip(skip)
+                        .limit(requiredCount - elements.size())
+                        .collect(Collectors.toList());
+            });
+            for (int j = 0; j < matches.size(); j++) {
+                cursors.put(matches.get(j), new PagingCursor(sequenceNumbers.get(i), skip + j + 1, submodel.getId()));
             }
+            elements.addAll(matches);
         }
-        else {
-            AssetAdministrationShellElementWalker.builder()
-                    .visitor(new DefaultAssetAdministrationShellElementVisitor() {
-                        @Override
-                        public void visit(SubmodelElement submodelElement) {
-                            elements.add(submodelElement);
-                        }
-                    })
-                    .build()
-                    .walk(environment);
-        }
-        Stream<SubmodelElement> result = elements.stream();
+        Page<SubmodelElement> result = preparePagedResult(elements.stream(), paging, cursors::get);
+        result.setContent(result.getContent().stream()
+                .map(x -> lock.readSubmodel(cursors.get(x).getKey(), () -> prepareResult(x, modifier)))
+                .collect(Collectors.toList()));
+        return result;
+    }
+
+
+    private static Stream<SubmodelElement> filterSubmodelElements(Stream<SubmodelElement> stream, SubmodelElementSearchCriteria criteria) {
+        Stream<SubmodelElement> result = stream;
         if (criteria.isSemanticIdSet()) {
             result = filterBySemanticId(result, criteria.getSemanticId());
         }
         if (criteria.getValueOnly()) {
             result = filterByHasValueOnlySerialization(result);
         }
-        return preparePagedResult(result, modifier, paging);
+        return result;
     }
 
 
@@ -303,34 +475,46 @@ public class PersistenceInMemory implements Persistence<PersistenceInMemoryConfi
         Ensure.requireNonNull(criteria, MSG_CRITERIA_NOT_NULL);
         Ensure.requireNonNull(modifier, MSG_MODIFIER_NOT_NULL);
         Ensure.requireNonNull(paging, MSG_PAGING_NOT_NULL);
-        Stream<Submodel> result = environment.getSubmodels().stream();
-        if (criteria.isIdShortSet()) {
-            result = filterByIdShort(result, criteria.getIdShort());
-        }
-        if (criteria.isSemanticIdSet()) {
-            result = filterBySemanticId(result, criteria.getSemanticId());
-        }
-        return preparePagedResult(result, modifier, paging);
+        Page<Submodel> page = lock.readStructure(() -> {
+            List<Set<String>> candidates = new ArrayList<>();
+            if (criteria.isIdShortSet()) {
+                candidates.add(submodelsByIdShort.get(criteria.getIdShort()));
+            }
+            if (criteria.isSemanticIdSet() && Objects.nonNull(criteria.getSemanticId())) {
+                candidates.add(submodelsBySemanticId.get(SecondaryIndex.referenceKey(criteria.getSemanticId())));
+            }
+            Stream<Submodel> result = lookup(submodels, candidates, environment.getSubmodels(), paging);
+            if (criteria.isIdShortSet()) {
+                result = filterByIdShort(result, criteria.getIdShort());
+            }
+            if (criteria.isSemanticIdSet()) {
+                result = filterBySemanticId(result, criteria.getSemanticId());
+            }
+            return preparePagedResult(result, paging, identifiableCursor(submodels));
+        });
+        // submodels may be modified concurrently and are therefore copied while holding their lock
+        page.setContent(page.getContent().stream()
+                .map(x -> lock.readSubmodel(x.getId(), () -> prepareResult(x, modifier)))
+                .collect(Collectors.toList()));
+        return page;
     }
 
 
     @Override
     public AssetAdministrationShell getAssetAdministrationShell(String id, QueryModifier modifier) throws ResourceNotFoundException {
-        return prepareResult(
-                filterById(environment.getAssetAdministrationShells().stream(), id)
-                        .findFirst()
+        return lock.readStructure(() -> prepareResult(
+                assetAdministrationShells.get(id)
                         .orElseThrow(() -> new ResourceNotFoundException(String.format(MSG_RESOURCE_NOT_FOUND_BY_ID, id))),
-                modifier);
+                modifier));
     }
 
 
     @Override
     public ConceptDescription getConceptDescription(String id, QueryModifier modifier) throws ResourceNotFoundException {
-        return prepareResult(
-                filterById(environment.getConceptDescriptions().stream(), id)
-                        .findFirst()
+        return lock.readStructure(() -> prepareResult(
+                conceptDescriptions.get(id)
                         .orElseThrow(() -> new ResourceNotFoundException(String.format(MSG_RESOURCE_NOT_FOUND_BY_ID, id))),
-                modifier);
+                modifier));
     }
 
 
@@ -338,34 +522,81 @@ public class PersistenceInMemory implements Persistence<PersistenceInMemoryConfi
     public OperationResult getOperationResult(OperationHandle handle) throws ResourceNotFoundException {
         Ensure.requireNonNull(handle, "handle must be non-null");
         return Ensure.requireNonNull(
-                operationStates.get(handle),
+                operationStates.getIfPresent(handle),
                 new ResourceNotFoundException(String.format("Operation handle does not exist (hanldeId: %s)", handle.getHandleId())));
     }
 
 
     @Override
     public Submodel getSubmodel(String id, QueryModifier modifier) throws ResourceNotFoundException {
-        return prepareResult(
-                filterById(environment.getSubmodels().stream(), id)
-                        .findFirst()
+        return lock.readSubmodel(id, () -> prepareResult(
+                lock.readStructure(() -> submodels.get(id))
                         .orElseThrow(() -> new ResourceNotFoundException(String.format(MSG_RESOURCE_NOT_FOUND_BY_ID, id))),
-                modifier);
+                modifier));
     }
 
 
     @Override
     public SubmodelElement getSubmodelElement(SubmodelElementIdentifier identifier, QueryModifier modifier) throws ResourceNotFoundException {
-        return prepareResult(
-                EnvironmentHelper.resolve(identifier.toReference(), environment, SubmodelElement.class),
-                modifier);
+        Ensure.requireNonNull(identifier, "identifier must be non-null");
+        return lock.readSubmodel(identifier.getSubmodelId(), () -> prepareResult(
+                resolve(getSubmodelElementIndex(identifier), identifier, SubmodelElement.class),
+                modifier));
     }
 
 
     @Override
     public Page<Reference> getSubmodelRefs(String aasId, PagingInfo paging) throws ResourceNotFoundException {
+        List<Reference> references = getAssetAdministrationShell(aasId, QueryModifier.MINIMAL).getSubmodels();
+        PagingCursor cursor = PagingCursor.parse(paging.getCursor());
         return preparePagedResult(
-                getAssetAdministrationShell(aasId, QueryModifier.MINIMAL).getSubmodels().stream(),
-                paging);
+                references.subList(PagingCursor.resume(cursor, references, x -> null), references.size()).stream(),
+                paging,
+                x -> new PagingCursor(SubmodelElementIndex.indexOf(references, x), null));
+    }
+
+
+    @Override
+    public boolean assetAdministrationShellExists(String id) {
+        return lock.readStructure(() -> assetAdministrationShells.contains(id));
+    }
+
+
+    @Override
+    public boolean submodelExists(String id) {
+        return lock.readStructure(() -> submodels.contains(id));
+    }
+
+
+    @Override
+    public boolean conceptDescriptionExists(String id) {
+        return lock.readStructure(() -> conceptDescriptions.contains(id));
+    }
+
+
+    @Override
+    public boolean submodelElementExists(SubmodelElementIdentifier identifier) {
+        Ensure.requireNonNull(identifier, "identifier must be non-null");
+        if (identifier.getIdShortPath().isEmpty()) {
+            return false;
+        }
+        return lock.readSubmodel(identifier.getSubmodelId(), () -> {
+            try {
+                return Objects.nonNull(getSubmodelElementIndex(identifier).get(identifier.getIdShortPath()));
+            }
+            catch (ResourceNotFoundException e) {
+                return false;
+            }
+        });
+    }
+
+
+    @Override
+    public boolean submodelRefExists(String aasId, String submodelId) {
+        Reference submodelRef = ReferenceBuilder.forSubmodel(submodelId);
+        return lock.readStructure(() -> assetAdministrationShells.get(aasId)
+                .map(x -> x.getSubmodels().stream().anyMatch(y -> ReferenceHelper.equals(y, submodelRef)))
+                .orElse(false));
     }
 
 
@@ -374,12 +605,45 @@ public class PersistenceInMemory implements Persistence<PersistenceInMemoryConfi
         Ensure.requireNonNull(config, "config must be non-null");
         Ensure.requireNonNull(context, "context must be non-null");
         this.config = config;
+        this.copyOnWrite = config.isCopyOnWrite();
+        this.lock = new EnvironmentLock(EnvironmentLock.DEFAULT_STRIPES, !copyOnWrite);
+        this.operationStates = buildOperationStates(config);
+        // weak keys are compared by identity, which is sufficient as stored elements are immutable with copy-on-write
+        this.blobValueFlags = CacheBuilder.newBuilder()
+                .weakKeys()
+                .build();
         try {
             this.environment = config.loadInitialModel();
         }
         catch (InvalidConfigurationException | DeserializationException e) {
             throw new ConfigurationInitializationException("error initializing in-memory persistence", e);
         }
+        if (copyOnWrite) {
+            environment = new DefaultEnvironment.Builder()
+                    .assetAdministrationShells(ingestAll(environment.getAssetAdministrationShells()))
+                    .submodels(ingestAll(environment.getSubmodels()))
+                    .conceptDescriptions(ingestAll(environment.getConceptDescriptions()))
+                    .build();
+        }
+        initIndexes();
+    }
+
+
+    private Cache<OperationHandle, OperationResult> buildOperationStates(PersistenceInMemoryConfig config) {
+        CacheBuilder<OperationHandle, OperationResult> builder = CacheBuilder.newBuilder()
+                .removalListener(x -> {
+                    Consumer<OperationHandle> listener = operationResultRemovalListener;
+                    if (x.getCause() != RemovalCause.REPLACED && Objects.nonNull(listener)) {
+                        listener.accept(x.getKey());
+                    }
+                });
+        if (config.getOperationResultMaxCount() > 0) {
+            builder.maximumSize(config.getOperationResultMaxCount());
+        }
+        if (config.getOperationResultTimeToLive() > 0) {
+            builder.expireAfterWrite(config.getOperationResultTimeToLive(), TimeUnit.MILLISECONDS);
+        }
+        return builder.build();
     }
 
 
@@ -393,9 +657,16 @@ public class PersistenceInMemory implements Persistence<PersistenceInMemoryConfi
     public void insert(SubmodelElementIdentifier parentIdentifier, SubmodelElement submodelElement) throws ResourceNotFoundException, ResourceNotAContainerElementException {
         Ensure.requireNonNull(parentIdentifier, "parent must be non-null");
         Ensure.requireNonNull(submodelElement, "submodelElement must be non-null");
-        Referable parent = EnvironmentHelper.resolve(parentIdentifier.toReference(), environment);
+        SubmodelElement element = ingest(submodelElement);
+        lock.writeSubmodel(parentIdentifier.getSubmodelId(), () -> doInsert(parentIdentifier, element));
+    }
+
 
-        Collection<SubmodelElement> container;
+    private void doInsert(SubmodelElementIdentifier parentIdentifier, SubmodelElement submodelElement) throws ResourceNotFoundException {
+        SubmodelElementIndex index = getSubmodelElementIndexForUpdate(parentIdentifier);
+        IdShortPath parentPath = parentIdentifier.getIdShortPath();
+        Referable parent = resolve(index, parentIdentifier, Referable.class);
+        List<SubmodelElement> container;
         boolean acceptEmptyIdShort = false;
         if (Submodel.class.isAssignableFrom(parent.getClass())) {
             container = ((Submodel) parent).getSubmodelElements();
@@ -413,14 +684,18 @@ public class PersistenceInMemory implements Persistence<PersistenceInMemoryConfi
         else if (AnnotatedRelationshipElement.class.isAssignableFrom(parent.getClass())) {
             if (DataElement.class.isAssignableFrom(submodelElement.getClass())) {
                 DataElement dataElement = (DataElement) submodelElement;
-                Collection<DataElement> dataElementContainer = ((AnnotatedRelationshipElement) parent).getAnnotations();
-                CollectionHelper.put(dataElementContainer,
+                List<DataElement> dataElementContainer = ((AnnotatedRelationshipElement) parent).getAnnotations();
+                put(index,
+                        parentPath,
+                        parent,
+                        dataElementContainer,
                         dataElementContainer.stream()
                                 .filter(x -> !StringHelper.isBlank(x.getIdShort())
                                         && x.getIdShort().equalsIgnoreCase(dataElement.getIdShort()))
                                 .findFirst()
                                 .orElse(null),
                         dataElement);
+                publish(index);
                 return;
             }
             else {
@@ -441,7 +716,10 @@ public class PersistenceInMemory implements Persistence<PersistenceInMemoryConfi
         if (!acceptEmptyIdShort && StringHelper.isBlank(submodelElement.getIdShort())) {
             throw new IllegalArgumentException("idShort most be non-empty");
         }
-        CollectionHelper.put(container,
+        put(index,
+                parentPath,
+                parent,
+                container,
                 container.stream()
                         .filter(StringHelper.isBlank(submodelElement.getIdShort())
                                 ? x -> false
@@ -450,6 +728,7 @@ public class PersistenceInMemory implements Persistence<PersistenceInMemoryConfi
                         .findFirst()
                         .orElse(null),
                 submodelElement);
+        publish(index);
     }
 
 
@@ -457,17 +736,22 @@ public class PersistenceInMemory implements Persistence<PersistenceInMemoryConfi
     public void update(SubmodelElementIdentifier identifier, SubmodelElement submodelElement) throws ResourceNotFoundException {
         Ensure.requireNonNull(identifier, "identifier must be non-null");
         Ensure.requireNonNull(submodelElement, "submodelElement must be non-null");
-        SubmodelElement oldElement = getSubmodelElement(identifier, QueryModifier.DEFAULT);
-        Referable parent = EnvironmentHelper.resolve(ReferenceHelper.getParent(identifier.toReference()), environment);
+        SubmodelElement element = ingest(submodelElement);
+        lock.writeSubmodel(identifier.getSubmodelId(), () -> doUpdate(identifier, element));
+    }
+
 
+    private void doUpdate(SubmodelElementIdentifier identifier, SubmodelElement submodelElement) throws ResourceNotFoundException {
+        SubmodelElementIndex index = getSubmodelElementIndexForUpdate(identifier);
+        IdShortPath parentPath = identifier.getIdShortPath().getParent();
+        SubmodelElement oldElement = resolve(index, identifier, SubmodelElement.class);
+        Referable parent = index.getParent(identifier.getIdShortPath());
+
+        List<SubmodelElement> container;
         if (SubmodelElementList.class.isAssignableFrom(parent.getClass())) {
-            int index = Integer.parseInt(identifier.getIdShortPath().getElements().get(identifier.getIdShortPath().getElements().size() - 1).substring(1, 2));
-            ((SubmodelElementList) parent).getValue().set(index, submodelElement);
-            return;
+            container = ((SubmodelElementList) parent).getValue();
         }
-
-        Collection<SubmodelElement> container;
-        if (Submodel.class.isAssignableFrom(parent.getClass())) {
+        else if (Submodel.class.isAssignableFrom(parent.getClass())) {
             container = ((Submodel) parent).getSubmodelElements();
         }
         else if (SubmodelElementCollection.class.isAssignableFrom(parent.getClass())) {
@@ -478,15 +762,13 @@ public class PersistenceInMemory implements Persistence<PersistenceInMemoryConfi
         }
         else if (AnnotatedRelationshipElement.class.isAssignableFrom(parent.getClass()) && DataElement.class.isAssignableFrom(oldElement.getClass())) {
             if (DataElement.class.isAssignableFrom(submodelElement.getClass())) {
-                DataElement dataElement = (DataElement) submodelElement;
-                DataElement oldDataElement = (DataElement) oldElement;
-                Collection<DataElement> dataElementContainer = ((AnnotatedRelationshipElement) parent).getAnnotations();
-                CollectionHelper.put(dataElementContainer,
-                        dataElementContainer.stream()
-                                .filter(x -> Objects.equals(x, oldDataElement))
-                                .findFirst()
-                                .orElse(null),
-                        dataElement);
+                put(index,
+                        parentPath,
+                        parent,
+                        ((AnnotatedRelationshipElement) parent).getAnnotations(),
+                        (DataElement) oldElement,
+                        (DataElement) submodelElement);
+                publish(index);
                 return;
             }
             else {
@@ -504,30 +786,80 @@ public class PersistenceInMemory implements Persistence<PersistenceInMemoryConfi
                     Entity.class,
                     AnnotatedRelationshipElement.class));
         }
-        CollectionHelper.put(container,
-                container.stream()
-                        .filter(x -> Objects.equals(x, oldElement))
-                        .findFirst()
-                        .orElse(null),
-                submodelElement);
+        put(index, parentPath, parent, container, oldElement, submodelElement);
+        publish(index);
+    }
+
+
+    @Override
+    public ElementValue getValue(SubmodelElementIdentifier identifier) throws ResourceNotFoundException, ValueMappingException {
+        Ensure.requireNonNull(identifier, "identifier must be non-null");
+        return lock.<ElementValue, ResourceNotFoundException, ValueMappingException> readSubmodel(identifier.getSubmodelId(),
+                () -> ElementValueMapper.toValue(prepareValueSource(resolve(getSubmodelElementIndex(identifier), identifier, SubmodelElement.class))));
+    }
+
+
+    @Override
+    public void setValue(SubmodelElementIdentifier identifier, ElementValue value) throws ResourceNotFoundException, ValueMappingException {
+        Ensure.requireNonNull(identifier, "identifier must be non-null");
+        Ensure.requireNonNull(value, "value must be non-null");
+        lock.<ResourceNotFoundException, ValueMappingException> writeSubmodel(identifier.getSubmodelId(), () -> doSetValue(identifier, value));
+    }
+
+
+    private void doSetValue(SubmodelElementIdentifier identifier, ElementValue value) throws ResourceNotFoundException, ValueMappingException {
+        SubmodelElement current = resolve(getSubmodelElementIndex(identifier), identifier, SubmodelElement.class);
+        if (copyOnWrite || !DataElement.class.isAssignableFrom(current.getClass())) {
+            // setting the value of an element with children may add new children, e.g. for a SubmodelElementList,
+            // which requires the index to be updated; stored elements must not be modified if copy-on-write is enabled
+            doUpdate(identifier, ingest(ElementValueMapper.setValue(DeepCopyHelper.deepCopy(current), value)));
+            return;
+        }
+        SubmodelElementIndex index = getSubmodelElementIndexForUpdate(identifier);
+        ElementValueMapper.setValue(resolve(index, identifier, SubmodelElement.class), value);
+        publish(index);
     }
 
 
     @Override
     public void save(AssetAdministrationShell assetAdministrationShell) {
-        saveOrUpdateById(environment.getAssetAdministrationShells(), assetAdministrationShell);
+        AssetAdministrationShell element = ingest(assetAdministrationShell);
+        lock.writeStructure(() -> assetAdministrationShells.put(element));
     }
 
 
     @Override
     public void save(ConceptDescription conceptDescription) {
-        saveOrUpdateById(environment.getConceptDescriptions(), conceptDescription);
+        ConceptDescription element = ingest(conceptDescription);
+        lock.writeStructure(() -> conceptDescriptions.put(element));
     }
 
 
     @Override
     public void save(Submodel submodel) {
-        saveOrUpdateById(environment.getSubmodels(), submodel);
+        Submodel element = ingest(submodel);
+        lock.writeSubmodel(submodel.getId(), () -> lock.writeStructure(() -> {
+            submodels.put(element);
+            submodelElementIndexes.remove(submodel.getId());
+        }));
+    }
+
+
+    @Override
+    public void saveAll(Environment environment) {
+        Ensure.requireNonNull(environment, "environment must be non-null");
+        List<AssetAdministrationShell> newAssetAdministrationShells = ingestAll(environment.getAssetAdministrationShells());
+        List<Submodel> newSubmodels = ingestAll(environment.getSubmodels());
+        List<ConceptDescription> newConceptDescriptions = ingestAll(environment.getConceptDescriptions());
+        // single pass while holding all locks instead of acquiring them once per identifiable
+        lock.writeAll(() -> {
+            newAssetAdministrationShells.forEach(assetAdministrationShells::put);
+            for (Submodel submodel: newSubmodels) {
+                submodels.put(submodel);
+                submodelElementIndexes.remove(submodel.getId());
+            }
+            newConceptDescriptions.forEach(conceptDescriptions::put);
+        });
     }
 
 
@@ -558,11 +890,6 @@ public class PersistenceInMemory implements Persistence<PersistenceInMemoryConfi
     }
 
 
-    private static <T extends Identifiable> Stream<T> filterById(Stream<T> stream, String id) {
-        return stream.filter(x -> Objects.equals(x.getId(), id));
-    }
-
-
     private static Stream<AssetAdministrationShell> filterByAssetIds(Stream<AssetAdministrationShell> stream, List<AssetIdentification> assetIds) {
         if (Objects.isNull(assetIds)) {
             return stream;
@@ -609,79 +936,295 @@ public class PersistenceInMemory implements Persistence<PersistenceInMemoryConfi
     }
 
 
-    private static <T extends Referable> T prepareResult(T result, QueryModifier modifier) {
-        return QueryModifierHelper.applyQueryModifier(
-                DeepCopyHelper.deepCopy(result),
-                modifier);
+    /**
+     * Gets the elements to apply the search criteria to. If any criteria is backed by an index, only the elements
+     * referenced by the smallest set of candidates are returned, otherwise all elements. As indexes may produce false
+     * positives, the actual filters still need to be applied to the result. If paging is requested with a cursor, only
+     * elements after the last element of the previous page are returned.
+     *
+     * @param index the primary index
+     * @param candidates candidate ids found via secondary indexes
+     * @param all all elements
+     * @param paging the paging information
+     * @return stream of elements to apply the search criteria to
+     */
+    private static <T extends Identifiable> Stream<T> lookup(IdentifiableIndex<T> index, List<Set<String>> candidates, List<T> all, PagingInfo paging) {
+        PagingCursor cursor = PagingCursor.parse(paging.getCursor());
+        int from = Objects.nonNull(cursor)
+                ? index.positionAfter(cursor.getPosition())
+                : 0;
+        return candidates.stream()
+                .min(Comparator.comparingInt(Set::size))
+                .map(x -> index.getAll(x, from))
+                .orElseGet(() -> all.subList(from, all.size()).stream());
     }
 
 
-    private static long readCursor(String cursor) {
-        return Long.parseLong(cursor);
+    private static <T extends Identifiable> Function<T, PagingCursor> identifiableCursor(IdentifiableIndex<T> index) {
+        return x -> new PagingCursor(index.getSequenceNumber(index.indexOf(x.getId())), null);
     }
 
 
-    private static String writeCursor(long index) {
-        return Long.toString(index);
+    private static List<String> specificAssetIdKey(SpecificAssetId specificAssetId) {
+        return Arrays.asList(specificAssetId.getName(), specificAssetId.getValue());
     }
 
 
-    private static String nextCursor(PagingInfo paging, int resultCount) {
-        return nextCursor(paging, paging.hasLimit() && resultCount > paging.getLimit());
+    private SubmodelElementIndex getSubmodelElementIndex(SubmodelElementIdentifier identifier) throws ResourceNotFoundException {
+        Submodel submodel = lock.readStructure(() -> submodels.get(identifier.getSubmodelId()))
+                .orElseThrow(() -> new ResourceNotFoundException(identifier.toReference()));
+        SubmodelElementIndex result = submodelElementIndexes.get(submodel.getId());
+        if (Objects.isNull(result) || result.getSubmodel() != submodel) {
+            result = new SubmodelElementIndex(submodel);
+            submodelElementIndexes.put(submodel.getId(), result);
+        }
+        return result;
     }
 
 
-    private static String nextCursor(PagingInfo paging, boolean hasMoreData) {
-        if (!hasMoreData) {
-            return null;
+    /**
+     * Gets the index of the submodel to modify. If copy-on-write is enabled, this is the index of a new version of the
+     * submodel in which all elements on the path to the identified element are copied and that must be published via
+     * {@link #publish(SubmodelElementIndex)} once all modifications are done.
+     *
+     * @param identifier identifier of an element within the submodel
+     * @return the index of the submodel to modify
+     * @throws ResourceNotFoundException if the submodel does not exist
+     */
+    private SubmodelElementIndex getSubmodelElementIndexForUpdate(SubmodelElementIdentifier identifier) throws ResourceNotFoundException {
+        SubmodelElementIndex result = getSubmodelElementIndex(identifier);
+        return copyOnWrite
+                ? result.copyPath(identifier.getIdShortPath())
+                : result;
+    }
+
+
+    /**
+     * Publishes a modified version of a submodel. Has no effect if copy-on-write is disabled as the submodel has been
+     * modified in place.
+     *
+     * @param index the index of the modified submodel
+     */
+    private void publish(SubmodelElementIndex index) {
+        if (!copyOnWrite) {
+            return;
         }
-        if (!paging.hasLimit()) {
-            throw new IllegalStateException("unable to generate next cursor for paging - there should not be more data available if previous request did not have a limit set");
+        index.seal();
+        lock.writeStructure(() -> {
+            submodels.put(index.getSubmodel());
+            submodelElementIndexes.put(index.getSubmodel().getId(), index);
+        });
+    }
+
+
+    private static <T extends Referable> T resolve(SubmodelElementIndex index, SubmodelElementIdentifier identifier, Class<T> type) throws ResourceNotFoundException {
+        Referable result = index.get(identifier.getIdShortPath());
+        if (Objects.isNull(result)) {
+            throw new ResourceNotFoundException(identifier.toReference());
         }
-        if (Objects.isNull(paging.getCursor())) {
-            return writeCursor(paging.getLimit());
+        if (!type.isAssignableFrom(result.getClass())) {
+            throw new IllegalArgumentException(String.format(
+                    "unable to resolve reference as actual type does not match expected type (reference: %s, actual type: %s, expected type: %s)",
+                    ReferenceHelper.toString(identifier.toReference()),
+                    result.getClass(),
+                    type));
         }
-        return writeCursor(readCursor(paging.getCursor()) + paging.getLimit());
+        return type.cast(result);
     }
 
 
-    private static <T> Page<T> preparePagedResult(Stream<T> input, PagingInfo paging) {
-        Stream<T> result = input;
-        if (Objects.nonNull(paging.getCursor())) {
-            result = result.skip(readCursor(paging.getCursor()));
+    /**
+     * Replaces an element within a container or adds it if there is no element to replace and updates the index
+     * accordingly. Elements are replaced in place based on identity.
+     *
+     * @param index the index of the submodel
+     * @param parentPath the path of the parent element
+     * @param parent the parent element
+     * @param container the container, i.e. the list of child elements of the parent
+     * @param oldElement the element to replace, may be null
+     * @param newElement the new element
+     */
+    private static <T extends SubmodelElement> void put(SubmodelElementIndex index,
+                                                        IdShortPath parentPath,
+                                                        Referable parent,
+                                                        List<T> container,
+                                                        T oldElement,
+                                                        T newElement) {
+        int position = SubmodelElementIndex.indexOf(container, oldElement);
+        if (position >= 0) {
+            index.remove(SubmodelElementIndex.childPath(parentPath, parent, oldElement, position));
+            container.set(position, newElement);
+        }
+        else {
+            container.add(newElement);
+            position = container.size() - 1;
+        }
+        index.add(SubmodelElementIndex.childPath(parentPath, parent, newElement, position), newElement);
+    }
+
+
+    /**
+     * Prepares an element passed by the caller for being stored. If copy-on-write is enabled, stored elements are
+     * shared with all readers and are therefore stored as read-only copy, i.e. neither the caller nor any reader can
+     * modify the stored version by changing the structure of the element.
+     *
+     * @param element the element to store
+     * @return the element to store
+     */
+    private <T extends Referable> T ingest(T element) {
+        return copyOnWrite
+                ? DeepCopyHelper.deepCopyReadOnly(element)
+                : element;
+    }
+
+
+    private <T extends Referable> List<T> ingestAll(List<T> elements) {
+        if (Objects.isNull(elements)) {
+            return new ArrayList<>();
         }
+        return elements.stream()
+                .map(this::ingest)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+
+    private <T extends Referable> T prepareResult(T result, QueryModifier modifier) {
+        if (copyOnWrite && !QueryModifierHelper.isModifying(result, modifier, this::containsBlobValue)) {
+            return result;
+        }
+        return DeepCopyHelper.deepCopyWithModifier(result, modifier);
+    }
+
+
+    /**
+     * Checks if a stored element contains any blob with a value. Only used with copy-on-write, i.e. when stored elements
+     * are immutable, so the result is computed once per element and cached. As new versions share all elements not on
+     * the path to the modified element, checking a new version only needs to check the copied elements.
+     *
+     * @param referable the stored element
+     * @return true if the element contains any blob with a value, otherwise false
+     */
+    private boolean containsBlobValue(Referable referable) {
+        if (Objects.isNull(referable)) {
+            return false;
+        }
+        Boolean result = blobValueFlags.getIfPresent(referable);
+        if (Objects.isNull(result)) {
+            result = computeContainsBlobValue(referable);
+            blobValueFlags.put(referable, result);
+        }
+        return result;
+    }
+
+
+    private boolean computeContainsBlobValue(Referable referable) {
+        if (referable instanceof Blob blob) {
+            return Objects.nonNull(blob.getValue());
+        }
+        if (referable instanceof Operation operation) {
+            return Stream.of(operation.getInputVariables(), operation.getOutputVariables(), operation.getInoutputVariables())
+                    .filter(Objects::nonNull)
+                    .flatMap(List::stream)
+                    .anyMatch(x -> containsBlobValue(x.getValue()));
+        }
+        List<? extends SubmodelElement> children = SubmodelElementIndex.getChildren(referable);
+        return Objects.nonNull(children)
+                && children.stream().anyMatch(this::containsBlobValue);
+    }
+
+
+    /**
+     * Gets the element to create a value from. The values of properties and ranges are created from strings and
+     * therefore never share mutable objects with the element, all other values might, e.g. the lang strings of a
+     * MultiLanguageProperty, so they are created from a copy unless stored elements are immutable anyway.
+     *
+     * @param element the stored element
+     * @return the element to create the value from
+     */
+    private SubmodelElement prepareValueSource(SubmodelElement element) {
+        if (copyOnWrite
+                || Property.class.isAssignableFrom(element.getClass())
+                || Range.class.isAssignableFrom(element.getClass())) {
+            return element;
+        }
+        return DeepCopyHelper.deepCopy(element);
+    }
+
+
+    /**
+     * Creates a page from a stream of elements starting right after the last element of the previous page.
+     *
+     * @param input the elements starting after the last element of the previous page
+     * @param paging the paging information
+     * @param cursorFactory function to create the cursor pointing to an element
+     * @return the page
+     */
+    private static <T> Page<T> preparePagedResult(Stream<T> input, PagingInfo paging, Function<T, PagingCursor> cursorFactory) {
+        Stream<T> result = input;
         if (paging.hasLimit()) {
             result = result.limit(paging.getLimit() + 1);
         }
         List<T> temp = result.collect(Collectors.toList());
+        boolean hasMoreData = paging.hasLimit() && temp.size() > paging.getLimit();
+        List<T> content = hasMoreData
+                ? new ArrayList<>(temp.subList(0, (int) paging.getLimit()))
+                : temp;
         return Page.<T> builder()
-                .result(temp.stream()
-                        .limit(paging.hasLimit() ? paging.getLimit() : temp.size())
-                        .collect(Collectors.toList()))
+                .result(content)
                 .metadata(PagingMetadata.builder()
-                        .cursor(nextCursor(paging, temp.size()))
+                        .cursor(hasMoreData && !content.isEmpty()
+                                ? cursorFactory.apply(content.get(content.size() - 1)).toString()
+                                : null)
                         .build())
                 .build();
     }
 
 
-    private static <T extends Referable> Page<T> preparePagedResult(Stream<T> input, QueryModifier modifier, PagingInfo paging) {
-        Page<T> result = preparePagedResult(input, paging);
-        result.setContent(QueryModifierHelper.applyQueryModifier(
-                result.getContent().stream()
-                        .map(DeepCopyHelper::deepCopy)
-                        .collect(Collectors.toList()),
-                modifier));
+    private <T extends Referable> Page<T> preparePagedResult(Stream<T> input, QueryModifier modifier, PagingInfo paging, Function<T, PagingCursor> cursorFactory) {
+        Page<T> result = preparePagedResult(input, paging, cursorFactory);
+        result.setContent(result.getContent().stream()
+                .map(x -> prepareResult(x, modifier))
+                .collect(Collectors.toList()));
         return result;
     }
 
 
-    private static <T extends Identifiable> void saveOrUpdateById(Collection<T> container, T element) {
-        CollectionHelper.put(container,
-                container.stream()
-                        .filter(x -> Objects.nonNull(x.getId()) && x.getId().equalsIgnoreCase(element.getId()))
-                        .findFirst()
-                        .orElse(null),
-                element);
+    private void initIndexes() {
+        if (Objects.isNull(environment.getAssetAdministrationShells())) {
+            environment.setAssetAdministrationShells(new ArrayList<>());
+        }
+        if (Objects.isNull(environment.getSubmodels())) {
+            environment.setSubmodels(new ArrayList<>());
+        }
+        if (Objects.isNull(environment.getConceptDescriptions())) {
+            environment.setConceptDescriptions(new ArrayList<>());
+        }
+        assetAdministrationShells = new IdentifiableIndex<>(environment.getAssetAdministrationShells());
+        submodels = new IdentifiableIndex<>(environment.getSubmodels());
+        conceptDescriptions = new IdentifiableIndex<>(environment.getConceptDescriptions());
+        submodelElementIndexes = new ConcurrentHashMap<>();
+        assetAdministrationShellsByIdShort = assetAdministrationShells.addSecondaryIndex(x -> Collections.singleton(x.getIdShort()));
+        assetAdministrationShellsByGlobalAssetId = assetAdministrationShells.addSecondaryIndex(x -> Objects.nonNull(x.getAssetInformation())
+                ? Collections.singleton(x.getAssetInformation().getGlobalAssetId())
+                : Set.of());
+        assetAdministrationShellsBySpecificAssetId = assetAdministrationShells.addSecondaryIndex(x -> Objects.nonNull(x.getAssetInformation())
+                && Objects.nonNull(x.getAssetInformation().getSpecificAssetIds())
+                        ? x.getAssetInformation().getSpecificAssetIds().stream()
+                                .map(PersistenceInMemory::specificAssetIdKey)
+                                .collect(Collectors.toSet())
+                        : Set.of());
+        submodelsByIdShort = submodels.addSecondaryIndex(x -> Collections.singleton(x.getIdShort()));
+        submodelsBySemanticId = submodels.addSecondaryIndex(x -> Stream.concat(
+                Stream.of(x.getSemanticId()),
+                Optional.ofNullable(x.getSupplementalSemanticIds()).orElse(List.of()).stream())
+                .map(SecondaryIndex::referenceKey)
+                .collect(Collectors.toSet()));
+        conceptDescriptionsByIdShort = conceptDescriptions.addSecondaryIndex(x -> Collections.singleton(x.getIdShort()));
+        conceptDescriptionsByIsCaseOf = conceptDescriptions.addSecondaryIndex(x -> SecondaryIndex.referenceKeys(x.getIsCaseOf()));
+        conceptDescriptionsByDataSpecification = conceptDescriptions.addSecondaryIndex(x -> Objects.nonNull(x.getEmbeddedDataSpecifications())
+                ? SecondaryIndex.referenceKeys(x.getEmbeddedDataSpecifications().stream()
+                        .map(EmbeddedDataSpecification::getDataSpecification)
+                        .collect(Collectors.toList()))
+                : Set.of());
     }
 }
@@ -15,6 +15,7 @@
 package de.fraunhofer.iosb.ilt.faaast.service.persistence.memory;
 
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.PersistenceConfig;
+import java.util.Objects;
 
 
 /**
@@ -22,6 +23,96 @@ import de.fraunhofer.iosb.ilt.faaast.service.persistence.PersistenceConfig;
  */
 public class PersistenceInMemoryConfig extends PersistenceConfig<PersistenceInMemory> {
 
+    public static final boolean DEFAULT_COPY_ON_WRITE = false;
+    public static final long DEFAULT_OPERATION_RESULT_MAX_COUNT = 0;
+    public static final long DEFAULT_OPERATION_RESULT_TIME_TO_LIVE = 0;
+
+    private boolean copyOnWrite;
+    private long operationResultMaxCount;
+    private long operationResultTimeToLive;
+
+    public PersistenceInMemoryConfig() {
+        copyOnWrite = DEFAULT_COPY_ON_WRITE;
+        operationResultMaxCount = DEFAULT_OPERATION_RESULT_MAX_COUNT;
+        operationResultTimeToLive = DEFAULT_OPERATION_RESULT_TIME_TO_LIVE;
+    }
+
+
+    /**
+     * If enabled, stored elements are never modified in place. Instead, every modification of a submodel element
+     * creates a new version of the containing submodel which replaces the old version once the modification is
+     * complete. This allows reads to return the stored elements without creating a deep copy first, but requires
+     * callers to not modify any returned element.
+     *
+     * @return true if copy-on-write is enabled, otherwise false
+     */
+    public boolean isCopyOnWrite() {
+        return copyOnWrite;
+    }
+
+
+    public void setCopyOnWrite(boolean copyOnWrite) {
+        this.copyOnWrite = copyOnWrite;
+    }
+
+
+    /**
+     * The maximum number of results of asynchronous operations to keep. If exceeded, the least recently written
+     * results are evicted. A value of 0 or less means no limit.
+     *
+     * @return the maximum number of operation results
+     */
+    public long getOperationResultMaxCount() {
+        return operationResultMaxCount;
+    }
+
+
+    public void setOperationResultMaxCount(long operationResultMaxCount) {
+        this.operationResultMaxCount = operationResultMaxCount;
+    }
+
+
+    /**
+     * The time in milliseconds after which the result of an asynchronous operation is evicted, measured from its last
+     * update. A value of 0 or less means results never expire.
+     *
+     * @return the time-to-live of operation results in milliseconds
+     */
+    public long getOperationResultTimeToLive() {
+        return operationResultTimeToLive;
+    }
+
+
+    public void setOperationResultTimeToLive(long operationResultTimeToLive) {
+        this.operationResultTimeToLive = operationResultTimeToLive;
+    }
+
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final PersistenceInMemoryConfig other = (PersistenceInMemoryConfig) obj;
+        return super.equals(obj)
+                && Objects.equals(this.copyOnWrite, other.copyOnWrite)
+                && Objects.equals(this.operationResultMaxCount, other.operationResultMaxCount)
+                && Objects.equals(this.operationResultTimeToLive, other.operationResultTimeToLive);
+    }
+
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), this.copyOnWrite, this.operationResultMaxCount, this.operationResultTimeToLive);
+    }
+
+
     public static Builder builder() {
         return new Builder();
     }
@@ -29,6 +120,22 @@ public class PersistenceInMemoryConfig extends PersistenceConfig<PersistenceInMe
     private abstract static class AbstractBuilder<T extends PersistenceInMemoryConfig, B extends AbstractBuilder<T, B>>
             extends PersistenceConfig.AbstractBuilder<PersistenceInMemory, T, B> {
 
+        public B copyOnWrite(boolean value) {
+            getBuildingInstance().setCopyOnWrite(value);
+            return getSelf();
+        }
+
+
+        public B operationResultMaxCount(long value) {
+            getBuildingInstance().setOperationResultMaxCount(value);
+            return getSelf();
+        }
+
+
+        public B operationResultTimeToLive(long value) {
+            getBuildingInstance().setOperationResultTimeToLive(value);
+            return getSelf();
+        }
     }
 
     public static class Builder extends AbstractBuilder<PersistenceInMemoryConfig, Builder> {
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.memory;
+
+import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
+import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceHelper;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.eclipse.digitaltwin.aas4j.v3.model.Identifiable;
+import org.eclipse.digitaltwin.aas4j.v3.model.Reference;
+
+
+/**
+ * Secondary index mapping arbitrary keys extracted from an {@link Identifiable} to the ids of all elements having this
+ * key. A single element can be indexed under multiple keys, e.g. semanticId and supplemental semanticIds.
+ *
+ * <p>Keys are only used to narrow down the set of candidates, i.e. results may contain false positives and must still
+ * be filtered with the actual predicate. This allows keys to be a coarser, hashable representation of the actual
+ * value, e.g. {@link #referenceKey(Reference)}.
+ *
+ * @param <T> type of the indexed elements
+ */
+class SecondaryIndex<T extends Identifiable> {
+
+    private final Function<T, Collection<?>> keyExtractor;
+    private final Map<Object, Set<String>> ids;
+
+    SecondaryIndex(Function<T, Collection<?>> keyExtractor) {
+        Ensure.requireNonNull(keyExtractor, "keyExtractor must be non-null");
+        this.keyExtractor = keyExtractor;
+        this.ids = new HashMap<>();
+    }
+
+
+    /**
+     * Creates a hashable key for a reference that is consistent with {@link ReferenceHelper#equals(Reference, Reference)},
+     * i.e. references considered equal by {@link ReferenceHelper} produce the same key. As key types and
+     * referredSemanticId are ignored, different references may also produce the same key.
+     *
+     * @param reference the reference
+     * @return a hashable key for the reference
+     */
+    static List<String> referenceKey(Reference reference) {
+        if (ReferenceHelper.isNullOrEmpty(reference)) {
+            return List.of();
+        }
+        return reference.getKeys().stream()
+                .map(x -> Objects.nonNull(x) ? x.getValue() : null)
+                .collect(Collectors.toList());
+    }
+
+
+    /**
+     * Creates hashable keys for a list of references.
+     *
+     * @param references the references
+     * @return the hashable keys
+     * @see #referenceKey(Reference)
+     */
+    static Set<List<String>> referenceKeys(Collection<Reference> references) {
+        if (Objects.isNull(references)) {
+            return Set.of();
+        }
+        return references.stream()
+                .map(SecondaryIndex::referenceKey)
+                .collect(Collectors.toSet());
+    }
+
+
+    /**
+     * Gets the ids of all elements indexed with the given key.
+     *
+     * @param key the key
+     * @return the ids of all elements indexed with the given key
+     */
+    Set<String> get(Object key) {
+        return ids.getOrDefault(key, Set.of());
+    }
+
+
+    /**
+     * Gets the ids of all elements indexed with any of the given keys.
+     *
+     * @param keys the keys
+     * @return the ids of all elements indexed with any of the given keys
+     */
+    Set<String> getAny(Collection<?> keys) {
+        Set<String> result = new LinkedHashSet<>();
+        keys.forEach(x -> result.addAll(get(x)));
+        return result;
+    }
+
+
+    void add(T element) {
+        for (Object key: keyExtractor.apply(element)) {
+            ids.computeIfAbsent(key, x -> new HashSet<>()).add(element.getId());
+        }
+    }
+
+
+    void remove(T element) {
+        for (Object key: keyExtractor.apply(element)) {
+            Set<String> current = ids.get(key);
+            if (Objects.nonNull(current)) {
+                current.remove(element.getId());
+                if (current.isEmpty()) {
+                    ids.remove(key);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.memory;
+
+import de.fraunhofer.iosb.ilt.faaast.service.model.IdShortPath;
+import de.fraunhofer.iosb.ilt.faaast.service.util.DeepCopyHelper;
+import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
+import de.fraunhofer.iosb.ilt.faaast.service.util.StringHelper;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.eclipse.digitaltwin.aas4j.v3.model.AnnotatedRelationshipElement;
+import org.eclipse.digitaltwin.aas4j.v3.model.DataElement;
+import org.eclipse.digitaltwin.aas4j.v3.model.Entity;
+import org.eclipse.digitaltwin.aas4j.v3.model.Referable;
+import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
+import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElement;
+import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElementCollection;
+import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElementList;
+
+
+/**
+ * Index of all {@link SubmodelElement}s of a single {@link Submodel} by their {@link IdShortPath}. This allows resolving
+ * a path by following only the elements on the path instead of walking the whole environment.
+ *
+ * <p>The index must be kept in sync with the submodel, i.e. every change to the element tree of the submodel must be
+ * reflected by calling {@link #add(IdShortPath, SubmodelElement)} or {@link #remove(IdShortPath)}. Both only touch the
+ * affected subtree.
+ *
+ * <p>Elements are resolved the same way as {@link de.fraunhofer.iosb.ilt.faaast.service.util.EnvironmentHelper} does,
+ * i.e. children of {@link SubmodelElementCollection}, {@link Entity} and {@link AnnotatedRelationshipElement} are
+ * addressed by idShort, children of {@link SubmodelElementList} by their index.
+ *
+ * <p>The index is a tree with one node per element that holds the nodes of the children of the element. For immutable
+ * submodels, {@link #copyPath(IdShortPath)} creates a new version of the index in which only the elements and nodes on
+ * the path to the element to modify are copied while all other elements and nodes are shared with the previous version.
+ * The cost of a modification therefore depends on the length of the path and the number of children along it, but not
+ * on the size of the submodel.
+ */
+class SubmodelElementIndex {
+
+    private final Node root;
+    private final List<Referable> copies;
+
+    SubmodelElementIndex(Submodel submodel) {
+        Ensure.requireNonNull(submodel, "submodel must be non-null");
+        this.root = Node.of(submodel);
+        this.copies = new ArrayList<>();
+    }
+
+
+    private SubmodelElementIndex(Node root) {
+        this.root = root;
+        this.copies = new ArrayList<>();
+    }
+
+
+    /**
+     * Gets the child elements of a container element.
+     *
+     * @param parent the parent
+     * @return the child elements or null if parent is not a container element
+     */
+    static List<? extends SubmodelElement> getChildren(Referable parent) {
+        if (parent instanceof Submodel submodel) {
+            return submodel.getSubmodelElements();
+        }
+        if (parent instanceof SubmodelElementCollection submodelElementCollection) {
+            return submodelElementCollection.getValue();
+        }
+        if (parent instanceof SubmodelElementList submodelElementList) {
+            return submodelElementList.getValue();
+        }
+        if (parent instanceof Entity entity) {
+            return entity.getStatements();
+        }
+        if (parent instanceof AnnotatedRelationshipElement annotatedRelationshipElement) {
+            return annotatedRelationshipElement.getAnnotations();
+        }
+        return null;
+    }
+
+
+    /**
+     * Sets the child elements of a container element.
+     *
+     * @param parent the parent
+     * @param children the child elements
+     * @throws IllegalArgumentException if parent is not a container element
+     */
+    static void setChildren(Referable parent, List<? extends SubmodelElement> children) {
+        if (parent instanceof Submodel submodel) {
+            submodel.setSubmodelElements((List<SubmodelElement>) children);
+        }
+        else if (parent instanceof SubmodelElementCollection submodelElementCollection) {
+            submodelElementCollection.setValue((List<SubmodelElement>) children);
+        }
+        else if (parent instanceof SubmodelElementList submodelElementList) {
+            submodelElementList.setValue((List<SubmodelElement>) children);
+        }
+        else if (parent instanceof Entity entity) {
+            entity.setStatements((List<SubmodelElement>) children);
+        }
+        else if (parent instanceof AnnotatedRelationshipElement annotatedRelationshipElement) {
+            annotatedRelationshipElement.setAnnotations((List<DataElement>) children);
+        }
+        else {
+            throw new IllegalArgumentException(String.format("element is not a container element (type: %s)", parent.getClass()));
+        }
+    }
+
+
+    /**
+     * Gets the index of an element within a list based on identity instead of equality.
+     *
+     * @param list the list
+     * @param element the element
+     * @return the index of the element within the list or -1 if not present
+     */
+    static int indexOf(List<?> list, Object element) {
+        if (Objects.isNull(list) || Objects.isNull(element)) {
+            return -1;
+        }
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == element) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Creates the path of a child element.
+     *
+     * @param parentPath the path of the parent
+     * @param parent the parent
+     * @param child the child
+     * @param index the index of the child within its parent
+     * @return the path of the child
+     */
+    static IdShortPath childPath(IdShortPath parentPath, Referable parent, SubmodelElement child, int index) {
+        IdShortPath.Builder builder = IdShortPath.builder().from(parentPath);
+        return parent instanceof SubmodelElementList
+                ? builder.index(index).build()
+                : builder.idShort(child.getIdShort()).build();
+    }
+
+
+    Submodel getSubmodel() {
+        return (Submodel) root.element;
+    }
+
+
+    /**
+     * Creates a new version of this index in which the submodel and all elements on the given path, including the
+     * element at the end of the path, are replaced by shallow copies. All other elements are shared with this version.
+     * The lists of children of the copies are modifiable and can be changed without affecting this version until
+     * {@link #seal()} is called.
+     *
+     * @param path the path of the element to copy
+     * @return the new version of the index
+     */
+    SubmodelElementIndex copyPath(IdShortPath path) {
+        SubmodelElementIndex result = new SubmodelElementIndex(root.copy());
+        result.copies.add(result.root.element);
+        Node parent = result.root;
+        for (String key: path.getElements()) {
+            Node original = parent.getChild(key);
+            List<SubmodelElement> children = (List<SubmodelElement>) getChildren(parent.element);
+            int position = Objects.nonNull(original)
+                    ? indexOf(children, original.element)
+                    : -1;
+            if (position < 0) {
+                // path does not exist, resolving it fails later
+                break;
+            }
+            Node copy = original.copy();
+            children.set(position, (SubmodelElement) copy.element);
+            parent.putChild(key, copy);
+            result.copies.add(copy.element);
+            parent = copy;
+        }
+        return result;
+    }
+
+
+    /**
+     * Makes the lists of children of all elements copied by {@link #copyPath(IdShortPath)} unmodifiable.
+     */
+    void seal() {
+        for (Referable copy: copies) {
+            List<? extends SubmodelElement> children = getChildren(copy);
+            if (Objects.nonNull(children)) {
+                setChildren(copy, Collections.unmodifiableList(children));
+            }
+        }
+        copies.clear();
+    }
+
+
+    /**
+     * Gets the element at the given path.
+     *
+     * @param path the path
+     * @return the element at the given path, the submodel if path is empty, or null if there is no such element
+     */
+    Referable get(IdShortPath path) {
+        Node node = getNode(path);
+        return Objects.nonNull(node)
+                ? node.element
+                : null;
+    }
+
+
+    /**
+     * Gets the parent of the element at the given path.
+     *
+     * @param path the path
+     * @return the parent of the element at the given path or null if there is no such element
+     */
+    Referable getParent(IdShortPath path) {
+        Ensure.requireNonNull(path, "path must be non-null");
+        Ensure.require(!path.isEmpty(), "path must be non-empty");
+        return get(path.getParent());
+    }
+
+
+    /**
+     * Adds an element and all its children to the index.
+     *
+     * @param path the path of the element
+     * @param element the element
+     */
+    void add(IdShortPath path, SubmodelElement element) {
+        Node parent = getNode(path.getParent());
+        if (Objects.nonNull(parent)) {
+            parent.putChild(getLastKey(path), Node.of(element));
+        }
+    }
+
+
+    /**
+     * Removes an element and all its children from the index.
+     *
+     * @param path the path of the element
+     */
+    void remove(IdShortPath path) {
+        Node parent = getNode(path.getParent());
+        if (Objects.nonNull(parent)) {
+            parent.removeChild(getLastKey(path));
+        }
+    }
+
+
+    /**
+     * Re-creates the index entries of all children of the element at the given path, e.g. after the position of
+     * children within a {@link SubmodelElementList} has changed. Entries of children that are still present are reused.
+     *
+     * @param path the path of the parent element
+     */
+    void reindexChildren(IdShortPath path) {
+        Node node = getNode(path);
+        if (Objects.nonNull(node)) {
+            node.reindexChildren();
+        }
+    }
+
+
+    private Node getNode(IdShortPath path) {
+        Node result = root;
+        if (Objects.isNull(path)) {
+            return result;
+        }
+        for (String key: path.getElements()) {
+            result = result.getChild(key);
+            if (Objects.isNull(result)) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+
+    private static String getLastKey(IdShortPath path) {
+        List<String> elements = path.getElements();
+        return elements.get(elements.size() - 1);
+    }
+
+
+    private static <T extends Referable> T copyElement(T original) {
+        T result = DeepCopyHelper.shallowCopy(original);
+        List<? extends SubmodelElement> children = getChildren(original);
+        if (Objects.nonNull(children)) {
+            setChildren(result, new ArrayList<>(children));
+        }
+        return result;
+    }
+
+
+    private static String childKey(Referable parent, SubmodelElement child, int index) {
+        return parent instanceof SubmodelElementList
+                ? "[" + index + "]"
+                : child.getIdShort();
+    }
+
+
+    private static boolean isAddressable(Referable parent, SubmodelElement child) {
+        return Objects.nonNull(child)
+                && (parent instanceof SubmodelElementList || !StringHelper.isBlank(child.getIdShort()));
+    }
+
+    /**
+     * Node of the index holding an element and the nodes of its children by idShort or index.
+     */
+    private static class Node {
+
+        private final Referable element;
+        private Map<String, Node> children;
+
+        private Node(Referable element, Map<String, Node> children) {
+            this.element = element;
+            this.children = children;
+        }
+
+
+        /**
+         * Creates the node of an element including the nodes of all its children.
+         *
+         * @param element the element
+         * @return the node
+         */
+        private static Node of(Referable element) {
+            Node result = new Node(element, null);
+            result.reindexChildren();
+            return result;
+        }
+
+
+        /**
+         * Creates a copy of this node holding a shallow copy of the element. The nodes of the children are shared.
+         *
+         * @return the copy
+         */
+        private Node copy() {
+            return new Node(
+                    copyElement(element),
+                    Objects.nonNull(children) ? new HashMap<>(children) : null);
+        }
+
+
+        private Node getChild(String key) {
+            return Objects.nonNull(children)
+                    ? children.get(key)
+                    : null;
+        }
+
+
+        private void putChild(String key, Node child) {
+            if (Objects.isNull(children)) {
+                children = new HashMap<>();
+            }
+            children.put(key, child);
+        }
+
+
+        private void removeChild(String key) {
+            if (Objects.nonNull(children)) {
+                children.remove(key);
+            }
+        }
+
+
+        private void reindexChildren() {
+            Map<Referable, Node> existing = new IdentityHashMap<>();
+            if (Objects.nonNull(children)) {
+                children.values().forEach(x -> existing.put(x.element, x));
+            }
+            children = null;
+            List<? extends SubmodelElement> elements = getChildren(element);
+            if (Objects.isNull(elements)) {
+                return;
+            }
+            for (int i = 0; i < elements.size(); i++) {
+                SubmodelElement child = elements.get(i);
+                if (isAddressable(element, child)) {
+                    Node node = existing.get(child);
+                    putChild(childKey(element, child, i), Objects.nonNull(node) ? node : Node.of(child));
+                }
+            }
+        }
+    }
+}
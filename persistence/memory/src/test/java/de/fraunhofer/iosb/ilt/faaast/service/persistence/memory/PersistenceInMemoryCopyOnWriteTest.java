@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.memory;
+
+import de.fraunhofer.iosb.ilt.faaast.service.Service;
+import de.fraunhofer.iosb.ilt.faaast.service.ServiceContext;
+import de.fraunhofer.iosb.ilt.faaast.service.assetconnection.lambda.provider.LambdaValueProvider;
+import de.fraunhofer.iosb.ilt.faaast.service.config.CoreConfig;
+import de.fraunhofer.iosb.ilt.faaast.service.filestorage.FileStorage;
+import de.fraunhofer.iosb.ilt.faaast.service.messagebus.MessageBus;
+import de.fraunhofer.iosb.ilt.faaast.service.model.AASFull;
+import de.fraunhofer.iosb.ilt.faaast.service.model.IdShortPath;
+import de.fraunhofer.iosb.ilt.faaast.service.model.SubmodelElementIdentifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Extent;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Level;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.request.submodel.GetSubmodelElementByPathRequest;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.request.submodel.GetSubmodelRequest;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ValueFormatException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.Datatype;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.PropertyValue;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.AbstractPersistenceTest;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.util.PersistenceHelper;
+import de.fraunhofer.iosb.ilt.faaast.service.util.DeepCopyHelper;
+import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceBuilder;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
+import org.eclipse.digitaltwin.aas4j.v3.model.Property;
+import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
+import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElementCollection;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultBlob;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultEnvironment;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultProperty;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultSubmodel;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultSubmodelElementCollection;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+
+public class PersistenceInMemoryCopyOnWriteTest extends AbstractPersistenceTest<PersistenceInMemory, PersistenceInMemoryConfig> {
+
+    private static final String SUBMODEL_ID = "http://acplt.org/Submodels/Assets/TestAsset/Identification";
+    private static final String PROPERTY_ID_SHORT = "ManufacturerName";
+
+    @Override
+    public PersistenceInMemoryConfig getPersistenceConfig(File initialModelFile, Environment initialModel) {
+        return PersistenceInMemoryConfig.builder()
+                .initialModel(initialModel)
+                .initialModelFile(initialModelFile)
+                .copyOnWrite(true)
+                .build();
+    }
+
+
+    @Test
+    public void updateDoesNotModifyPreviousVersion() throws Exception {
+        PersistenceInMemory persistence = getPersistenceConfig(null, AASFull.createEnvironment())
+                .newInstance(CoreConfig.DEFAULT, Mockito.mock(ServiceContext.class));
+        SubmodelElementIdentifier identifier = SubmodelElementIdentifier.builder()
+                .submodelId(SUBMODEL_ID)
+                .idShortPath(IdShortPath.parse(PROPERTY_ID_SHORT))
+                .build();
+        Submodel oldSubmodel = persistence.getSubmodel(SUBMODEL_ID, QueryModifier.MAXIMAL);
+        Property oldProperty = persistence.getSubmodelElement(identifier, QueryModifier.MAXIMAL, Property.class);
+        Assert.assertSame(oldSubmodel, persistence.getSubmodel(SUBMODEL_ID, QueryModifier.MAXIMAL));
+        Assert.assertSame(oldProperty, persistence.getSubmodelElement(identifier, QueryModifier.MAXIMAL));
+
+        String oldValue = oldProperty.getValue();
+        Property newProperty = DeepCopyHelper.deepCopy(oldProperty);
+        newProperty.setValue("new value");
+        persistence.update(identifier, newProperty);
+
+        Assert.assertEquals(oldValue, oldProperty.getValue());
+        Assert.assertSame(oldProperty, oldSubmodel.getSubmodelElements().stream()
+                .filter(x -> PROPERTY_ID_SHORT.equals(x.getIdShort()))
+                .findFirst()
+                .orElseThrow());
+        Submodel newSubmodel = persistence.getSubmodel(SUBMODEL_ID, QueryModifier.MAXIMAL);
+        Assert.assertNotSame(oldSubmodel, newSubmodel);
+        Assert.assertEquals(newProperty, persistence.getSubmodelElement(identifier, QueryModifier.MAXIMAL));
+    }
+
+
+    @Test
+    public void updateCopiesOnlyPathToElement() throws Exception {
+        Submodel submodel = new DefaultSubmodel.Builder()
+                .id(SUBMODEL_ID)
+                .submodelElements(new DefaultSubmodelElementCollection.Builder()
+                        .idShort("collection")
+                        .value(new DefaultProperty.Builder()
+                                .idShort("property")
+                                .value("old value")
+                                .build())
+                        .value(new DefaultProperty.Builder()
+                                .idShort("sibling")
+                                .build())
+                        .build())
+                .submodelElements(new DefaultSubmodelElementCollection.Builder()
+                        .idShort("other")
+                        .value(new DefaultProperty.Builder()
+                                .idShort("property")
+                                .build())
+                        .build())
+                .build();
+        PersistenceInMemory persistence = getPersistenceConfig(null, new DefaultEnvironment.Builder()
+                .submodels(submodel)
+                .build())
+                .newInstance(CoreConfig.DEFAULT, Mockito.mock(ServiceContext.class));
+        SubmodelElementIdentifier identifier = SubmodelElementIdentifier.builder()
+                .submodelId(SUBMODEL_ID)
+                .idShortPath(IdShortPath.parse("collection.property"))
+                .build();
+        Submodel oldSubmodel = persistence.getSubmodel(SUBMODEL_ID, QueryModifier.MAXIMAL);
+        SubmodelElementCollection oldCollection = (SubmodelElementCollection) oldSubmodel.getSubmodelElements().get(0);
+        SubmodelElementCollection oldOther = (SubmodelElementCollection) oldSubmodel.getSubmodelElements().get(1);
+
+        persistence.setValue(identifier, PropertyValue.of(Datatype.STRING, "new value"));
+
+        Submodel newSubmodel = persistence.getSubmodel(SUBMODEL_ID, QueryModifier.MAXIMAL);
+        SubmodelElementCollection newCollection = (SubmodelElementCollection) newSubmodel.getSubmodelElements().get(0);
+        Assert.assertNotSame(oldSubmodel, newSubmodel);
+        Assert.assertNotSame(oldCollection, newCollection);
+        Assert.assertSame(oldOther, newSubmodel.getSubmodelElements().get(1));
+        Assert.assertSame(oldCollection.getValue().get(1), newCollection.getValue().get(1));
+        Assert.assertEquals("old value", ((Property) oldCollection.getValue().get(0)).getValue());
+        Assert.assertEquals("new value", persistence.getSubmodelElement(identifier, QueryModifier.MAXIMAL, Property.class).getValue());
+        Assert.assertSame(newCollection.getValue().get(0), persistence.getSubmodelElement(identifier, QueryModifier.MAXIMAL));
+    }
+
+
+    @Test
+    public void resultsAreOnlyCopiedIfModifierRemovesContent() throws Exception {
+        Submodel submodel = new DefaultSubmodel.Builder()
+                .id(SUBMODEL_ID)
+                .submodelElements(new DefaultProperty.Builder()
+                        .idShort("property")
+                        .build())
+                .submodelElements(new DefaultSubmodelElementCollection.Builder()
+                        .idShort("collection")
+                        .value(new DefaultBlob.Builder()
+                                .idShort("blob")
+                                .contentType("text/plain")
+                                .value("foo".getBytes())
+                                .build())
+                        .build())
+                .build();
+        PersistenceInMemory persistence = getPersistenceConfig(null, new DefaultEnvironment.Builder()
+                .submodels(submodel)
+                .build())
+                .newInstance(CoreConfig.DEFAULT, Mockito.mock(ServiceContext.class));
+        QueryModifier core = new QueryModifier.Builder()
+                .level(Level.CORE)
+                .extend(Extent.WITH_BLOB_VALUE)
+                .build();
+        SubmodelElementIdentifier collectionIdentifier = SubmodelElementIdentifier.builder()
+                .submodelId(SUBMODEL_ID)
+                .idShortPath(IdShortPath.parse("collection"))
+                .build();
+        SubmodelElementIdentifier propertyIdentifier = SubmodelElementIdentifier.builder()
+                .submodelId(SUBMODEL_ID)
+                .idShortPath(IdShortPath.parse("property"))
+                .build();
+        Submodel stored = persistence.getSubmodel(SUBMODEL_ID, QueryModifier.MAXIMAL);
+        SubmodelElementCollection storedCollection = (SubmodelElementCollection) stored.getSubmodelElements().get(1);
+
+        Assert.assertNotSame(stored, persistence.getSubmodel(SUBMODEL_ID, QueryModifier.DEFAULT));
+        Assert.assertNotSame(stored, persistence.getSubmodel(SUBMODEL_ID, core));
+        Assert.assertSame(storedCollection, persistence.getSubmodelElement(collectionIdentifier, core));
+        Assert.assertSame(stored.getSubmodelElements().get(0), persistence.getSubmodelElement(propertyIdentifier, QueryModifier.DEFAULT));
+
+        persistence.update(
+                SubmodelElementIdentifier.builder()
+                        .submodelId(SUBMODEL_ID)
+                        .idShortPath(IdShortPath.parse("collection.blob"))
+                        .build(),
+                new DefaultBlob.Builder()
+                        .idShort("blob")
+                        .contentType("text/plain")
+                        .build());
+        Submodel updated = persistence.getSubmodel(SUBMODEL_ID, QueryModifier.MAXIMAL);
+
+        Assert.assertSame(updated, persistence.getSubmodel(SUBMODEL_ID, QueryModifier.DEFAULT));
+        Assert.assertSame(stored.getSubmodelElements().get(0), updated.getSubmodelElements().get(0));
+    }
+
+
+    @Test
+    public void resultsAreReadOnly() throws Exception {
+        PersistenceInMemory persistence = getPersistenceConfig(null, AASFull.createEnvironment())
+                .newInstance(CoreConfig.DEFAULT, Mockito.mock(ServiceContext.class));
+        Submodel submodel = persistence.getSubmodel(SUBMODEL_ID, QueryModifier.MAXIMAL);
+        Assert.assertThrows(UnsupportedOperationException.class, () -> submodel.getSubmodelElements().clear());
+        persistence.update(
+                SubmodelElementIdentifier.builder()
+                        .submodelId(SUBMODEL_ID)
+                        .idShortPath(IdShortPath.parse(PROPERTY_ID_SHORT))
+                        .build(),
+                new DefaultProperty.Builder()
+                        .idShort(PROPERTY_ID_SHORT)
+                        .build());
+        Submodel newSubmodel = persistence.getSubmodel(SUBMODEL_ID, QueryModifier.MAXIMAL);
+        Assert.assertThrows(UnsupportedOperationException.class, () -> newSubmodel.getSubmodelElements().clear());
+    }
+
+
+    @Test
+    public void savedElementsAreCopied() throws Exception {
+        Environment environment = AASFull.createEnvironment();
+        PersistenceInMemory persistence = getPersistenceConfig(null, environment)
+                .newInstance(CoreConfig.DEFAULT, Mockito.mock(ServiceContext.class));
+        Submodel submodel = environment.getSubmodels().stream()
+                .filter(x -> SUBMODEL_ID.equals(x.getId()))
+                .findFirst()
+                .orElseThrow();
+        Submodel expected = DeepCopyHelper.deepCopy(submodel);
+        submodel.getSubmodelElements().clear();
+        Assert.assertEquals(expected, persistence.getSubmodel(SUBMODEL_ID, QueryModifier.MAXIMAL));
+        persistence.save(submodel);
+        submodel.getSubmodelElements().add(new DefaultProperty.Builder()
+                .idShort("added")
+                .build());
+        Assert.assertTrue(persistence.getSubmodel(SUBMODEL_ID, QueryModifier.MAXIMAL).getSubmodelElements().isEmpty());
+    }
+
+
+    @Test
+    public void copyIfSharedCopiesResults() throws Exception {
+        PersistenceInMemory persistence = getPersistenceConfig(null, AASFull.createEnvironment())
+                .newInstance(CoreConfig.DEFAULT, Mockito.mock(ServiceContext.class));
+        Assert.assertTrue(persistence.isSharingResults());
+        Submodel submodel = persistence.getSubmodel(SUBMODEL_ID, QueryModifier.MAXIMAL);
+        Submodel copy = PersistenceHelper.copyIfShared(persistence, submodel);
+        Assert.assertNotSame(submodel, copy);
+        Assert.assertEquals(submodel, copy);
+    }
+
+
+    @Test
+    public void valueProvidersDoNotModifyStoredElementsOnConcurrentReads() throws Exception {
+        PersistenceInMemory persistence = getPersistenceConfig(null, AASFull.createEnvironment())
+                .newInstance(CoreConfig.DEFAULT, Mockito.mock(ServiceContext.class));
+        Service service = new Service(CoreConfig.DEFAULT, persistence, Mockito.mock(FileStorage.class), Mockito.mock(MessageBus.class), List.of(), List.of(), List.of());
+        AtomicInteger assetValue = new AtomicInteger();
+        service.getAssetConnectionManager().registerLambdaValueProvider(
+                ReferenceBuilder.forSubmodel(SUBMODEL_ID, PROPERTY_ID_SHORT),
+                LambdaValueProvider.builder()
+                        .read(() -> {
+                            try {
+                                return PropertyValue.of(Datatype.STRING, "asset value " + assetValue.incrementAndGet());
+                            }
+                            catch (ValueFormatException e) {
+                                throw new IllegalStateException(e);
+                            }
+                        })
+                        .build());
+        service.start();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            SubmodelElementIdentifier identifier = SubmodelElementIdentifier.builder()
+                    .submodelId(SUBMODEL_ID)
+                    .idShortPath(IdShortPath.parse(PROPERTY_ID_SHORT))
+                    .build();
+            Submodel storedSubmodel = persistence.getSubmodel(SUBMODEL_ID, QueryModifier.MAXIMAL);
+            Submodel expectedSubmodel = DeepCopyHelper.deepCopy(storedSubmodel);
+            List<Future<Property>> reads = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                reads.add(executor.submit(() -> (Property) service.execute(GetSubmodelElementByPathRequest.builder()
+                        .submodelId(SUBMODEL_ID)
+                        .path(PROPERTY_ID_SHORT)
+                        .build())
+                        .getPayload()));
+                reads.add(executor.submit(() -> (Property) service.execute(GetSubmodelRequest.builder()
+                        .submodelId(SUBMODEL_ID)
+                        .build())
+                        .getPayload()
+                        .getSubmodelElements().stream()
+                        .filter(x -> PROPERTY_ID_SHORT.equals(x.getIdShort()))
+                        .findFirst()
+                        .orElseThrow()));
+            }
+            for (var read: reads) {
+                Assert.assertTrue(read.get(10, TimeUnit.SECONDS).getValue().startsWith("asset value "));
+            }
+            Assert.assertEquals(expectedSubmodel, storedSubmodel);
+            Assert.assertTrue(persistence.getSubmodelElement(identifier, QueryModifier.MAXIMAL, Property.class).getValue().startsWith("asset value "));
+        }
+        finally {
+            executor.shutdownNow();
+            service.stop();
+        }
+    }
+}
@@ -14,13 +14,41 @@
  */
 package de.fraunhofer.iosb.ilt.faaast.service.persistence.memory;
 
+import de.fraunhofer.iosb.ilt.faaast.service.ServiceContext;
+import de.fraunhofer.iosb.ilt.faaast.service.config.CoreConfig;
+import de.fraunhofer.iosb.ilt.faaast.service.model.AASFull;
+import de.fraunhofer.iosb.ilt.faaast.service.model.SubmodelElementIdentifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.operation.OperationHandle;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.paging.PagingInfo;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.AbstractPersistenceTest;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.SubmodelElementSearchCriteria;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.eclipse.digitaltwin.aas4j.v3.model.DataTypeDefXsd;
 import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
+import org.eclipse.digitaltwin.aas4j.v3.model.ExecutionState;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultOperationResult;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultProperty;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
 
 
 public class PersistenceInMemoryTest extends AbstractPersistenceTest<PersistenceInMemory, PersistenceInMemoryConfig> {
 
+    private static final List<String> SUBMODEL_IDS = List.of(
+            "http://acplt.org/Submodels/Assets/TestAsset/Identification",
+            "http://acplt.org/Submodels/Assets/TestAsset/BillOfMaterial");
+    private static final int ELEMENTS_PER_SUBMODEL = 200;
+
     @Override
     public PersistenceInMemoryConfig getPersistenceConfig(File initialModelFile, Environment initialModel) {
         return PersistenceInMemoryConfig.builder()
@@ -29,4 +57,87 @@ public class PersistenceInMemoryTest extends AbstractPersistenceTest<Persistence
                 .build();
     }
 
+
+    @Test
+    public void concurrentModifications() throws Exception {
+        PersistenceInMemory persistence = getPersistenceConfig(null, AASFull.createEnvironment())
+                .newInstance(CoreConfig.DEFAULT, Mockito.mock(ServiceContext.class));
+        List<Integer> initialSizes = new ArrayList<>();
+        for (String submodelId: SUBMODEL_IDS) {
+            initialSizes.add(persistence.getSubmodel(submodelId, QueryModifier.MINIMAL).getSubmodelElements().size());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> tasks = new ArrayList<>();
+        try {
+            for (int i = 0; i < ELEMENTS_PER_SUBMODEL; i++) {
+                for (String submodelId: SUBMODEL_IDS) {
+                    String idShort = "concurrent" + i;
+                    tasks.add(executor.submit(() -> {
+                        persistence.insert(
+                                SubmodelElementIdentifier.builder()
+                                        .submodelId(submodelId)
+                                        .build(),
+                                new DefaultProperty.Builder()
+                                        .idShort(idShort)
+                                        .valueType(DataTypeDefXsd.INT)
+                                        .value(idShort)
+                                        .build());
+                        return null;
+                    }));
+                    tasks.add(executor.submit(() -> persistence.getSubmodel(submodelId, QueryModifier.DEFAULT)));
+                    tasks.add(executor.submit(() -> persistence.findSubmodelElements(
+                            SubmodelElementSearchCriteria.NONE,
+                            QueryModifier.DEFAULT,
+                            PagingInfo.ALL)));
+                }
+            }
+            for (Future<?> task: tasks) {
+                task.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        for (int i = 0; i < SUBMODEL_IDS.size(); i++) {
+            Assert.assertEquals(
+                    initialSizes.get(i) + ELEMENTS_PER_SUBMODEL,
+                    persistence.getSubmodel(SUBMODEL_IDS.get(i), QueryModifier.MINIMAL).getSubmodelElements().size());
+        }
+    }
+
+
+    @Test
+    public void operationResultsEvictedWhenMaxCountExceeded() throws Exception {
+        PersistenceInMemory persistence = PersistenceInMemoryConfig.builder()
+                .operationResultMaxCount(2)
+                .build()
+                .newInstance(CoreConfig.DEFAULT, Mockito.mock(ServiceContext.class));
+        Set<OperationHandle> removed = ConcurrentHashMap.newKeySet();
+        persistence.setOperationResultRemovalListener(removed::add);
+        OperationHandle first = new OperationHandle();
+        OperationHandle second = new OperationHandle();
+        OperationHandle third = new OperationHandle();
+        persistence.save(first, new DefaultOperationResult.Builder().executionState(ExecutionState.RUNNING).build());
+        persistence.save(second, new DefaultOperationResult.Builder().executionState(ExecutionState.RUNNING).build());
+        persistence.save(first, new DefaultOperationResult.Builder().executionState(ExecutionState.COMPLETED).build());
+        persistence.save(third, new DefaultOperationResult.Builder().executionState(ExecutionState.RUNNING).build());
+        Assert.assertEquals(Set.of(second), removed);
+        Assert.assertThrows(ResourceNotFoundException.class, () -> persistence.getOperationResult(second));
+        Assert.assertEquals(ExecutionState.COMPLETED, persistence.getOperationResult(first).getExecutionState());
+        Assert.assertEquals(ExecutionState.RUNNING, persistence.getOperationResult(third).getExecutionState());
+    }
+
+
+    @Test
+    public void operationResultsExpireAfterTimeToLive() throws Exception {
+        PersistenceInMemory persistence = PersistenceInMemoryConfig.builder()
+                .operationResultTimeToLive(50)
+                .build()
+                .newInstance(CoreConfig.DEFAULT, Mockito.mock(ServiceContext.class));
+        OperationHandle handle = new OperationHandle();
+        persistence.save(handle, new DefaultOperationResult.Builder().executionState(ExecutionState.COMPLETED).build());
+        Assert.assertEquals(ExecutionState.COMPLETED, persistence.getOperationResult(handle).getExecutionState());
+        Thread.sleep(100);
+        Assert.assertThrows(ResourceNotFoundException.class, () -> persistence.getOperationResult(handle));
+    }
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.memory;
+
+import de.fraunhofer.iosb.ilt.faaast.service.model.IdShortPath;
+import java.util.List;
+import org.eclipse.digitaltwin.aas4j.v3.model.Property;
+import org.eclipse.digitaltwin.aas4j.v3.model.Referable;
+import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
+import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElement;
+import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElementList;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultProperty;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultSubmodel;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultSubmodelElementCollection;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultSubmodelElementList;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class SubmodelElementIndexTest {
+
+    private static final IdShortPath COLLECTION_PATH = IdShortPath.parse("collection");
+    private static final IdShortPath PROPERTY_PATH = IdShortPath.parse("collection.property");
+    private static final IdShortPath OTHER_PATH = IdShortPath.parse("other.property");
+    private static final IdShortPath LIST_PATH = IdShortPath.parse("list");
+
+    private static Submodel createSubmodel() {
+        return new DefaultSubmodel.Builder()
+                .id("submodel")
+                .submodelElements(new DefaultSubmodelElementCollection.Builder()
+                        .idShort("collection")
+                        .value(property("property"))
+                        .build())
+                .submodelElements(new DefaultSubmodelElementCollection.Builder()
+                        .idShort("other")
+                        .value(property("property"))
+                        .build())
+                .submodelElements(new DefaultSubmodelElementList.Builder()
+                        .idShort("list")
+                        .value(property(null))
+                        .value(property(null))
+                        .value(property(null))
+                        .build())
+                .build();
+    }
+
+
+    private static Property property(String idShort) {
+        return new DefaultProperty.Builder()
+                .idShort(idShort)
+                .value("value")
+                .build();
+    }
+
+
+    @Test
+    public void testCopyPathSharesElementsOffPath() {
+        SubmodelElementIndex index = new SubmodelElementIndex(createSubmodel());
+        SubmodelElementIndex copy = index.copyPath(PROPERTY_PATH);
+        Assert.assertNotSame(index.getSubmodel(), copy.getSubmodel());
+        Assert.assertNotSame(index.get(COLLECTION_PATH), copy.get(COLLECTION_PATH));
+        Assert.assertNotSame(index.get(PROPERTY_PATH), copy.get(PROPERTY_PATH));
+        Assert.assertSame(index.get(OTHER_PATH), copy.get(OTHER_PATH));
+        Assert.assertSame(index.get(OTHER_PATH.getParent()), copy.get(OTHER_PATH.getParent()));
+    }
+
+
+    @Test
+    public void testModifyingCopyDoesNotAffectPreviousVersion() {
+        SubmodelElementIndex index = new SubmodelElementIndex(createSubmodel());
+        Referable original = index.get(PROPERTY_PATH);
+        SubmodelElementIndex copy = index.copyPath(COLLECTION_PATH);
+        copy.remove(PROPERTY_PATH);
+        IdShortPath newPath = IdShortPath.parse("collection.new");
+        copy.add(newPath, property("new"));
+        Assert.assertNull(copy.get(PROPERTY_PATH));
+        Assert.assertNotNull(copy.get(newPath));
+        Assert.assertSame(original, index.get(PROPERTY_PATH));
+        Assert.assertNull(index.get(newPath));
+    }
+
+
+    @Test
+    public void testReindexChildren() {
+        SubmodelElementIndex index = new SubmodelElementIndex(createSubmodel());
+        SubmodelElement last = (SubmodelElement) index.get(IdShortPath.parse("list[2]"));
+        SubmodelElementIndex copy = index.copyPath(IdShortPath.parse("list[0]"));
+        List<SubmodelElement> children = ((SubmodelElementList) copy.get(LIST_PATH)).getValue();
+        children.remove(0);
+        copy.reindexChildren(LIST_PATH);
+        Assert.assertSame(last, copy.get(IdShortPath.parse("list[1]")));
+        Assert.assertNull(copy.get(IdShortPath.parse("list[2]")));
+        Assert.assertSame(last, index.get(IdShortPath.parse("list[2]")));
+    }
+}
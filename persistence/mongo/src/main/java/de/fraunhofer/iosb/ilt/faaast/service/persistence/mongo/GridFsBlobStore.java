@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.mongo;
+
+import com.mongodb.MongoException;
+import com.mongodb.MongoGridFSException;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.GridFSBuckets;
+import com.mongodb.client.gridfs.GridFSDownloadStream;
+import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.bson.BSONException;
+import org.bson.BsonValue;
+import org.bson.types.ObjectId;
+
+
+/**
+ * Stores the values of blobs exceeding a size threshold as files in a GridFS bucket. Within the documents, such a value
+ * is replaced by the {@link ObjectId} of the file, i.e. the value of a blob is either a base64-encoded string or an
+ * object id. Files are never shared, i.e. each encoded blob value is uploaded as a new file, so that all files
+ * referenced by a document can be deleted once that document is replaced or deleted.
+ *
+ * <p>As values are uploaded while encoding a document, i.e. before the document is written, writes should be executed
+ * via {@link #write(Write)} so that the files uploaded for a failed write are deleted again.
+ */
+class GridFsBlobStore {
+
+    static final String BUCKET_NAME = "blobValues";
+
+    private static final String MONGO_ID_KEY = "_id";
+    private static final String FILE_NAME = "value";
+
+    private final GridFSBucket bucket;
+    private final long threshold;
+    private final ThreadLocal<List<ObjectId>> uploads = new ThreadLocal<>();
+    private volatile boolean used;
+
+    /**
+     * Creates a new instance. If offloading is disabled, the bucket is checked once for files left from when it was
+     * enabled.
+     *
+     * @param database the database
+     * @param threshold the size in bytes above which blob values are stored in GridFS, negative to disable
+     * @throws MongoException if checking the bucket for existing files fails
+     */
+    GridFsBlobStore(MongoDatabase database, long threshold) {
+        Ensure.requireNonNull(database, "database must be non-null");
+        this.bucket = GridFSBuckets.create(database, BUCKET_NAME);
+        this.threshold = threshold;
+        this.used = threshold >= 0 || Objects.nonNull(bucket.find().limit(1).first());
+    }
+
+
+    /**
+     * Checks if a blob value should be stored in GridFS.
+     *
+     * @param value the blob value
+     * @return true if the value exceeds the threshold, otherwise false
+     */
+    boolean isOffloaded(byte[] value) {
+        return threshold >= 0 && Objects.nonNull(value) && value.length > threshold;
+    }
+
+
+    /**
+     * Checks if GridFS is used, i.e. if offloading is enabled or there have been files left from when it was enabled.
+     * If not, references do not have to be collected when replacing or deleting documents. This does not query the
+     * database.
+     *
+     * @return true if GridFS is used, otherwise false
+     */
+    boolean isUsed() {
+        return used;
+    }
+
+
+    /**
+     * Executes a write. If the write fails, all files uploaded while executing it are deleted as no document references
+     * them. Nested writes are treated as part of the outermost write.
+     *
+     * @param <E1> the type of the first exception thrown by the write
+     * @param <E2> the type of the second exception thrown by the write
+     * @param write the write
+     * @throws E1 if the write fails
+     * @throws E2 if the write fails
+     */
+    <E1 extends Exception, E2 extends Exception> void write(Write<E1, E2> write) throws E1, E2 {
+        if (Objects.nonNull(uploads.get())) {
+            write.run();
+            return;
+        }
+        List<ObjectId> uploaded = new ArrayList<>();
+        uploads.set(uploaded);
+        boolean success = false;
+        try {
+            write.run();
+            success = true;
+        }
+        finally {
+            uploads.remove();
+            if (!success) {
+                delete(uploaded);
+            }
+        }
+    }
+
+
+    /**
+     * Uploads a blob value as a new file.
+     *
+     * @param value the blob value
+     * @return the id of the file
+     * @throws BSONException if uploading fails
+     */
+    ObjectId upload(byte[] value) {
+        ObjectId result;
+        try {
+            result = bucket.uploadFromStream(FILE_NAME, new ByteArrayInputStream(value));
+        }
+        catch (MongoException e) {
+            throw new BSONException("uploading blob value to GridFS failed", e);
+        }
+        used = true;
+        if (Objects.nonNull(uploads.get())) {
+            uploads.get().add(result);
+        }
+        return result;
+    }
+
+
+    /**
+     * Downloads a blob value. The chunks of the file are read directly into the resulting array without any
+     * intermediate buffers.
+     *
+     * @param id the id of the file
+     * @return the blob value
+     * @throws BSONException if downloading fails
+     */
+    byte[] download(ObjectId id) {
+        try (GridFSDownloadStream stream = bucket.openDownloadStream(id)) {
+            long length = stream.getGridFSFile().getLength();
+            if (length > Integer.MAX_VALUE) {
+                throw new BSONException(String.format("blob value in GridFS too large (id: %s, length: %d)", id, length));
+            }
+            byte[] result = new byte[(int) length];
+            stream.readNBytes(result, 0, result.length);
+            return result;
+        }
+        catch (MongoException | IOException e) {
+            throw new BSONException(String.format("downloading blob value from GridFS failed (id: %s)", id), e);
+        }
+    }
+
+
+    /**
+     * Deletes files. Files that do not exist are ignored.
+     *
+     * @param ids the ids of the files
+     */
+    void delete(Collection<ObjectId> ids) {
+        for (ObjectId id: ids) {
+            try {
+                bucket.delete(id);
+            }
+            catch (MongoGridFSException e) {
+                // already deleted
+            }
+        }
+    }
+
+
+    /**
+     * Deletes all files.
+     */
+    void deleteAll() {
+        bucket.drop();
+        used = threshold >= 0;
+    }
+
+
+    /**
+     * Collects the ids of all files referenced within a document.
+     *
+     * @param value the document
+     * @return the ids of the referenced files
+     */
+    static Set<ObjectId> getReferences(BsonValue value) {
+        Set<ObjectId> result = new HashSet<>();
+        collectReferences(value, result);
+        return result;
+    }
+
+
+    private static void collectReferences(BsonValue value, Set<ObjectId> result) {
+        if (value.isObjectId()) {
+            result.add(value.asObjectId().getValue());
+        }
+        else if (value.isArray()) {
+            value.asArray().forEach(x -> collectReferences(x, result));
+        }
+        else if (value.isDocument()) {
+            for (Map.Entry<String, BsonValue> entry: value.asDocument().entrySet()) {
+                if (!MONGO_ID_KEY.equals(entry.getKey())) {
+                    collectReferences(entry.getValue(), result);
+                }
+            }
+        }
+    }
+
+    /**
+     * A write to the database that may upload blob values while encoding documents.
+     *
+     * @param <E1> the type of the first exception thrown
+     * @param <E2> the type of the second exception thrown
+     */
+    @FunctionalInterface
+    interface Write<E1 extends Exception, E2 extends Exception> {
+
+        /**
+         * Executes the write.
+         *
+         * @throws E1 if the write fails
+         * @throws E2 if the write fails
+         */
+        public void run() throws E1, E2;
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.mongo;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.DeserializationException;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.SerializationException;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.json.JsonApiDeserializer;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.json.JsonApiSerializer;
+import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Objects;
+import org.bson.BSONException;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+
+
+/**
+ * Codec that converts objects of the AAS model to and from BSON using the same Jackson configuration as
+ * {@link JsonApiSerializer} and {@link JsonApiDeserializer}. Instead of serializing to a JSON string and parsing that
+ * string again, the tokens produced by Jackson are written directly to the BSON stream and vice versa. The resulting
+ * BSON is identical to parsing the JSON serialization, i.e. binary data is stored as base64-encoded string.
+ *
+ * <p>If a {@link GridFsBlobStore} is provided, binary data exceeding its threshold is stored in GridFS instead and only
+ * the object id of the file is written. When decoding, such values are either downloaded or set to null depending on
+ * whether blob values are requested.
+ *
+ * @param <T> the type of the objects
+ */
+class JsonApiCodec<T> implements Codec<T> {
+
+    private static final String MONGO_ID_KEY = "_id";
+
+    private final Class<T> type;
+    private final JsonApiSerializer serializer;
+    private final JsonApiDeserializer deserializer;
+    private final GridFsBlobStore blobStore;
+    private final boolean withBlobValues;
+
+    JsonApiCodec(Class<T> type, JsonApiSerializer serializer, JsonApiDeserializer deserializer, GridFsBlobStore blobStore, boolean withBlobValues) {
+        Ensure.requireNonNull(type, "type must be non-null");
+        Ensure.requireNonNull(serializer, "serializer must be non-null");
+        Ensure.requireNonNull(deserializer, "deserializer must be non-null");
+        this.type = type;
+        this.serializer = serializer;
+        this.deserializer = deserializer;
+        this.blobStore = blobStore;
+        this.withBlobValues = withBlobValues;
+    }
+
+
+    @Override
+    public Class<T> getEncoderClass() {
+        return type;
+    }
+
+
+    @Override
+    public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+        TokenBuffer buffer = new TokenBuffer(null, false);
+        try {
+            serializer.write(buffer, value);
+            try (JsonParser parser = buffer.asParser()) {
+                parser.nextToken();
+                write(parser, writer);
+            }
+        }
+        catch (SerializationException | IOException e) {
+            throw new BSONException(String.format("encoding %s failed", type.getSimpleName()), e);
+        }
+    }
+
+
+    @Override
+    public T decode(BsonReader reader, DecoderContext decoderContext) {
+        TokenBuffer buffer = new TokenBuffer(null, false);
+        try {
+            readDocument(reader, buffer);
+            try (JsonParser parser = buffer.asParser()) {
+                return deserializer.read(parser, type);
+            }
+        }
+        catch (DeserializationException | IOException e) {
+            throw new BSONException(String.format("decoding %s failed", type.getSimpleName()), e);
+        }
+    }
+
+
+    private void write(JsonParser parser, BsonWriter writer) throws IOException {
+        JsonToken token = parser.currentToken();
+        switch (token) {
+            case START_OBJECT:
+                writer.writeStartDocument();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    writer.writeName(parser.currentName());
+                    parser.nextToken();
+                    write(parser, writer);
+                }
+                writer.writeEndDocument();
+                break;
+            case START_ARRAY:
+                writer.writeStartArray();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    write(parser, writer);
+                }
+                writer.writeEndArray();
+                break;
+            case VALUE_STRING:
+                writer.writeString(parser.getText());
+                break;
+            case VALUE_NUMBER_INT:
+                writeInteger(parser, writer);
+                break;
+            case VALUE_NUMBER_FLOAT:
+                if (parser.getNumberType() == JsonParser.NumberType.BIG_DECIMAL) {
+                    writer.writeDecimal128(new Decimal128(parser.getDecimalValue()));
+                }
+                else {
+                    writer.writeDouble(parser.getDoubleValue());
+                }
+                break;
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                writer.writeBoolean(parser.getBooleanValue());
+                break;
+            case VALUE_NULL:
+                writer.writeNull();
+                break;
+            case VALUE_EMBEDDED_OBJECT:
+                writeBinary(parser.getBinaryValue(), writer);
+                break;
+            default:
+                throw new BSONException(String.format("unsupported JSON token: %s", token));
+        }
+    }
+
+
+    private void writeBinary(byte[] value, BsonWriter writer) {
+        if (Objects.nonNull(blobStore) && blobStore.isOffloaded(value)) {
+            writer.writeObjectId(blobStore.upload(value));
+            return;
+        }
+        // binary values, e.g. of blobs, are written as base64 just like in JSON
+        writer.writeString(Base64.getEncoder().encodeToString(value));
+    }
+
+
+    private static void writeInteger(JsonParser parser, BsonWriter writer) throws IOException {
+        switch (parser.getNumberType()) {
+            case INT:
+                writer.writeInt32(parser.getIntValue());
+                break;
+            case LONG:
+                writer.writeInt64(parser.getLongValue());
+                break;
+            default:
+                writer.writeDecimal128(new Decimal128(parser.getDecimalValue()));
+                break;
+        }
+    }
+
+
+    private void readDocument(BsonReader reader, TokenBuffer buffer) throws IOException {
+        reader.readStartDocument();
+        buffer.writeStartObject();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            if (MONGO_ID_KEY.equals(name)) {
+                reader.skipValue();
+                continue;
+            }
+            buffer.writeFieldName(name);
+            readValue(reader, buffer);
+        }
+        reader.readEndDocument();
+        buffer.writeEndObject();
+    }
+
+
+    private void readValue(BsonReader reader, TokenBuffer buffer) throws IOException {
+        BsonType bsonType = reader.getCurrentBsonType();
+        switch (bsonType) {
+            case DOCUMENT:
+                readDocument(reader, buffer);
+                break;
+            case ARRAY:
+                reader.readStartArray();
+                buffer.writeStartArray();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    readValue(reader, buffer);
+                }
+                reader.readEndArray();
+                buffer.writeEndArray();
+                break;
+            case STRING:
+                buffer.writeString(reader.readString());
+                break;
+            case INT32:
+                buffer.writeNumber(reader.readInt32());
+                break;
+            case INT64:
+                buffer.writeNumber(reader.readInt64());
+                break;
+            case DOUBLE:
+                buffer.writeNumber(reader.readDouble());
+                break;
+            case DECIMAL128:
+                buffer.writeNumber(reader.readDecimal128().bigDecimalValue());
+                break;
+            case BOOLEAN:
+                buffer.writeBoolean(reader.readBoolean());
+                break;
+            case NULL:
+                reader.readNull();
+                buffer.writeNull();
+                break;
+            case OBJECT_ID:
+                readBlobValue(reader.readObjectId(), buffer);
+                break;
+            default:
+                throw new BSONException(String.format("unsupported BSON type: %s", bsonType));
+        }
+    }
+
+
+    private void readBlobValue(ObjectId id, TokenBuffer buffer) throws IOException {
+        if (Objects.isNull(blobStore)) {
+            throw new BSONException(String.format("unable to resolve blob value stored in GridFS (id: %s)", id));
+        }
+        if (withBlobValues) {
+            buffer.writeBinary(blobStore.download(id));
+        }
+        else {
+            buffer.writeNull();
+        }
+    }
+}
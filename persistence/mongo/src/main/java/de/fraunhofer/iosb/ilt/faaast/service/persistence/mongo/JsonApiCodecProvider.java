@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.mongo;
+
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.json.JsonApiDeserializer;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.json.JsonApiSerializer;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.operation.OperationHandle;
+import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
+import java.util.List;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.eclipse.digitaltwin.aas4j.v3.model.OperationResult;
+import org.eclipse.digitaltwin.aas4j.v3.model.Referable;
+import org.eclipse.digitaltwin.aas4j.v3.model.Reference;
+
+
+/**
+ * Provides {@link JsonApiCodec} instances for the AAS model types stored by {@link PersistenceMongo}, i.e. referables,
+ * references, operation handles and operation results including their implementation classes.
+ */
+class JsonApiCodecProvider implements CodecProvider {
+
+    private static final List<Class<?>> SUPPORTED_TYPES = List.of(
+            Referable.class,
+            Reference.class,
+            OperationHandle.class,
+            OperationResult.class);
+
+    private final JsonApiSerializer serializer;
+    private final JsonApiDeserializer deserializer;
+    private final GridFsBlobStore blobStore;
+    private final boolean withBlobValues;
+
+    JsonApiCodecProvider(JsonApiSerializer serializer, JsonApiDeserializer deserializer) {
+        this(serializer, deserializer, null, true);
+    }
+
+
+    /**
+     * Creates a new instance.
+     *
+     * @param serializer the serializer
+     * @param deserializer the deserializer
+     * @param blobStore the store for large blob values or null if blob values are always stored inline
+     * @param withBlobValues whether blob values stored in GridFS are downloaded when decoding, otherwise they are set
+     *            to null
+     */
+    JsonApiCodecProvider(JsonApiSerializer serializer, JsonApiDeserializer deserializer, GridFsBlobStore blobStore, boolean withBlobValues) {
+        Ensure.requireNonNull(serializer, "serializer must be non-null");
+        Ensure.requireNonNull(deserializer, "deserializer must be non-null");
+        this.serializer = serializer;
+        this.deserializer = deserializer;
+        this.blobStore = blobStore;
+        this.withBlobValues = withBlobValues;
+    }
+
+
+    @Override
+    public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+        if (SUPPORTED_TYPES.stream().anyMatch(x -> x.isAssignableFrom(clazz))) {
+            return new JsonApiCodec<>(clazz, serializer, deserializer, blobStore, withBlobValues);
+        }
+        return null;
+    }
+}
@@ -20,15 +20,25 @@ import com.mongodb.MongoClientSettings;
 import com.mongodb.MongoCommandException;
 import com.mongodb.MongoException;
 import com.mongodb.WriteConcern;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.ClientSession;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
-import com.mongodb.client.MongoIterable;
 import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Field;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UnwindOptions;
 import com.mongodb.client.model.UpdateOptions;
 import com.mongodb.client.model.Updates;
 import com.mongodb.client.result.DeleteResult;
@@ -36,13 +46,14 @@ import com.mongodb.client.result.UpdateResult;
 import de.fraunhofer.iosb.ilt.faaast.service.ServiceContext;
 import de.fraunhofer.iosb.ilt.faaast.service.config.CoreConfig;
 import de.fraunhofer.iosb.ilt.faaast.service.dataformat.DeserializationException;
-import de.fraunhofer.iosb.ilt.faaast.service.dataformat.SerializationException;
 import de.fraunhofer.iosb.ilt.faaast.service.dataformat.json.JsonApiDeserializer;
 import de.fraunhofer.iosb.ilt.faaast.service.dataformat.json.JsonApiSerializer;
 import de.fraunhofer.iosb.ilt.faaast.service.exception.ConfigurationInitializationException;
 import de.fraunhofer.iosb.ilt.faaast.service.exception.InvalidConfigurationException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.IdShortPath;
 import de.fraunhofer.iosb.ilt.faaast.service.model.SubmodelElementIdentifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Extent;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Level;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.operation.OperationHandle;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.paging.Page;
@@ -53,7 +64,10 @@ import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceExceptio
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceAlreadyExistsException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotAContainerElementException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
-import de.fraunhofer.iosb.ilt.faaast.service.model.exception.UnsupportedModifierException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ValueMappingException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.ElementValue;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.PropertyValue;
+import de.fraunhofer.iosb.ilt.faaast.service.model.value.mapper.ElementValueMapper;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.AssetAdministrationShellSearchCriteria;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.ConceptDescriptionSearchCriteria;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.Persistence;
@@ -61,30 +75,44 @@ import de.fraunhofer.iosb.ilt.faaast.service.persistence.SubmodelElementSearchCr
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.SubmodelSearchCriteria;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.util.PersistenceHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.util.QueryModifierHelper;
-import de.fraunhofer.iosb.ilt.faaast.service.util.DeepCopyHelper;
+import de.fraunhofer.iosb.ilt.faaast.service.util.ElementValueHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.Ensure;
-import de.fraunhofer.iosb.ilt.faaast.service.util.LambdaExceptionHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceBuilder;
 import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.StringHelper;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
+import org.bson.BSONException;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.eclipse.digitaltwin.aas4j.v3.model.AnnotatedRelationshipElement;
 import org.eclipse.digitaltwin.aas4j.v3.model.AssetAdministrationShell;
 import org.eclipse.digitaltwin.aas4j.v3.model.ConceptDescription;
 import org.eclipse.digitaltwin.aas4j.v3.model.Entity;
 import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
 import org.eclipse.digitaltwin.aas4j.v3.model.Identifiable;
+import org.eclipse.digitaltwin.aas4j.v3.model.Key;
 import org.eclipse.digitaltwin.aas4j.v3.model.OperationResult;
 import org.eclipse.digitaltwin.aas4j.v3.model.Referable;
 import org.eclipse.digitaltwin.aas4j.v3.model.Reference;
@@ -94,6 +122,8 @@ import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
 import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElement;
 import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElementCollection;
 import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElementList;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultEnvironment;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -111,12 +141,14 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
     private static final int RANDOM_VALUE_LENGTH = 100;
     private static final String SERIALIZATION_ERROR = "Serialization of document with id %s failed!";
     private static final String HANDLE = "handle";
+    private static final String RESULT = "result";
 
     private static final String MSG_RESOURCE_NOT_FOUND_BY_ID = "resource not found (id %s)";
     private static final String MSG_MODIFIER_NOT_NULL = "modifier must be non-null";
     private static final String MSG_CRITERIA_NOT_NULL = "criteria must be non-null";
     private static final String MSG_PAGING_NOT_NULL = "paging must be non-null";
-    private static final Bson NO_FILTER = Filters.exists("_id");
+    private static final String MONGO_ID_KEY = "_id";
+    private static final Bson NO_FILTER = Filters.exists(MONGO_ID_KEY);
 
     private static final String AAS_COLLECTION_NAME = "assetAdministrationShells";
     private static final String CD_COLLECTION_NAME = "contentDescriptions";
@@ -127,20 +159,53 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
     private static final String ID_SHORT_KEY = "idShort";
     private static final String SUBMODEL_ELEMENTS_KEY = "submodelElements";
     private static final String VALUE_KEY = "value";
+    private static final String SEMANTIC_ID_KEY = "semanticId";
+    private static final String KEYS_KEY = "keys";
+    private static final String TYPE_KEY = "type";
+    private static final String SUBMODELS_KEY = "submodels";
+    private static final String KEY_TYPE_SUBMODEL = "Submodel";
+    private static final String MODEL_TYPE_KEY = "modelType";
+    private static final String STATEMENTS_KEY = "statements";
+    private static final String ANNOTATIONS_KEY = "annotations";
+    private static final String CHILD_KEY = "child";
+    private static final String POSITION_KEY = "position";
+    private static final String SUBMODEL_ELEMENT_COLLECTION = "SubmodelElementCollection";
+    private static final String SUBMODEL_ELEMENT_LIST = "SubmodelElementList";
+    private static final String ENTITY = "Entity";
+    private static final String ANNOTATED_RELATIONSHIP_ELEMENT = "AnnotatedRelationshipElement";
+    private static final String PROPERTY = "Property";
+    private static final List<String> PROPERTY_VALUE_FIELDS = List.of(VALUE_KEY, "valueType");
+    private static final List<String> VALUE_ONLY_UNSUPPORTED_TYPES = List.of("Operation", "Capability");
+    private static final String GLOBAL_ASSET_ID_KEY = "assetInformation.globalAssetId";
+    private static final String SPECIFIC_ASSET_ID_NAME_KEY = "assetInformation.specificAssetIds.name";
+    private static final String SPECIFIC_ASSET_ID_VALUE_KEY = "assetInformation.specificAssetIds.value";
 
     private static final Pattern INDEX_REGEX = Pattern.compile("\\[\\d+\\]");
+    // used when only the type or the existence of an element is of interest
+    private static final QueryModifier WITHOUT_CONTENT = new QueryModifier.Builder()
+            .level(Level.CORE)
+            .extend(Extent.WITHOUT_BLOB_VALUE)
+            .build();
 
     private final JsonApiSerializer serializer = new JsonApiSerializer();
     private final JsonApiDeserializer deserializer = new JsonApiDeserializer();
 
     private PersistenceMongoConfig config;
     private MongoClient client;
+    private MongoDatabase database;
     private final Random random = new Random();
 
     private MongoCollection<Document> aasCollection;
     private MongoCollection<Document> cdCollection;
     private MongoCollection<Document> submodelCollection;
     private MongoCollection<Document> operationCollection;
+    private MongoCollection<Document> submodelElementCollection;
+    private SubmodelElementStore submodelElementStore;
+    private SubmodelElementStore submodelElementStoreWithoutBlobValues;
+    private GridFsBlobStore blobStore;
+    private boolean transactionsSupported;
+    private CodecRegistry codecRegistryWithoutBlobValues;
+    private CodecRegistry inlineCodecRegistry;
 
     @Override
     public PersistenceMongoConfig asConfig() {
@@ -162,7 +227,20 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
 
     @Override
     public void deleteSubmodel(String id) throws ResourceNotFoundException, PersistenceException {
-        deleteElementById(submodelCollection, id);
+        Set<ObjectId> blobReferences = getBlobReferences(List.of(id));
+        if (isFlat()) {
+            this.<ResourceNotFoundException, PersistenceException> transaction(session -> {
+                DeleteResult result = submodelCollection.deleteOne(session, Filters.eq(ID_KEY, id));
+                if (result.getDeletedCount() == 0) {
+                    throw new ResourceNotFoundException(String.format(MSG_RESOURCE_NOT_FOUND_BY_ID, id));
+                }
+                submodelElementStore.delete(session, id);
+            });
+        }
+        else {
+            deleteElementById(submodelCollection, id);
+        }
+        blobStore.delete(blobReferences);
         Bson filter = Filters.eq("submodels.id", id);
         Bson update = Updates.pull("submodels", filter);
         aasCollection.updateMany(filter, update);
@@ -171,6 +249,12 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
 
     @Override
     public void deleteSubmodelElement(SubmodelElementIdentifier identifier) throws ResourceNotFoundException, PersistenceException {
+        Set<ObjectId> blobReferences = getBlobReferences(identifier);
+        if (isFlat()) {
+            this.<ResourceNotFoundException, PersistenceException> transaction(session -> submodelElementStore.delete(session, identifier));
+            blobStore.delete(blobReferences);
+            return;
+        }
         SubmodelElementIdentifier parentIdentifier = SubmodelElementIdentifier.fromReference(ReferenceHelper.getParent(identifier.toReference()));
         UpdateResult result;
         // deleting from submodel
@@ -209,6 +293,7 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
         }
         if (result.getModifiedCount() == 0)
             throw new ResourceNotFoundException(identifier.toReference());
+        blobStore.delete(blobReferences);
     }
 
 
@@ -217,12 +302,69 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
         aasCollection = resetCollection(AAS_COLLECTION_NAME);
         submodelCollection = resetCollection(SUBMODEL_COLLECTION_NAME);
         cdCollection = resetCollection(CD_COLLECTION_NAME);
-        operationCollection = resetCollection(OPERATION_COLLECTION_NAME);
+        operationCollection = resetCollection(OPERATION_COLLECTION_NAME).withCodecRegistry(inlineCodecRegistry);
+        if (isFlat()) {
+            submodelElementCollection = resetCollection(SubmodelElementStore.COLLECTION_NAME);
+            createSubmodelElementStores();
+        }
+        try {
+            blobStore.deleteAll();
+        }
+        catch (MongoException e) {
+            throw new PersistenceException("error clearing GridFS bucket for blob values", e);
+        }
+        // dropping a collection also drops its indexes
+        createIndexes();
+    }
+
+
+    /**
+     * Creates the indexes required by the queries of this persistence if they do not exist yet, i.e. indexes on the
+     * id, idShort, semanticId and asset ids of identifiables as well as on the handle of operation results. Index
+     * builds are executed synchronously, i.e. all indexes are ready once this method returns.
+     *
+     * @throws PersistenceException if creating an index fails
+     */
+    private void createIndexes() throws PersistenceException {
+        if (isFlat()) {
+            // always required as submodel elements are identified via these indexes
+            createIndexes(submodelElementCollection, SubmodelElementStore.getIndexes());
+        }
+        if (!config.isCreateIndexes()) {
+            return;
+        }
+        IndexOptions uniqueOptions = new IndexOptions().unique(config.isUniqueIdIndex());
+        createIndexes(aasCollection, List.of(
+                new IndexModel(Indexes.ascending(ID_KEY), uniqueOptions),
+                new IndexModel(Indexes.ascending(ID_SHORT_KEY)),
+                new IndexModel(Indexes.ascending(GLOBAL_ASSET_ID_KEY)),
+                new IndexModel(Indexes.ascending(SPECIFIC_ASSET_ID_NAME_KEY, SPECIFIC_ASSET_ID_VALUE_KEY))));
+        createIndexes(submodelCollection, List.of(
+                new IndexModel(Indexes.ascending(ID_KEY), uniqueOptions),
+                new IndexModel(Indexes.ascending(ID_SHORT_KEY)),
+                new IndexModel(Indexes.ascending(SEMANTIC_ID_KEY))));
+        createIndexes(cdCollection, List.of(
+                new IndexModel(Indexes.ascending(ID_KEY), uniqueOptions),
+                new IndexModel(Indexes.ascending(ID_SHORT_KEY))));
+        createIndexes(operationCollection, List.of(
+                new IndexModel(Indexes.ascending(HANDLE), uniqueOptions)));
+    }
+
+
+    private static void createIndexes(MongoCollection<Document> collection, List<IndexModel> indexes) throws PersistenceException {
+        String name = collection.getNamespace().getCollectionName();
+        long start = System.currentTimeMillis();
+        try {
+            List<String> names = collection.createIndexes(indexes);
+            LOGGER.info("MongoDB indexes ready (collection: {}, indexes: {}, duration: {} ms)", name, names, System.currentTimeMillis() - start);
+        }
+        catch (MongoException e) {
+            throw new PersistenceException(String.format("error creating indexes on MongoDB collection '%s'", name), e);
+        }
     }
 
 
     private MongoCollection<Document> resetCollection(String name) throws PersistenceException {
-        MongoDatabase database = client.getDatabase(config.getDatabase());
         boolean exists = database.listCollectionNames().into(new ArrayList()).contains(name);
         if (exists) {
             try {
@@ -295,16 +437,197 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
         Ensure.requireNonNull(criteria, MSG_CRITERIA_NOT_NULL);
         Ensure.requireNonNull(modifier, MSG_MODIFIER_NOT_NULL);
         Ensure.requireNonNull(paging, MSG_PAGING_NOT_NULL);
-        final Collection<SubmodelElement> elements = new ArrayList<>();
-        if (criteria.isParentSet()) {
-            Referable parent = fetch(criteria.getParent(), Referable.class);
-            PersistenceHelper.addSubmodelElementsFromParentToCollection(parent, elements);
+        if (!criteria.isParentSet()) {
+            return preparePagedResult(Stream.<SubmodelElement> empty(), modifier, paging);
+        }
+        if (isFlat()) {
+            return findSubmodelElementsFlat(criteria, modifier, paging);
+        }
+        // filtering and paging is done by the database so that only the requested page is transferred
+        List<Bson> pipelineStages = new ArrayList<>();
+        String parentFieldName = addPathStages(criteria.getParent(), pipelineStages);
+        pipelineStages.add(Aggregates.project(new Document(CHILD_KEY, getChildrenExpression(parentFieldName))));
+        pipelineStages.add(Aggregates.unwind("$" + CHILD_KEY, new UnwindOptions().includeArrayIndex(POSITION_KEY)));
+        Bson filter = getSubmodelElementFilter(CHILD_KEY, criteria);
+        if (Objects.nonNull(filter)) {
+            pipelineStages.add(Aggregates.match(filter));
+        }
+        // matches of the semanticId filter are checked afterwards, therefore paging can only be done afterwards as well
+        if (Objects.nonNull(paging.getCursor()) && !criteria.isSemanticIdSet()) {
+            pipelineStages.add(Aggregates.match(Filters.gt(POSITION_KEY, readCursor(paging.getCursor()))));
+        }
+        if (paging.hasLimit() && !criteria.isSemanticIdSet()) {
+            pipelineStages.add(Aggregates.limit((int) paging.getLimit() + 1));
+        }
+        pipelineStages.add(Aggregates.project(new Document()
+                .append(MONGO_ID_KEY, 0)
+                .append(POSITION_KEY, 1)
+                .append(CHILD_KEY, QueryModifierExpressions.isModifying(modifier)
+                        ? QueryModifierExpressions.submodelElement("$" + CHILD_KEY, modifier)
+                        : "$" + CHILD_KEY)));
+        List<RawBsonDocument> temp = submodelCollection.aggregate(pipelineStages, RawBsonDocument.class).into(new ArrayList<>());
+        if (temp.isEmpty()) {
+            // distinguish between no matching elements and non-existing parent
+            fetch(criteria.getParent(), WITHOUT_CONTENT, Referable.class);
+        }
+        Codec<SubmodelElement> codec = getCodecRegistry(modifier).get(SubmodelElement.class);
+        List<Map.Entry<Integer, SubmodelElement>> children = new ArrayList<>();
+        try {
+            for (RawBsonDocument document: temp) {
+                children.add(Map.entry(
+                        document.getNumber(POSITION_KEY).intValue(),
+                        codec.decode(new BsonDocumentReader(document.getDocument(CHILD_KEY)), DecoderContext.builder().build())));
+            }
+        }
+        catch (BSONException e) {
+            throw new PersistenceException("Error decoding SubmodelElement from MongoDB", e);
+        }
+        return toChildPage(children.stream(), criteria, modifier, paging);
+    }
+
+
+    private Page<SubmodelElement> findSubmodelElementsFlat(SubmodelElementSearchCriteria criteria, QueryModifier modifier, PagingInfo paging)
+            throws ResourceNotFoundException, PersistenceException {
+        SubmodelElementIdentifier parentIdentifier = criteria.getParent();
+        Referable parent = parentIdentifier.getIdShortPath().isEmpty()
+                ? fetch(submodelCollection, parentIdentifier.getSubmodelId(), Submodel.class)
+                : submodelElementStoreWithoutBlobValues.getWithoutChildren(parentIdentifier);
+        if (Entity.class.isAssignableFrom(parent.getClass()) || AnnotatedRelationshipElement.class.isAssignableFrom(parent.getClass())) {
+            // children of entities and annotated relationship elements are stored inline
+            List<SubmodelElement> children = getChildren(getSubmodelElementStore(modifier).get(parentIdentifier));
+            return toChildPage(
+                    IntStream.range(0, children.size())
+                            .mapToObj(x -> Map.entry(x, children.get(x)))
+                            .filter(x -> !criteria.getValueOnly() || ElementValueHelper.isValueOnlySupported(x.getValue())),
+                    criteria,
+                    modifier,
+                    paging);
+        }
+        // matches of the semanticId filter are checked afterwards, therefore paging can only be done afterwards as well
+        boolean pageInDatabase = !criteria.isSemanticIdSet();
+        return toChildPage(
+                getSubmodelElementStore(modifier).findChildren(
+                        parentIdentifier,
+                        getSubmodelElementFilter(SubmodelElementStore.ELEMENT_KEY, criteria),
+                        pageInDatabase && Objects.nonNull(paging.getCursor()) ? readCursor(paging.getCursor()) : null,
+                        pageInDatabase && paging.hasLimit() ? (int) paging.getLimit() + 1 : 0)
+                        .stream(),
+                criteria,
+                modifier,
+                paging);
+    }
+
+
+    /**
+     * Creates a page of submodel elements from the children of a parent. The cursor of the page is the position of the
+     * last returned element within its parent, therefore the next page continues right after it even if elements have
+     * been added or removed in the meantime.
+     *
+     * @param children the children with their position within the parent sorted by position, may already be filtered
+     *            by cursor and limit
+     * @param criteria the criteria, matches of the semanticId are checked using
+     *            {@link ReferenceHelper#equals(Reference, Reference)}
+     * @param modifier the query modifier
+     * @param paging the paging information
+     * @return the page
+     */
+    private static Page<SubmodelElement> toChildPage(Stream<Map.Entry<Integer, SubmodelElement>> children,
+                                                     SubmodelElementSearchCriteria criteria,
+                                                     QueryModifier modifier,
+                                                     PagingInfo paging) {
+        Stream<Map.Entry<Integer, SubmodelElement>> result = children;
+        if (criteria.isSemanticIdSet() && Objects.nonNull(criteria.getSemanticId())) {
+            result = result.filter(x -> ReferenceHelper.equals(x.getValue().getSemanticId(), criteria.getSemanticId()));
+        }
+        if (Objects.nonNull(paging.getCursor())) {
+            int cursor = readCursor(paging.getCursor());
+            result = result.filter(x -> x.getKey() > cursor);
+        }
+        if (paging.hasLimit()) {
+            result = result.limit(paging.getLimit() + 1);
+        }
+        List<Map.Entry<Integer, SubmodelElement>> temp = result.collect(Collectors.toList());
+        boolean hasMoreData = paging.hasLimit() && temp.size() > paging.getLimit();
+        List<Map.Entry<Integer, SubmodelElement>> content = hasMoreData
+                ? temp.subList(0, (int) paging.getLimit())
+                : temp;
+        return Page.<SubmodelElement> builder()
+                .result(QueryModifierHelper.applyQueryModifier(
+                        content.stream()
+                                .map(Map.Entry::getValue)
+                                .collect(Collectors.toList()),
+                        modifier))
+                .metadata(PagingMetadata.builder()
+                        .cursor(hasMoreData
+                                ? writeCursor(content.get(content.size() - 1).getKey())
+                                : null)
+                        .build())
+                .build();
+    }
+
+
+    private static List<SubmodelElement> getChildren(Referable parent) {
+        List<SubmodelElement> result = new ArrayList<>();
+        PersistenceHelper.addSubmodelElementsFromParentToCollection(parent, result);
+        return result;
+    }
+
+
+    /**
+     * Creates an expression evaluating to the submodel elements directly contained in a parent.
+     *
+     * @param parentFieldName the name of the field containing the parent or null if the parent is the submodel
+     * @return the expression
+     */
+    private static Object getChildrenExpression(String parentFieldName) {
+        if (Objects.isNull(parentFieldName)) {
+            return new Document("$ifNull", Arrays.asList("$" + SUBMODEL_ELEMENTS_KEY, List.of()));
         }
-        Stream<SubmodelElement> result = elements.stream();
+        String modelType = "$" + parentFieldName + "." + MODEL_TYPE_KEY;
+        return new Document("$ifNull", Arrays.asList(
+                new Document("$switch", new Document()
+                        .append("branches", List.of(
+                                childrenBranch(modelType, List.of(SUBMODEL_ELEMENT_COLLECTION, SUBMODEL_ELEMENT_LIST), "$" + parentFieldName + "." + VALUE_KEY),
+                                childrenBranch(modelType, List.of(ENTITY), "$" + parentFieldName + "." + STATEMENTS_KEY),
+                                childrenBranch(modelType, List.of(ANNOTATED_RELATIONSHIP_ELEMENT), "$" + parentFieldName + "." + ANNOTATIONS_KEY)))
+                        .append("default", List.of())),
+                List.of()));
+    }
+
+
+    private static Document childrenBranch(String modelType, List<String> modelTypes, String children) {
+        return new Document()
+                .append("case", new Document("$in", Arrays.asList(modelType, modelTypes)))
+                .append("then", children);
+    }
+
+
+    /**
+     * Creates a filter for submodel elements matching the search criteria, i.e. semanticId and support for value-only
+     * serialization. Only the values of the keys of the semanticId are compared as key types may differ but still be
+     * compatible, therefore matches must additionally be checked using
+     * {@link ReferenceHelper#equals(Reference, Reference)}.
+     *
+     * @param fieldName the name of the field containing the submodel element
+     * @param criteria the criteria
+     * @return the filter or null if no filter is required
+     */
+    private static Bson getSubmodelElementFilter(String fieldName, SubmodelElementSearchCriteria criteria) {
+        List<Bson> filters = new ArrayList<>();
         if (criteria.isSemanticIdSet()) {
-            result = PersistenceHelper.filterBySemanticId(result, criteria.getSemanticId());
+            filters.add(Filters.expr(new Document("$eq", Arrays.asList(
+                    new Document("$ifNull", Arrays.asList("$" + fieldName + "." + SEMANTIC_ID_KEY + "." + KEYS_KEY + "." + VALUE_KEY, List.of())),
+                    Objects.nonNull(criteria.getSemanticId().getKeys())
+                            ? criteria.getSemanticId().getKeys().stream().map(Key::getValue).toList()
+                            : List.of()))));
+        }
+        if (criteria.getValueOnly()) {
+            filters.add(Filters.nin(fieldName + "." + MODEL_TYPE_KEY, VALUE_ONLY_UNSUPPORTED_TYPES));
+        }
+        if (filters.isEmpty()) {
+            return null;
         }
-        return preparePagedResult(result, modifier, paging);
+        return Filters.and(filters);
     }
 
 
@@ -327,7 +650,7 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
     @Override
     public Submodel getSubmodel(String id, QueryModifier modifier) throws ResourceNotFoundException, PersistenceException {
         return prepareResult(
-                fetch(submodelCollection, id, Submodel.class),
+                fetchSubmodel(id, modifier),
                 modifier);
     }
 
@@ -335,7 +658,7 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
     @Override
     public SubmodelElement getSubmodelElement(SubmodelElementIdentifier identifier, QueryModifier modifier) throws ResourceNotFoundException, PersistenceException {
         return prepareResult(
-                fetch(identifier, SubmodelElement.class),
+                fetch(identifier, modifier, SubmodelElement.class),
                 modifier);
     }
 
@@ -351,18 +674,84 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
 
 
     @Override
-    public OperationResult getOperationResult(OperationHandle handle) throws ResourceNotFoundException, PersistenceException {
-        try {
-            Document handleDocument = Document.parse(serializer.write(handle));
-            Bson filter = Filters.eq(HANDLE, handleDocument);
-            Document operationDocument = operationCollection.find(filter).first();
-            if (Objects.isNull(operationDocument))
-                throw new ResourceNotFoundException(handle.getHandleId());
-            return deserializer.read(((Document) operationDocument.get("result")).toJson(), OperationResult.class);
+    public boolean assetAdministrationShellExists(String id) {
+        return exists(aasCollection, Filters.eq(ID_KEY, id));
+    }
+
+
+    @Override
+    public boolean submodelExists(String id) {
+        return exists(submodelCollection, getFilterForSubmodel(id));
+    }
+
+
+    @Override
+    public boolean conceptDescriptionExists(String id) {
+        return exists(cdCollection, Filters.eq(ID_KEY, id));
+    }
+
+
+    @Override
+    public Environment filterExisting(Environment environment) {
+        Ensure.requireNonNull(environment, "environment must be non-null");
+        return new DefaultEnvironment.Builder()
+                .assetAdministrationShells(filterExisting(aasCollection, environment.getAssetAdministrationShells()))
+                .submodels(filterExisting(submodelCollection, environment.getSubmodels()))
+                .conceptDescriptions(filterExisting(cdCollection, environment.getConceptDescriptions()))
+                .build();
+    }
+
+
+    private static <T extends Identifiable> List<T> filterExisting(MongoCollection<Document> collection, List<T> identifiables) {
+        if (Objects.isNull(identifiables) || identifiables.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<String> existingIds = new HashSet<>();
+        collection.find(Filters.in(ID_KEY, identifiables.stream()
+                .map(Identifiable::getId)
+                .toList()))
+                .projection(Projections.include(ID_KEY))
+                .forEach(x -> existingIds.add(x.getString(ID_KEY)));
+        return identifiables.stream()
+                .filter(x -> existingIds.contains(x.getId()))
+                .collect(Collectors.toList());
+    }
+
+
+    @Override
+    public boolean submodelElementExists(SubmodelElementIdentifier identifier) {
+        Ensure.requireNonNull(identifier, "identifier must be non-null");
+        if (identifier.getIdShortPath().isEmpty()) {
+            return false;
         }
-        catch (SerializationException | DeserializationException | UnsupportedModifierException e) {
-            throw new PersistenceException(e);
+        if (isFlat()) {
+            return submodelElementStore.exists(identifier);
         }
+        List<Bson> pipelineStages = new ArrayList<>();
+        addPathStages(identifier, pipelineStages);
+        pipelineStages.add(Aggregates.project(Projections.include(MONGO_ID_KEY)));
+        return Objects.nonNull(submodelCollection.aggregate(pipelineStages).first());
+    }
+
+
+    @Override
+    public boolean submodelRefExists(String aasId, String submodelId) {
+        return exists(aasCollection, Filters.and(
+                Filters.eq(ID_KEY, aasId),
+                Filters.elemMatch(SUBMODELS_KEY, Filters.and(
+                        Filters.size(KEYS_KEY, 1),
+                        Filters.elemMatch(KEYS_KEY, Filters.and(
+                                Filters.eq(TYPE_KEY, KEY_TYPE_SUBMODEL),
+                                Filters.eq(VALUE_KEY, submodelId)))))));
+    }
+
+
+    @Override
+    public OperationResult getOperationResult(OperationHandle handle) throws ResourceNotFoundException, PersistenceException {
+        Document operationDocument = operationCollection.find(Filters.eq(HANDLE, handle)).first();
+        if (Objects.isNull(operationDocument))
+            throw new ResourceNotFoundException(handle.getHandleId());
+        return fromDocument(operationDocument.get(RESULT, Document.class), OperationResult.class);
     }
 
 
@@ -378,11 +767,17 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
         Ensure.requireNonNull(parentIdentifier, "parent must be non-null");
         Ensure.requireNonNull(submodelElement, "submodelElement must be non-null");
         Referable parent;
-        if (parentIdentifier.getIdShortPath().isEmpty()) {
-            parent = getSubmodel(parentIdentifier.getSubmodelId(), QueryModifier.MINIMAL);
+        if (isFlat()) {
+            // only fetch the parent itself as its children are not needed to check its type
+            parent = parentIdentifier.getIdShortPath().isEmpty()
+                    ? fetch(submodelCollection, parentIdentifier.getSubmodelId(), Submodel.class)
+                    : submodelElementStoreWithoutBlobValues.getWithoutChildren(parentIdentifier);
+        }
+        else if (parentIdentifier.getIdShortPath().isEmpty()) {
+            parent = getSubmodel(parentIdentifier.getSubmodelId(), WITHOUT_CONTENT);
         }
         else {
-            parent = getSubmodelElement(parentIdentifier, QueryModifier.MINIMAL);
+            parent = getSubmodelElement(parentIdentifier, WITHOUT_CONTENT);
         }
         if (!SubmodelElementCollection.class.isAssignableFrom(parent.getClass())
                 && !SubmodelElementList.class.isAssignableFrom(parent.getClass())
@@ -399,6 +794,15 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
             ensureIdShortPresent(submodelElement);
             ensureDoesNotAlreadyExist(parentIdentifier, submodelElement);
         }
+        if (isFlat()) {
+            Referable flatParent = parent;
+            blobStore.<ResourceNotFoundException, PersistenceException> write(() -> {
+                BsonDocument element = submodelElementStore.encode(submodelElement);
+                this.<ResourceNotFoundException, PersistenceException> transaction(
+                        session -> submodelElementStore.insert(session, parentIdentifier, flatParent, submodelElement.getIdShort(), element));
+            });
+            return;
+        }
 
         MongoSubmodelElementPath filter;
         if (parentIdentifier.getIdShortPath().isEmpty()) {
@@ -409,10 +813,10 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
             filter = getFilter(parentIdentifier.getIdShortPath());
             filter.fieldname += String.format(".%s", VALUE_KEY);
         }
-        submodelCollection.updateOne(
+        blobStore.write(() -> submodelCollection.updateOne(
                 getFilterForSubmodel(parentIdentifier.getSubmodelId()),
-                Updates.push(filter.fieldname, asDocument(submodelElement)),
-                new UpdateOptions().arrayFilters(filter.arrayFilters));
+                Updates.push(filter.fieldname, submodelElement),
+                new UpdateOptions().arrayFilters(filter.arrayFilters)));
     }
 
 
@@ -423,31 +827,46 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
                         .applyToClusterSettings(x -> x.serverSelectionTimeout(3000, TimeUnit.MILLISECONDS))
                         .applyConnectionString(new ConnectionString(config.getConnectionString()))
                         .build());
-        MongoDatabase database = client.getDatabase(config.getDatabase());
+        MongoDatabase plainDatabase = client.getDatabase(config.getDatabase());
         try {
             client.listDatabaseNames().first();
+            blobStore = new GridFsBlobStore(plainDatabase, config.getGridFsBlobThreshold());
+            transactionsSupported = isTransactionsSupported();
         }
         catch (MongoClientException e) {
             throw new PersistenceException(String.format("connecting to MongoDB failed (reason: %s)", e.getMessage()), e);
         }
+        if (isFlat() && !transactionsSupported) {
+            LOGGER.warn("MongoDB deployment does not support transactions, i.e. it is not a replica set or sharded cluster. "
+                    + "Modifications of submodels are not atomic as their submodel elements are stored as separate documents.");
+        }
+        // AAS model types are encoded to and decoded from BSON directly instead of via JSON strings
+        database = plainDatabase.withCodecRegistry(createCodecRegistry(blobStore, true));
+        codecRegistryWithoutBlobValues = createCodecRegistry(blobStore, false);
+        // operation results are not cleaned up like submodels, therefore their blob values are always stored inline
+        inlineCodecRegistry = createCodecRegistry(null, true);
         aasCollection = database.getCollection(AAS_COLLECTION_NAME);
         cdCollection = database.getCollection(CD_COLLECTION_NAME);
         submodelCollection = database.getCollection(SUBMODEL_COLLECTION_NAME);
-        operationCollection = database.getCollection(OPERATION_COLLECTION_NAME);
-
-        if (config.isOverride()) {
-            deleteAll();
+        operationCollection = database.getCollection(OPERATION_COLLECTION_NAME).withCodecRegistry(inlineCodecRegistry);
+        if (isFlat()) {
+            submodelElementCollection = database.getCollection(SubmodelElementStore.COLLECTION_NAME);
+            createSubmodelElementStores();
         }
 
-        if (!databaseHasSavedEnvironment(database)) {
+        // deleteAll() re-creates the collections via their indexes, therefore check for a saved environment before
+        if (config.isOverride() || !databaseHasSavedEnvironment()) {
             deleteAll();
             try {
-                saveEnvironment(config.loadInitialModel());
+                saveAll(config.loadInitialModel());
             }
             catch (DeserializationException | InvalidConfigurationException | IllegalStateException e) {
                 throw new PersistenceException(e);
             }
         }
+        else {
+            createIndexes();
+        }
     }
 
 
@@ -465,12 +884,101 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
 
     @Override
     public void save(Submodel submodel) throws PersistenceException {
-        upsert(submodelCollection, submodel);
+        Set<ObjectId> blobReferences = getBlobReferences(List.of(submodel.getId()));
+        if (isFlat()) {
+            saveFlat(List.of(submodel));
+        }
+        else {
+            blobStore.write(() -> upsert(submodelCollection, submodel));
+        }
+        blobStore.delete(blobReferences);
+    }
+
+
+    /**
+     * Saves submodels whose submodel elements are stored in a separate collection. The submodel documents and all
+     * element documents are written within a single transaction so that readers never see a submodel without its
+     * elements or with the elements of its previous version.
+     *
+     * @param submodels the submodels
+     * @throws PersistenceException if encoding or writing fails
+     */
+    private void saveFlat(List<Submodel> submodels) throws PersistenceException {
+        List<ReplaceOneModel<BsonDocument>> submodelDocuments = new ArrayList<>();
+        for (Submodel submodel: submodels) {
+            try {
+                submodelDocuments.add(new ReplaceOneModel<>(
+                        Filters.eq(ID_KEY, submodel.getId()),
+                        submodelElementStore.encodeWithoutSubmodelElements(submodel),
+                        new ReplaceOptions().upsert(true)));
+            }
+            catch (BSONException e) {
+                throw new PersistenceException(String.format("Error encoding identifiable for MongoDB (id: %s)", submodel.getId()), e);
+            }
+        }
+        List<String> submodelIds = submodels.stream()
+                .map(Submodel::getId)
+                .toList();
+        blobStore.write(() -> {
+            List<BsonDocument> elementDocuments = submodelElementStore.encode(submodels);
+            this.<PersistenceException, PersistenceException> transaction(session -> {
+                try {
+                    submodelCollection
+                            .withDocumentClass(BsonDocument.class)
+                            .bulkWrite(session, submodelDocuments, new BulkWriteOptions().ordered(false));
+                }
+                catch (MongoException e) {
+                    throw new PersistenceException("Error saving data in MongoDB", e);
+                }
+                submodelElementStore.save(session, submodelIds, elementDocuments);
+            });
+        });
+    }
+
+
+    @Override
+    public void saveAll(Environment environment) throws PersistenceException {
+        Ensure.requireNonNull(environment, "environment must be non-null");
+        Set<ObjectId> blobReferences = Objects.nonNull(environment.getSubmodels())
+                ? getBlobReferences(environment.getSubmodels().stream()
+                        .filter(Objects::nonNull)
+                        .map(Submodel::getId)
+                        .toList())
+                : Set.of();
+        upsertAll(aasCollection, environment.getAssetAdministrationShells(), Identifiable.class, x -> x);
+        if (isFlat()) {
+            if (Objects.nonNull(environment.getSubmodels()) && !environment.getSubmodels().isEmpty()) {
+                saveFlat(environment.getSubmodels().stream()
+                        .filter(Objects::nonNull)
+                        .toList());
+            }
+        }
+        else {
+            blobStore.write(() -> upsertAll(submodelCollection, environment.getSubmodels(), Identifiable.class, x -> x));
+        }
+        upsertAll(cdCollection, environment.getConceptDescriptions(), Identifiable.class, x -> x);
+        blobStore.delete(blobReferences);
     }
 
 
     @Override
     public void update(SubmodelElementIdentifier identifier, SubmodelElement submodelElement) throws ResourceNotFoundException, PersistenceException {
+        Set<ObjectId> blobReferences = getBlobReferences(identifier);
+        if (isFlat()) {
+            blobStore.<ResourceNotFoundException, PersistenceException> write(() -> {
+                BsonDocument element = submodelElementStore.encode(submodelElement);
+                this.<ResourceNotFoundException, PersistenceException> transaction(
+                        session -> submodelElementStore.update(session, identifier, submodelElement.getIdShort(), element));
+            });
+        }
+        else {
+            blobStore.write(() -> updateNested(identifier, submodelElement));
+        }
+        blobStore.delete(blobReferences);
+    }
+
+
+    private void updateNested(SubmodelElementIdentifier identifier, SubmodelElement submodelElement) throws ResourceNotFoundException {
         UpdateResult result;
         SubmodelElementIdentifier parentIdentifier = SubmodelElementIdentifier.fromReference(ReferenceHelper.getParent(identifier.toReference()));
         if (parentIdentifier.getIdShortPath().isEmpty()) {
@@ -478,14 +986,14 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
             filter.arrayFilters.add(Filters.eq("i." + ID_SHORT_KEY, identifier.getIdShortPath().getElements().get(0)));
             result = submodelCollection.updateOne(
                     getFilterForSubmodel(identifier.getSubmodelId()),
-                    Updates.set(SUBMODEL_ELEMENTS_KEY + ".$[i]", asDocument(submodelElement)),
+                    Updates.set(SUBMODEL_ELEMENTS_KEY + ".$[i]", submodelElement),
                     new UpdateOptions().arrayFilters(filter.arrayFilters));
         }
         else {
             MongoSubmodelElementPath filter = getFilter(identifier.getIdShortPath());
             result = submodelCollection.updateOne(
                     getFilterForSubmodel(identifier.getSubmodelId()),
-                    Updates.set(filter.fieldname, asDocument(submodelElement)),
+                    Updates.set(filter.fieldname, submodelElement),
                     new UpdateOptions().arrayFilters(filter.arrayFilters));
         }
         if (result.getModifiedCount() == 0) {
@@ -494,20 +1002,29 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
     }
 
 
+    @Override
+    public void setValue(SubmodelElementIdentifier identifier, ElementValue value) throws ResourceNotFoundException, ValueMappingException, PersistenceException {
+        Ensure.requireNonNull(identifier, "identifier must be non-null");
+        Ensure.requireNonNull(value, "value must be non-null");
+        BsonDocument fields = getPropertyValueFields(value);
+        if (Objects.nonNull(fields) && setPropertyValue(identifier, fields)) {
+            return;
+        }
+        // all other values, e.g. of blobs or containers, as well as errors are handled by reading and rewriting the element
+        Persistence.super.setValue(identifier, value);
+    }
+
+
     @Override
     public void save(OperationHandle handle, OperationResult result) {
-        Document document = new Document();
         try {
-            Document handleDocument = Document.parse(serializer.write(handle));
-            Document resultDocument = Document.parse(serializer.write(result));
-            document.append(HANDLE, handleDocument).append("result", resultDocument);
+            operationCollection.replaceOne(Filters.eq(HANDLE, handle),
+                    new Document(HANDLE, handle).append(RESULT, result),
+                    new ReplaceOptions().upsert(true));
         }
-        catch (SerializationException | UnsupportedModifierException e) {
-            LOGGER.error(String.format(SERIALIZATION_ERROR, handle.getHandleId()));
+        catch (BSONException e) {
+            LOGGER.error(String.format(SERIALIZATION_ERROR, handle.getHandleId()), e);
         }
-        operationCollection.replaceOne(Filters.eq(HANDLE, document.get(HANDLE)),
-                document,
-                new ReplaceOptions().upsert(true));
     }
 
 
@@ -517,36 +1034,253 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
     }
 
 
-    private Document getReferenceAsDocument(Reference reference) throws PersistenceException {
-        try {
-            //Reference type has to match the one in the database exactly, ReferenceBuilder sets the wrong one
-            reference.setType(ReferenceTypes.EXTERNAL_REFERENCE);
-            String refJson = serializer.write(reference);
-            return Document.parse(refJson);
+    /**
+     * Encodes a property value as the fields of a property document.
+     *
+     * @param value the value
+     * @return the encoded fields or null if the value is not a property value that can be set in place
+     * @throws ValueMappingException if mapping the value fails
+     */
+    private BsonDocument getPropertyValueFields(ElementValue value) throws ValueMappingException {
+        if (!PropertyValue.class.isAssignableFrom(value.getClass())) {
+            return null;
+        }
+        BsonDocument encoded = SubmodelElementStore.encode(
+                inlineCodecRegistry.get(SubmodelElement.class),
+                ElementValueMapper.setValue(new DefaultProperty(), value));
+        BsonDocument result = new BsonDocument();
+        for (String field: PROPERTY_VALUE_FIELDS) {
+            // e.g. null values do not modify the existing property
+            if (!encoded.containsKey(field)) {
+                return null;
+            }
+            result.append(field, encoded.get(field));
+        }
+        return result;
+    }
+
+
+    /**
+     * Sets the value of a property in place without reading or rewriting it.
+     *
+     * @param identifier the identifier of the property
+     * @param fields the encoded value fields
+     * @return true if the value has been set, false if the element does not exist, is not a property, or the value
+     *         has not changed
+     * @throws PersistenceException if writing to the database fails
+     */
+    private boolean setPropertyValue(SubmodelElementIdentifier identifier, BsonDocument fields) throws PersistenceException {
+        if (isFlat()) {
+            return submodelElementStore.setFields(identifier, PROPERTY, fields);
         }
-        catch (SerializationException | UnsupportedModifierException e) {
-            throw new PersistenceException(e);
+        List<String> path = identifier.getIdShortPath().getElements();
+        if (path.isEmpty() || isIndex(path.get(path.size() - 1))) {
+            return false;
         }
+        MongoSubmodelElementPath filter = getFilter(identifier.getIdShortPath());
+        // a single document instead of Filters.and(), as $and is not supported within array filters by all servers
+        filter.arrayFilters.set(filter.arrayFilters.size() - 1, new Document()
+                .append("i." + ID_SHORT_KEY, path.get(path.size() - 1))
+                .append("i." + MODEL_TYPE_KEY, PROPERTY));
+        UpdateResult result = submodelCollection.updateOne(
+                getFilterForSubmodel(identifier.getSubmodelId()),
+                Updates.combine(fields.entrySet().stream()
+                        .map(x -> Updates.set(filter.fieldname + "." + x.getKey(), x.getValue()))
+                        .collect(Collectors.toList())),
+                new UpdateOptions().arrayFilters(filter.arrayFilters));
+        return result.getModifiedCount() > 0;
     }
 
 
-    private Document asDocument(Referable referable) throws PersistenceException {
+    /**
+     * Checks if a collection contains a document matching the filter without transferring its content.
+     *
+     * @param collection the collection
+     * @param filter the filter
+     * @return true if there is a matching document, otherwise false
+     */
+    private static boolean exists(MongoCollection<Document> collection, Bson filter) {
+        return Objects.nonNull(collection.find(filter)
+                .projection(Projections.include(MONGO_ID_KEY))
+                .first());
+    }
+
+
+    private boolean isFlat() {
+        return config.isFlattenSubmodelElements();
+    }
+
+
+    /**
+     * Checks if the deployment supports multi-document transactions, i.e. if it is a replica set or a sharded cluster.
+     *
+     * @return true if transactions are supported, otherwise false
+     */
+    private boolean isTransactionsSupported() {
         try {
-            return Document.parse(serializer.write(referable));
+            Document hello = client.getDatabase("admin").runCommand(new Document("hello", 1));
+            return hello.containsKey("setName") || Objects.equals("isdbgrid", hello.get("msg"));
+        }
+        catch (MongoCommandException e) {
+            LOGGER.debug("checking MongoDB deployment for transaction support failed", e);
+            return false;
+        }
+    }
+
+
+    /**
+     * Executes writes within a transaction if the deployment supports transactions. As the driver retries transactions
+     * on transient errors, the writes may be executed multiple times and therefore must not have side effects outside
+     * of the database, e.g. uploading blob values to GridFS. On deployments without transaction support, the writes are
+     * executed within a session only and are therefore not atomic.
+     *
+     * @param <E1> the type of the first exception thrown by the writes
+     * @param <E2> the type of the second exception thrown by the writes
+     * @param transaction the writes
+     * @throws E1 if the writes fail
+     * @throws E2 if the writes fail
+     * @throws PersistenceException if executing the transaction fails
+     */
+    @SuppressWarnings("unchecked")
+    private <E1 extends Exception, E2 extends Exception> void transaction(Transaction<E1, E2> transaction) throws E1, E2, PersistenceException {
+        try (ClientSession session = client.startSession()) {
+            if (!transactionsSupported) {
+                transaction.run(session);
+                return;
+            }
+            session.withTransaction(() -> {
+                try {
+                    transaction.run(session);
+                }
+                catch (RuntimeException e) {
+                    throw e;
+                }
+                catch (Exception e) {
+                    // transient errors must be passed on as they are so that the transaction is retried
+                    if (e.getCause() instanceof MongoException cause && cause.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                        throw cause;
+                    }
+                    throw new TransactionAbortedException(e);
+                }
+                return null;
+            });
+        }
+        catch (TransactionAbortedException e) {
+            // the writes only throw E1, E2 or unchecked exceptions
+            throw (E1) e.getCause();
+        }
+        catch (MongoException e) {
+            throw new PersistenceException("Error executing transaction in MongoDB", e);
+        }
+    }
+
+
+    private CodecRegistry createCodecRegistry(GridFsBlobStore store, boolean withBlobValues) {
+        return CodecRegistries.fromRegistries(
+                CodecRegistries.fromProviders(new JsonApiCodecProvider(serializer, deserializer, store, withBlobValues)),
+                MongoClientSettings.getDefaultCodecRegistry());
+    }
+
+
+    private void createSubmodelElementStores() {
+        submodelElementStore = new SubmodelElementStore(submodelElementCollection, database.getCodecRegistry(), inlineCodecRegistry);
+        submodelElementStoreWithoutBlobValues = new SubmodelElementStore(submodelElementCollection, codecRegistryWithoutBlobValues, inlineCodecRegistry);
+    }
+
+
+    /**
+     * Gets the codec registry to use for decoding. Blob values stored in GridFS are only downloaded if they are
+     * requested by the modifier.
+     *
+     * @param modifier the modifier
+     * @return the codec registry
+     */
+    private CodecRegistry getCodecRegistry(QueryModifier modifier) {
+        return modifier.getExtent() == Extent.WITH_BLOB_VALUE
+                ? database.getCodecRegistry()
+                : codecRegistryWithoutBlobValues;
+    }
+
+
+    private SubmodelElementStore getSubmodelElementStore(QueryModifier modifier) {
+        return modifier.getExtent() == Extent.WITH_BLOB_VALUE
+                ? submodelElementStore
+                : submodelElementStoreWithoutBlobValues;
+    }
+
+
+    /**
+     * Gets the ids of the blob values stored in GridFS that are referenced by the submodel elements of multiple
+     * submodels using a single query. As every encoded blob value is stored as a new file, these files can be deleted
+     * once the submodels have been replaced or deleted.
+     *
+     * @param submodelIds the ids of the submodels
+     * @return the ids of the referenced files
+     */
+    private Set<ObjectId> getBlobReferences(List<String> submodelIds) {
+        if (!blobStore.isUsed() || submodelIds.isEmpty()) {
+            return Set.of();
+        }
+        if (isFlat()) {
+            return submodelElementStore.getBlobReferences(submodelIds);
         }
-        catch (SerializationException | UnsupportedModifierException e) {
-            throw new PersistenceException(String.format("Error serializing referable to JSON (idShort: %s)", referable.getIdShort()), e);
+        Set<ObjectId> result = new HashSet<>();
+        for (RawBsonDocument document: submodelCollection.find(Filters.in(ID_KEY, submodelIds), RawBsonDocument.class)
+                .projection(Projections.include(SUBMODEL_ELEMENTS_KEY))) {
+            result.addAll(GridFsBlobStore.getReferences(document));
         }
+        return result;
     }
 
 
-    private <T extends Referable> Stream<T> asPojo(MongoIterable<Document> documents, Class<T> type) throws PersistenceException {
-        return StreamSupport.stream(documents.spliterator(), false)
-                .map(LambdaExceptionHelper.rethrowFunction(x -> fromDocument(x, type)));
+    /**
+     * Gets the ids of the blob values stored in GridFS that are referenced by a submodel element including its
+     * children.
+     *
+     * @param identifier the identifier of the submodel element
+     * @return the ids of the referenced files
+     */
+    private Set<ObjectId> getBlobReferences(SubmodelElementIdentifier identifier) {
+        if (!blobStore.isUsed()) {
+            return Set.of();
+        }
+        if (isFlat()) {
+            return submodelElementStore.getBlobReferences(identifier);
+        }
+        List<Bson> pipelineStages = new ArrayList<>();
+        String fieldName = addPathStages(identifier, pipelineStages);
+        if (Objects.nonNull(fieldName)) {
+            pipelineStages.add(Aggregates.project(Projections.include(fieldName)));
+        }
+        Set<ObjectId> result = new HashSet<>();
+        for (RawBsonDocument document: submodelCollection.aggregate(pipelineStages, RawBsonDocument.class)) {
+            result.addAll(GridFsBlobStore.getReferences(document));
+        }
+        return result;
     }
 
 
-    private boolean databaseHasSavedEnvironment(MongoDatabase database) {
+    private static Reference asExternalReference(Reference reference) {
+        //Reference type has to match the one in the database exactly, ReferenceBuilder sets the wrong one
+        reference.setType(ReferenceTypes.EXTERNAL_REFERENCE);
+        return reference;
+    }
+
+
+    private <T> List<T> decode(List<RawBsonDocument> documents, Class<T> type, CodecRegistry codecRegistry) throws PersistenceException {
+        Codec<T> codec = codecRegistry.get(type);
+        try {
+            return documents.stream()
+                    .map(x -> x.decode(codec))
+                    .collect(Collectors.toList());
+        }
+        catch (BSONException e) {
+            throw new PersistenceException(String.format("Error decoding %s from MongoDB", type.getSimpleName()), e);
+        }
+    }
+
+
+    private boolean databaseHasSavedEnvironment() {
         List<String> collectionNames = new ArrayList<>();
         database.listCollectionNames().into(collectionNames);
         return collectionNames.contains(AAS_COLLECTION_NAME)
@@ -567,41 +1301,95 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
 
     private void ensureDoesNotAlreadyExist(SubmodelElementIdentifier parentIdentifier, SubmodelElement submodelElement) throws ResourceAlreadyExistsException {
         Reference newElementReference = ReferenceBuilder.forParent(parentIdentifier.toReference(), submodelElement);
-        if (submodelElementExists(newElementReference)) {
+        boolean exists = isFlat()
+                ? submodelElementStore.exists(SubmodelElementIdentifier.fromReference(newElementReference))
+                : submodelElementExists(newElementReference);
+        if (exists) {
             throw new ResourceAlreadyExistsException(newElementReference);
         }
     }
 
 
-    private <T extends Referable> T fetch(SubmodelElementIdentifier identifier, Class<T> returnType) throws ResourceNotFoundException, PersistenceException {
-        Document result = loadDocument(identifier);
+    private <T extends Referable> T fetch(SubmodelElementIdentifier identifier, QueryModifier modifier, Class<T> returnType)
+            throws ResourceNotFoundException, PersistenceException {
+        if (isFlat()) {
+            return returnType.cast(identifier.getIdShortPath().isEmpty()
+                    ? fetchSubmodel(identifier.getSubmodelId(), modifier)
+                    : getSubmodelElementStore(modifier).get(identifier));
+        }
+        Document result = loadDocument(identifier, modifier);
         if (Objects.isNull(result))
             throw new ResourceNotFoundException(identifier.toReference());
+        return fromDocument(result, returnType, getCodecRegistry(modifier));
+    }
+
+
+    private <T extends Identifiable> T fetch(MongoCollection<Document> collection, String id, Class<T> type) throws ResourceNotFoundException, PersistenceException {
+        Bson filter = Filters.eq(ID_KEY, id);
+        T result;
         try {
-            return deserializer.read(result.toJson(), returnType);
+            result = collection.find(filter, type).first();
         }
-        catch (DeserializationException e) {
-            throw new PersistenceException(e);
+        catch (BSONException e) {
+            throw new PersistenceException(String.format("Error decoding %s from MongoDB (id: %s)", type.getSimpleName(), id), e);
         }
+        if (Objects.isNull(result)) {
+            throw new ResourceNotFoundException(String.format(MSG_RESOURCE_NOT_FOUND_BY_ID, id));
+        }
+        return result;
     }
 
 
-    private <T extends Identifiable> T fetch(MongoCollection<Document> collection, String id, Class<T> type) throws ResourceNotFoundException, PersistenceException {
-        Bson filter = Filters.eq(ID_KEY, id);
-        Document document = collection.find(filter).first();
-        if (Objects.isNull(document)) {
+    /**
+     * Fetches a submodel. If the modifier removes any content, this is already done by the database so that the
+     * removed content is not transferred.
+     *
+     * @param id the id of the submodel
+     * @param modifier the modifier
+     * @return the submodel
+     * @throws ResourceNotFoundException if there is no submodel with given id
+     * @throws PersistenceException if deserializing the submodel fails
+     */
+    private Submodel fetchSubmodel(String id, QueryModifier modifier) throws ResourceNotFoundException, PersistenceException {
+        if (isFlat()) {
+            Submodel result = fetch(submodelCollection, id, Submodel.class);
+            result.setSubmodelElements(getSubmodelElementStore(modifier).getSubmodelElements(id));
+            return result;
+        }
+        if (!QueryModifierExpressions.isModifying(modifier)) {
+            return fetch(submodelCollection, id, Submodel.class);
+        }
+        Submodel result;
+        try {
+            result = submodelCollection.withCodecRegistry(getCodecRegistry(modifier)).aggregate(List.of(
+                    Aggregates.match(Filters.eq(ID_KEY, id)),
+                    getSubmodelElementsStage(modifier)),
+                    Submodel.class)
+                    .first();
+        }
+        catch (BSONException e) {
+            throw new PersistenceException(String.format("Error decoding %s from MongoDB (id: %s)", Submodel.class.getSimpleName(), id), e);
+        }
+        if (Objects.isNull(result)) {
             throw new ResourceNotFoundException(String.format(MSG_RESOURCE_NOT_FOUND_BY_ID, id));
         }
-        return fromDocument(document, type);
+        return result;
     }
 
 
     private <T> T fromDocument(Document document, Class<T> type) throws PersistenceException {
+        return fromDocument(document, type, database.getCodecRegistry());
+    }
+
+
+    private <T> T fromDocument(Document document, Class<T> type, CodecRegistry codecRegistry) throws PersistenceException {
         try {
-            return deserializer.read(document.toJson(), type);
+            return codecRegistry.get(type).decode(
+                    new BsonDocumentReader(document.toBsonDocument(Document.class, codecRegistry)),
+                    DecoderContext.builder().build());
         }
-        catch (DeserializationException e) {
-            throw new PersistenceException(String.format("Error deserializing JSON from MongoDB (json: %s)", document.toJson()), e);
+        catch (BSONException e) {
+            throw new PersistenceException(String.format("Error decoding %s from MongoDB (json: %s)", type.getSimpleName(), document.toJson()), e);
         }
     }
 
@@ -623,7 +1411,7 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
 
         Bson filter = NO_FILTER;
         if (!globalAssetIdentificators.isEmpty()) {
-            filter = Filters.and(filter, Filters.in("assetInformation.globalAssetId", globalAssetIdentificators.toArray()));
+            filter = Filters.and(filter, Filters.in(GLOBAL_ASSET_ID_KEY, globalAssetIdentificators.toArray()));
         }
         if (!specificAssetIdentificators.isEmpty()) {
             Bson specificAssetIdFilter = NO_FILTER;
@@ -631,8 +1419,8 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
                 specificAssetIdFilter = Filters.or(
                         specificAssetIdFilter,
                         Filters.and(
-                                Filters.eq("assetInformation.specificAssetIds.name", specificAssetIdentificators.get(i).getName()),
-                                Filters.eq("assetInformation.specificAssetIds.value", specificAssetIdentificators.get(i).getValue())));
+                                Filters.eq(SPECIFIC_ASSET_ID_NAME_KEY, specificAssetIdentificators.get(i).getName()),
+                                Filters.eq(SPECIFIC_ASSET_ID_VALUE_KEY, specificAssetIdentificators.get(i).getValue())));
             }
             filter = Filters.and(filter, specificAssetIdFilter);
         }
@@ -640,10 +1428,10 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
     }
 
 
-    private Bson getDataSpecificationFilter(Reference dataSpecification) throws PersistenceException {
+    private Bson getDataSpecificationFilter(Reference dataSpecification) {
         if (Objects.isNull(dataSpecification))
             return NO_FILTER;
-        return Filters.eq("embeddedDataSpecifications", getReferenceAsDocument(dataSpecification));
+        return Filters.eq("embeddedDataSpecifications", asExternalReference(dataSpecification));
     }
 
 
@@ -687,38 +1475,74 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
     }
 
 
-    private Bson getIsCaseOfFilter(Reference isCaseOf) throws PersistenceException {
+    private Bson getIsCaseOfFilter(Reference isCaseOf) {
         if (Objects.isNull(isCaseOf))
             return NO_FILTER;
-        return Filters.eq("isCaseOf", getReferenceAsDocument(isCaseOf)); // TODO better equals implementation
+        return Filters.eq("isCaseOf", asExternalReference(isCaseOf)); // TODO better equals implementation
     }
 
 
-    private Document loadDocument(SubmodelElementIdentifier identifier) throws ResourceNotFoundException {
-        List<Bson> pipelineStages = new ArrayList<>();
+    private Bson getSubmodelElementsStage(QueryModifier modifier) {
+        return Aggregates.set(new Field<>(
+                SUBMODEL_ELEMENTS_KEY,
+                QueryModifierExpressions.submodelElements("$" + SUBMODEL_ELEMENTS_KEY, modifier)));
+    }
+
+
+    /**
+     * Adds the aggregation stages resolving a submodel element within its submodel.
+     *
+     * @param identifier the identifier of the submodel element
+     * @param pipelineStages the stages to add to
+     * @return the name of the field containing the submodel element or null if the identifier references the
+     *         submodel itself
+     */
+    private String addPathStages(SubmodelElementIdentifier identifier, List<Bson> pipelineStages) {
         // Filter for the right submodel
         pipelineStages.add(Aggregates.match(Filters.eq(ID_KEY, identifier.getSubmodelId())));
-        if (identifier.getIdShortPath().isEmpty())
+        if (identifier.getIdShortPath().isEmpty()) {
+            return null;
+        }
+        // Filter for the right submodel element in the "submodelElements" array of the right submodel
+        pipelineStages.add(Aggregates.unwind("$" + SUBMODEL_ELEMENTS_KEY));
+        pipelineStages.add(Aggregates.match(Filters.eq(SUBMODEL_ELEMENTS_KEY + "." + ID_SHORT_KEY, identifier.getIdShortPath().getElements().get(0))));
+
+        String currentFieldName = SUBMODEL_ELEMENTS_KEY;
+        for (int i = 1; i < identifier.getIdShortPath().getElements().size(); i++) {
+            // Filter for the right submodel element in the "value" array of the parent submodel element
+            currentFieldName += "." + VALUE_KEY;
+            pipelineStages.add(Aggregates.unwind("$" + currentFieldName));
+            if (isIndex(identifier.getIdShortPath().getElements().get(i))) {
+                String index = identifier.getIdShortPath().getElements().get(i);
+                index = index.substring(1, index.length() - 1);
+                pipelineStages.add(Aggregates.skip(Integer.parseInt(index)));
+                pipelineStages.add(Aggregates.limit(1));
+            }
+            else {
+                pipelineStages.add(Aggregates.match(Filters.eq(currentFieldName + "." + ID_SHORT_KEY, identifier.getIdShortPath().getElements().get(i))));
+            }
+        }
+        return currentFieldName;
+    }
+
+
+    private Document loadDocument(SubmodelElementIdentifier identifier, QueryModifier modifier) throws ResourceNotFoundException {
+        List<Bson> pipelineStages = new ArrayList<>();
+        boolean isModifying = QueryModifierExpressions.isModifying(modifier);
+        String currentFieldName = addPathStages(identifier, pipelineStages);
+        if (Objects.isNull(currentFieldName)) {
+            if (isModifying) {
+                pipelineStages.add(getSubmodelElementsStage(modifier));
+            }
             return submodelCollection.aggregate(pipelineStages).first();
+        }
         else {
-            // Filter for the right submodel element in the "submodelElements" array of the right submodel
-            pipelineStages.add(Aggregates.unwind("$" + SUBMODEL_ELEMENTS_KEY));
-            pipelineStages.add(Aggregates.match(Filters.eq(SUBMODEL_ELEMENTS_KEY + "." + ID_SHORT_KEY, identifier.getIdShortPath().getElements().get(0))));
-
-            String currentFieldName = SUBMODEL_ELEMENTS_KEY;
-            for (int i = 1; i < identifier.getIdShortPath().getElements().size(); i++) {
-                // Filter for the right submodel element in the "value" array of the parent submodel element
-                currentFieldName += "." + VALUE_KEY;
-                pipelineStages.add(Aggregates.unwind("$" + currentFieldName));
-                if (isIndex(identifier.getIdShortPath().getElements().get(i))) {
-                    String index = identifier.getIdShortPath().getElements().get(i);
-                    index = index.substring(1, index.length() - 1);
-                    pipelineStages.add(Aggregates.skip(Integer.parseInt(index)));
-                    pipelineStages.add(Aggregates.limit(1));
-                }
-                else {
-                    pipelineStages.add(Aggregates.match(Filters.eq(currentFieldName + "." + ID_SHORT_KEY, identifier.getIdShortPath().getElements().get(i))));
-                }
+            // only transfer the requested element instead of the whole submodel
+            pipelineStages.add(Aggregates.project(Projections.include(currentFieldName)));
+            if (isModifying) {
+                pipelineStages.add(Aggregates.set(new Field<>(
+                        currentFieldName,
+                        QueryModifierExpressions.submodelElement("$" + currentFieldName, modifier))));
             }
 
             try {
@@ -735,64 +1559,121 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
     }
 
 
+    /**
+     * Fetches a page of documents from a collection using keyset pagination, i.e. documents are ordered by their
+     * internal _id and the cursor holds the _id of the last document of the previous page. This way, each page is
+     * resolved via the _id index regardless of how many pages have been fetched before, and pages remain stable if
+     * documents are inserted or deleted in the meantime.
+     *
+     * @param collection the collection
+     * @param filter the filter
+     * @param paging the paging information
+     * @param modifier the query modifier
+     * @param type the type of the elements
+     * @return the page
+     * @throws PersistenceException if deserializing a document fails
+     */
     private <T extends Referable> Page<T> preparePagedResult(MongoCollection<Document> collection, Bson filter, PagingInfo paging, QueryModifier modifier, Class<T> type)
             throws PersistenceException {
-        return preparePagedResult(
-                asPojo(
-                        applyPaging(collection.find(filter), paging),
-                        type),
-                modifier,
-                paging);
+        Bson query = filter;
+        if (Objects.nonNull(paging.getCursor())) {
+            query = Filters.and(filter, Filters.gt(MONGO_ID_KEY, readObjectIdCursor(paging.getCursor())));
+        }
+        List<RawBsonDocument> temp;
+        if (Submodel.class.isAssignableFrom(type) && QueryModifierExpressions.isModifying(modifier) && !isFlat()) {
+            List<Bson> pipelineStages = new ArrayList<>();
+            pipelineStages.add(Aggregates.match(query));
+            pipelineStages.add(Aggregates.sort(Sorts.ascending(MONGO_ID_KEY)));
+            if (paging.hasLimit()) {
+                pipelineStages.add(Aggregates.limit((int) paging.getLimit() + 1));
+            }
+            pipelineStages.add(getSubmodelElementsStage(modifier));
+            AggregateIterable<RawBsonDocument> documents = collection.aggregate(pipelineStages, RawBsonDocument.class);
+            temp = documents.into(new ArrayList<>());
+        }
+        else {
+            FindIterable<RawBsonDocument> documents = collection.find(query, RawBsonDocument.class).sort(Sorts.ascending(MONGO_ID_KEY));
+            if (paging.hasLimit()) {
+                documents = documents.limit((int) paging.getLimit() + 1);
+            }
+            temp = documents.into(new ArrayList<>());
+        }
+        boolean hasMoreData = paging.hasLimit() && temp.size() > paging.getLimit();
+        List<RawBsonDocument> content = hasMoreData
+                ? temp.subList(0, (int) paging.getLimit())
+                : temp;
+        List<T> result = decode(content, type, getCodecRegistry(modifier));
+        if (isFlat()) {
+            for (T element: result) {
+                if (Submodel.class.isAssignableFrom(element.getClass())) {
+                    ((Submodel) element).setSubmodelElements(getSubmodelElementStore(modifier).getSubmodelElements(((Submodel) element).getId()));
+                }
+            }
+        }
+        return Page.<T> builder()
+                .result(QueryModifierHelper.applyQueryModifier(
+                        result,
+                        modifier))
+                .metadata(PagingMetadata.builder()
+                        .cursor(hasMoreData && !content.isEmpty()
+                                ? content.get(content.size() - 1).getObjectId(MONGO_ID_KEY).getValue().toHexString()
+                                : null)
+                        .build())
+                .build();
     }
 
 
-    private void save(List<? extends Identifiable> list, MongoCollection<Document> collection) throws PersistenceException {
-        if (list.isEmpty())
+    /**
+     * Upserts multiple identifiables using a single unordered bulk write, i.e. the database may apply the writes in any
+     * order and in parallel and a failing write does not prevent the others from being applied.
+     *
+     * @param <T> the type of the identifiables
+     * @param <D> the document class used for writing
+     * @param collection the collection
+     * @param identifiables the identifiables
+     * @param documentClass the document class used for writing
+     * @param encoder converts an identifiable into the document to write
+     * @throws PersistenceException if writing fails
+     */
+    private <T extends Identifiable, D> void upsertAll(MongoCollection<Document> collection, List<T> identifiables, Class<D> documentClass, Function<T, D> encoder)
+            throws PersistenceException {
+        if (Objects.isNull(identifiables) || identifiables.isEmpty()) {
             return;
+        }
         try {
             collection
+                    .withDocumentClass(documentClass)
                     .withWriteConcern(WriteConcern.ACKNOWLEDGED)
-                    .insertMany(list.stream()
+                    .bulkWrite(identifiables.stream()
                             .filter(Objects::nonNull)
-                            .map(LambdaExceptionHelper.rethrowFunction(this::asDocument))
-                            .toList());
+                            .map(x -> new ReplaceOneModel<>(Filters.eq(ID_KEY, x.getId()), encoder.apply(x), new ReplaceOptions().upsert(true)))
+                            .toList(),
+                            new BulkWriteOptions().ordered(false));
         }
-        catch (MongoException | IllegalArgumentException e) {
+        catch (MongoException | BSONException | IllegalArgumentException e) {
             throw new PersistenceException("Error saving data in MongoDB", e);
         }
     }
 
 
-    private Bson getSemanticIdFilter(Reference semanticId) throws PersistenceException {
+    private Bson getSemanticIdFilter(Reference semanticId) {
         if (Objects.isNull(semanticId))
             return NO_FILTER;
-        return Filters.eq("semanticId", getReferenceAsDocument(semanticId));
-    }
-
-
-    private void saveEnvironment(Environment environment) throws PersistenceException {
-        save(environment.getAssetAdministrationShells(), aasCollection);
-        save(environment.getSubmodels(), submodelCollection);
-        save(environment.getConceptDescriptions(), cdCollection);
+        return Filters.eq(SEMANTIC_ID_KEY, asExternalReference(semanticId));
     }
 
 
     private void upsert(MongoCollection<Document> collection, Identifiable element) throws PersistenceException {
-        collection.replaceOne(Filters.eq(ID_KEY, element.getId()),
-                asDocument(element),
-                new ReplaceOptions().upsert(true));
-    }
-
-
-    private static <T> FindIterable<T> applyPaging(FindIterable<T> iterable, PagingInfo paging) {
-        FindIterable<T> result = iterable;
-        if (Objects.nonNull(paging.getCursor())) {
-            result = result.skip(readCursor(paging.getCursor()));
+        try {
+            collection
+                    .withDocumentClass(Identifiable.class)
+                    .replaceOne(Filters.eq(ID_KEY, element.getId()),
+                            element,
+                            new ReplaceOptions().upsert(true));
         }
-        if (paging.hasLimit()) {
-            result = result.limit((int) paging.getLimit() + 1);
+        catch (BSONException e) {
+            throw new PersistenceException(String.format("Error encoding identifiable for MongoDB (id: %s)", element.getId()), e);
         }
-        return result;
     }
 
 
@@ -848,18 +1729,9 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
 
 
     private static <T extends Referable> Page<T> preparePagedResult(Stream<T> input, QueryModifier modifier, PagingInfo paging) throws PersistenceException {
-        List<T> temp = input.toList();
-        return Page.<T> builder()
-                .result(QueryModifierHelper.applyQueryModifier(
-                        temp.stream()
-                                .limit(paging.hasLimit() ? paging.getLimit() : temp.size())
-                                .map(DeepCopyHelper::deepCopy)
-                                .collect(Collectors.toList()),
-                        modifier))
-                .metadata(PagingMetadata.builder()
-                        .cursor(nextCursor(paging, temp.size()))
-                        .build())
-                .build();
+        Page<T> result = preparePagedResult(input, paging);
+        result.setContent(QueryModifierHelper.applyQueryModifier(result.getContent(), modifier));
+        return result;
     }
 
 
@@ -871,6 +1743,16 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
     }
 
 
+    private static ObjectId readObjectIdCursor(String cursor) {
+        try {
+            return new ObjectId(cursor);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("invalid cursor (cursor: %s)", cursor), e);
+        }
+    }
+
+
     private static int readCursor(String cursor) {
         return Integer.parseInt(cursor);
     }
@@ -884,4 +1766,17 @@ public class PersistenceMongo implements Persistence<PersistenceMongoConfig> {
         String fieldname;
         List<Bson> arrayFilters = new ArrayList<>();
     }
+
+    @FunctionalInterface
+    private interface Transaction<E1 extends Exception, E2 extends Exception> {
+
+        public void run(ClientSession session) throws E1, E2;
+    }
+
+    private static class TransactionAbortedException extends RuntimeException {
+
+        TransactionAbortedException(Exception cause) {
+            super(cause);
+        }
+    }
 }
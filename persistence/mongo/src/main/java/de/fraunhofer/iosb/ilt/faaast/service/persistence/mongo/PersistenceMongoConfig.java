@@ -28,6 +28,10 @@ public class PersistenceMongoConfig extends PersistenceConfig<PersistenceMongo>
     private String connectionString;
     private String database = "faaast";
     private boolean override = false;
+    private boolean createIndexes = true;
+    private boolean uniqueIdIndex = false;
+    private boolean flattenSubmodelElements = false;
+    private long gridFsBlobThreshold = -1;
 
     public String getConnectionString() {
         return connectionString;
@@ -59,11 +63,83 @@ public class PersistenceMongoConfig extends PersistenceConfig<PersistenceMongo>
     }
 
 
+    /**
+     * If enabled, the indexes required by the queries of the persistence are created on startup if they do not exist
+     * yet.
+     *
+     * @return true if indexes should be created, otherwise false
+     */
+    public boolean isCreateIndexes() {
+        return createIndexes;
+    }
+
+
+    public void setCreateIndexes(boolean createIndexes) {
+        this.createIndexes = createIndexes;
+    }
+
+
+    /**
+     * If enabled, the indexes on the id of asset administration shells, submodels and concept descriptions as well as
+     * on the handle of operation results are created as unique indexes. Creating the indexes fails if the database
+     * already contains duplicates. Only applies if {@link #isCreateIndexes()} is enabled.
+     *
+     * @return true if unique indexes should be created, otherwise false
+     */
+    public boolean isUniqueIdIndex() {
+        return uniqueIdIndex;
+    }
+
+
+    public void setUniqueIdIndex(boolean uniqueIdIndex) {
+        this.uniqueIdIndex = uniqueIdIndex;
+    }
+
+
+    /**
+     * Gets whether each submodel element should be stored as a separate document instead of nested inside the
+     * document of its submodel. This turns reads and updates of single submodel elements into indexed point operations
+     * and avoids the document size limit of MongoDB for large submodels. Changing this value requires the database to
+     * be re-initialized, e.g. by setting {@code override} to true.
+     *
+     * @return true if submodel elements should be stored as separate documents, otherwise false
+     */
+    public boolean isFlattenSubmodelElements() {
+        return flattenSubmodelElements;
+    }
+
+
+    public void setFlattenSubmodelElements(boolean flattenSubmodelElements) {
+        this.flattenSubmodelElements = flattenSubmodelElements;
+    }
+
+
+    /**
+     * Gets the size in bytes above which the values of blobs are stored in GridFS instead of inline in the document of
+     * the blob. Offloaded values are only fetched when explicitly requested, i.e. for extent {@code WithBlobValue}. A
+     * negative value disables storing blob values in GridFS.
+     *
+     * @return the threshold in bytes or a negative value if disabled
+     */
+    public long getGridFsBlobThreshold() {
+        return gridFsBlobThreshold;
+    }
+
+
+    public void setGridFsBlobThreshold(long gridFsBlobThreshold) {
+        this.gridFsBlobThreshold = gridFsBlobThreshold;
+    }
+
+
     @Override
     public int hashCode() {
         return Objects.hash(connectionString,
                 database,
-                override);
+                override,
+                createIndexes,
+                uniqueIdIndex,
+                flattenSubmodelElements,
+                gridFsBlobThreshold);
     }
 
 
@@ -81,7 +157,11 @@ public class PersistenceMongoConfig extends PersistenceConfig<PersistenceMongo>
         final PersistenceMongoConfig other = (PersistenceMongoConfig) obj;
         return Objects.equals(this.connectionString, other.connectionString)
                 && Objects.equals(this.database, other.database)
-                && Objects.equals(this.override, other.override);
+                && Objects.equals(this.override, other.override)
+                && Objects.equals(this.createIndexes, other.createIndexes)
+                && Objects.equals(this.uniqueIdIndex, other.uniqueIdIndex)
+                && Objects.equals(this.flattenSubmodelElements, other.flattenSubmodelElements)
+                && Objects.equals(this.gridFsBlobThreshold, other.gridFsBlobThreshold);
     }
 
 
@@ -108,6 +188,30 @@ public class PersistenceMongoConfig extends PersistenceConfig<PersistenceMongo>
             return getSelf();
         }
 
+
+        public B createIndexes(boolean value) {
+            getBuildingInstance().setCreateIndexes(value);
+            return getSelf();
+        }
+
+
+        public B uniqueIdIndex(boolean value) {
+            getBuildingInstance().setUniqueIdIndex(value);
+            return getSelf();
+        }
+
+
+        public B flattenSubmodelElements(boolean value) {
+            getBuildingInstance().setFlattenSubmodelElements(value);
+            return getSelf();
+        }
+
+
+        public B gridFsBlobThreshold(long value) {
+            getBuildingInstance().setGridFsBlobThreshold(value);
+            return getSelf();
+        }
+
     }
 
     public static class Builder extends AbstractBuilder<PersistenceMongoConfig, Builder> {
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.mongo;
+
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Extent;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Level;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
+import java.util.Arrays;
+import java.util.List;
+import org.bson.Document;
+
+
+/**
+ * Translates a {@link QueryModifier} into MongoDB aggregation expressions so that content removed by the modifier is
+ * already removed by the database and not transferred at all, i.e. the values of nested submodel element collections
+ * for {@link Level#CORE} and the values of blobs for {@link Extent#WITHOUT_BLOB_VALUE}.
+ *
+ * <p>As aggregation expressions cannot be recursive, blob values are only removed up to {@link #MAX_DEPTH} levels of
+ * nesting. Therefore, results must still be passed through
+ * {@link de.fraunhofer.iosb.ilt.faaast.service.persistence.util.QueryModifierHelper} which then only has to handle
+ * the remaining, rare cases.
+ */
+class QueryModifierExpressions {
+
+    static final int MAX_DEPTH = 8;
+
+    private static final String MODEL_TYPE_KEY = "modelType";
+    private static final String VALUE_KEY = "value";
+    private static final String STATEMENTS_KEY = "statements";
+    private static final String ANNOTATIONS_KEY = "annotations";
+    private static final String BLOB = "Blob";
+    private static final String SUBMODEL_ELEMENT_COLLECTION = "SubmodelElementCollection";
+    private static final String SUBMODEL_ELEMENT_LIST = "SubmodelElementList";
+    private static final String ENTITY = "Entity";
+    private static final String ANNOTATED_RELATIONSHIP_ELEMENT = "AnnotatedRelationshipElement";
+
+    private QueryModifierExpressions() {}
+
+
+    /**
+     * Checks if a modifier removes any content that can be removed by the database.
+     *
+     * @param modifier the modifier
+     * @return true if the modifier removes content, otherwise false
+     */
+    static boolean isModifying(QueryModifier modifier) {
+        return modifier.getLevel() == Level.CORE || modifier.getExtent() == Extent.WITHOUT_BLOB_VALUE;
+    }
+
+
+    /**
+     * Creates an expression for the submodel elements of a submodel.
+     *
+     * @param field the expression referencing the submodel elements, e.g. {@code $submodelElements}
+     * @param modifier the modifier
+     * @return the expression
+     */
+    static Object submodelElements(String field, QueryModifier modifier) {
+        return children(field, modifier);
+    }
+
+
+    /**
+     * Creates an expression for a single submodel element that is the root of the result.
+     *
+     * @param field the expression referencing the submodel element
+     * @param modifier the modifier
+     * @return the expression
+     */
+    static Object submodelElement(String field, QueryModifier modifier) {
+        if (modifier.getLevel() != Level.CORE) {
+            return withoutBlobValues(field, modifier, MAX_DEPTH);
+        }
+        return new Document("$switch", new Document()
+                .append("branches", List.of(
+                        branch(field, List.of(SUBMODEL_ELEMENT_COLLECTION), VALUE_KEY, children(field + "." + VALUE_KEY, modifier)),
+                        branch(field, List.of(ENTITY), STATEMENTS_KEY, children(field + "." + STATEMENTS_KEY, modifier))))
+                .append("default", withoutBlobValues(field, modifier, MAX_DEPTH)));
+    }
+
+
+    private static Object children(String field, QueryModifier modifier) {
+        String variable = "child";
+        Object element = withoutBlobValues("$$" + variable, modifier, MAX_DEPTH - 1);
+        if (modifier.getLevel() == Level.CORE) {
+            // as done by QueryModifierHelper, only the value of direct child collections is removed
+            element = new Document("$cond", Arrays.asList(
+                    isModelType("$$" + variable, List.of(SUBMODEL_ELEMENT_COLLECTION)),
+                    merge("$$" + variable, VALUE_KEY, List.of()),
+                    element));
+        }
+        return map(field, variable, element);
+    }
+
+
+    private static Object withoutBlobValues(String field, QueryModifier modifier, int depth) {
+        if (modifier.getExtent() != Extent.WITHOUT_BLOB_VALUE) {
+            return field;
+        }
+        Document blobBranch = branch(field, List.of(BLOB), VALUE_KEY, null);
+        if (depth <= 0) {
+            return new Document("$cond", Arrays.asList(blobBranch.get("case"), blobBranch.get("then"), field));
+        }
+        // children are mapped once and then written back to the field used by the respective element type
+        String variable = "c" + depth;
+        String element = "e" + depth;
+        return new Document("$let", new Document()
+                .append("vars", new Document(variable, map(
+                        new Document("$switch", new Document()
+                                .append("branches", List.of(
+                                        childBranch(field, List.of(SUBMODEL_ELEMENT_COLLECTION, SUBMODEL_ELEMENT_LIST), VALUE_KEY),
+                                        childBranch(field, List.of(ENTITY), STATEMENTS_KEY),
+                                        childBranch(field, List.of(ANNOTATED_RELATIONSHIP_ELEMENT), ANNOTATIONS_KEY)))
+                                .append("default", List.of())),
+                        element,
+                        withoutBlobValues("$$" + element, modifier, depth - 1))))
+                .append("in", new Document("$switch", new Document()
+                        .append("branches", List.of(
+                                blobBranch,
+                                branch(field, List.of(SUBMODEL_ELEMENT_COLLECTION, SUBMODEL_ELEMENT_LIST), VALUE_KEY, "$$" + variable),
+                                branch(field, List.of(ENTITY), STATEMENTS_KEY, "$$" + variable),
+                                branch(field, List.of(ANNOTATED_RELATIONSHIP_ELEMENT), ANNOTATIONS_KEY, "$$" + variable)))
+                        .append("default", field))));
+    }
+
+
+    private static Document map(Object input, String variable, Object in) {
+        return new Document("$map", new Document()
+                .append("input", new Document("$ifNull", Arrays.asList(input, List.of())))
+                .append("as", variable)
+                .append("in", in));
+    }
+
+
+    private static Document branch(String field, List<String> modelTypes, String key, Object value) {
+        return new Document()
+                .append("case", isModelType(field, modelTypes))
+                .append("then", merge(field, key, value));
+    }
+
+
+    private static Document childBranch(String field, List<String> modelTypes, String key) {
+        return new Document()
+                .append("case", isModelType(field, modelTypes))
+                .append("then", field + "." + key);
+    }
+
+
+    private static Document isModelType(String field, List<String> modelTypes) {
+        return new Document("$in", Arrays.asList(field + "." + MODEL_TYPE_KEY, modelTypes));
+    }
+
+
+    private static Document merge(String field, String key, Object value) {
+        return new Document("$mergeObjects", Arrays.asList(field, new Document(key, value)));
+    }
+}
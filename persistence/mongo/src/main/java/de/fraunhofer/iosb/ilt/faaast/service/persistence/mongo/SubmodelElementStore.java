@@ -0,0 +1,676 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.mongo;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import de.fraunhofer.iosb.ilt.faaast.service.model.IdShortPath;
+import de.fraunhofer.iosb.ilt.faaast.service.model.SubmodelElementIdentifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.bson.BSONException;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.eclipse.digitaltwin.aas4j.v3.model.Entity;
+import org.eclipse.digitaltwin.aas4j.v3.model.Referable;
+import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
+import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElement;
+import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElementList;
+
+
+/**
+ * Stores submodel elements in a separate collection with one document per submodel element, keyed by the id of the
+ * submodel and the idShortPath of the element. The elements contained in submodel element collections and lists are
+ * not stored inside their parent but as documents of their own referencing the path of their parent and their
+ * position within it. All other content, e.g. the statements of an entity, is stored inline.
+ *
+ * <p>Document layout: {@code {submodelId, path, parent, position, element}} with {@code parent} being the path of the
+ * parent element or an empty string for elements directly contained in the submodel.
+ *
+ * <p>Modifications consist of multiple writes and are therefore executed within the given {@link ClientSession}, which
+ * is expected to be in a transaction if the deployment supports transactions. Elements are encoded before, as encoding
+ * may upload blob values to GridFS and a transaction may be retried.
+ */
+class SubmodelElementStore {
+
+    static final String COLLECTION_NAME = "submodelElements";
+    static final String ELEMENT_KEY = "element";
+
+    private static final String MONGO_ID_KEY = "_id";
+    private static final String SUBMODEL_ID_KEY = "submodelId";
+    private static final String PATH_KEY = "path";
+    private static final String PARENT_KEY = "parent";
+    private static final String POSITION_KEY = "position";
+    private static final String MODEL_TYPE_KEY = "modelType";
+    private static final String ID_SHORT_KEY = "idShort";
+    private static final String VALUE_KEY = "value";
+    private static final String STATEMENTS_KEY = "statements";
+    private static final String SUBMODEL_ELEMENTS_KEY = "submodelElements";
+    private static final String ROOT_PATH = "";
+    private static final List<String> CONTAINER_TYPES = List.of("SubmodelElementCollection", "SubmodelElementList");
+    private static final String LIST_TYPE = "SubmodelElementList";
+    private static final Pattern REGEX_SPECIAL_CHARACTERS = Pattern.compile("[\\\\^$.|?*+()\\[\\]{}]");
+
+    private final MongoCollection<BsonDocument> collection;
+    private final Codec<Submodel> submodelCodec;
+    private final Codec<SubmodelElement> submodelElementCodec;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param collection the collection
+     * @param codecRegistry the codec registry used for submodel elements
+     * @param inlineCodecRegistry the codec registry used for submodels that stores blob values inline, as the
+     *            submodel elements are removed after encoding
+     */
+    SubmodelElementStore(MongoCollection<?> collection, CodecRegistry codecRegistry, CodecRegistry inlineCodecRegistry) {
+        this.collection = collection.withDocumentClass(BsonDocument.class);
+        this.submodelCodec = inlineCodecRegistry.get(Submodel.class);
+        this.submodelElementCodec = codecRegistry.get(SubmodelElement.class);
+    }
+
+
+    /**
+     * Gets the indexes required by this store.
+     *
+     * @return the indexes
+     */
+    static List<IndexModel> getIndexes() {
+        return List.of(
+                new IndexModel(Indexes.ascending(SUBMODEL_ID_KEY, PATH_KEY), new IndexOptions().unique(true)),
+                new IndexModel(Indexes.ascending(SUBMODEL_ID_KEY, PARENT_KEY, POSITION_KEY)));
+    }
+
+
+    /**
+     * Encodes a submodel without its submodel elements, i.e. the document to store in the submodel collection.
+     *
+     * @param submodel the submodel
+     * @return the encoded submodel without submodel elements
+     */
+    BsonDocument encodeWithoutSubmodelElements(Submodel submodel) {
+        BsonDocument result = encode(submodelCodec, submodel);
+        result.remove(SUBMODEL_ELEMENTS_KEY);
+        return result;
+    }
+
+
+    /**
+     * Encodes a submodel element.
+     *
+     * @param submodelElement the submodel element
+     * @return the encoded submodel element
+     * @throws PersistenceException if encoding fails
+     */
+    BsonDocument encode(SubmodelElement submodelElement) throws PersistenceException {
+        try {
+            return encode(submodelElementCodec, submodelElement);
+        }
+        catch (BSONException e) {
+            throw new PersistenceException("Error encoding submodel element for MongoDB", e);
+        }
+    }
+
+
+    /**
+     * Encodes all submodel elements of multiple submodels as documents to store.
+     *
+     * @param submodels the submodels
+     * @return the documents
+     * @throws PersistenceException if encoding fails
+     */
+    List<BsonDocument> encode(List<Submodel> submodels) throws PersistenceException {
+        List<BsonDocument> result = new ArrayList<>();
+        for (Submodel submodel: submodels) {
+            List<SubmodelElement> elements = Objects.nonNull(submodel.getSubmodelElements())
+                    ? submodel.getSubmodelElements()
+                    : List.of();
+            for (int i = 0; i < elements.size(); i++) {
+                flatten(submodel.getId(),
+                        childPath(ROOT_PATH, false, elements.get(i).getIdShort(), i),
+                        ROOT_PATH,
+                        i,
+                        encode(elements.get(i)),
+                        result);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Replaces all submodel elements of multiple submodels using one delete and one unordered insert.
+     *
+     * @param session the session
+     * @param submodelIds the ids of the submodels
+     * @param documents the documents to store as created by {@link #encode(List)}
+     * @throws PersistenceException if writing to the database fails
+     */
+    void save(ClientSession session, List<String> submodelIds, List<BsonDocument> documents) throws PersistenceException {
+        try {
+            collection.deleteMany(session, Filters.in(SUBMODEL_ID_KEY, submodelIds));
+            if (!documents.isEmpty()) {
+                collection.insertMany(session, documents, new InsertManyOptions().ordered(false));
+            }
+        }
+        catch (MongoException e) {
+            throw new PersistenceException("Error saving submodel elements in MongoDB", e);
+        }
+    }
+
+
+    /**
+     * Deletes all submodel elements of a submodel.
+     *
+     * @param session the session
+     * @param submodelId the id of the submodel
+     */
+    void delete(ClientSession session, String submodelId) {
+        collection.deleteMany(session, Filters.eq(SUBMODEL_ID_KEY, submodelId));
+    }
+
+
+    /**
+     * Gets all submodel elements directly contained in a submodel including their children.
+     *
+     * @param submodelId the id of the submodel
+     * @return the submodel elements
+     * @throws PersistenceException if decoding fails
+     */
+    List<SubmodelElement> getSubmodelElements(String submodelId) throws PersistenceException {
+        List<BsonDocument> documents = collection.find(Filters.eq(SUBMODEL_ID_KEY, submodelId))
+                .sort(Sorts.ascending(POSITION_KEY))
+                .into(new ArrayList<>());
+        List<SubmodelElement> result = new ArrayList<>();
+        for (BsonValue element: assemble(documents).getOrDefault(ROOT_PATH, new BsonArray())) {
+            result.add(decode(element.asDocument()));
+        }
+        return result;
+    }
+
+
+    /**
+     * Gets a submodel element including its children.
+     *
+     * @param identifier the identifier of the submodel element
+     * @return the submodel element
+     * @throws ResourceNotFoundException if the submodel element does not exist
+     * @throws PersistenceException if decoding fails
+     */
+    SubmodelElement get(SubmodelElementIdentifier identifier) throws ResourceNotFoundException, PersistenceException {
+        String path = identifier.getIdShortPath().toString();
+        List<BsonDocument> documents = collection.find(getSubtreeFilter(identifier.getSubmodelId(), path))
+                .sort(Sorts.ascending(POSITION_KEY))
+                .into(new ArrayList<>());
+        assemble(documents);
+        BsonDocument root = documents.stream()
+                .filter(x -> Objects.equals(path, x.getString(PATH_KEY).getValue()))
+                .findFirst()
+                .orElseThrow(() -> new ResourceNotFoundException(identifier.toReference()));
+        return decode(root.getDocument(ELEMENT_KEY));
+    }
+
+
+    /**
+     * Finds the submodel elements directly contained in a submodel element collection, list or the submodel itself
+     * including their children. Filtering and paging is executed by the database using the index on (submodelId,
+     * parent, position), i.e. paging continues after the position of the last element of the previous page.
+     *
+     * @param parentIdentifier the identifier of the parent
+     * @param filter additional filter on the documents, e.g. on fields of {@link #ELEMENT_KEY}, may be null
+     * @param afterPosition only elements at a position greater than this are returned, may be null
+     * @param limit the maximum number of elements to return, 0 for no limit
+     * @return the matching elements with their position within the parent, sorted by position
+     * @throws ResourceNotFoundException if a matching element is removed concurrently
+     * @throws PersistenceException if decoding fails
+     */
+    List<Map.Entry<Integer, SubmodelElement>> findChildren(SubmodelElementIdentifier parentIdentifier, Bson filter, Integer afterPosition, int limit)
+            throws ResourceNotFoundException, PersistenceException {
+        List<Bson> filters = new ArrayList<>();
+        filters.add(Filters.eq(SUBMODEL_ID_KEY, parentIdentifier.getSubmodelId()));
+        filters.add(Filters.eq(PARENT_KEY, parentIdentifier.getIdShortPath().toString()));
+        if (Objects.nonNull(afterPosition)) {
+            filters.add(Filters.gt(POSITION_KEY, afterPosition));
+        }
+        if (Objects.nonNull(filter)) {
+            filters.add(filter);
+        }
+        List<BsonDocument> documents = collection.find(Filters.and(filters))
+                .sort(Sorts.ascending(POSITION_KEY))
+                .limit(limit)
+                .into(new ArrayList<>());
+        List<Map.Entry<Integer, SubmodelElement>> result = new ArrayList<>();
+        for (BsonDocument document: documents) {
+            BsonDocument element = document.getDocument(ELEMENT_KEY);
+            result.add(Map.entry(
+                    document.getInt32(POSITION_KEY).getValue(),
+                    isContainer(element)
+                            ? get(SubmodelElementIdentifier.builder()
+                                    .submodelId(parentIdentifier.getSubmodelId())
+                                    .idShortPath(IdShortPath.parse(document.getString(PATH_KEY).getValue()))
+                                    .build())
+                            : decode(element)));
+        }
+        return result;
+    }
+
+
+    /**
+     * Gets a submodel element without the elements contained in it if it is a submodel element collection or list.
+     *
+     * @param identifier the identifier of the submodel element
+     * @return the submodel element
+     * @throws ResourceNotFoundException if the submodel element does not exist
+     * @throws PersistenceException if decoding fails
+     */
+    SubmodelElement getWithoutChildren(SubmodelElementIdentifier identifier) throws ResourceNotFoundException, PersistenceException {
+        BsonDocument document = collection.find(getFilter(identifier.getSubmodelId(), identifier.getIdShortPath().toString())).first();
+        if (Objects.isNull(document)) {
+            throw new ResourceNotFoundException(identifier.toReference());
+        }
+        return decode(document.getDocument(ELEMENT_KEY));
+    }
+
+
+    /**
+     * Gets the ids of the blob values stored in GridFS that are referenced by a submodel element including its children
+     * or by all submodel elements of a submodel if the idShortPath is empty.
+     *
+     * @param identifier the identifier of the submodel element or submodel
+     * @return the ids of the referenced files
+     */
+    Set<ObjectId> getBlobReferences(SubmodelElementIdentifier identifier) {
+        return getBlobReferences(identifier.getIdShortPath().isEmpty()
+                ? Filters.eq(SUBMODEL_ID_KEY, identifier.getSubmodelId())
+                : getSubtreeFilter(identifier.getSubmodelId(), identifier.getIdShortPath().toString()));
+    }
+
+
+    /**
+     * Gets the ids of the blob values stored in GridFS that are referenced by all submodel elements of multiple
+     * submodels using a single query.
+     *
+     * @param submodelIds the ids of the submodels
+     * @return the ids of the referenced files
+     */
+    Set<ObjectId> getBlobReferences(List<String> submodelIds) {
+        return getBlobReferences(Filters.in(SUBMODEL_ID_KEY, submodelIds));
+    }
+
+
+    private Set<ObjectId> getBlobReferences(Bson filter) {
+        Set<ObjectId> result = new HashSet<>();
+        for (BsonDocument document: collection.find(filter).projection(Projections.include(ELEMENT_KEY))) {
+            result.addAll(GridFsBlobStore.getReferences(document.getDocument(ELEMENT_KEY)));
+        }
+        return result;
+    }
+
+
+    /**
+     * Checks if a submodel element exists.
+     *
+     * @param identifier the identifier of the submodel element
+     * @return true if it exists, otherwise false
+     */
+    boolean exists(SubmodelElementIdentifier identifier) {
+        return Objects.nonNull(collection.find(getFilter(identifier.getSubmodelId(), identifier.getIdShortPath().toString()))
+                .projection(Projections.include(PATH_KEY))
+                .first());
+    }
+
+
+    /**
+     * Inserts a submodel element as last child of a parent.
+     *
+     * @param session the session
+     * @param parentIdentifier the identifier of the parent
+     * @param parent the parent, used to determine how the element is added
+     * @param idShort the idShort of the submodel element
+     * @param element the encoded submodel element as created by {@link #encode(SubmodelElement)}, not modified
+     * @throws ResourceNotFoundException if the parent does not exist
+     * @throws PersistenceException if writing to the database fails
+     */
+    void insert(ClientSession session, SubmodelElementIdentifier parentIdentifier, Referable parent, String idShort, BsonDocument element)
+            throws ResourceNotFoundException, PersistenceException {
+        String parentPath = parentIdentifier.getIdShortPath().toString();
+        try {
+            if (Entity.class.isAssignableFrom(parent.getClass())) {
+                // statements of entities are stored inline
+                UpdateResult result = collection.updateOne(
+                        session,
+                        getFilter(parentIdentifier.getSubmodelId(), parentPath),
+                        Updates.push(ELEMENT_KEY + "." + STATEMENTS_KEY, element));
+                if (result.getMatchedCount() == 0) {
+                    throw new ResourceNotFoundException(parentIdentifier.toReference());
+                }
+                return;
+            }
+            BsonDocument last = collection.find(session, Filters.and(
+                    Filters.eq(SUBMODEL_ID_KEY, parentIdentifier.getSubmodelId()),
+                    Filters.eq(PARENT_KEY, parentPath)))
+                    .sort(Sorts.descending(POSITION_KEY))
+                    .projection(Projections.include(POSITION_KEY))
+                    .first();
+            int position = Objects.nonNull(last)
+                    ? last.getInt32(POSITION_KEY).getValue() + 1
+                    : 0;
+            List<BsonDocument> documents = new ArrayList<>();
+            flatten(parentIdentifier.getSubmodelId(),
+                    childPath(parentPath, SubmodelElementList.class.isAssignableFrom(parent.getClass()), idShort, position),
+                    parentPath,
+                    position,
+                    element.clone(),
+                    documents);
+            insert(session, documents);
+        }
+        catch (MongoException e) {
+            throw new PersistenceException(String.format("Error inserting submodel element in MongoDB (parent: %s)", parentIdentifier), e);
+        }
+    }
+
+
+    /**
+     * Replaces a submodel element including its children.
+     *
+     * @param session the session
+     * @param identifier the identifier of the submodel element
+     * @param idShort the idShort of the new submodel element
+     * @param element the new submodel element encoded by {@link #encode(SubmodelElement)}, not modified
+     * @throws ResourceNotFoundException if the submodel element does not exist
+     * @throws PersistenceException if writing to the database fails
+     */
+    void update(ClientSession session, SubmodelElementIdentifier identifier, String idShort, BsonDocument element)
+            throws ResourceNotFoundException, PersistenceException {
+        String path = identifier.getIdShortPath().toString();
+        try {
+            BsonDocument existing = collection.find(session, getFilter(identifier.getSubmodelId(), path))
+                    .projection(Projections.include(PARENT_KEY, POSITION_KEY))
+                    .first();
+            if (Objects.isNull(existing)) {
+                throw new ResourceNotFoundException(identifier.toReference());
+            }
+            String parentPath = existing.getString(PARENT_KEY).getValue();
+            int position = existing.getInt32(POSITION_KEY).getValue();
+            collection.deleteMany(session, getSubtreeFilter(identifier.getSubmodelId(), path));
+            List<BsonDocument> documents = new ArrayList<>();
+            flatten(identifier.getSubmodelId(),
+                    childPath(parentPath, isIndex(identifier.getIdShortPath()), idShort, position),
+                    parentPath,
+                    position,
+                    element.clone(),
+                    documents);
+            insert(session, documents);
+        }
+        catch (MongoException e) {
+            throw new PersistenceException(String.format("Error updating submodel element in MongoDB (identifier: %s)", identifier), e);
+        }
+    }
+
+
+    /**
+     * Sets fields of a submodel element in place without reading or rewriting it, e.g. to update the value of a
+     * property.
+     *
+     * @param identifier the identifier of the submodel element
+     * @param modelType the expected model type of the submodel element
+     * @param fields the fields to set
+     * @return true if the submodel element exists and is of the expected model type, otherwise false
+     * @throws PersistenceException if writing to the database fails
+     */
+    boolean setFields(SubmodelElementIdentifier identifier, String modelType, BsonDocument fields) throws PersistenceException {
+        try {
+            UpdateResult result = collection.updateOne(
+                    Filters.and(
+                            getFilter(identifier.getSubmodelId(), identifier.getIdShortPath().toString()),
+                            Filters.eq(ELEMENT_KEY + "." + MODEL_TYPE_KEY, modelType)),
+                    Updates.combine(fields.entrySet().stream()
+                            .map(x -> Updates.set(ELEMENT_KEY + "." + x.getKey(), x.getValue()))
+                            .collect(Collectors.toList())));
+            return result.getMatchedCount() > 0;
+        }
+        catch (MongoException e) {
+            throw new PersistenceException(String.format("Error updating submodel element in MongoDB (identifier: %s)", identifier), e);
+        }
+    }
+
+
+    /**
+     * Deletes a submodel element including its children. When deleting from a submodel element list, the paths of all
+     * following elements of the list are updated accordingly.
+     *
+     * @param session the session
+     * @param identifier the identifier of the submodel element
+     * @throws ResourceNotFoundException if the submodel element does not exist
+     * @throws PersistenceException if writing to the database fails
+     */
+    void delete(ClientSession session, SubmodelElementIdentifier identifier) throws ResourceNotFoundException, PersistenceException {
+        String path = identifier.getIdShortPath().toString();
+        try {
+            DeleteResult result = collection.deleteMany(session, getSubtreeFilter(identifier.getSubmodelId(), path));
+            if (result.getDeletedCount() == 0) {
+                throw new ResourceNotFoundException(identifier.toReference());
+            }
+            if (isIndex(identifier.getIdShortPath())) {
+                shiftListElements(session, identifier.getSubmodelId(), identifier.getIdShortPath().getParent().toString(), getIndex(identifier.getIdShortPath()));
+            }
+        }
+        catch (MongoException e) {
+            throw new PersistenceException(String.format("Error deleting submodel element from MongoDB (identifier: %s)", identifier), e);
+        }
+    }
+
+
+    private void shiftListElements(ClientSession session, String submodelId, String listPath, int deletedIndex) {
+        // paths are unique, therefore elements must be moved in ascending order of their index
+        Map<Integer, List<WriteModel<BsonDocument>>> updatesByIndex = new TreeMap<>();
+        for (BsonDocument document: collection.find(session, Filters.and(
+                Filters.eq(SUBMODEL_ID_KEY, submodelId),
+                Filters.regex(PATH_KEY, "^" + escapeRegex(listPath + "["))))
+                .projection(Projections.include(PATH_KEY, PARENT_KEY, POSITION_KEY))
+                .into(new ArrayList<>())) {
+            String path = document.getString(PATH_KEY).getValue();
+            int index = Integer.parseInt(path.substring(listPath.length() + 1, path.indexOf(']', listPath.length())));
+            if (index <= deletedIndex) {
+                continue;
+            }
+            Bson update = Updates.combine(
+                    Updates.set(PATH_KEY, shift(path, listPath, index)),
+                    Updates.set(PARENT_KEY, shift(document.getString(PARENT_KEY).getValue(), listPath, index)));
+            if (Objects.equals(listPath, document.getString(PARENT_KEY).getValue())) {
+                update = Updates.combine(update, Updates.inc(POSITION_KEY, -1));
+            }
+            updatesByIndex.computeIfAbsent(index, x -> new ArrayList<>())
+                    .add(new UpdateOneModel<>(Filters.eq(MONGO_ID_KEY, document.get(MONGO_ID_KEY)), update));
+        }
+        List<WriteModel<BsonDocument>> updates = updatesByIndex.values().stream()
+                .flatMap(List::stream)
+                .toList();
+        if (!updates.isEmpty()) {
+            collection.bulkWrite(session, updates);
+        }
+    }
+
+
+    private static String shift(String path, String listPath, int index) {
+        String prefix = listPath + "[" + index + "]";
+        if (!path.startsWith(prefix)) {
+            return path;
+        }
+        return listPath + "[" + (index - 1) + "]" + path.substring(prefix.length());
+    }
+
+
+    private void insert(ClientSession session, List<BsonDocument> documents) {
+        if (!documents.isEmpty()) {
+            collection.insertMany(session, documents);
+        }
+    }
+
+
+    /**
+     * Recursively splits an encoded submodel element into one document per element.
+     *
+     * @param submodelId the id of the submodel
+     * @param path the path of the element
+     * @param parent the path of the parent
+     * @param position the position of the element within its parent
+     * @param element the encoded element; the contained elements of collections and lists are removed from it
+     * @param result list to add the documents to
+     */
+    private static void flatten(String submodelId, String path, String parent, int position, BsonDocument element, List<BsonDocument> result) {
+        result.add(new BsonDocument()
+                .append(SUBMODEL_ID_KEY, new BsonString(submodelId))
+                .append(PATH_KEY, new BsonString(path))
+                .append(PARENT_KEY, new BsonString(parent))
+                .append(POSITION_KEY, new BsonInt32(position))
+                .append(ELEMENT_KEY, element));
+        if (!isContainer(element) || !element.isArray(VALUE_KEY)) {
+            return;
+        }
+        boolean isList = Objects.equals(LIST_TYPE, element.getString(MODEL_TYPE_KEY).getValue());
+        BsonArray children = element.getArray(VALUE_KEY);
+        element.remove(VALUE_KEY);
+        for (int i = 0; i < children.size(); i++) {
+            BsonDocument child = children.get(i).asDocument();
+            String idShort = child.isString(ID_SHORT_KEY)
+                    ? child.getString(ID_SHORT_KEY).getValue()
+                    : null;
+            flatten(submodelId, childPath(path, isList, idShort, i), path, i, child, result);
+        }
+    }
+
+
+    /**
+     * Re-attaches the elements of collections and lists to their parent.
+     *
+     * @param documents the documents ordered by position
+     * @return the attached elements grouped by the path of their parent
+     */
+    private static Map<String, BsonArray> assemble(List<BsonDocument> documents) {
+        Map<String, BsonArray> children = new HashMap<>();
+        for (BsonDocument document: documents) {
+            children.computeIfAbsent(document.getString(PARENT_KEY).getValue(), x -> new BsonArray())
+                    .add(document.getDocument(ELEMENT_KEY));
+        }
+        for (BsonDocument document: documents) {
+            BsonDocument element = document.getDocument(ELEMENT_KEY);
+            if (isContainer(element)) {
+                element.put(VALUE_KEY, children.getOrDefault(document.getString(PATH_KEY).getValue(), new BsonArray()));
+            }
+        }
+        return children;
+    }
+
+
+    private SubmodelElement decode(BsonDocument element) throws PersistenceException {
+        try {
+            return submodelElementCodec.decode(new BsonDocumentReader(element), DecoderContext.builder().build());
+        }
+        catch (BSONException e) {
+            throw new PersistenceException("Error decoding submodel element from MongoDB", e);
+        }
+    }
+
+
+    static <T> BsonDocument encode(Codec<T> codec, T value) {
+        BsonDocumentWriter writer = new BsonDocumentWriter(new BsonDocument());
+        codec.encode(writer, value, EncoderContext.builder().build());
+        return writer.getDocument();
+    }
+
+
+    private static Bson getFilter(String submodelId, String path) {
+        return Filters.and(
+                Filters.eq(SUBMODEL_ID_KEY, submodelId),
+                Filters.eq(PATH_KEY, path));
+    }
+
+
+    private static Bson getSubtreeFilter(String submodelId, String path) {
+        // anchored prefix expressions can be resolved using the index on (submodelId, path)
+        return Filters.and(
+                Filters.eq(SUBMODEL_ID_KEY, submodelId),
+                Filters.or(
+                        Filters.eq(PATH_KEY, path),
+                        Filters.regex(PATH_KEY, "^" + escapeRegex(path) + "[.\\[]")));
+    }
+
+
+    private static String childPath(String parent, boolean isList, String idShort, int index) {
+        if (isList) {
+            return parent + "[" + index + "]";
+        }
+        return parent.isEmpty()
+                ? idShort
+                : parent + "." + idShort;
+    }
+
+
+    private static boolean isContainer(BsonDocument element) {
+        return element.isString(MODEL_TYPE_KEY) && CONTAINER_TYPES.contains(element.getString(MODEL_TYPE_KEY).getValue());
+    }
+
+
+    private static boolean isIndex(IdShortPath path) {
+        List<String> elements = path.getElements();
+        return !elements.isEmpty() && elements.get(elements.size() - 1).startsWith("[");
+    }
+
+
+    private static int getIndex(IdShortPath path) {
+        String last = path.getElements().get(path.getElements().size() - 1);
+        return Integer.parseInt(last.substring(1, last.length() - 1));
+    }
+
+
+    private static String escapeRegex(String value) {
+        return REGEX_SPECIAL_CHARACTERS.matcher(value).replaceAll("\\\\$0");
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.mongo;
+
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.json.JsonApiDeserializer;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.json.JsonApiSerializer;
+import de.fraunhofer.iosb.ilt.faaast.service.model.AASFull;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.operation.OperationHandle;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.eclipse.digitaltwin.aas4j.v3.model.AssetAdministrationShell;
+import org.eclipse.digitaltwin.aas4j.v3.model.ConceptDescription;
+import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
+import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class JsonApiCodecTest {
+
+    private final JsonApiSerializer serializer = new JsonApiSerializer();
+    private final CodecRegistry registry = CodecRegistries.fromProviders(new JsonApiCodecProvider(serializer, new JsonApiDeserializer()));
+
+    @Test
+    public void testIdentifiablesEncodedLikeJson() throws Exception {
+        Environment environment = AASFull.createEnvironment();
+        for (AssetAdministrationShell expected: environment.getAssetAdministrationShells()) {
+            assertRoundTrip(expected, AssetAdministrationShell.class);
+        }
+        for (Submodel expected: environment.getSubmodels()) {
+            assertRoundTrip(expected, Submodel.class);
+        }
+        for (ConceptDescription expected: environment.getConceptDescriptions()) {
+            assertRoundTrip(expected, ConceptDescription.class);
+        }
+    }
+
+
+    @Test
+    public void testOperationHandle() throws Exception {
+        assertRoundTrip(OperationHandle.builder()
+                .handleId("foo")
+                .build(),
+                OperationHandle.class);
+    }
+
+
+    private <T> void assertRoundTrip(T expected, Class<T> type) throws Exception {
+        Codec<T> codec = registry.get(type);
+        BsonDocumentWriter writer = new BsonDocumentWriter(new BsonDocument());
+        codec.encode(writer, expected, EncoderContext.builder().build());
+        BsonDocument encoded = writer.getDocument();
+        // must match documents written by previous versions that parsed the JSON serialization
+        Assert.assertEquals(BsonDocument.parse(serializer.write(expected)), encoded);
+        T actual = codec.decode(new BsonDocumentReader(encoded), DecoderContext.builder().build());
+        Assert.assertEquals(expected, actual);
+    }
+}
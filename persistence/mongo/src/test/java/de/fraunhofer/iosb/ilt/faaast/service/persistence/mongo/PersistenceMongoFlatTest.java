@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ilt.faaast.service.persistence.mongo;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import de.fraunhofer.iosb.ilt.faaast.service.ServiceContext;
+import de.fraunhofer.iosb.ilt.faaast.service.config.CoreConfig;
+import de.fraunhofer.iosb.ilt.faaast.service.exception.ConfigurationException;
+import de.fraunhofer.iosb.ilt.faaast.service.exception.ConfigurationInitializationException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.AASFull;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.Persistence;
+import de.fraunhofer.iosb.ilt.faaast.service.util.DeepCopyHelper;
+import de.fraunhofer.iosb.ilt.faaast.service.util.EnvironmentHelper;
+import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceBuilder;
+import java.io.File;
+import org.bson.Document;
+import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
+import org.eclipse.digitaltwin.aas4j.v3.model.Reference;
+import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
+import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElementList;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+
+/**
+ * Runs all tests of the mongo database persistence with submodel elements stored as separate documents.
+ */
+public class PersistenceMongoFlatTest extends PersistenceMongoTest {
+
+    private static final ServiceContext SERVICE_CONTEXT = Mockito.mock(ServiceContext.class);
+    private static final String SUBMODEL_ID = "https://acplt.org/Test_Submodel_Mandatory";
+    private static final String LIST_ID_SHORT = "ExampleSubmodelElementListUnordered";
+
+    @Override
+    public PersistenceMongoConfig getPersistenceConfig(File initialModelFile, Environment initialModel, boolean override) throws ConfigurationInitializationException {
+        PersistenceMongoConfig result = super.getPersistenceConfig(initialModelFile, initialModel, override);
+        result.setFlattenSubmodelElements(true);
+        return result;
+    }
+
+
+    @Test
+    public void testSubmodelElementsStoredAsSeparateDocuments() throws ConfigurationException, PersistenceException {
+        Environment environment = AASFull.createEnvironment();
+        Persistence persistence = getPersistenceConfig(null, environment, true).newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        persistence.start();
+        try (MongoClient client = MongoClients.create("mongodb://" + serverAddress.getHost() + ":" + serverAddress.getPort())) {
+            MongoCollection<Document> submodels = client.getDatabase("faaast").getCollection("submodels");
+            MongoCollection<Document> submodelElements = client.getDatabase("faaast").getCollection(SubmodelElementStore.COLLECTION_NAME);
+            Assert.assertFalse(submodels.find(Filters.eq("id", SUBMODEL_ID)).first().containsKey("submodelElements"));
+            Assert.assertNotNull(submodelElements.find(Filters.and(
+                    Filters.eq("submodelId", SUBMODEL_ID),
+                    Filters.eq("path", LIST_ID_SHORT + "[0]"))).first());
+        }
+        persistence.stop();
+    }
+
+
+    @Test
+    public void testDeleteFromListShiftsFollowingElements() throws ConfigurationException, ResourceNotFoundException, PersistenceException {
+        Environment environment = AASFull.createEnvironment();
+        Persistence persistence = getPersistenceConfig(null, environment, true).newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        persistence.start();
+        Reference listReference = new ReferenceBuilder()
+                .submodel(SUBMODEL_ID)
+                .element(LIST_ID_SHORT)
+                .build();
+        SubmodelElementList expected = DeepCopyHelper.deepCopy(
+                EnvironmentHelper.resolve(listReference, environment, SubmodelElementList.class),
+                SubmodelElementList.class);
+        expected.getValue().remove(0);
+        persistence.deleteSubmodelElement(new ReferenceBuilder()
+                .submodel(SUBMODEL_ID)
+                .element(LIST_ID_SHORT)
+                .index(0)
+                .build());
+        Assert.assertEquals(expected, persistence.getSubmodelElement(listReference, QueryModifier.MAXIMAL));
+        Assert.assertEquals(
+                expected.getValue().get(0),
+                persistence.getSubmodelElement(new ReferenceBuilder()
+                        .submodel(SUBMODEL_ID)
+                        .element(LIST_ID_SHORT)
+                        .index(0)
+                        .build(),
+                        QueryModifier.MAXIMAL));
+        Submodel submodel = persistence.getSubmodel(SUBMODEL_ID, QueryModifier.MAXIMAL);
+        Assert.assertTrue(submodel.getSubmodelElements().contains(expected));
+        persistence.stop();
+    }
+}
@@ -14,6 +14,11 @@
  */
 package de.fraunhofer.iosb.ilt.faaast.service.persistence.mongo;
 
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
 import de.flapdoodle.embed.mongo.distribution.Version;
 import de.flapdoodle.embed.mongo.transitions.Mongod;
 import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
@@ -26,23 +31,40 @@ import de.fraunhofer.iosb.ilt.faaast.service.exception.ConfigurationException;
 import de.fraunhofer.iosb.ilt.faaast.service.exception.ConfigurationInitializationException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.AASFull;
 import de.fraunhofer.iosb.ilt.faaast.service.model.AASSimple;
+import de.fraunhofer.iosb.ilt.faaast.service.model.IdShortPath;
+import de.fraunhofer.iosb.ilt.faaast.service.model.SubmodelElementIdentifier;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Extent;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Level;
 import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.paging.Page;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.paging.PagingInfo;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceAlreadyExistsException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotAContainerElementException;
 import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.AbstractPersistenceTest;
 import de.fraunhofer.iosb.ilt.faaast.service.persistence.Persistence;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.SubmodelElementSearchCriteria;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.util.QueryModifierHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.DeepCopyHelper;
+import de.fraunhofer.iosb.ilt.faaast.service.util.ElementValueHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.EnvironmentHelper;
 import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceBuilder;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 import org.eclipse.digitaltwin.aas4j.v3.model.AssetAdministrationShell;
 import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
 import org.eclipse.digitaltwin.aas4j.v3.model.Reference;
+import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
 import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElement;
 import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElementList;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultBlob;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Test;
@@ -56,7 +78,7 @@ public class PersistenceMongoTest extends AbstractPersistenceTest<PersistenceMon
 
     private static final ServiceContext SERVICE_CONTEXT = Mockito.mock(ServiceContext.class);
     private static TransitionWalker.ReachedState<RunningMongodProcess> runningProcess;
-    private static de.flapdoodle.embed.mongo.commands.ServerAddress serverAddress = null;
+    protected static de.flapdoodle.embed.mongo.commands.ServerAddress serverAddress = null;
 
     @Override
     public PersistenceMongoConfig getPersistenceConfig(File initialModelFile, Environment initialModel) throws ConfigurationInitializationException {
@@ -94,6 +116,7 @@ public class PersistenceMongoTest extends AbstractPersistenceTest<PersistenceMon
     @AfterClass
     public static void cleanup() {
         runningProcess.close();
+        runningProcess = null;
     }
 
 
@@ -139,4 +162,172 @@ public class PersistenceMongoTest extends AbstractPersistenceTest<PersistenceMon
         Assert.assertEquals(expected, actual);
         persistence.stop();
     }
+
+
+    @Test
+    public void testIndexesUsedForLookups() throws ConfigurationException, PersistenceException {
+        Persistence persistence = getPersistenceConfig(null, AASFull.createEnvironment(), true).newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        persistence.start();
+        try (MongoClient client = MongoClients.create("mongodb://" + serverAddress.getHost() + ":" + serverAddress.getPort())) {
+            MongoDatabase database = client.getDatabase("faaast");
+            assertIndexUsed(database.getCollection("assetAdministrationShells"), Filters.eq("id", AASFull.AAS_1.getId()));
+            assertIndexUsed(database.getCollection("assetAdministrationShells"), Filters.eq("idShort", AASFull.AAS_1.getIdShort()));
+            assertIndexUsed(database.getCollection("assetAdministrationShells"), Filters.in("assetInformation.globalAssetId", "foo"));
+            assertIndexUsed(database.getCollection("submodels"), Filters.eq("id", AASFull.SUBMODEL_1.getId()));
+            assertIndexUsed(database.getCollection("submodels"), Filters.eq("semanticId", new Document("type", "ExternalReference")));
+            assertIndexUsed(database.getCollection("contentDescriptions"), Filters.eq("id", "foo"));
+            assertIndexUsed(database.getCollection("operationResults"), Filters.eq("handle", new Document("handleId", "foo")));
+            // indexes must be restored after all collections have been dropped
+            persistence.deleteAll();
+            assertIndexUsed(database.getCollection("submodels"), Filters.eq("id", AASFull.SUBMODEL_1.getId()));
+        }
+        persistence.stop();
+    }
+
+
+    @Test
+    public void testQueryModifierAppliedInDatabase() throws ConfigurationException, ResourceNotFoundException, PersistenceException {
+        Environment environment = AASFull.createEnvironment();
+        Persistence persistence = getPersistenceConfig(null, environment, true).newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        persistence.start();
+        List<QueryModifier> modifiers = List.of(
+                QueryModifier.DEFAULT,
+                QueryModifier.MINIMAL,
+                new QueryModifier.Builder()
+                        .level(Level.CORE)
+                        .extend(Extent.WITH_BLOB_VALUE)
+                        .build());
+        for (QueryModifier modifier: modifiers) {
+            for (Submodel submodel: environment.getSubmodels()) {
+                Submodel expected = QueryModifierHelper.applyQueryModifier(DeepCopyHelper.deepCopy(submodel, Submodel.class), modifier);
+                Assert.assertEquals(expected, persistence.getSubmodel(submodel.getId(), modifier));
+                for (SubmodelElement element: submodel.getSubmodelElements()) {
+                    Reference reference = ReferenceBuilder.forSubmodel(submodel, element);
+                    Assert.assertEquals(
+                            QueryModifierHelper.applyQueryModifier(DeepCopyHelper.deepCopy(element, SubmodelElement.class), modifier),
+                            persistence.getSubmodelElement(reference, modifier));
+                }
+            }
+        }
+        persistence.stop();
+    }
+
+
+    @Test
+    public void testFindSubmodelElementsFilteredAndPagedInDatabase() throws ConfigurationException, ResourceNotFoundException, PersistenceException {
+        Environment environment = AASFull.createEnvironment();
+        Persistence persistence = getPersistenceConfig(null, environment, true).newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        persistence.start();
+        Submodel submodel = environment.getSubmodels().stream()
+                .filter(x -> x.getId().equals(AASFull.SUBMODEL_4.getId()))
+                .findFirst()
+                .get();
+        List<SubmodelElement> expected = QueryModifierHelper.applyQueryModifier(
+                submodel.getSubmodelElements().stream()
+                        .filter(ElementValueHelper::isValueOnlySupported)
+                        .map(x -> DeepCopyHelper.deepCopy(x, SubmodelElement.class))
+                        .collect(Collectors.toList()),
+                QueryModifier.DEFAULT);
+        SubmodelElementSearchCriteria criteria = SubmodelElementSearchCriteria.builder()
+                .parent(SubmodelElementIdentifier.builder()
+                        .submodelId(submodel.getId())
+                        .build())
+                .valueOnly()
+                .build();
+        List<SubmodelElement> actual = new ArrayList<>();
+        Page<SubmodelElement> page = null;
+        do {
+            page = persistence.findSubmodelElements(
+                    criteria,
+                    QueryModifier.DEFAULT,
+                    PagingInfo.builder()
+                            .cursor(Objects.nonNull(page) ? page.getMetadata().getCursor() : null)
+                            .limit(2)
+                            .build());
+            Assert.assertTrue(page.getContent().size() <= 2);
+            actual.addAll(page.getContent());
+        } while (Objects.nonNull(page.getMetadata().getCursor()));
+        Assert.assertTrue(expected.size() < submodel.getSubmodelElements().size());
+        Assert.assertEquals(expected, actual);
+        persistence.stop();
+    }
+
+
+    @Test
+    public void testLargeBlobValuesStoredInGridFs() throws ConfigurationException, ResourceNotFoundException, PersistenceException {
+        Environment environment = AASFull.createEnvironment();
+        PersistenceMongoConfig config = getPersistenceConfig(null, environment, true);
+        config.setGridFsBlobThreshold(4);
+        Persistence persistence = config.newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        persistence.start();
+        QueryModifier withBlobValue = new QueryModifier.Builder()
+                .extend(Extent.WITH_BLOB_VALUE)
+                .build();
+        try (MongoClient client = MongoClients.create("mongodb://" + serverAddress.getHost() + ":" + serverAddress.getPort())) {
+            MongoCollection<Document> files = client.getDatabase("faaast").getCollection(GridFsBlobStore.BUCKET_NAME + ".files");
+            long fileCount = files.countDocuments();
+            Assert.assertTrue(fileCount > 0);
+            ObjectId initialFile = files.find().first().getObjectId("_id");
+            for (Submodel submodel: environment.getSubmodels()) {
+                Assert.assertEquals(submodel, persistence.getSubmodel(submodel.getId(), withBlobValue));
+                Assert.assertEquals(
+                        QueryModifierHelper.applyQueryModifier(DeepCopyHelper.deepCopy(submodel, Submodel.class), QueryModifier.DEFAULT),
+                        persistence.getSubmodel(submodel.getId(), QueryModifier.DEFAULT));
+            }
+            // replaced values must not leave orphaned files behind
+            for (Submodel submodel: environment.getSubmodels()) {
+                persistence.save(submodel);
+            }
+            Assert.assertEquals(fileCount, files.countDocuments());
+            Assert.assertNull(files.find(Filters.eq("_id", initialFile)).first());
+            for (Submodel submodel: environment.getSubmodels()) {
+                persistence.deleteSubmodel(submodel.getId());
+            }
+            Assert.assertEquals(0, files.countDocuments());
+        }
+        persistence.stop();
+    }
+
+
+    @Test
+    public void testFailedWriteDoesNotLeaveBlobValuesInGridFs() throws ConfigurationException, PersistenceException {
+        Environment environment = AASSimple.createEnvironment();
+        PersistenceMongoConfig config = getPersistenceConfig(null, environment, true);
+        config.setGridFsBlobThreshold(4);
+        Persistence persistence = config.newInstance(CoreConfig.DEFAULT, SERVICE_CONTEXT);
+        persistence.start();
+        Submodel submodel = environment.getSubmodels().get(0);
+        try (MongoClient client = MongoClients.create("mongodb://" + serverAddress.getHost() + ":" + serverAddress.getPort())) {
+            MongoCollection<Document> files = client.getDatabase("faaast").getCollection(GridFsBlobStore.BUCKET_NAME + ".files");
+            long fileCount = files.countDocuments();
+            Assert.assertThrows(ResourceNotFoundException.class, () -> persistence.update(
+                    SubmodelElementIdentifier.builder()
+                            .submodelId(submodel.getId())
+                            .idShortPath(IdShortPath.parse("doesNotExist"))
+                            .build(),
+                    new DefaultBlob.Builder()
+                            .idShort("doesNotExist")
+                            .contentType("application/octet-stream")
+                            .value(new byte[] {
+                                    1,
+                                    2,
+                                    3,
+                                    4,
+                                    5,
+                                    6,
+                                    7,
+                                    8
+                            })
+                            .build()));
+            Assert.assertEquals(fileCount, files.countDocuments());
+        }
+        persistence.stop();
+    }
+
+
+    private static void assertIndexUsed(MongoCollection<Document> collection, Bson filter) {
+        String plan = collection.find(filter).explain().toJson();
+        Assert.assertTrue(String.format("expected index scan (collection: %s, plan: %s)", collection.getNamespace().getCollectionName(), plan),
+                plan.contains("IXSCAN"));
+    }
 }